@@ -0,0 +1,27 @@
+package com.jiwu.aiseo.siteclone.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * 一次测试运行的结果，以一行 JSON 追加到结果文件
+ *
+ * scenario 相同（站点参数、线程数和服务配置覆盖都相同）的结果可以在不同提交之间直接比较。
+ */
+@Data
+public class BenchmarkResult {
+    private String timestamp;
+    private String commit; // 被测代码的提交，有未提交修改时带 +dirty
+    private String javaVersion;
+    private int availableProcessors;
+    private long maxHeapBytes;
+    private String scenario; // 测试场景的指纹
+    private SiteSpec site;
+    private int threads;
+    private Map<String, String> overrides; // 服务配置覆盖
+    private List<IterationMetrics> iterations = new ArrayList<>();
+    private IterationMetrics median; // 各指标在正式轮次中的中位数
+}
@@ -0,0 +1,310 @@
+package com.jiwu.aiseo.siteclone.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jiwu.aiseo.siteclone.SiteCloneApplication;
+import com.jiwu.aiseo.siteclone.dto.CloneRequest;
+import com.jiwu.aiseo.siteclone.dto.CloneResponse;
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+import com.jiwu.aiseo.siteclone.service.SiteCloneService;
+
+import lombok.Data;
+
+/**
+ * 端到端克隆吞吐测试
+ *
+ * 启动内嵌源站提供合成站点，在同一JVM中启动克隆服务（不启动Web服务器），
+ * 经 SiteCloneService → Spider → WebsiteMirrorProcessor 完整克隆若干轮，报告吞吐、源站侧延迟分位数、
+ * 分配速率和内存峰值；结果追加到 JSONL 文件，并与基线文件中同一场景的最近一次结果比较。
+ *
+ * 参数格式 --name=value：
+ * <ul>
+ * <li>运行参数：iterations、warmup、threads、out、baseline、timeout-seconds</li>
+ * <li>以 siteclone.、logging.、spring. 开头的参数覆盖服务配置</li>
+ * <li>其余参数为站点参数（见 {@link SiteSpec}），如 --page-count=2000 --fan-out=12 --latency-millis=20</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 运行参数
+     */
+    @Data
+    public static class RunOptions {
+        private int iterations = 3; // 正式测量轮数
+        private int warmup = 1; // 预热轮数，不计入结果
+        private int threads = 5; // 克隆线程数
+        private String out = "benchmark-results.jsonl"; // 结果文件
+        private String baseline; // 基线结果文件，为空时使用结果文件本身
+        private long timeoutSeconds = 600; // 单轮克隆的超时时间
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> runArgs = new HashMap<>();
+        Map<String, String> siteArgs = new HashMap<>();
+        Map<String, String> overrides = new TreeMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.startsWith("siteclone.") || name.startsWith("logging.") || name.startsWith("spring.")) {
+                overrides.put(name, value);
+            } else if (List.of("iterations", "warmup", "threads", "out", "baseline", "timeout-seconds").contains(name)) {
+                runArgs.put("run." + name, value);
+            } else {
+                siteArgs.put("site." + name, value);
+            }
+        }
+        RunOptions options = new RunOptions();
+        new Binder(new MapConfigurationPropertySource(runArgs)).bind("run", Bindable.ofInstance(options));
+        SiteSpec spec = new SiteSpec();
+        new Binder(new MapConfigurationPropertySource(siteArgs)).bind("site", Bindable.ofInstance(spec));
+
+        BenchmarkResult result = run(options, spec, overrides);
+        report(result, options);
+        System.exit(0);
+    }
+
+    static BenchmarkResult run(RunOptions options, SiteSpec spec, Map<String, String> overrides) throws Exception {
+        Path workDir = Files.createTempDirectory("siteclone-benchmark");
+        // 以命令行参数传入，优先于 application.yml；用户的覆盖在后面，可以改写这些默认值
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("siteclone.download.base-dir", workDir.toString());
+        properties.put("siteclone.security.min-sleep-time", "0");
+        properties.put("siteclone.security.max-thread-count", "256");
+        properties.put("siteclone.cache.enabled", "false"); // 每轮都从源站完整下载
+        properties.put("siteclone.storage.snapshot-enabled", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.jiwu.aiseo.siteclone", "WARN");
+        properties.put("logging.level.us.codecraft.webmagic", "WARN");
+        properties.put("spring.main.banner-mode", "off");
+        properties.putAll(overrides);
+        String[] springArgs = properties.entrySet().stream().map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.setTimestamp(OffsetDateTime.now().toString());
+        result.setCommit(commit());
+        result.setJavaVersion(System.getProperty("java.version"));
+        result.setAvailableProcessors(Runtime.getRuntime().availableProcessors());
+        result.setMaxHeapBytes(Runtime.getRuntime().maxMemory());
+        result.setSite(spec);
+        result.setThreads(options.getThreads());
+        result.setOverrides(overrides);
+        result.setScenario(Integer.toHexString(MAPPER.writeValueAsString(List.of(spec, options.getThreads(), overrides))
+                .hashCode()));
+
+        JvmProbe probe = new JvmProbe();
+        try (OriginServer server = new OriginServer(new SyntheticSite(spec), 32);
+                ConfigurableApplicationContext context = new SpringApplicationBuilder(SiteCloneApplication.class)
+                        .web(WebApplicationType.NONE)
+                        .run(springArgs)) {
+            SiteCloneService service = context.getBean(SiteCloneService.class);
+            for (int i = 0; i < options.getWarmup() + options.getIterations(); i++) {
+                boolean warmup = i < options.getWarmup();
+                IterationMetrics metrics = iterate(service, server, probe, options);
+                System.out.printf("%s %d: %s, %d 页, %.1f 页/秒, %.2f MB/秒, p99 %.1f ms, 分配 %d KB/页%n",
+                        warmup ? "预热" : "轮次", warmup ? i + 1 : i - options.getWarmup() + 1, metrics.getStatus(),
+                        metrics.getPagesCrawled(), metrics.getPagesPerSecond(), metrics.getBytesPerSecond() / 1048576,
+                        metrics.getLatencyP99Millis(), metrics.getAllocatedBytesPerPage() / 1024);
+                if (!warmup) {
+                    result.getIterations().add(metrics);
+                }
+            }
+        } finally {
+            deleteTree(workDir);
+        }
+        result.setMedian(median(result.getIterations()));
+        return result;
+    }
+
+    private static IterationMetrics iterate(SiteCloneService service, OriginServer server, JvmProbe probe,
+            RunOptions options) throws InterruptedException {
+        CloneRequest request = new CloneRequest();
+        request.setUrl(server.getBaseUrl());
+        request.setThreadCount(options.getThreads());
+        request.setRetryTimes(0);
+        request.setSleepTime(0);
+
+        server.reset();
+        probe.start();
+        long start = System.nanoTime();
+        CloneResponse response = service.startClone(request);
+        long deadline = start + TimeUnit.SECONDS.toNanos(options.getTimeoutSeconds());
+        while ((response.getStatus() == CloneTaskStatus.PENDING || response.getStatus() == CloneTaskStatus.RUNNING)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            response = service.getTaskStatus(response.getTaskId());
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        IterationMetrics metrics = new IterationMetrics();
+        metrics.setStatus(String.valueOf(response.getStatus()));
+        metrics.setElapsedSeconds(elapsed);
+        metrics.setPagesCrawled(response.getPagesCrawled());
+        metrics.setFilesDownloaded(response.getFilesDownloaded());
+        metrics.setRequests(server.getRequests());
+        metrics.setBytesServed(server.getBytes());
+        metrics.setPagesPerSecond(response.getPagesCrawled() / elapsed);
+        metrics.setRequestsPerSecond(server.getRequests() / elapsed);
+        metrics.setBytesPerSecond(server.getBytes() / elapsed);
+        metrics.setLatencyP50Millis(server.latencyPercentile(50));
+        metrics.setLatencyP90Millis(server.latencyPercentile(90));
+        metrics.setLatencyP99Millis(server.latencyPercentile(99));
+        metrics.setLatencyMaxMillis(server.latencyPercentile(100));
+        long allocated = probe.allocatedBytes();
+        metrics.setAllocatedBytes(allocated);
+        metrics.setAllocationRateBytesPerSecond(allocated / elapsed);
+        metrics.setAllocatedBytesPerPage(allocated / Math.max(1, response.getPagesCrawled()));
+        metrics.setPeakHeapBytes(probe.peakHeapBytes());
+        metrics.setPeakRssBytes(probe.peakRssBytes());
+
+        if (response.getStatus() != CloneTaskStatus.PENDING && response.getStatus() != CloneTaskStatus.RUNNING) {
+            service.deleteTask(response.getTaskId()); // 下一轮从空目录开始
+        }
+        return metrics;
+    }
+
+    /**
+     * 各数值指标取中位数
+     */
+    private static IterationMetrics median(List<IterationMetrics> iterations) {
+        if (iterations.isEmpty()) {
+            return null;
+        }
+        List<JsonNode> nodes = iterations.stream().map(metrics -> MAPPER.<JsonNode>valueToTree(metrics)).toList();
+        ObjectNode median = MAPPER.createObjectNode();
+        for (Iterator<String> names = nodes.get(0).fieldNames(); names.hasNext();) {
+            String name = names.next();
+            if (!nodes.get(0).get(name).isNumber()) {
+                median.set(name, nodes.get(nodes.size() - 1).get(name));
+                continue;
+            }
+            List<Double> values = new ArrayList<>();
+            nodes.forEach(node -> values.add(node.get(name).asDouble()));
+            values.sort(Comparator.naturalOrder());
+            int middle = values.size() / 2;
+            double value = values.size() % 2 == 1 ? values.get(middle) : (values.get(middle - 1) + values.get(middle)) / 2;
+            if (nodes.get(0).get(name).isIntegralNumber()) {
+                median.put(name, Math.round(value));
+            } else {
+                median.put(name, value);
+            }
+        }
+        return MAPPER.convertValue(median, IterationMetrics.class);
+    }
+
+    /**
+     * 与基线中同一场景的最近一次结果比较，然后追加本次结果
+     */
+    private static void report(BenchmarkResult result, RunOptions options) throws IOException {
+        Path out = Paths.get(options.getOut());
+        Path baselineFile = Paths.get(options.getBaseline() != null ? options.getBaseline() : options.getOut());
+        BenchmarkResult baseline = null;
+        if (Files.isRegularFile(baselineFile)) {
+            for (String line : Files.readAllLines(baselineFile, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    BenchmarkResult previous = MAPPER.readValue(line, BenchmarkResult.class);
+                    if (result.getScenario().equals(previous.getScenario()) && previous.getMedian() != null) {
+                        baseline = previous;
+                    }
+                }
+            }
+        }
+
+        IterationMetrics median = result.getMedian();
+        System.out.printf("%n场景 %s, 提交 %s, %d 线程, %d 轮中位数:%n", result.getScenario(), result.getCommit(),
+                result.getThreads(), result.getIterations().size());
+        if (median != null) {
+            JsonNode current = MAPPER.valueToTree(median);
+            JsonNode previous = baseline == null ? null : MAPPER.valueToTree(baseline.getMedian());
+            for (String name : List.of("pagesPerSecond", "requestsPerSecond", "bytesPerSecond", "latencyP50Millis",
+                    "latencyP99Millis", "allocationRateBytesPerSecond", "allocatedBytesPerPage", "peakHeapBytes",
+                    "peakRssBytes")) {
+                double value = current.get(name).asDouble();
+                if (previous == null) {
+                    System.out.printf("  %-30s %,16.1f%n", name, value);
+                } else {
+                    double old = previous.get(name).asDouble();
+                    System.out.printf("  %-30s %,16.1f  基线 %,16.1f  %+7.1f%%%n", name, value, old,
+                            old == 0 ? 0 : (value - old) * 100 / old);
+                }
+            }
+            if (baseline != null) {
+                System.out.printf("基线: 提交 %s (%s)%n", baseline.getCommit(), baseline.getTimestamp());
+            }
+        }
+
+        Files.writeString(out, MAPPER.writeValueAsString(result) + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.println("结果已追加到 " + out.toAbsolutePath());
+    }
+
+    /**
+     * 当前工作目录所在仓库的提交，有未提交的修改时带 +dirty
+     */
+    private static String commit() {
+        try {
+            String head = git("rev-parse", "--short", "HEAD");
+            if (head.isEmpty()) {
+                return "unknown";
+            }
+            return git("status", "--porcelain", "--untracked-files=no").isEmpty() ? head : head + "+dirty";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    private static String git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        return process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0 ? output : "";
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
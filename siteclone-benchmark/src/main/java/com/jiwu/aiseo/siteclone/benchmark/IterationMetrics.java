@@ -0,0 +1,28 @@
+package com.jiwu.aiseo.siteclone.benchmark;
+
+import lombok.Data;
+
+/**
+ * 一轮克隆的测量结果
+ */
+@Data
+public class IterationMetrics {
+    private String status; // 任务的最终状态
+    private double elapsedSeconds;
+    private int pagesCrawled;
+    private int filesDownloaded;
+    private long requests; // 源站收到的请求数
+    private long bytesServed; // 源站发送的响应体字节数
+    private double pagesPerSecond;
+    private double requestsPerSecond;
+    private double bytesPerSecond;
+    private double latencyP50Millis; // 源站侧的请求服务耗时分位数（含注入的延迟）
+    private double latencyP90Millis;
+    private double latencyP99Millis;
+    private double latencyMaxMillis;
+    private long allocatedBytes;
+    private double allocationRateBytesPerSecond;
+    private long allocatedBytesPerPage;
+    private long peakHeapBytes;
+    private long peakRssBytes; // 进程常驻内存峰值，无法读取时为 -1
+}
@@ -0,0 +1,122 @@
+package com.jiwu.aiseo.siteclone.benchmark;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * JVM 资源测量：分配字节数、堆峰值和进程常驻内存峰值
+ *
+ * 分配量 = 测量期间各次GC回收的字节数 + 结束时与开始时堆使用量之差，包含已结束线程的分配。
+ * 常驻内存峰值读取 Linux 的 /proc/self/status (VmHWM)，开始测量时通过 /proc/self/clear_refs 重置；其他平台为 -1。
+ */
+public class JvmProbe {
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final Path PROC_CLEAR_REFS = Paths.get("/proc/self/clear_refs");
+
+    private final AtomicLong collected = new AtomicLong();
+    private long heapAtStart;
+
+    public JvmProbe() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                    .from((CompositeData) notification.getUserData());
+            Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+            Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+            long freed = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && before.containsKey(pool.getName())
+                        && after.containsKey(pool.getName())) {
+                    freed += before.get(pool.getName()).getUsed() - after.get(pool.getName()).getUsed();
+                }
+            }
+            collected.addAndGet(freed);
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+            }
+        }
+    }
+
+    /**
+     * 开始一轮测量
+     */
+    public void start() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        try {
+            Files.writeString(PROC_CLEAR_REFS, "5");
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // 不支持时常驻内存峰值包含之前的阶段
+        }
+        heapAtStart = heapUsed();
+        collected.set(0);
+    }
+
+    /**
+     * 开始测量以来分配的字节数
+     */
+    public long allocatedBytes() {
+        return collected.get() + heapUsed() - heapAtStart;
+    }
+
+    /**
+     * 开始测量以来各堆内存池峰值之和
+     */
+    public long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * 进程常驻内存峰值 (字节)，无法读取时为 -1
+     */
+    public long peakRssBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // 非 Linux 平台
+        }
+        return -1;
+    }
+
+    private static long heapUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+}
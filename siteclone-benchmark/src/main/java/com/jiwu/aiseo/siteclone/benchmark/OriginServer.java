@@ -0,0 +1,166 @@
+package com.jiwu.aiseo.siteclone.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 内嵌的源站 - 在本机回环地址上提供合成站点，按参数注入延迟和带宽限制
+ *
+ * 支持 ETag / Last-Modified 条件请求；统计请求数、响应字节数和每个请求的服务耗时（含注入的延迟）。
+ */
+@Slf4j
+public class OriginServer implements Closeable {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final SyntheticSite site;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private long[] latencies = new long[4096]; // 每个请求的服务耗时 (纳秒)
+    private int latencyCount;
+
+    public OriginServer(SyntheticSite site, int threads) throws IOException {
+        this.site = site;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "origin-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("合成站点已启动: {}", getBaseUrl());
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getRawPath();
+            SyntheticSite.Content content = site.resolve(path, exchange.getRequestURI().getRawQuery());
+            SiteSpec spec = site.getSpec();
+            sleep(spec.getLatencyMillis() + jitter(spec, exchange.getRequestURI().toString()));
+            if (content == null) {
+                notFound.incrementAndGet();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("ETag", content.getEtag());
+            exchange.getResponseHeaders().set("Last-Modified", content.getLastModified());
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            if (content.getEtag().equals(ifNoneMatch)
+                    || (ifNoneMatch == null && content.getLastModified().equals(ifModifiedSince))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = content.getBody();
+            exchange.getResponseHeaders().set("Content-Type", content.getContentType());
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, body.length - offset);
+                    out.write(body, offset, length);
+                    if (spec.getBytesPerSecond() > 0) {
+                        sleep(length * 1000L / spec.getBytesPerSecond());
+                    }
+                }
+            }
+            bytes.addAndGet(body.length);
+        } catch (IOException e) {
+            log.debug("响应中断: {} ({})", exchange.getRequestURI(), e.getMessage());
+        } finally {
+            recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    private static long jitter(SiteSpec spec, String uri) {
+        if (spec.getLatencyJitterMillis() <= 0) {
+            return 0;
+        }
+        long mixed = (uri.hashCode() * 0x9E3779B97F4A7C15L) ^ spec.getSeed();
+        mixed ^= mixed >>> 33;
+        return Math.floorMod(mixed, spec.getLatencyJitterMillis() + 1);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[latencyCount++] = nanos;
+    }
+
+    /**
+     * 清空统计（每轮测试开始前调用）
+     */
+    public synchronized void reset() {
+        requests.set(0);
+        bytes.set(0);
+        notFound.set(0);
+        latencyCount = 0;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getNotFound() {
+        return notFound.get();
+    }
+
+    /**
+     * 服务耗时的分位数 (毫秒)
+     *
+     * @param percentile 0-100
+     */
+    public synchronized double latencyPercentile(double percentile) {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,25 @@
+package com.jiwu.aiseo.siteclone.benchmark;
+
+import lombok.Data;
+
+/**
+ * 合成站点的参数，同一组参数（含随机种子）总是生成完全相同的站点
+ */
+@Data
+public class SiteSpec {
+    private long seed = 42L; // 随机种子
+    private int pageCount = 500; // 页面数
+    private int fanOut = 8; // 每个页面的出链数
+    private int cssPerPage = 2; // 每个页面引用的样式表数
+    private int jsPerPage = 2; // 每个页面引用的脚本数
+    private int imagesPerPage = 4; // 每个页面引用的图片数
+    private int assetPoolSize = 200; // 资源池大小，页面从池中挑选资源，池越小共享越多
+    private int pageBytes = 16384; // 页面的平均大小 (字节)
+    private double pageBytesJitter = 0.5; // 页面大小的浮动比例
+    private int assetBytes = 8192; // 资源的平均大小 (字节)
+    private double trapRate = 0.05; // 链接到查询串陷阱的页面比例
+    private int trapDepth = 20; // 陷阱的深度（每一层都是一个新的查询串URL）
+    private long latencyMillis = 5; // 每个请求的固定延迟 (毫秒)
+    private long latencyJitterMillis = 5; // 附加抖动的上限 (毫秒)
+    private long bytesPerSecond = 0; // 每个响应的传输带宽 (字节/秒)，0 表示不限制
+}
@@ -0,0 +1,202 @@
+package com.jiwu.aiseo.siteclone.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 合成站点 - 按 {@link SiteSpec} 确定性地生成页面和资源，内容按需生成，不占用内存
+ *
+ * 页面 {@code /} 和 {@code /p/<n>.html}：第 n 页总是链接到第 n+1 页（保证全部可达），其余出链随机选取；
+ * 资源从共享资源池中选取（样式表会再引用一张图片）；
+ * 部分页面链接到查询串陷阱 {@code /calendar?d=0&from=<n>}，每一层都链接到下一层，直到 trapDepth。
+ */
+public class SyntheticSite {
+
+    private static final String LAST_MODIFIED = "Mon, 05 Jan 2026 08:00:00 GMT";
+    private static final String FILLER = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua. ";
+
+    private final SiteSpec spec;
+
+    public SyntheticSite(SiteSpec spec) {
+        this.spec = spec;
+    }
+
+    public SiteSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * 生成请求路径对应的内容
+     *
+     * @param path 路径
+     * @param query 查询串，可为null
+     * @return 内容，不存在时返回null
+     */
+    public Content resolve(String path, String query) {
+        if (path.equals("/") || path.equals("/index.html")) {
+            return page(0);
+        }
+        if (path.startsWith("/p/") && path.endsWith(".html")) {
+            Integer index = parseIndex(path.substring(3, path.length() - 5));
+            return index == null || index >= spec.getPageCount() ? null : page(index);
+        }
+        if (path.equals("/calendar") && query != null) {
+            return trap(query);
+        }
+        if (path.startsWith("/assets/")) {
+            return asset(path.substring(8));
+        }
+        return null;
+    }
+
+    private Content page(int index) {
+        SplittableRandom random = random(index);
+        StringBuilder html = new StringBuilder(spec.getPageBytes() + 1024);
+        html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Page ").append(index).append("</title>\n");
+        for (int i = 0; i < spec.getCssPerPage(); i++) {
+            html.append("<link rel=\"stylesheet\" href=\"/assets/style-").append(pick(random)).append(".css\">\n");
+        }
+        for (int i = 0; i < spec.getJsPerPage(); i++) {
+            html.append("<script src=\"/assets/app-").append(pick(random)).append(".js\"></script>\n");
+        }
+        html.append("</head><body><h1>Page ").append(index).append("</h1><ul>\n");
+        int pageCount = spec.getPageCount();
+        if (pageCount > 1) {
+            html.append("<li><a href=\"").append(pagePath((index + 1) % pageCount)).append("\">next</a></li>\n");
+            for (int i = 1; i < spec.getFanOut(); i++) {
+                html.append("<li><a href=\"").append(pagePath(random.nextInt(pageCount))).append("\">link ").append(i)
+                        .append("</a></li>\n");
+            }
+        }
+        if (spec.getTrapDepth() > 0 && random.nextDouble() < spec.getTrapRate()) {
+            html.append("<li><a href=\"/calendar?d=0&amp;from=").append(index).append("\">calendar</a></li>\n");
+        }
+        html.append("</ul>\n");
+        for (int i = 0; i < spec.getImagesPerPage(); i++) {
+            html.append("<img src=\"/assets/img-").append(pick(random)).append(".png\" alt=\"\">\n");
+        }
+        pad(html, sized(random, spec.getPageBytes(), spec.getPageBytesJitter()));
+        html.append("</body></html>\n");
+        return new Content("text/html; charset=utf-8", html.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Content trap(String query) {
+        int depth = 0;
+        String from = "0";
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("d=")) {
+                Integer value = parseIndex(pair.substring(2));
+                depth = value == null ? 0 : value;
+            } else if (pair.startsWith("from=")) {
+                from = pair.substring(5);
+            }
+        }
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Calendar</title></head><body>\n");
+        html.append("<h1>Calendar ").append(depth).append("</h1>\n");
+        if (depth + 1 < spec.getTrapDepth()) {
+            html.append("<a href=\"/calendar?d=").append(depth + 1).append("&amp;from=").append(from)
+                    .append("\">next month</a>\n");
+        }
+        html.append("<a href=\"/\">home</a></body></html>\n");
+        return new Content("text/html; charset=utf-8", html.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Content asset(String name) {
+        int dash = name.indexOf('-');
+        int dot = name.lastIndexOf('.');
+        if (dash < 0 || dot < dash) {
+            return null;
+        }
+        Integer index = parseIndex(name.substring(dash + 1, dot));
+        if (index == null || index >= spec.getAssetPoolSize()) {
+            return null;
+        }
+        SplittableRandom random = new SplittableRandom(spec.getSeed() * 31 + name.hashCode());
+        int size = sized(random, spec.getAssetBytes(), 0.5);
+        String kind = name.substring(0, dash) + name.substring(dot);
+        switch (kind) {
+            case "style.css": {
+                StringBuilder css = new StringBuilder("body{background:url(/assets/img-").append(pick(random))
+                        .append(".png)}\n");
+                while (css.length() < size) {
+                    css.append(".c").append(css.length()).append("{margin:0;padding:").append(css.length() % 17)
+                            .append("px}\n");
+                }
+                return new Content("text/css", css.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            case "app.js": {
+                StringBuilder js = new StringBuilder();
+                while (js.length() < size) {
+                    js.append("function f").append(js.length()).append("(a){return a*").append(js.length() % 13)
+                            .append(";}\n");
+                }
+                return new Content("application/javascript", js.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            case "img.png": {
+                byte[] bytes = new byte[size];
+                random.nextBytes(bytes);
+                System.arraycopy(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, 0, bytes, 0,
+                        Math.min(8, size));
+                return new Content("image/png", bytes);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private SplittableRandom random(int index) {
+        return new SplittableRandom(spec.getSeed() * 1_000_003L + index);
+    }
+
+    private int pick(SplittableRandom random) {
+        return random.nextInt(Math.max(1, spec.getAssetPoolSize()));
+    }
+
+    private static String pagePath(int index) {
+        return index == 0 ? "/" : "/p/" + index + ".html";
+    }
+
+    private static int sized(SplittableRandom random, int mean, double jitter) {
+        double factor = 1 + (random.nextDouble() * 2 - 1) * Math.max(0, Math.min(1, jitter));
+        return Math.max(16, (int) (mean * factor));
+    }
+
+    private static void pad(StringBuilder html, int size) {
+        html.append("<p>");
+        while (html.length() < size) {
+            html.append(FILLER);
+        }
+        html.append("</p>\n");
+    }
+
+    private static Integer parseIndex(String value) {
+        try {
+            int index = Integer.parseInt(value);
+            return index < 0 ? null : index;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 生成的内容
+     */
+    public static final class Content {
+        private final String contentType;
+        private final byte[] body;
+        private final String etag;
+
+        public Content(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+            this.etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "-" + body.length + "\"";
+        }
+
+        public String getContentType() { return contentType; }
+        public byte[] getBody() { return body; }
+        public String getEtag() { return etag; }
+        public String getLastModified() { return LAST_MODIFIED; }
+    }
+}
@@ -0,0 +1,179 @@
+package com.jiwu.aiseo.siteclone.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试的输入数据
+ *
+ * 按固定种子生成，同样的参数在不同提交之间得到完全相同的输入。
+ */
+final class Fixtures {
+
+    static final String DOMAIN = "bench.example";
+    static final String BASE_URL = "https://" + DOMAIN + "/";
+    static final long SEED = 42;
+
+    static final int ASSET_POOL = 64; // 页面引用的图片数
+    static final int STYLESHEETS = 4;
+    static final int SCRIPTS = 4;
+
+    private static final String TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation. ";
+
+    private Fixtures() {
+    }
+
+    /**
+     * 站内URL，混合常见的形态：页面、多级目录、目录页、静态资源、查询参数、非ASCII路径和含 .. 的路径
+     */
+    static List<String> urls(int count) {
+        Random random = new Random(SEED);
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int n = random.nextInt(100000);
+            urls.add(switch (i % 8) {
+                case 0 -> BASE_URL + "p/" + n + ".html";
+                case 1 -> BASE_URL + "category/c" + n % 20 + "/sub" + n % 7 + "/item-" + n + ".html";
+                case 2 -> BASE_URL + "assets/img-" + n + ".png";
+                case 3 -> BASE_URL + "search?q=term" + n + "&page=" + n % 10;
+                case 4 -> BASE_URL + "static/js/chunk-" + Integer.toHexString(n * 31 + 7) + ".js";
+                case 5 -> BASE_URL + "文档/页面-" + n + ".html";
+                case 6 -> BASE_URL + "normal/../images/pic-" + n + ".jpg";
+                default -> BASE_URL + "products/" + n + "/";
+            });
+        }
+        return urls;
+    }
+
+    /**
+     * URL的路径部分（不含开头的 /），作为镜像内的相对路径
+     */
+    static List<String> relativePaths(int count) {
+        List<String> paths = new ArrayList<>(count);
+        for (String url : urls(count)) {
+            String path = url.substring(BASE_URL.length());
+            int query = path.indexOf('?');
+            paths.add(query >= 0 ? path.substring(0, query) : path);
+        }
+        return paths;
+    }
+
+    /**
+     * 约 bytes 字节、含 links 个 url() 引用的样式表，引用均匀分布并混合相对、绝对、带引号和不带引号的写法
+     */
+    static String css(int bytes, int links) {
+        StringBuilder css = new StringBuilder(bytes + 256);
+        int gap = bytes / (links + 1);
+        for (int i = 0; i < links; i++) {
+            cssFiller(css, css.length() + gap);
+            String url = switch (i % 4) {
+                case 0 -> "../images/bg-" + i + ".png";
+                case 1 -> "'/assets/img-" + i % ASSET_POOL + ".png'";
+                case 2 -> "\"" + BASE_URL + "fonts/font-" + i + ".woff2\"";
+                default -> "icons/icon-" + i + ".svg";
+            };
+            css.append(".r").append(i).append("{background:url(").append(url).append(") no-repeat}\n");
+        }
+        cssFiller(css, bytes);
+        return css.toString();
+    }
+
+    private static void cssFiller(StringBuilder css, int length) {
+        for (int k = 0; css.length() < length; k++) {
+            css.append(".c").append(k).append("{color:#").append(Integer.toHexString(0x100000 + k % 0xEFFFFF))
+                    .append(";margin:0 auto;padding:4px 8px}\n");
+        }
+    }
+
+    /**
+     * 约 bytes 字节、含 links 处站内硬编码URL的脚本
+     */
+    static String js(int bytes, int links) {
+        StringBuilder js = new StringBuilder(bytes + 256);
+        int gap = bytes / (links + 1);
+        for (int i = 0; i < links; i++) {
+            jsFiller(js, js.length() + gap);
+            if (i % 2 == 0) {
+                js.append("fetch(\"").append(BASE_URL).append("api/item-").append(i).append(".json\");\n");
+            } else {
+                js.append("var root").append(i).append("=\"/\";\n");
+            }
+        }
+        jsFiller(js, bytes);
+        return js.toString();
+    }
+
+    private static void jsFiller(StringBuilder js, int length) {
+        for (int k = 0; js.length() < length; k++) {
+            js.append("function f").append(k).append("(a,b){return a+b*").append(k).append(";}\n");
+        }
+    }
+
+    /**
+     * 第 page 个页面的URL，0 为首页
+     */
+    static String pageUrl(int page) {
+        return page == 0 ? BASE_URL : BASE_URL + "p/" + page + ".html";
+    }
+
+    /**
+     * 约 bytes 字节、含 links 个站内链接的页面
+     *
+     * 链接中每4个有1个带 srcset 的图片、每8个有1个带背景图的内联样式，其余为指向前 pageCount 个页面的锚点；
+     * 引用的样式表、脚本和图片都取自固定的资源池。
+     */
+    static String html(int page, int pageCount, int bytes, int links) {
+        StringBuilder html = new StringBuilder(bytes + 1024);
+        html.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"UTF-8\"><title>Page ").append(page)
+                .append("</title>\n");
+        html.append("<link rel=\"stylesheet\" href=\"/assets/style-").append(page % STYLESHEETS).append(".css\">\n");
+        html.append("<script src=\"/assets/app-").append(page % SCRIPTS).append(".js\"></script>\n");
+        html.append("</head><body>\n");
+        int gap = bytes / (links + 1);
+        for (int i = 0; i < links; i++) {
+            htmlFiller(html, html.length() + gap);
+            int image = (page * 31 + i) % ASSET_POOL;
+            if (i % 8 == 7) {
+                html.append("<div style=\"background:url(/assets/img-").append(image).append(".png)\">")
+                        .append(i).append("</div>\n");
+            } else if (i % 4 == 3) {
+                html.append("<img src=\"/assets/img-").append(image).append(".png\" srcset=\"")
+                        .append(srcset(image)).append("\" alt=\"\">\n");
+            } else {
+                html.append("<a href=\"").append(pageUrl((page * 7 + i * 13) % pageCount)).append("\">link ")
+                        .append(i).append("</a>\n");
+            }
+        }
+        htmlFiller(html, bytes);
+        html.append("</body></html>\n");
+        return html.toString();
+    }
+
+    private static void htmlFiller(StringBuilder html, int length) {
+        while (html.length() < length) {
+            html.append("<p>").append(TEXT).append("</p>\n");
+        }
+    }
+
+    /**
+     * 4个宽度候选的 srcset
+     */
+    static String srcset(int image) {
+        return "/assets/img-" + image + ".png 320w, /assets/img-" + image + "-640.png 640w, /assets/img-" + image
+                + "-1280.png 1280w, " + BASE_URL + "assets/img-" + image + "-1920.png 1920w";
+    }
+
+    /**
+     * 含 links 个 url() 引用的内联样式
+     */
+    static String inlineStyle(int links) {
+        StringBuilder style = new StringBuilder();
+        for (int i = 0; i < links; i++) {
+            style.append("background-image:url(").append(i % 2 == 0 ? "/assets/img-" : "'../assets/bg-")
+                    .append(i % ASSET_POOL).append(i % 2 == 0 ? ".png" : ".png'").append(");");
+        }
+        return style.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package com.jiwu.aiseo.siteclone.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
+import com.jiwu.aiseo.siteclone.downloader.ReplayDownloader;
+import com.jiwu.aiseo.siteclone.model.CloneTask;
+import com.jiwu.aiseo.siteclone.pipeline.WarcWriter;
+import com.jiwu.aiseo.siteclone.processor.WebsiteMirrorProcessor;
+
+import us.codecraft.webmagic.Page;
+import us.codecraft.webmagic.Site;
+import us.codecraft.webmagic.Task;
+
+/**
+ * 完整的 WebsiteMirrorProcessor.process 调用
+ *
+ * 准备阶段把合成站点的页面（样式表和脚本不含引用）和资源写成WARC归档，页面和资源下载都经 {@link ReplayDownloader} 离线回放，
+ * 不访问网络。页面按顺序轮流处理；资源在第一轮处理时下载到镜像目录，之后按已存在跳过，
+ * 测量的是镜像已有资源时的稳态：解析、链接提取、路径映射、改写和序列化。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MirrorProcessorBenchmark {
+
+    private static final int PAGES = 16;
+
+    @Param({ "16384", "131072", "1048576" })
+    private int pageBytes;
+
+    @Param({ "10", "100", "1000" })
+    private int linkCount;
+
+    private Path dir;
+    private ReplayDownloader replay;
+    private WebsiteMirrorProcessor processor;
+    private final List<Page> recorded = new ArrayList<>();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("siteclone-jmh");
+        Path archive = dir.resolve("archive");
+        Path mirror = dir.resolve("mirror").resolve(Fixtures.DOMAIN);
+        record(archive);
+
+        replay = new ReplayDownloader(archive, ReplayDownloader.NetworkModel.NONE);
+        processor = new WebsiteMirrorProcessor(Fixtures.DOMAIN, 0, 0, mirror.toString(),
+                new CloneTask(Fixtures.BASE_URL, mirror.toString()), new SiteCloneProperties(), false, null, null);
+        processor.setDownloader(replay);
+
+        Task task = new Task() {
+            @Override
+            public String getUUID() {
+                return Fixtures.DOMAIN;
+            }
+
+            @Override
+            public Site getSite() {
+                return processor.getSite();
+            }
+        };
+        for (int i = 0; i < PAGES; i++) {
+            Page page = replay.download(processor.createRequest(Fixtures.pageUrl(i)), task);
+            if (page.getStatusCode() != 200) {
+                throw new IllegalStateException("回放页面失败: " + Fixtures.pageUrl(i));
+            }
+            recorded.add(page);
+        }
+    }
+
+    /**
+     * 把页面和它们引用的样式表、脚本、图片写入WARC归档
+     */
+    private void record(Path archive) throws IOException {
+        try (WarcWriter writer = new WarcWriter(archive, "jmh", Long.MAX_VALUE, 64, bytes -> { })) {
+            for (int i = 0; i < PAGES; i++) {
+                write(writer, Fixtures.pageUrl(i), "text/html; charset=UTF-8",
+                        Fixtures.html(i, PAGES, pageBytes, linkCount).getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < Fixtures.STYLESHEETS; i++) {
+                write(writer, Fixtures.BASE_URL + "assets/style-" + i + ".css", "text/css",
+                        Fixtures.css(8192, 0).getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < Fixtures.SCRIPTS; i++) {
+                write(writer, Fixtures.BASE_URL + "assets/app-" + i + ".js", "application/javascript",
+                        Fixtures.js(8192, 0).getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] image = new byte[2048];
+            for (int i = 0; i < Fixtures.ASSET_POOL; i++) {
+                for (String suffix : new String[] { "", "-640", "-1280", "-1920" }) {
+                    write(writer, Fixtures.BASE_URL + "assets/img-" + i + suffix + ".png", "image/png", image);
+                }
+            }
+        }
+    }
+
+    private static void write(WarcWriter writer, String url, String contentType, byte[] body) {
+        String head = "HTTP/1.1 200 OK\r\nContent-Type: " + contentType + "\r\nContent-Length: " + body.length
+                + "\r\nETag: \"" + Integer.toHexString(url.hashCode()) + "\"\r\n\r\n";
+        writer.write(new WarcWriter.Exchange(url, Instant.EPOCH, null, null, head.getBytes(StandardCharsets.ISO_8859_1),
+                body, 200, contentType, null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        processor.finish();
+        replay.close();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Page process() {
+        Page source = recorded.get(next);
+        next = (next + 1) % recorded.size();
+        // process 会向页面写入结果和新请求，每次使用新的 Page
+        Page page = new Page();
+        page.setRequest(source.getRequest());
+        page.setUrl(source.getUrl());
+        page.setStatusCode(source.getStatusCode());
+        page.setHeaders(source.getHeaders());
+        page.setCharset(source.getCharset());
+        page.setBytes(source.getBytes());
+        page.setRawText(source.getRawText());
+        page.setDownloadSuccess(true);
+        processor.process(page);
+        return page;
+    }
+}
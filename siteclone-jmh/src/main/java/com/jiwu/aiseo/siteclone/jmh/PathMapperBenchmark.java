@@ -0,0 +1,68 @@
+package com.jiwu.aiseo.siteclone.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jiwu.aiseo.siteclone.utils.WebsitePathMapper;
+
+/**
+ * URL到本地路径的映射：每次调用映射一个页面的全部链接
+ *
+ * 映射器会缓存映射过的URL。冷映射每次调用使用新的映射器（构造只有两个字段赋值），测量真正的路径映射；
+ * 缓存命中使用预热过的共享映射器，测量同一任务中重复链接的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathMapperBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    private int linkCount;
+
+    private WebsitePathMapper warmMapper;
+    private List<String> urls;
+
+    @Setup
+    public void setup() {
+        urls = Fixtures.urls(linkCount);
+        warmMapper = newMapper();
+        for (String url : urls) {
+            warmMapper.mapUrlToLocalPath(url);
+        }
+    }
+
+    @Benchmark
+    public void mapUrlToLocalPath(Blackhole blackhole) {
+        WebsitePathMapper mapper = newMapper();
+        for (String url : urls) {
+            blackhole.consume(mapper.mapUrlToLocalPath(url));
+        }
+    }
+
+    @Benchmark
+    public void mapUrlToLocalPathCached(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(warmMapper.mapUrlToLocalPath(url));
+        }
+    }
+
+    private static WebsitePathMapper newMapper() {
+        return new WebsitePathMapper("/tmp/siteclone-jmh/" + Fixtures.DOMAIN, Fixtures.DOMAIN);
+    }
+}
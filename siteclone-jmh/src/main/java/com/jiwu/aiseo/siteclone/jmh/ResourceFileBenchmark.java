@@ -0,0 +1,98 @@
+package com.jiwu.aiseo.siteclone.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jiwu.aiseo.siteclone.utils.ResourceProcessor;
+import com.jiwu.aiseo.siteclone.utils.WebsitePathMapper;
+
+/**
+ * CSS / JS 文件的URL改写
+ *
+ * 两个方法都原地改写文件，每次调用前恢复原始内容（不计入测量）。
+ * CSS引用的资源下载由桩实现直接返回成功，只测量扫描、路径映射和写出。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceFileBenchmark {
+
+    @Param({ "16384", "131072", "1048576" })
+    private int pageBytes;
+
+    @Param({ "10", "100", "1000" })
+    private int linkCount;
+
+    private Path dir;
+    private Path cssFile;
+    private Path jsFile;
+    private byte[] css;
+    private byte[] js;
+    private ResourceProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("siteclone-jmh");
+        Path mirror = dir.resolve(Fixtures.DOMAIN);
+        cssFile = mirror.resolve("assets/style.css");
+        jsFile = mirror.resolve("assets/app.js");
+        Files.createDirectories(cssFile.getParent());
+        css = Fixtures.css(pageBytes, linkCount).getBytes(StandardCharsets.UTF_8);
+        js = Fixtures.js(pageBytes, linkCount).getBytes(StandardCharsets.UTF_8);
+
+        processor = new ResourceProcessor(new WebsitePathMapper(mirror.toString(), Fixtures.DOMAIN),
+                (url, localPath) -> true);
+        // 与 WebsiteMirrorProcessor 相同的替换规则
+        processor.addJsUrlReplacement(Fixtures.BASE_URL, "./");
+        processor.addJsUrlReplacement("http://" + Fixtures.DOMAIN + "/", "./");
+        processor.addJsUrlReplacement("'//'", "'./");
+        processor.addJsUrlReplacement("\"/\"", "\"./\"");
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() throws IOException {
+        Files.write(cssFile, css);
+        Files.write(jsFile, js);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean processCssFile() {
+        return processor.processCssFile(cssFile.toString(), Fixtures.BASE_URL + "assets/");
+    }
+
+    @Benchmark
+    public boolean processJsFile() {
+        return processor.processJsFile(jsFile.toString(), Fixtures.BASE_URL + "assets/");
+    }
+}
@@ -0,0 +1,68 @@
+package com.jiwu.aiseo.siteclone.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jiwu.aiseo.siteclone.utils.ResourceProcessor;
+import com.jiwu.aiseo.siteclone.utils.WebsitePathMapper;
+
+/**
+ * 页面内 srcset 和内联样式的URL改写
+ *
+ * processSrcset 每次调用改写 linkCount 个图片的 srcset（各4个候选）；
+ * processInlineStyle 每次调用改写一段含 linkCount 个 url() 的样式。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceRewriteBenchmark {
+
+    private static final String PAGE_PATH = "/tmp/siteclone-jmh/" + Fixtures.DOMAIN + "/p/1.html";
+
+    @Param({ "10", "100", "1000" })
+    private int linkCount;
+
+    private ResourceProcessor processor;
+    private List<String> srcsets;
+    private String inlineStyle;
+
+    @Setup
+    public void setup() {
+        processor = new ResourceProcessor(new WebsitePathMapper("/tmp/siteclone-jmh/" + Fixtures.DOMAIN,
+                Fixtures.DOMAIN), (url, localPath) -> true);
+        srcsets = new ArrayList<>(linkCount);
+        for (int i = 0; i < linkCount; i++) {
+            srcsets.add(Fixtures.srcset(i % Fixtures.ASSET_POOL));
+        }
+        inlineStyle = Fixtures.inlineStyle(linkCount);
+    }
+
+    @Benchmark
+    public void processSrcset(Blackhole blackhole) {
+        for (String srcset : srcsets) {
+            blackhole.consume(processor.processSrcset(srcset, Fixtures.BASE_URL + "p/", PAGE_PATH));
+        }
+    }
+
+    @Benchmark
+    public String processInlineStyle() {
+        return processor.processInlineStyle(inlineStyle, Fixtures.BASE_URL + "p/", PAGE_PATH);
+    }
+}
@@ -0,0 +1,59 @@
+package com.jiwu.aiseo.siteclone.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jiwu.aiseo.siteclone.utils.SecurityUtils;
+
+/**
+ * 路径和URL的安全检查：每次调用检查一个页面的全部链接
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityUtilsBenchmark {
+
+    private static final String BASE_DIR = "/tmp/siteclone-jmh/" + Fixtures.DOMAIN;
+
+    @Param({ "10", "100", "1000" })
+    private int linkCount;
+
+    private List<String> urls;
+    private List<String> paths;
+
+    @Setup
+    public void setup() {
+        urls = Fixtures.urls(linkCount);
+        paths = Fixtures.relativePaths(linkCount);
+    }
+
+    @Benchmark
+    public void createSafeFilePath(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(SecurityUtils.createSafeFilePath(BASE_DIR, path));
+        }
+    }
+
+    @Benchmark
+    public void isUrlSafe(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(SecurityUtils.isUrlSafe(url));
+        }
+    }
+}
@@ -11,11 +11,15 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class AsyncConfig {
 
+    /**
+     * 执行克隆任务的线程池：任务先在公平队列中排队，开始时才提交，同时执行的任务不超过 maxRunningTasks
+     */
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
+    public Executor taskExecutor(SiteCloneProperties properties) {
+        int running = Math.max(1, properties.getCrawler().getMaxRunningTasks());
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
+        executor.setCorePoolSize(running);
+        executor.setMaxPoolSize(running);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("SiteClone-");
         executor.initialize();
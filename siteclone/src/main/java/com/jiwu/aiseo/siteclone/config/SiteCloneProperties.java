@@ -1,5 +1,7 @@
 package com.jiwu.aiseo.siteclone.config;
 
+import com.jiwu.aiseo.siteclone.pipeline.FsyncPolicy;
+
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -17,6 +19,12 @@ public class SiteCloneProperties {
     private Security security = new Security();
     private Task task = new Task();
     private StaticResources staticResources = new StaticResources();
+    private Storage storage = new Storage();
+    private Cache cache = new Cache();
+    private Output output = new Output();
+    private Metrics metrics = new Metrics();
+    private Progress progress = new Progress();
+    private Cluster cluster = new Cluster();
 
     @Data
     public static class Download {
@@ -32,6 +40,14 @@ public class SiteCloneProperties {
         private int pollingInterval = 2000; // 2秒
         private int maxConcurrentDownloads = 10;
         private String userAgent = "Mozilla/5.0 (compatible; SiteClone/1.0; +https://github.com/aiseo)";
+        private boolean jsDiscoveryEnabled = true; // 是否扫描JS发现懒加载的chunk和资源
+        private long jsScanTimeBudget = 200; // 单个JS文件的扫描时间预算 (毫秒)
+        private int jsDiscoveryMaxDepth = 3; // chunk 递归发现的最大深度
+        private long resumeThreshold = 1048576L; // 达到该大小的资源写入 .part 文件，支持断点续传 (1MB)，0 表示关闭
+        private long defaultChangeInterval = 604800000L; // 刷新调度对没有历史的页面假设的平均变化间隔 (7天)
+        private int emptySleepTime = 500; // 队列为空时 Spider 等待新URL的最长时间 (毫秒)，也是抓取结束后的最长等待
+        private int maxTotalThreads = 40; // 所有任务共享的并发请求数，同时抓取的任务按权重公平分配
+        private int maxRunningTasks = 10; // 同时执行的任务数，其余任务排队，按批次公平地依次开始
     }
 
     @Data
@@ -40,12 +56,80 @@ public class SiteCloneProperties {
         private int maxRetryTimes = 10;
         private int minSleepTime = 100;
         private int maxSleepTime = 10000;
+        private double maxWeight = 100; // 任务权重上限
     }
 
     @Data
     public static class Task {
         private long cleanupInterval = 3600000L; // 1小时
         private long maxTaskAge = 86400000L; // 24小时
+        private String storeDir; // 任务存储目录，为空时使用 download.baseDir/.tasks
+        private int storeCompactionThreshold = 1000; // 任务存储中失效记录达到该数量时压缩
+        private boolean requeueInterrupted = true; // 启动时重新排队上次未结束的任务，否则标记为 INTERRUPTED
+        private int maxQueuedTasks = 5000; // 排队等待开始的任务数上限，超出时拒绝
+        private int maxBatchSize = 1000; // 一个批次最多包含的任务数
+    }
+
+    @Data
+    public static class Storage {
+        private boolean dedupEnabled = true; // 是否启用内容寻址存储（跨任务去重）
+        private String blobDir; // blob存储目录，为空时使用 download.baseDir/.blobs
+        private boolean snapshotEnabled = true; // 每次克隆完成后是否生成镜像快照
+        private String snapshotDir; // 快照目录，为空时使用 download.baseDir/.snapshots
+        private int maxSnapshots = 10; // 每个域名保留的快照数，0 表示不限制
+        private long snapshotMaxAge = 2592000000L; // 快照最长保留时间 (30天)，0 表示不限制
+        private boolean packEnabled = false; // 克隆完成后是否把镜像打包为分段文件
+        private long packSegmentSize = 268435456L; // 单个分段的大小 (256MB)
+        private boolean packRemoveLooseFiles = true; // 打包后是否删除已入包的普通文件
+        private long diskQuota = 0; // 所有镜像合计的字节配额，超出后淘汰最久未使用的镜像，0 表示不限制
+        private long mirrorMaxIdle = 0; // 镜像最长未使用时间 (毫秒)，超过后淘汰，0 表示不限制
+        private long minFreeSpace = 1073741824L; // 磁盘可用空间低于该值时淘汰镜像并拒绝新任务 (1GB)，0 表示不检查
+        private long quotaCheckInterval = 300000L; // 检查配额和可用空间的间隔 (5分钟)
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true; // 是否启用节点共享的HTTP响应缓存
+        private String dir; // 缓存目录，为空时使用 download.baseDir/.http-cache
+        private long maxBytes = 536870912L; // 缓存字节预算 (512MB)，超出后按LRU淘汰
+        private long heuristicMaxAge = 86400000L; // 启发式新鲜期上限 (24小时)
+    }
+
+    @Data
+    public static class Output {
+        private int writerThreads = 2; // 页面文件写入线程数
+        private int queueCapacity = 64; // 待写入文件队列容量，队列满时抓取线程等待
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.NONE; // 刷盘策略
+        private boolean warcEnabled = false; // 是否把原始HTTP交互写入WARC文件
+        private long warcMaxFileSize = 1073741824L; // 单个WARC文件的大小上限 (1GB)，超过后滚动
+        private int warcQueueCapacity = 256; // 待写入WARC的交互队列容量
+    }
+
+    @Data
+    public static class Metrics {
+        private boolean enabled = true; // 是否记录抓取流水线指标
+        private int maxHostTags = 50; // host 标签的取值上限，超出的主机归入 "other"
+    }
+
+    @Data
+    public static class Progress {
+        private long streamInterval = 1000L; // 推送进度的间隔 (毫秒)，也是客户端可请求的最短间隔
+        private long keepAliveInterval = 15000L; // 进度无变化时发送心跳的间隔 (毫秒)
+        private long streamTimeout = 1800000L; // 单个推送连接的最长时间 (30分钟)，到期后浏览器自动重连
+        private int maxStreams = 500; // 同时打开的推送连接上限
+        private int maxTasksPerStream = 200; // 单个连接订阅的任务数上限
+    }
+
+    @Data
+    public static class Cluster {
+        private boolean enabled = false; // 是否参与多节点协作抓取
+        private String dir; // 各节点共享的协作目录，启用时必须配置
+        private String nodeId; // 本节点ID，为空时使用主机名和服务端口
+        private int partitions = 64; // 新建协作任务的URL分区数
+        private long leaseDuration = 30000L; // 分区租约和节点心跳的有效期 (毫秒)
+        private long coordinationInterval = 1000L; // 续租、认领分区和读取新URL的间隔 (毫秒)
+        private long joinInterval = 5000L; // 扫描协作目录、加入其他节点发起的任务的间隔 (毫秒)
+        private long mergeTimeout = 600000L; // 发起节点等待其他节点写完分片的最长时间 (10分钟)
     }
 
     @Data
@@ -0,0 +1,67 @@
+package com.jiwu.aiseo.siteclone.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.jiwu.aiseo.siteclone.downloader.HttpResponseCache;
+import com.jiwu.aiseo.siteclone.storage.BlobStore;
+import com.jiwu.aiseo.siteclone.storage.DiskUsageLedger;
+import com.jiwu.aiseo.siteclone.storage.PackStore;
+import com.jiwu.aiseo.siteclone.storage.SnapshotStore;
+import com.jiwu.aiseo.siteclone.storage.TaskStore;
+
+/**
+ * 资源存储配置
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public BlobStore blobStore(SiteCloneProperties properties) {
+        String blobDir = properties.getStorage().getBlobDir();
+        Path root = blobDir == null || blobDir.isBlank()
+                ? Paths.get(properties.getDownload().getBaseDir(), ".blobs")
+                : Paths.get(blobDir);
+        return new BlobStore(root);
+    }
+
+    @Bean
+    public SnapshotStore snapshotStore(SiteCloneProperties properties) {
+        SiteCloneProperties.Storage storage = properties.getStorage();
+        Path root = storage.getSnapshotDir() == null || storage.getSnapshotDir().isBlank()
+                ? Paths.get(properties.getDownload().getBaseDir(), ".snapshots")
+                : Paths.get(storage.getSnapshotDir());
+        return new SnapshotStore(root, storage.getMaxSnapshots(), storage.getSnapshotMaxAge());
+    }
+
+    @Bean
+    public PackStore packStore(SiteCloneProperties properties) {
+        return new PackStore(properties.getStorage().getPackSegmentSize());
+    }
+
+    @Bean
+    public HttpResponseCache httpResponseCache(SiteCloneProperties properties) {
+        SiteCloneProperties.Cache cache = properties.getCache();
+        Path root = cache.getDir() == null || cache.getDir().isBlank()
+                ? Paths.get(properties.getDownload().getBaseDir(), ".http-cache")
+                : Paths.get(cache.getDir());
+        return new HttpResponseCache(root, cache.getMaxBytes(), cache.getHeuristicMaxAge());
+    }
+
+    @Bean
+    public TaskStore taskStore(SiteCloneProperties properties) {
+        SiteCloneProperties.Task task = properties.getTask();
+        Path root = task.getStoreDir() == null || task.getStoreDir().isBlank()
+                ? Paths.get(properties.getDownload().getBaseDir(), ".tasks")
+                : Paths.get(task.getStoreDir());
+        return new TaskStore(root, task.getStoreCompactionThreshold());
+    }
+
+    @Bean
+    public DiskUsageLedger diskUsageLedger(SiteCloneProperties properties) {
+        return new DiskUsageLedger(Paths.get(properties.getDownload().getBaseDir(), ".storage"));
+    }
+}
@@ -17,6 +17,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
+import com.jiwu.aiseo.siteclone.storage.DiskUsageLedger;
+import com.jiwu.aiseo.siteclone.storage.PackResource;
+import com.jiwu.aiseo.siteclone.storage.PackStore;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -31,6 +34,12 @@ public class ResourceController {
     @Autowired
     private SiteCloneProperties properties;
 
+    @Autowired
+    private PackStore packStore;
+
+    @Autowired
+    private DiskUsageLedger diskUsageLedger;
+
     /**
      * 获取网站资源文件
      * 
@@ -51,11 +60,24 @@ public class ResourceController {
             String downloadDir = properties.getDownload().getBaseDir() + "/" + properties.getDownload().getSubDir();
             Path filePath = Paths.get(downloadDir, requestPath);
             File file = filePath.toFile();
+            diskUsageLedger.touch(domain); // 被浏览的镜像在淘汰顺序中排到后面
 
-            // 检查文件是否存在
+            // 检查文件是否存在，普通文件不存在时再从镜像包中查找
             if (!file.exists() || !file.isFile()) {
-                log.warn("请求的资源文件不存在: {}", filePath);
-                return ResponseEntity.notFound().build();
+                PackStore.Located located = filePath.normalize().startsWith(Paths.get(downloadDir).normalize())
+                        ? packStore.locate(filePath) : null;
+                if (located == null) {
+                    log.warn("请求的资源文件不存在: {}", filePath);
+                    return ResponseEntity.notFound().build();
+                }
+                String contentType = located.getEntry().getContentType();
+                if (contentType.isEmpty()) {
+                    contentType = determineContentType(filePath.toString());
+                }
+                return ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(contentType))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getName() + "\"")
+                        .body(new PackResource(located));
             }
 
             // 获取文件的MIME类型
@@ -1,11 +1,25 @@
 package com.jiwu.aiseo.siteclone.controller;
 
+import com.jiwu.aiseo.siteclone.dto.BatchCloneRequest;
+import com.jiwu.aiseo.siteclone.dto.BatchCloneResponse;
 import com.jiwu.aiseo.siteclone.dto.CloneRequest;
 import com.jiwu.aiseo.siteclone.dto.CloneResponse;
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+import com.jiwu.aiseo.siteclone.service.ProgressStreamService;
 import com.jiwu.aiseo.siteclone.service.SiteCloneService;
+import com.jiwu.aiseo.siteclone.storage.DiskUsageLedger;
+import com.jiwu.aiseo.siteclone.storage.MirrorManifest;
+import com.jiwu.aiseo.siteclone.storage.SnapshotStore;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/clone")
@@ -13,6 +27,7 @@ import org.springframework.web.bind.annotation.*;
 public class SiteCloneController {
 
     private final SiteCloneService siteCloneService;
+    private final ProgressStreamService progressStreamService;
 
     @PostMapping
     public ResponseEntity<CloneResponse> startClone(@RequestBody CloneRequest request) {
@@ -20,6 +35,31 @@ public class SiteCloneController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 批量提交克隆任务：各项单独校验，同一批次的任务按批次公平排队
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchCloneResponse> startBatch(@RequestBody BatchCloneRequest request) {
+        return ResponseEntity.ok(siteCloneService.startBatch(request));
+    }
+
+    /**
+     * 批次的汇总进度和各任务状态
+     */
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<BatchCloneResponse> getBatchStatus(@PathVariable String batchId) {
+        return okOrNotFound(siteCloneService.getBatchStatus(batchId));
+    }
+
+    /**
+     * 按状态和域名查询任务，都不指定时返回所有任务
+     */
+    @GetMapping
+    public ResponseEntity<List<CloneResponse>> listTasks(@RequestParam(required = false) CloneTaskStatus status,
+            @RequestParam(required = false) String domain) {
+        return ResponseEntity.ok(siteCloneService.listTasks(status, domain));
+    }
+
     @GetMapping("/{taskId}")
     public ResponseEntity<CloneResponse> getTaskStatus(@PathVariable String taskId) {
         CloneResponse response = siteCloneService.getTaskStatus(taskId);
@@ -28,4 +68,94 @@ public class SiteCloneController {
         }
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * 推送一个或多个任务的进度 (Server-Sent Events)：事件 progress 的数据为变化字段的数组，首次为完整状态
+     *
+     * @param taskIds 任务ID，逗号分隔或重复参数
+     * @param interval 希望的推送间隔 (毫秒)，不小于服务端配置的间隔
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamProgress(@RequestParam List<String> taskIds,
+            @RequestParam(required = false) Long interval) {
+        SseEmitter emitter = progressStreamService.subscribe(taskIds, interval);
+        if (emitter == null) {
+            // 连接数已达上限，客户端退回轮询
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * 暂停任务：停止完成（进行中的请求和页面写入结束）后状态变为 PAUSED
+     */
+    @PostMapping("/{taskId}/pause")
+    public ResponseEntity<CloneResponse> pauseTask(@PathVariable String taskId) {
+        return okOrNotFound(siteCloneService.pauseTask(taskId));
+    }
+
+    /**
+     * 继续暂停的任务
+     */
+    @PostMapping("/{taskId}/resume")
+    public ResponseEntity<CloneResponse> resumeTask(@PathVariable String taskId) {
+        return okOrNotFound(siteCloneService.resumeTask(taskId));
+    }
+
+    /**
+     * 取消任务：停止完成后状态变为 CANCELLED，已抓取的页面保留
+     */
+    @PostMapping("/{taskId}/cancel")
+    public ResponseEntity<CloneResponse> cancelTask(@PathVariable String taskId) {
+        return okOrNotFound(siteCloneService.cancelTask(taskId));
+    }
+
+    private static <T> ResponseEntity<T> okOrNotFound(T response) {
+        return response == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/{taskId}")
+    public ResponseEntity<Void> deleteTask(@PathVariable String taskId) {
+        if (!siteCloneService.deleteTask(taskId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/snapshots/{domain}")
+    public ResponseEntity<List<SnapshotStore.SnapshotInfo>> listSnapshots(@PathVariable String domain) throws IOException {
+        return ResponseEntity.ok(siteCloneService.listSnapshots(domain));
+    }
+
+    @GetMapping("/snapshots/{domain}/diff")
+    public ResponseEntity<MirrorManifest.Diff> diffSnapshots(@PathVariable String domain, @RequestParam String from,
+            @RequestParam String to) throws IOException {
+        return ResponseEntity.ok(siteCloneService.diffSnapshots(domain, from, to));
+    }
+
+    @PostMapping("/packs/{domain}/unpack")
+    public ResponseEntity<Map<String, Integer>> unpackMirror(@PathVariable String domain) throws IOException {
+        return ResponseEntity.ok(Map.of("files", siteCloneService.unpackMirror(domain)));
+    }
+
+    /**
+     * 各镜像的磁盘用量，按淘汰顺序（最久未使用的在前）
+     */
+    @GetMapping("/mirrors")
+    public ResponseEntity<List<DiskUsageLedger.MirrorUsage>> listMirrors() {
+        return ResponseEntity.ok(siteCloneService.listMirrors());
+    }
+
+    /**
+     * 固定镜像，不被磁盘配额淘汰
+     */
+    @PostMapping("/mirrors/{domain}/pin")
+    public ResponseEntity<DiskUsageLedger.MirrorUsage> pinMirror(@PathVariable String domain) {
+        return okOrNotFound(siteCloneService.setMirrorPinned(domain, true));
+    }
+
+    @PostMapping("/mirrors/{domain}/unpin")
+    public ResponseEntity<DiskUsageLedger.MirrorUsage> unpinMirror(@PathVariable String domain) {
+        return okOrNotFound(siteCloneService.setMirrorPinned(domain, false));
+    }
 }
@@ -1,25 +1,50 @@
 package com.jiwu.aiseo.siteclone.downloader;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.net.ssl.SSLContext;
 
+import org.apache.http.Header;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpInetConnection;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.jiwu.aiseo.siteclone.metrics.CrawlMetrics;
+import com.jiwu.aiseo.siteclone.model.CloneTask;
+import com.jiwu.aiseo.siteclone.pipeline.WarcWriter;
+import com.jiwu.aiseo.siteclone.scheduling.FairShareScheduler;
 
 import lombok.extern.slf4j.Slf4j;
 import us.codecraft.webmagic.Page;
@@ -27,17 +52,395 @@ import us.codecraft.webmagic.Request;
 import us.codecraft.webmagic.Site;
 import us.codecraft.webmagic.Task;
 import us.codecraft.webmagic.downloader.HttpClientDownloader;
+import us.codecraft.webmagic.downloader.HttpClientRequestContext;
+import us.codecraft.webmagic.downloader.HttpUriRequestConverter;
+import us.codecraft.webmagic.proxy.Proxy;
 
 /**
  * 安全的HttpClient下载器，实现合理的SSL配置和安全控制
  */
 @Slf4j
-public class CustomHttpClientDownloader extends HttpClientDownloader {
+public class CustomHttpClientDownloader extends HttpClientDownloader implements Closeable {
 
     private static final int DEFAULT_CONNECT_TIMEOUT = 10000; // 10秒
     private static final int DEFAULT_SOCKET_TIMEOUT = 30000;  // 30秒
     private static final int DEFAULT_REQUEST_TIMEOUT = 60000; // 60秒
     private static final int MAX_CONNECTIONS = 50;
+    private static final String PARTIAL_DOWNLOAD = "partialDownload"; // Request extra：可续传下载的记录
+    
+    private volatile CloseableHttpClient probeClient; // 资源探测使用的HttpClient，首次探测时创建，close() 时关闭
+    private final HttpResponseCache responseCache; // 节点共享的HTTP缓存，为null时不使用缓存
+    private final CloneTask cloneTask; // 缓存命中统计所属的任务，可为null
+    private volatile WarcWriter warcWriter; // 原始HTTP交互的WARC记录，为null时不记录
+    private volatile CrawlMetrics.TaskMetrics metrics = CrawlMetrics.TaskMetrics.NONE; // 所属任务的抓取指标
+    private volatile FairShareScheduler fetchSlots; // 所有任务共享的请求槽位，为null时不限制
+    private volatile FairShareScheduler.Flow fetchFlow; // 本任务在请求槽位中的流
+    private final ThreadLocal<Boolean> holdingSlot = new ThreadLocal<>(); // 当前线程已占用槽位，嵌套的下载不再申请
+    // 当前线程正在执行的请求；同步HttpClient在调用线程上执行请求并处理响应，handleResponse 时从中取出实际发出的请求和发出时间
+    private final ThreadLocal<PendingRequest> currentRequest = new ThreadLocal<>();
+    
+    public CustomHttpClientDownloader() {
+        this(null, null);
+    }
+    
+    public CustomHttpClientDownloader(HttpResponseCache responseCache, CloneTask cloneTask) {
+        this.responseCache = responseCache;
+        this.cloneTask = cloneTask;
+        setHttpUriRequestConverter(new HttpUriRequestConverter() {
+            @Override
+            public HttpClientRequestContext convert(Request request, Site site, Proxy proxy) {
+                HttpClientRequestContext context = super.convert(request, site, proxy);
+                CrawlMetrics.TaskMetrics taskMetrics = metrics;
+                if (taskMetrics.isEnabled() && proxy == null) {
+                    resolve(context, taskMetrics);
+                }
+                if (warcWriter != null || taskMetrics.isEnabled()) {
+                    currentRequest.set(new PendingRequest(context, System.nanoTime()));
+                }
+                return context;
+            }
+        });
+    }
+    
+    /**
+     * 设置WARC写入器：之后从网络收到的每个响应（含对应的请求）都会写入WARC；缓存命中的响应不是网络交互，不记录
+     */
+    public void setWarcWriter(WarcWriter warcWriter) {
+        this.warcWriter = warcWriter;
+    }
+    
+    /**
+     * 设置所属任务的抓取指标：DNS解析、首字节时间（区分新建和复用的连接）、响应体传输、状态码和进行中的请求
+     */
+    public void setMetrics(CrawlMetrics.TaskMetrics metrics) {
+        this.metrics = metrics == null ? CrawlMetrics.TaskMetrics.NONE : metrics;
+    }
+    
+    /**
+     * 设置所有任务共享的请求槽位：每次下载前按本任务的流申请槽位，各任务按权重分享并发请求数，
+     * 线程数多的任务不会占满所有槽位
+     */
+    public void setFetchShare(FairShareScheduler fetchSlots, FairShareScheduler.Flow fetchFlow) {
+        this.fetchSlots = fetchSlots;
+        this.fetchFlow = fetchFlow;
+    }
+    
+    /**
+     * 计时DNS解析：HttpClient 随后经 JVM 的地址缓存得到同一结果，不会再解析一次
+     */
+    private static void resolve(HttpClientRequestContext context, CrawlMetrics.TaskMetrics taskMetrics) {
+        String host = context.getHttpUriRequest().getURI().getHost();
+        if (host == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            // 解析失败由随后的请求报告
+        }
+        taskMetrics.recordDns(System.nanoTime() - start);
+    }
+    
+    /**
+     * 下载页面，先查询共享HTTP缓存
+     * 
+     * 新鲜的缓存条目直接返回；过期但带校验器的条目发送条件请求，304 时使用缓存内容；
+     * 其余情况从网络下载，可缓存的响应写入缓存。
+     */
+    @Override
+    public Page download(Request request, Task task) {
+        FairShareScheduler slots = fetchSlots;
+        if (slots == null || holdingSlot.get() != null) {
+            return downloadMetered(request, task);
+        }
+        try {
+            slots.acquire(fetchFlow);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("等待请求槽位时被中断: {}", request.getUrl());
+            return Page.ofFailure(request);
+        }
+        holdingSlot.set(Boolean.TRUE);
+        try {
+            return downloadMetered(request, task);
+        } finally {
+            holdingSlot.remove();
+            slots.release();
+        }
+    }
+
+    private Page downloadMetered(Request request, Task task) {
+        CrawlMetrics.TaskMetrics taskMetrics = metrics;
+        taskMetrics.requestStarted();
+        try {
+            Page page = downloadThroughCache(request, task);
+            if (!page.isDownloadSuccess()) {
+                taskMetrics.recordResponse(0);
+            }
+            if (cloneTask != null && (!page.isDownloadSuccess() || page.getStatusCode() >= 400)) {
+                cloneTask.incrementRequestsFailed();
+            }
+            return page;
+        } finally {
+            taskMetrics.requestFinished();
+        }
+    }
+
+    private Page downloadThroughCache(Request request, Task task) {
+        if (responseCache == null || (request.getMethod() != null && !"GET".equalsIgnoreCase(request.getMethod()))) {
+            return super.download(request, task);
+        }
+        String url = request.getUrl();
+        Map<String, String> requestHeaders = effectiveHeaders(request, task.getSite());
+        if (isConditional(request)) {
+            // 调用方按自己记录的校验器发送条件请求（重新克隆）或续传，需要看到真实的响应，不经过缓存
+            Page page = super.download(request, task);
+            if (page.isDownloadSuccess() && page.getStatusCode() == 200) {
+                responseCache.store(url, requestHeaders, page.getStatusCode(), page.getHeaders(), page.getBytes());
+            }
+            return page;
+        }
+        HttpResponseCache.CachedResponse cached = responseCache.lookup(url, requestHeaders);
+        
+        if (cached != null && cached.isFresh()) {
+            Page page = fromCache(request, task, cached);
+            if (page != null) {
+                recordCache(true, cached.getSize());
+                log.debug("HTTP缓存命中: {}", url);
+                return page;
+            }
+            cached = null;
+        }
+        
+        boolean conditional = cached != null && cached.hasValidator();
+        if (conditional) {
+            if (cached.getETag() != null) {
+                request.addHeader("If-None-Match", cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                request.addHeader("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        Page page;
+        try {
+            page = super.download(request, task);
+        } finally {
+            if (conditional) {
+                // Request 会被重试复用，条件头只属于这一次请求
+                request.getHeaders().remove("If-None-Match");
+                request.getHeaders().remove("If-Modified-Since");
+            }
+        }
+        
+        if (conditional && page.getStatusCode() == 304) {
+            HttpResponseCache.CachedResponse refreshed = responseCache.freshen(cached, page.getHeaders());
+            Page cachedPage = refreshed == null ? null : fromCache(request, task, refreshed);
+            if (cachedPage != null) {
+                recordCache(true, refreshed.getSize());
+                log.debug("HTTP缓存重新验证通过: {}", url);
+                return cachedPage;
+            }
+            // 验证期间条目被淘汰或内容文件丢失：304 没有内容可用，不带条件头重新请求
+            log.debug("HTTP缓存条目已失效，重新请求: {}", url);
+            page = super.download(request, task);
+        }
+        if (page.isDownloadSuccess()) {
+            recordCache(false, 0);
+            responseCache.store(url, requestHeaders, page.getStatusCode(), page.getHeaders(), page.getBytes());
+        }
+        return page;
+    }
+
+    /**
+     * 用缓存内容构造页面，复用父类的字符集识别和页面构造逻辑
+     */
+    private Page fromCache(Request request, Task task, HttpResponseCache.CachedResponse cached) {
+        byte[] body = responseCache.readBody(cached);
+        if (body == null) {
+            return null;
+        }
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        for (String[] header : cached.getHeaders()) {
+            String name = header[0];
+            // 缓存中保存的是解压后的内容
+            if (!name.equalsIgnoreCase("Content-Encoding") && !name.equalsIgnoreCase("Content-Length")
+                    && !name.equalsIgnoreCase("Transfer-Encoding")) {
+                response.addHeader(name, header[1]);
+            }
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(body);
+        String contentType = cached.getHeader("Content-Type");
+        if (contentType != null) {
+            entity.setContentType(contentType);
+        }
+        response.setEntity(entity);
+        try {
+            String charset = request.getCharset() != null ? request.getCharset() : task.getSite().getCharset();
+            // 缓存内容已经完整，不经过续传处理
+            return super.handleResponse(request, charset, response, task);
+        } catch (Exception e) {
+            log.debug("从缓存构造页面失败: {} ({})", request.getUrl(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 带续传记录的请求：较大的响应体流式写入 .part，续传的 206 响应与已下载部分合并为完整的 200 响应
+     */
+    @Override
+    protected Page handleResponse(Request request, String charset, HttpResponse httpResponse, Task task) throws IOException {
+        PendingRequest pending = currentRequest.get();
+        currentRequest.remove();
+        HttpClientRequestContext context = pending == null ? null : pending.context;
+        long headersAt = System.nanoTime();
+        Instant received = Instant.now();
+        // 读完响应体后连接会被释放，连接信息需要先取出
+        String remoteAddress = context == null ? null : remoteAddress(context);
+        boolean newConnection = pending != null && isNewConnection(context);
+        PartialDownload partial = request.getExtra(PARTIAL_DOWNLOAD);
+        if (partial != null && httpResponse.getEntity() != null) {
+            byte[] body = partial.receive(httpResponse);
+            if (body != null) {
+                BasicHttpResponse full = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+                for (Header header : httpResponse.getAllHeaders()) {
+                    String name = header.getName();
+                    if (!name.equalsIgnoreCase("Content-Range") && !name.equalsIgnoreCase("Content-Length")
+                            && !name.equalsIgnoreCase("Transfer-Encoding")) {
+                        full.addHeader(header);
+                    }
+                }
+                ByteArrayEntity entity = new ByteArrayEntity(body);
+                entity.setContentType(httpResponse.getEntity().getContentType());
+                full.setEntity(entity);
+                Page page = super.handleResponse(request, charset, full, task);
+                // 续传的交互按合并后的完整响应记录，便于回放
+                recordExchange(request, context, remoteAddress, full, page, received, true);
+                recordTiming(pending, headersAt, newConnection, httpResponse, page);
+                return page;
+            }
+        }
+        Page page = super.handleResponse(request, charset, httpResponse, task);
+        recordExchange(request, context, remoteAddress, httpResponse, page, received, false);
+        recordTiming(pending, headersAt, newConnection, httpResponse, page);
+        return page;
+    }
+
+    /**
+     * 记录一次网络交互的首字节时间、传输时间和状态码；回放等不经过 convert 的响应没有发出时间，不记录
+     */
+    private void recordTiming(PendingRequest pending, long headersAt, boolean newConnection, HttpResponse response,
+            Page page) {
+        CrawlMetrics.TaskMetrics taskMetrics = metrics;
+        if (pending == null || !taskMetrics.isEnabled()) {
+            return;
+        }
+        taskMetrics.recordTtfb(headersAt - pending.startNanos, newConnection);
+        taskMetrics.recordTransfer(System.nanoTime() - headersAt, page.getBytes() == null ? 0 : page.getBytes().length);
+        taskMetrics.recordResponse(response.getStatusLine().getStatusCode());
+    }
+
+    /**
+     * 本次请求是否新建了连接：连接上处理过的请求数为1时是新建的（首字节时间含建连和TLS握手）
+     */
+    private static boolean isNewConnection(HttpClientRequestContext context) {
+        try {
+            HttpConnection connection = context.getHttpClientContext().getConnection();
+            return connection != null && connection.getMetrics().getRequestCount() <= 1;
+        } catch (RuntimeException e) {
+            return false; // 连接已释放
+        }
+    }
+
+    /**
+     * 把一次网络交互交给WARC写入器（只在抓取线程上组装请求头和响应头，压缩和写盘由写入器的追加线程完成）
+     */
+    private void recordExchange(Request request, HttpClientRequestContext context, String remoteAddress,
+            HttpResponse response, Page page, Instant received, boolean merged) {
+        WarcWriter writer = warcWriter;
+        if (writer == null || context == null) {
+            return;
+        }
+        byte[] payload = page.getBytes() == null ? new byte[0] : page.getBytes();
+
+        // 实际发出的请求（含拦截器添加的请求头）；续传头不属于合并后的完整响应
+        HttpRequest sent = context.getHttpClientContext().getRequest();
+        if (sent == null) {
+            sent = context.getHttpUriRequest();
+        }
+        StringBuilder requestHead = new StringBuilder();
+        requestHead.append(sent.getRequestLine().getMethod()).append(' ').append(sent.getRequestLine().getUri())
+                .append(' ').append(sent.getRequestLine().getProtocolVersion()).append("\r\n");
+        for (Header header : sent.getAllHeaders()) {
+            if (!(merged && (header.getName().equalsIgnoreCase("Range") || header.getName().equalsIgnoreCase("If-Range")))) {
+                requestHead.append(header.getName()).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        requestHead.append("\r\n");
+
+        // 响应体已去掉分块传输（HttpClient解压时也已移除 Content-Encoding），按实际记录的长度改写 Content-Length
+        StringBuilder responseHead = new StringBuilder();
+        responseHead.append(response.getStatusLine().getProtocolVersion()).append(' ')
+                .append(response.getStatusLine().getStatusCode()).append(' ')
+                .append(response.getStatusLine().getReasonPhrase() == null ? "" : response.getStatusLine().getReasonPhrase())
+                .append("\r\n");
+        for (Header header : response.getAllHeaders()) {
+            String name = header.getName();
+            if (!name.equalsIgnoreCase("Content-Length") && !name.equalsIgnoreCase("Transfer-Encoding")) {
+                responseHead.append(name).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        if (payload.length > 0 || response.getEntity() != null) {
+            responseHead.append("Content-Length: ").append(payload.length).append("\r\n");
+        }
+        responseHead.append("\r\n");
+
+        Header location = response.getFirstHeader("Location");
+        writer.write(new WarcWriter.Exchange(request.getUrl(), received, remoteAddress,
+                requestHead.toString().getBytes(StandardCharsets.UTF_8),
+                responseHead.toString().getBytes(StandardCharsets.UTF_8), payload,
+                response.getStatusLine().getStatusCode(), contentType(response),
+                location == null ? null : location.getValue()));
+    }
+
+    private static String remoteAddress(HttpClientRequestContext context) {
+        try {
+            HttpConnection connection = context.getHttpClientContext().getConnection();
+            if (connection instanceof HttpInetConnection inet && inet.getRemoteAddress() != null) {
+                return inet.getRemoteAddress().getHostAddress();
+            }
+        } catch (RuntimeException e) {
+            // 连接已释放
+        }
+        return null;
+    }
+
+    private static boolean isConditional(Request request) {
+        Map<String, String> headers = request.getHeaders();
+        return headers != null && (headers.containsKey("If-None-Match") || headers.containsKey("If-Modified-Since")
+                || headers.containsKey("Range"));
+    }
+
+    private static Map<String, String> effectiveHeaders(Request request, Site site) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (site != null && site.getHeaders() != null) {
+            headers.putAll(site.getHeaders());
+        }
+        if (request.getHeaders() != null) {
+            headers.putAll(request.getHeaders());
+        }
+        if (site != null && site.getUserAgent() != null) {
+            headers.putIfAbsent("User-Agent", site.getUserAgent());
+        }
+        return headers;
+    }
+
+    private void recordCache(boolean hit, long bytesSaved) {
+        if (cloneTask == null) {
+            return;
+        }
+        cloneTask.recordCacheLookup(hit, bytesSaved);
+    }
     
     /**
      * 下载URL内容为字节数组
@@ -47,6 +450,35 @@ public class CustomHttpClientDownloader extends HttpClientDownloader {
      * @return 下载的内容字节数组，如果下载失败则返回null
      */
     public byte[] download(String url, Site site) {
+        Page page = fetch(url, site, null);
+        if (page != null && page.getBytes() != null) {
+            return page.getBytes();
+        }
+        return null;
+    }
+
+    /**
+     * 下载URL并返回完整的页面（含状态码和响应头）
+     * 
+     * @param url 要下载的URL
+     * @param site 站点配置
+     * @param extraHeaders 额外的请求头（如条件请求头），可为null
+     * @return 下载结果，发生异常时返回null
+     */
+    public Page fetch(String url, Site site, Map<String, String> extraHeaders) {
+        return fetch(url, site, extraHeaders, null);
+    }
+
+    /**
+     * 下载URL并返回完整的页面，较大的响应体支持断点续传
+     * 
+     * @param url 要下载的URL
+     * @param site 站点配置
+     * @param extraHeaders 额外的请求头（如条件请求头），可为null
+     * @param partial 续传记录，可为null；有未完成的部分且没有条件请求头时从断点继续
+     * @return 下载结果，发生异常时返回null
+     */
+    public Page fetch(String url, Site site, Map<String, String> extraHeaders, PartialDownload partial) {
         try {
             Request request = new Request(url);
             // 设置站点配置
@@ -62,9 +494,22 @@ public class CustomHttpClientDownloader extends HttpClientDownloader {
                     }
                 }
             }
+            if (extraHeaders != null) {
+                for (Map.Entry<String, String> entry : extraHeaders.entrySet()) {
+                    request.addHeader(entry.getKey(), entry.getValue());
+                }
+            }
+            if (partial != null) {
+                request.putExtra(PARTIAL_DOWNLOAD, partial);
+                if (partial.canResume() && (extraHeaders == null || extraHeaders.isEmpty())) {
+                    for (Map.Entry<String, String> entry : partial.resumeHeaders().entrySet()) {
+                        request.addHeader(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
             
-            // 使用父类的download方法下载内容
-            Page page = super.download(request, new Task() {
+            // 与页面下载走同一路径（含HTTP缓存）
+            return download(request, new Task() {
                 @Override
                 public String getUUID() {
                     return "download-task";
@@ -75,10 +520,6 @@ public class CustomHttpClientDownloader extends HttpClientDownloader {
                     return site;
                 }
             });
-            
-            if (page != null && page.getBytes() != null) {
-                return page.getBytes();
-            }
         } catch (Exception e) {
             log.error("下载资源失败: {}", url, e);
         }
@@ -86,6 +527,132 @@ public class CustomHttpClientDownloader extends HttpClientDownloader {
         return null;
     }
 
+    /**
+     * 探测资源的内容类型和大小，不下载内容
+     * 
+     * 先发送 HEAD；服务器不支持 HEAD 或没有返回长度时，
+     * 改用 Range: bytes=0-0 的 GET，从 Content-Range 中读取总大小。
+     * 
+     * @param url 要探测的URL
+     * @param site 站点配置
+     * @return 探测结果，请求失败时返回null
+     */
+    public ResourceProbe probe(String url, Site site) {
+        CloseableHttpClient client = getProbeClient(site);
+        ResourceProbe headResult = null;
+        
+        HttpHead head = new HttpHead(url);
+        applyProbeHeaders(head, site);
+        try (CloseableHttpResponse response = client.execute(head)) {
+            int status = response.getStatusLine().getStatusCode();
+            long length = parseLong(response.getFirstHeader("Content-Length"));
+            headResult = new ResourceProbe(status, contentType(response), length);
+            if (headResult.isSuccess() && length >= 0) {
+                return headResult;
+            }
+        } catch (Exception e) {
+            log.debug("HEAD探测失败，改用Range请求: {} ({})", url, e.getMessage());
+        }
+        
+        HttpGet get = new HttpGet(url);
+        applyProbeHeaders(get, site);
+        get.setHeader("Range", "bytes=0-0");
+        // 不读取响应体直接关闭：服务器忽略Range返回200时会中止连接，不会把整个资源读下来
+        try (CloseableHttpResponse response = client.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            long length = -1;
+            if (status == 206) {
+                Header contentRange = response.getFirstHeader("Content-Range");
+                if (contentRange != null) {
+                    String value = contentRange.getValue();
+                    int slash = value.lastIndexOf('/');
+                    if (slash >= 0) {
+                        length = parseLong(value.substring(slash + 1).trim());
+                    }
+                }
+            } else {
+                length = parseLong(response.getFirstHeader("Content-Length"));
+            }
+            String type = contentType(response);
+            if (type == null && headResult != null) {
+                type = headResult.getContentType();
+            }
+            return new ResourceProbe(status == 206 ? 200 : status, type, length);
+        } catch (Exception e) {
+            log.debug("Range探测失败: {} ({})", url, e.getMessage());
+        }
+        return headResult;
+    }
+
+    private CloseableHttpClient getProbeClient(Site site) {
+        CloseableHttpClient client = probeClient;
+        if (client == null) {
+            synchronized (this) {
+                client = probeClient;
+                if (client == null) {
+                    client = createHttpClient(site);
+                    probeClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 关闭资源探测的连接池；之后再探测会重新创建，需要再次关闭
+     */
+    @Override
+    public void close() {
+        CloseableHttpClient client;
+        synchronized (this) {
+            client = probeClient;
+            probeClient = null;
+        }
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                log.debug("关闭探测HttpClient失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static void applyProbeHeaders(HttpRequestBase request, Site site) {
+        if (site != null && site.getHeaders() != null) {
+            for (Map.Entry<String, String> entry : site.getHeaders().entrySet()) {
+                request.setHeader(entry.getKey(), entry.getValue());
+            }
+        }
+        // 需要原始大小，而不是压缩后的传输大小
+        request.setHeader("Accept-Encoding", "identity");
+    }
+
+    private static String contentType(HttpResponse response) {
+        Header header = response.getFirstHeader("Content-Type");
+        if (header == null || header.getValue() == null) {
+            return null;
+        }
+        String value = header.getValue();
+        int semicolon = value.indexOf(';');
+        if (semicolon >= 0) {
+            value = value.substring(0, semicolon);
+        }
+        value = value.trim().toLowerCase();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static long parseLong(Header header) {
+        return header == null ? -1 : parseLong(header.getValue());
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     public CloseableHttpClient getHttpClient(Site site) {
         if (site == null) {
             return createHttpClient(null);
@@ -172,4 +739,17 @@ public class CustomHttpClientDownloader extends HttpClientDownloader {
         log.info("创建HttpClient成功，SSL证书验证已启用");
         return httpClientBuilder.build();
     }
-}
\ No newline at end of file
+
+    /**
+     * 已发出、尚未处理响应的请求
+     */
+    private static final class PendingRequest {
+        private final HttpClientRequestContext context;
+        private final long startNanos;
+
+        private PendingRequest(HttpClientRequestContext context, long startNanos) {
+            this.context = context;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package com.jiwu.aiseo.siteclone.downloader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 共享HTTP响应缓存 - 按 RFC 9111 的共享缓存语义保存 GET 响应，供本节点的所有克隆任务复用
+ *
+ * 只根据响应的 Cache-Control / Expires / Vary 判断能否存储和是否新鲜：
+ * 爬虫请求里的 Cache-Control 是固定的站点配置，不代表用户意图，因此不参与判断。
+ * 过期但带有校验器（ETag / Last-Modified）的条目可以用条件请求重新验证。
+ * 每个条目是一个文件（头部元数据 + 响应体），内存中维护按访问顺序排列的索引，超过字节预算时淘汰最久未使用的条目。
+ * 条目会回放给其他任务，Set-Cookie 等会话头部不保存。
+ */
+@Slf4j
+public class HttpResponseCache {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final double HEURISTIC_FRACTION = 0.1; // 启发式新鲜期：Last-Modified 距今时间的 10%
+    // 不保存、不回放的响应头（小写）：属于发起请求的会话，不能在任务之间共享
+    private static final Set<String> UNSHARED_HEADERS = Set.of("set-cookie", "set-cookie2");
+
+    private final Path root;
+    private final long maxBytes;
+    private final long heuristicMaxAge;
+    // 访问顺序的 LRU 索引，所有访问都在 this 上同步
+    private final LinkedHashMap<String, CachedResponse> index = new LinkedHashMap<>(256, 0.75f, true);
+    // URL -> 该URL响应的 Vary 请求头（小写，已排序）
+    private final Map<String, List<String>> varyByUrl = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    public HttpResponseCache(Path root, long maxBytes, long heuristicMaxAge) {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.heuristicMaxAge = heuristicMaxAge;
+        loadIndex();
+    }
+
+    /**
+     * 查找与请求匹配的缓存条目（可能已过期，由调用方根据 {@link CachedResponse#isFresh()} 决定是否重新验证）
+     *
+     * @param url 请求URL
+     * @param requestHeaders 实际发送的请求头
+     * @return 缓存条目，没有时返回null
+     */
+    public synchronized CachedResponse lookup(String url, Map<String, String> requestHeaders) {
+        List<String> vary = varyByUrl.get(url);
+        if (vary == null) {
+            return null;
+        }
+        CachedResponse cached = index.get(variantKey(url, vary, requestHeaders));
+        if (cached != null && !Files.exists(cached.file)) {
+            remove(cached);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * 读取缓存条目的响应体
+     *
+     * @return 响应体，条目已被淘汰时返回null
+     */
+    public byte[] readBody(CachedResponse cached) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cached.file)))) {
+            readHeader(in, cached.file);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            log.debug("读取缓存条目失败: {} ({})", cached.url, e.getMessage());
+            synchronized (this) {
+                remove(cached);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 保存响应；不可缓存的响应会被忽略
+     *
+     * @param url 请求URL
+     * @param requestHeaders 实际发送的请求头
+     * @param statusCode 响应状态码
+     * @param responseHeaders 响应头
+     * @param body 响应体
+     * @return 是否保存
+     */
+    public boolean store(String url, Map<String, String> requestHeaders, int statusCode,
+            Map<String, List<String>> responseHeaders, byte[] body) {
+        if (statusCode != 200 || body == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        List<String[]> headers = flatten(responseHeaders);
+        CachedResponse candidate = new CachedResponse(url, null, null, headers, now, body.length);
+        if (!candidate.isStorable(hasAuthorization(requestHeaders))) {
+            return false;
+        }
+        List<String> vary = candidate.varyHeaders();
+        if (vary == null) {
+            // Vary: * 永远无法匹配
+            return false;
+        }
+        Map<String, String> varyValues = selectVaryValues(vary, requestHeaders);
+        String key = variantKey(url, vary, requestHeaders);
+        Path file = entryPath(key);
+        try {
+            writeEntry(file, url, key, varyValues, headers, now, body);
+        } catch (IOException e) {
+            log.warn("写入HTTP缓存失败: {} ({})", url, e.getMessage());
+            return false;
+        }
+        CachedResponse stored = new CachedResponse(url, key, file, headers, now, body.length);
+        stored.varyValues = varyValues;
+        synchronized (this) {
+            varyByUrl.put(url, vary);
+            CachedResponse previous = index.put(key, stored);
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            totalBytes += stored.size;
+            evict();
+        }
+        return true;
+    }
+
+    /**
+     * 用 304 响应的头部刷新缓存条目（RFC 9111 4.3.4），返回刷新后的条目
+     */
+    public CachedResponse freshen(CachedResponse cached, Map<String, List<String>> notModifiedHeaders) {
+        byte[] body = readBody(cached);
+        if (body == null) {
+            return null;
+        }
+        Map<String, String[]> merged = new LinkedHashMap<>();
+        for (String[] header : cached.headers) {
+            merged.putIfAbsent(header[0].toLowerCase(Locale.ROOT), header);
+        }
+        List<String[]> updated = new ArrayList<>();
+        for (String[] header : flatten(notModifiedHeaders)) {
+            String name = header[0].toLowerCase(Locale.ROOT);
+            // 304 不携带响应体，实体相关的头部保持原值
+            if (!name.startsWith("content-") && !name.equals("transfer-encoding")) {
+                merged.remove(name);
+                updated.add(header);
+            }
+        }
+        for (String[] header : cached.headers) {
+            if (merged.containsKey(header[0].toLowerCase(Locale.ROOT))) {
+                updated.add(header);
+            }
+        }
+        long now = System.currentTimeMillis();
+        try {
+            writeEntry(cached.file, cached.url, cached.key, cached.varyValues, updated, now, body);
+        } catch (IOException e) {
+            log.warn("刷新HTTP缓存失败: {} ({})", cached.url, e.getMessage());
+            return cached;
+        }
+        CachedResponse refreshed = new CachedResponse(cached.url, cached.key, cached.file, updated, now, body.length);
+        refreshed.varyValues = cached.varyValues;
+        synchronized (this) {
+            CachedResponse previous = index.put(cached.key, refreshed);
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            totalBytes += refreshed.size;
+        }
+        return refreshed;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    private void evict() {
+        Iterator<CachedResponse> it = index.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            CachedResponse eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.size;
+            try {
+                Files.deleteIfExists(eldest.file);
+            } catch (IOException e) {
+                log.debug("删除缓存条目失败: {}", eldest.file);
+            }
+        }
+    }
+
+    private void remove(CachedResponse cached) {
+        if (index.remove(cached.key) != null) {
+            totalBytes -= cached.size;
+        }
+        try {
+            Files.deleteIfExists(cached.file);
+        } catch (IOException e) {
+            log.debug("删除缓存条目失败: {}", cached.file);
+        }
+    }
+
+    /**
+     * 启动时从磁盘重建索引，按修改时间近似恢复 LRU 顺序
+     */
+    private void loadIndex() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root, 2)) {
+            files = walk.filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .sorted(Comparator.comparingLong(HttpResponseCache::lastModified))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("加载HTTP缓存索引失败: {}", root, e);
+            return;
+        }
+        synchronized (this) {
+            for (Path file : files) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    CachedResponse cached = readHeader(in, file);
+                    index.put(cached.key, cached);
+                    totalBytes += cached.size;
+                    List<String> vary = cached.varyHeaders();
+                    if (vary != null) {
+                        varyByUrl.put(cached.url, vary);
+                    }
+                } catch (IOException e) {
+                    log.debug("丢弃损坏的缓存条目: {}", file);
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                        // 下次启动再试
+                    }
+                }
+            }
+            evict();
+        }
+        log.info("HTTP缓存已加载: {} 个条目，{} 字节", index.size(), totalBytes);
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void writeEntry(Path file, String url, String key, Map<String, String> varyValues,
+            List<String[]> headers, long responseTime, byte[] body) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), ".entry", ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(temp);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(url);
+                out.writeUTF(key);
+                out.writeLong(responseTime);
+                out.writeInt(varyValues.size());
+                for (Map.Entry<String, String> entry : varyValues.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+                out.writeInt(headers.size());
+                for (String[] header : headers) {
+                    out.writeUTF(header[0]);
+                    out.writeUTF(header[1]);
+                }
+                out.write(body);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private CachedResponse readHeader(DataInputStream in, Path file) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("不支持的缓存条目格式: " + file);
+        }
+        String url = in.readUTF();
+        String key = in.readUTF();
+        long responseTime = in.readLong();
+        Map<String, String> varyValues = new TreeMap<>();
+        int varyCount = in.readInt();
+        for (int i = 0; i < varyCount; i++) {
+            varyValues.put(in.readUTF(), in.readUTF());
+        }
+        int headerCount = in.readInt();
+        List<String[]> headers = new ArrayList<>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+            String[] header = new String[] { in.readUTF(), in.readUTF() };
+            // 早期写入的条目可能带有会话头部
+            if (!UNSHARED_HEADERS.contains(header[0].toLowerCase(Locale.ROOT))) {
+                headers.add(header);
+            }
+        }
+        CachedResponse cached = new CachedResponse(url, key, file, headers, responseTime, Files.size(file));
+        cached.varyValues = varyValues;
+        return cached;
+    }
+
+    private Path entryPath(String key) {
+        String hash = sha256(key);
+        return root.resolve(hash.substring(0, 2)).resolve(hash + ENTRY_SUFFIX);
+    }
+
+    private static boolean hasAuthorization(Map<String, String> requestHeaders) {
+        if (requestHeaders == null) {
+            return false;
+        }
+        for (String name : requestHeaders.keySet()) {
+            if (name.equalsIgnoreCase("Authorization")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String variantKey(String url, List<String> vary, Map<String, String> requestHeaders) {
+        if (vary.isEmpty()) {
+            return url;
+        }
+        StringBuilder key = new StringBuilder(url);
+        for (Map.Entry<String, String> entry : selectVaryValues(vary, requestHeaders).entrySet()) {
+            key.append('\n').append(entry.getKey()).append(':').append(entry.getValue());
+        }
+        return key.toString();
+    }
+
+    private static Map<String, String> selectVaryValues(List<String> vary, Map<String, String> requestHeaders) {
+        Map<String, String> values = new TreeMap<>();
+        for (String name : vary) {
+            String value = "";
+            if (requestHeaders != null) {
+                for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                    if (header.getKey().equalsIgnoreCase(name)) {
+                        value = header.getValue() == null ? "" : header.getValue().trim();
+                        break;
+                    }
+                }
+            }
+            values.put(name, value);
+        }
+        return values;
+    }
+
+    private static List<String[]> flatten(Map<String, List<String>> headers) {
+        List<String[]> result = new ArrayList<>();
+        if (headers == null) {
+            return result;
+        }
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null
+                    || UNSHARED_HEADERS.contains(entry.getKey().toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                result.add(new String[] { entry.getKey(), value == null ? "" : value });
+            }
+        }
+        return result;
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static long parseHttpDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 缓存条目（不含响应体）
+     */
+    public final class CachedResponse {
+        private final String url;
+        private final String key;
+        private final Path file;
+        private final List<String[]> headers;
+        private final long responseTime;
+        private final long size;
+        private Map<String, String> varyValues = new TreeMap<>();
+
+        private CachedResponse(String url, String key, Path file, List<String[]> headers, long responseTime, long size) {
+            this.url = url;
+            this.key = key;
+            this.file = file;
+            this.headers = headers;
+            this.responseTime = responseTime;
+            this.size = size;
+        }
+
+        public String getUrl() { return url; }
+        public List<String[]> getHeaders() { return headers; }
+        public long getSize() { return size; }
+
+        public String getHeader(String name) {
+            for (String[] header : headers) {
+                if (header[0].equalsIgnoreCase(name)) {
+                    return header[1];
+                }
+            }
+            return null;
+        }
+
+        public String getETag() {
+            return getHeader("ETag");
+        }
+
+        public String getLastModified() {
+            return getHeader("Last-Modified");
+        }
+
+        public boolean hasValidator() {
+            return getETag() != null || getLastModified() != null;
+        }
+
+        /**
+         * 是否可以不经验证直接使用（RFC 9111 4.2）
+         */
+        public boolean isFresh() {
+            Map<String, String> directives = cacheControl();
+            if (directives.containsKey("no-cache")) {
+                return false;
+            }
+            return freshnessLifetime(directives) > currentAge();
+        }
+
+        /**
+         * @param authorized 请求是否带有 Authorization 头
+         */
+        private boolean isStorable(boolean authorized) {
+            Map<String, String> directives = cacheControl();
+            if (directives.containsKey("no-store") || directives.containsKey("private")) {
+                return false;
+            }
+            // 共享缓存只能保存源站明确允许共享的授权响应（RFC 9111 3.5）
+            if (authorized && !directives.containsKey("public") && !directives.containsKey("must-revalidate")
+                    && !directives.containsKey("s-maxage")) {
+                return false;
+            }
+            // 既没有显式过期时间也无法验证的响应，存下来也无法复用
+            return directives.containsKey("max-age") || directives.containsKey("s-maxage")
+                    || getHeader("Expires") != null || hasValidator();
+        }
+
+        /**
+         * Vary 请求头（小写、排序）；Vary: * 时返回null
+         */
+        private List<String> varyHeaders() {
+            List<String> names = new ArrayList<>();
+            for (String[] header : headers) {
+                if (!header[0].equalsIgnoreCase("Vary")) {
+                    continue;
+                }
+                for (String name : header[1].split(",")) {
+                    String normalized = name.trim().toLowerCase(Locale.ROOT);
+                    if (normalized.equals("*")) {
+                        return null;
+                    }
+                    if (!normalized.isEmpty() && !names.contains(normalized)) {
+                        names.add(normalized);
+                    }
+                }
+            }
+            names.sort(null);
+            return names;
+        }
+
+        private Map<String, String> cacheControl() {
+            Map<String, String> directives = new LinkedHashMap<>();
+            for (String[] header : headers) {
+                if (!header[0].equalsIgnoreCase("Cache-Control")) {
+                    continue;
+                }
+                for (String part : header[1].split(",")) {
+                    String directive = part.trim();
+                    if (directive.isEmpty()) {
+                        continue;
+                    }
+                    int eq = directive.indexOf('=');
+                    String name = (eq < 0 ? directive : directive.substring(0, eq)).trim().toLowerCase(Locale.ROOT);
+                    String value = eq < 0 ? "" : directive.substring(eq + 1).trim().replace("\"", "");
+                    directives.putIfAbsent(name, value);
+                }
+            }
+            return directives;
+        }
+
+        private long freshnessLifetime(Map<String, String> directives) {
+            long seconds = parseSeconds(directives.get("s-maxage"));
+            if (seconds < 0) {
+                seconds = parseSeconds(directives.get("max-age"));
+            }
+            if (seconds >= 0) {
+                return seconds * 1000;
+            }
+            long date = dateValue();
+            String expiresValue = getHeader("Expires");
+            if (expiresValue != null) {
+                long expires = parseHttpDate(expiresValue);
+                // 无效的 Expires（如 "0"）表示已过期
+                return expires < 0 ? 0 : Math.max(0, expires - date);
+            }
+            long lastModified = parseHttpDate(getLastModified());
+            if (lastModified > 0 && lastModified < date) {
+                return Math.min((long) ((date - lastModified) * HEURISTIC_FRACTION), heuristicMaxAge);
+            }
+            return 0;
+        }
+
+        private long currentAge() {
+            long ageSeconds = Math.max(0, parseSeconds(getHeader("Age")));
+            long apparentAge = Math.max(0, responseTime - dateValue());
+            long initialAge = Math.max(apparentAge, ageSeconds * 1000);
+            return initialAge + (System.currentTimeMillis() - responseTime);
+        }
+
+        private long dateValue() {
+            long date = parseHttpDate(getHeader("Date"));
+            return date < 0 ? responseTime : date;
+        }
+
+        private long parseSeconds(String value) {
+            if (value == null || value.isEmpty()) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.jiwu.aiseo.siteclone.downloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DecompressingEntity;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 可续传的下载 - 大文件先流式写入目标文件旁边的 .part 文件，中断后用 Range + If-Range 从断点继续
+ *
+ * 元数据（URL、校验器、总长度、摘要）保存在 .part.meta 中，并在写入响应体之前落盘，进程中途退出也能续传。
+ * 下载完成后按总长度校验；服务器提供 Repr-Digest / Digest（SHA-256）时再校验摘要，摘要不符则丢弃重新下载。
+ * 只处理未压缩传输且带强校验器的响应：压缩后的字节偏移无法对应，没有校验器则无法保证续传的是同一版本。
+ */
+@Slf4j
+public class PartialDownload {
+
+    public static final String PART_SUFFIX = ".part";
+    public static final String META_SUFFIX = ".part.meta";
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
+    private static final Pattern REPR_DIGEST = Pattern.compile("sha-256=:([A-Za-z0-9+/=]+):", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LEGACY_DIGEST = Pattern.compile("sha-256=([A-Za-z0-9+/=]+)", Pattern.CASE_INSENSITIVE);
+
+    private final String url;
+    private final Path part;
+    private final Path meta;
+    private final long threshold;
+    private String validator; // If-Range 使用的强 ETag 或 Last-Modified
+    private long totalLength = -1;
+    private String digest; // 完整内容的 SHA-256 (Base64)，服务器未提供时为null
+    private long resumedBytes; // 本次通过续传复用的字节数
+
+    private PartialDownload(String url, Path part, Path meta, long threshold) {
+        this.url = url;
+        this.part = part;
+        this.meta = meta;
+        this.threshold = threshold;
+    }
+
+    /**
+     * 为镜像中的目标文件打开续传记录；已有的 .part 属于其他URL或元数据损坏时丢弃
+     *
+     * @param target 镜像中的目标文件
+     * @param url 资源URL
+     * @param threshold 响应体达到该字节数才流式写入 .part
+     */
+    public static PartialDownload forTarget(Path target, String url, long threshold) {
+        Path dir = target.toAbsolutePath().getParent();
+        String name = "." + target.getFileName();
+        PartialDownload download = new PartialDownload(url, dir.resolve(name + PART_SUFFIX), dir.resolve(name + META_SUFFIX),
+                threshold);
+        download.loadMeta();
+        return download;
+    }
+
+    private void loadMeta() {
+        if (!Files.isRegularFile(meta)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(meta)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            if (url.equals(properties.getProperty("url")) && properties.getProperty("validator") != null) {
+                validator = properties.getProperty("validator");
+                totalLength = Long.parseLong(properties.getProperty("totalLength", "-1"));
+                digest = properties.getProperty("digest");
+                return;
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("读取续传记录失败: {} ({})", meta, e.getMessage());
+        }
+        discard();
+    }
+
+    /**
+     * 已下载的字节数
+     */
+    public long getOffset() {
+        try {
+            return validator != null && Files.isRegularFile(part) ? Files.size(part) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 目标文件的续传记录（.part 和元数据）在磁盘上占用的字节数，计入镜像用量
+     *
+     * @param target 镜像中的目标文件
+     */
+    public static long footprint(Path target) {
+        Path dir = target.toAbsolutePath().getParent();
+        String name = "." + target.getFileName();
+        return sizeOf(dir.resolve(name + PART_SUFFIX)) + sizeOf(dir.resolve(name + META_SUFFIX));
+    }
+
+    /**
+     * 当前 .part 和元数据占用的字节数
+     */
+    public long footprint() {
+        return sizeOf(part) + sizeOf(meta);
+    }
+
+    public boolean canResume() {
+        long offset = getOffset();
+        return offset > 0 && (totalLength < 0 || offset < totalLength);
+    }
+
+    public long getResumedBytes() {
+        return resumedBytes;
+    }
+
+    /**
+     * 续传请求头
+     */
+    public Map<String, String> resumeHeaders() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Range", "bytes=" + getOffset() + "-");
+        headers.put("If-Range", validator);
+        headers.put("Accept-Encoding", "identity");
+        return headers;
+    }
+
+    /**
+     * 接收响应体：需要续传处理的响应写入 .part 并返回完整内容
+     *
+     * @param response HTTP响应
+     * @return 完整内容；响应较小或不适合续传时返回null，由调用方按普通方式读取
+     * @throws IOException 传输中断（.part 保留，可续传）或校验失败（.part 已丢弃）
+     */
+    byte[] receive(HttpResponse response) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        boolean decompressed = entity instanceof DecompressingEntity;
+        if (status == 206) {
+            long offset = getOffset();
+            Matcher range = CONTENT_RANGE.matcher(headerValue(response, "Content-Range"));
+            if (decompressed || !range.find() || Long.parseLong(range.group(1)) != offset
+                    || (totalLength >= 0 && Long.parseLong(range.group(3)) != totalLength)) {
+                discard();
+                throw new IOException("续传响应与本地记录不一致: " + url);
+            }
+            totalLength = Long.parseLong(range.group(3));
+            if (digest == null) {
+                digest = parseDigest(response);
+            }
+            resumedBytes = offset;
+            write(entity, true);
+        } else if (status == 200) {
+            String newValidator = strongValidator(response);
+            if (decompressed || entity.getContentLength() < threshold || newValidator == null) {
+                // 服务器忽略了Range或内容已更换，旧的 .part 不再有用
+                discard();
+                return null;
+            }
+            validator = newValidator;
+            totalLength = entity.getContentLength();
+            digest = parseDigest(response);
+            resumedBytes = 0;
+            saveMeta();
+            write(entity, false);
+        } else {
+            if (status == 416) {
+                discard();
+            }
+            return null;
+        }
+
+        long size = Files.size(part);
+        if (size != totalLength) {
+            throw new IOException("下载未完成: " + url + " (" + size + "/" + totalLength + " 字节)");
+        }
+        if (digest != null && !digest.equals(sha256Base64(part))) {
+            discard();
+            throw new IOException("下载内容摘要不符: " + url);
+        }
+        return Files.readAllBytes(part);
+    }
+
+    /**
+     * 删除 .part 和元数据（下载完成写入镜像后，或记录失效时）
+     */
+    public void discard() {
+        try {
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(meta);
+        } catch (IOException e) {
+            log.debug("删除续传文件失败: {} ({})", part, e.getMessage());
+        }
+        validator = null;
+        totalLength = -1;
+        digest = null;
+    }
+
+    private void write(HttpEntity entity, boolean append) throws IOException {
+        Files.createDirectories(part.getParent());
+        try (InputStream in = entity.getContent();
+                OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            in.transferTo(out);
+        }
+    }
+
+    private void saveMeta() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("validator", validator);
+        properties.setProperty("totalLength", Long.toString(totalLength));
+        if (digest != null) {
+            properties.setProperty("digest", digest);
+        }
+        Files.createDirectories(meta.getParent());
+        Path temp = Files.createTempFile(meta.getParent(), ".partmeta", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, meta, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.isRegularFile(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String strongValidator(HttpResponse response) {
+        String etag = headerValue(response, "ETag");
+        if (!etag.isEmpty() && !etag.startsWith("W/")) {
+            return etag;
+        }
+        String lastModified = headerValue(response, "Last-Modified");
+        return lastModified.isEmpty() ? null : lastModified;
+    }
+
+    private static String parseDigest(HttpResponse response) {
+        Matcher repr = REPR_DIGEST.matcher(headerValue(response, "Repr-Digest"));
+        if (repr.find()) {
+            return repr.group(1);
+        }
+        Matcher legacy = LEGACY_DIGEST.matcher(headerValue(response, "Digest"));
+        return legacy.find() ? legacy.group(1) : null;
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null || header.getValue() == null ? "" : header.getValue().trim();
+    }
+
+    private static String sha256Base64(Path file) throws IOException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), md)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return Base64.getEncoder().encodeToString(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
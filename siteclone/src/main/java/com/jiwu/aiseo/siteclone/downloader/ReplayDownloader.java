@@ -0,0 +1,390 @@
+package com.jiwu.aiseo.siteclone.downloader;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import lombok.extern.slf4j.Slf4j;
+import us.codecraft.webmagic.Page;
+import us.codecraft.webmagic.Request;
+import us.codecraft.webmagic.Site;
+import us.codecraft.webmagic.Task;
+
+/**
+ * 离线回放下载器 - 从 WARC 归档（{@link com.jiwu.aiseo.siteclone.pipeline.WarcWriter} 的输出）回放抓取，不访问网络
+ *
+ * 录制：开启 output.warc-enabled 并关闭共享HTTP缓存（缓存命中不会写入WARC）克隆一次真实站点。
+ * 回放：可以直接替换 Spider 和 {@link com.jiwu.aiseo.siteclone.utils.WebResourceDownloader} 使用的下载器。
+ * 按 CDX 索引定位记录，每个URL使用最近一次录制的完整响应（304 记录只在没有完整响应时使用）；
+ * 条件请求按录制的 ETag / Last-Modified 比较后回放 304，Range 请求按完整响应回放。
+ * 每次请求按网络模型等待（固定延迟 + 按URL确定的抖动 + 按带宽计算的传输时间），结果可以重复。
+ */
+@Slf4j
+public class ReplayDownloader extends CustomHttpClientDownloader implements Closeable {
+
+    private final Path archiveDir;
+    private final NetworkModel networkModel;
+    private final Map<String, Capture> captures = new HashMap<>(); // URL -> 回放使用的记录，加载后只读
+    private final Map<String, FileChannel> files = new ConcurrentHashMap<>();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+
+    /**
+     * @param archiveDir WARC 文件和 CDX 索引所在目录
+     * @param networkModel 网络模型，为null时不模拟延迟
+     */
+    public ReplayDownloader(Path archiveDir, NetworkModel networkModel) throws IOException {
+        this.archiveDir = archiveDir.toAbsolutePath().normalize();
+        this.networkModel = networkModel == null ? NetworkModel.NONE : networkModel;
+        loadIndex();
+    }
+
+    private void loadIndex() throws IOException {
+        List<Path> indexes;
+        try (Stream<Path> list = Files.list(archiveDir)) {
+            indexes = list.filter(path -> path.getFileName().toString().endsWith(".cdx")).sorted().toList();
+        }
+        for (Path index : indexes) {
+            for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                // CDX N b a m s k r M S V g
+                String[] fields = line.split(" ");
+                if (line.startsWith(" ") || fields.length != 11) {
+                    continue;
+                }
+                Capture capture = new Capture(fields[2], parseStatus(fields[4]), fields[10], Long.parseLong(fields[9]),
+                        Long.parseLong(fields[8]));
+                captures.merge(capture.url, capture, (existing, candidate) -> candidate.preferredOver(existing)
+                        ? candidate : existing);
+            }
+        }
+        if (captures.isEmpty()) {
+            throw new IOException("回放目录中没有可用的WARC索引: " + archiveDir);
+        }
+        log.info("加载回放归档: {} ({} 个URL)", archiveDir, captures.size());
+    }
+
+    @Override
+    public Page download(Request request, Task task) {
+        Site site = task.getSite();
+        String charset = request.getCharset() != null ? request.getCharset() : site == null ? null : site.getCharset();
+        try {
+            BasicHttpResponse response = replay(request);
+            long bytes = response.getEntity() == null ? 0 : response.getEntity().getContentLength();
+            networkModel.await(request.getUrl(), bytes);
+            return handleResponse(request, charset, response, task);
+        } catch (IOException e) {
+            log.warn("回放失败: {} ({})", request.getUrl(), e.getMessage());
+            return Page.ofFailure(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Page.ofFailure(request);
+        }
+    }
+
+    @Override
+    public ResourceProbe probe(String url, Site site) {
+        Capture capture = lookup(url);
+        if (capture == null) {
+            return new ResourceProbe(404, null, -1);
+        }
+        try {
+            Recorded recorded = read(capture);
+            String type = recorded.header("Content-Type");
+            if (type != null) {
+                int semicolon = type.indexOf(';');
+                type = (semicolon >= 0 ? type.substring(0, semicolon) : type).trim().toLowerCase();
+            }
+            return new ResourceProbe(recorded.status, type, recorded.payload.length);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按请求构造回放的响应
+     */
+    private BasicHttpResponse replay(Request request) throws IOException {
+        Capture capture = lookup(request.getUrl());
+        if (capture == null) {
+            missed.incrementAndGet();
+            BasicHttpResponse notFound = new BasicHttpResponse(HttpVersion.HTTP_1_1, 404, "Not Found");
+            notFound.setEntity(new ByteArrayEntity(new byte[0]));
+            return notFound;
+        }
+        replayed.incrementAndGet();
+        Recorded recorded = read(capture);
+        Map<String, String> headers = request.getHeaders();
+        if (recorded.status == 200 && headers != null && notModified(recorded, headers)) {
+            BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 304, "Not Modified");
+            for (String name : new String[] {"ETag", "Last-Modified", "Cache-Control", "Expires", "Date"}) {
+                String value = recorded.header(name);
+                if (value != null) {
+                    response.addHeader(name, value);
+                }
+            }
+            return response;
+        }
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, recorded.status, recorded.reason);
+        for (String[] header : recorded.headers) {
+            if (!header[0].equalsIgnoreCase("Content-Length") && !header[0].equalsIgnoreCase("Transfer-Encoding")) {
+                response.addHeader(header[0], header[1]);
+            }
+        }
+        if (recorded.status != 304) {
+            ByteArrayEntity entity = new ByteArrayEntity(recorded.payload);
+            String contentType = recorded.header("Content-Type");
+            if (contentType != null) {
+                entity.setContentType(contentType);
+            }
+            response.setEntity(entity);
+        }
+        return response;
+    }
+
+    private Capture lookup(String url) {
+        return url == null ? null : captures.get(url.replace(" ", "%20")); // CDX 中的空格已转义
+    }
+
+    private static boolean notModified(Recorded recorded, Map<String, String> headers) {
+        String ifNoneMatch = headerValue(headers, "If-None-Match");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.equals(recorded.header("ETag"));
+        }
+        String ifModifiedSince = headerValue(headers, "If-Modified-Since");
+        return ifModifiedSince != null && ifModifiedSince.equals(recorded.header("Last-Modified"));
+    }
+
+    private static String headerValue(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取并解析一条 gzip 压缩的 WARC response 记录
+     */
+    private Recorded read(Capture capture) throws IOException {
+        FileChannel channel = files.get(capture.file);
+        if (channel == null) {
+            FileChannel opened = FileChannel.open(archiveDir.resolve(capture.file), StandardOpenOption.READ);
+            channel = files.putIfAbsent(capture.file, opened);
+            if (channel == null) {
+                channel = opened;
+            } else {
+                opened.close();
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) capture.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, capture.offset + buffer.position()) < 0) {
+                throw new IOException("WARC记录不完整: " + capture.file + "@" + capture.offset);
+            }
+        }
+        byte[] record;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(buffer.array()))) {
+            record = in.readAllBytes();
+        }
+        int warcHeadEnd = indexOf(record, 0);
+        if (warcHeadEnd < 0) {
+            throw new IOException("WARC记录格式错误: " + capture.file + "@" + capture.offset);
+        }
+        long blockLength = -1;
+        for (String line : new String(record, 0, warcHeadEnd, StandardCharsets.UTF_8).split("\r\n")) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                blockLength = Long.parseLong(line.substring(15).trim());
+            }
+        }
+        int blockStart = warcHeadEnd + 4;
+        int blockEnd = blockLength < 0 ? record.length : (int) Math.min(record.length, blockStart + blockLength);
+        int httpHeadEnd = indexOf(record, blockStart);
+        if (httpHeadEnd < 0 || httpHeadEnd > blockEnd) {
+            throw new IOException("WARC记录中没有HTTP响应头: " + capture.file + "@" + capture.offset);
+        }
+        String[] lines = new String(record, blockStart, httpHeadEnd - blockStart, StandardCharsets.ISO_8859_1)
+                .split("\r\n");
+        String[] statusLine = lines[0].split(" ", 3);
+        List<String[]> headers = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.add(new String[] {lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim()});
+            }
+        }
+        byte[] payload = new byte[blockEnd - httpHeadEnd - 4];
+        System.arraycopy(record, httpHeadEnd + 4, payload, 0, payload.length);
+        return new Recorded(Integer.parseInt(statusLine[1]), statusLine.length > 2 ? statusLine[2] : "", headers, payload);
+    }
+
+    private static int indexOf(byte[] data, int from) {
+        for (int i = from; i + 3 < data.length; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseStatus(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** 回放命中的请求数 */
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /** 归档中没有记录、按 404 回放的请求数 */
+    public long getMissed() {
+        return missed.get();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        for (FileChannel channel : files.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("关闭WARC文件失败: {}", e.getMessage());
+            }
+        }
+        files.clear();
+    }
+
+    /**
+     * CDX 中的一条记录位置
+     */
+    private static final class Capture {
+        private final String url;
+        private final int status;
+        private final String file;
+        private final long offset;
+        private final long length;
+
+        private Capture(String url, int status, String file, long offset, long length) {
+            this.url = url;
+            this.status = status;
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * 完整响应优先于 304；同类记录取较晚录制的（文件名含录制时间和序号）
+         */
+        private boolean preferredOver(Capture other) {
+            if ((status == 304) != (other.status == 304)) {
+                return other.status == 304;
+            }
+            int byFile = file.compareTo(other.file);
+            return byFile != 0 ? byFile > 0 : offset > other.offset;
+        }
+    }
+
+    /**
+     * 解析后的响应记录
+     */
+    private static final class Recorded {
+        private final int status;
+        private final String reason;
+        private final List<String[]> headers;
+        private final byte[] payload;
+
+        private Recorded(int status, String reason, List<String[]> headers, byte[] payload) {
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.payload = payload;
+        }
+
+        private String header(String name) {
+            for (String[] header : headers) {
+                if (header[0].equalsIgnoreCase(name)) {
+                    return header[1];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 网络模型：每个请求等待 延迟 + 抖动 + 字节数 / 带宽
+     *
+     * 抖动由URL和随机种子确定，与线程调度无关，同一归档、同一模型的两次回放完全一致。
+     */
+    public static final class NetworkModel {
+        public static final NetworkModel NONE = new NetworkModel(0, 0, 0, 0);
+
+        private final long latencyMillis;
+        private final long jitterMillis;
+        private final long bytesPerSecond;
+        private final long seed;
+
+        /**
+         * @param latencyMillis 每个请求的固定延迟 (毫秒)
+         * @param jitterMillis 附加抖动的上限 (毫秒)
+         * @param bytesPerSecond 带宽 (字节/秒)，0 表示不限制
+         * @param seed 抖动的随机种子
+         */
+        public NetworkModel(long latencyMillis, long jitterMillis, long bytesPerSecond, long seed) {
+            this.latencyMillis = Math.max(0, latencyMillis);
+            this.jitterMillis = Math.max(0, jitterMillis);
+            this.bytesPerSecond = Math.max(0, bytesPerSecond);
+            this.seed = seed;
+        }
+
+        /**
+         * 请求的模拟耗时 (毫秒)
+         */
+        public long delayMillis(String url, long bytes) {
+            long delay = latencyMillis;
+            if (jitterMillis > 0) {
+                long mixed = (url.hashCode() * 0x9E3779B97F4A7C15L) ^ seed;
+                mixed ^= mixed >>> 33;
+                delay += Math.floorMod(mixed, jitterMillis + 1);
+            }
+            if (bytesPerSecond > 0 && bytes > 0) {
+                delay += bytes * 1000 / bytesPerSecond;
+            }
+            return delay;
+        }
+
+        void await(String url, long bytes) throws InterruptedException {
+            long delay = delayMillis(url, bytes);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        }
+
+        public long getLatencyMillis() { return latencyMillis; }
+        public long getJitterMillis() { return jitterMillis; }
+        public long getBytesPerSecond() { return bytesPerSecond; }
+        public long getSeed() { return seed; }
+    }
+}
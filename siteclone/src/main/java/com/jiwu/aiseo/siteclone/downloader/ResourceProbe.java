@@ -0,0 +1,27 @@
+package com.jiwu.aiseo.siteclone.downloader;
+
+/**
+ * 资源探测结果 - HEAD 或 Range: bytes=0-0 请求得到的状态码、内容类型和总大小
+ */
+public final class ResourceProbe {
+
+    private final int statusCode;
+    private final String contentType;
+    private final long contentLength;
+
+    public ResourceProbe(int statusCode, String contentType, long contentLength) {
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+    }
+
+    public int getStatusCode() { return statusCode; }
+    /** 不含参数的小写内容类型，未知时为 null */
+    public String getContentType() { return contentType; }
+    /** 资源总字节数，未知时为 -1 */
+    public long getContentLength() { return contentLength; }
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+}
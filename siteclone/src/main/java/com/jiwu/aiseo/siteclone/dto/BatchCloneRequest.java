@@ -0,0 +1,14 @@
+package com.jiwu.aiseo.siteclone.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量克隆请求：每一项是一个独立的克隆请求，带各自的抓取选项和权重
+ */
+@Data
+public class BatchCloneRequest {
+    private List<CloneRequest> items = new ArrayList<>();
+}
@@ -0,0 +1,27 @@
+package com.jiwu.aiseo.siteclone.dto;
+
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批次的汇总进度和各任务的状态
+ */
+@Data
+public class BatchCloneResponse {
+    private String batchId;
+    private LocalDateTime createdAt;
+    private int total; // 批次中的任务数（不含提交时校验失败的项）
+    private int finished; // 已结束（完成、失败或取消）的任务数
+    private double progress; // 已结束的任务占比
+    private Map<CloneTaskStatus, Integer> statusCounts; // 按状态统计的任务数
+    private int pagesCrawled;
+    private int filesDownloaded;
+    private long totalBytesDownloaded;
+    private long pagesPending; // 运行中任务待抓取的页面数之和
+    private double pagesPerSecond; // 运行中任务的页面速率之和
+    private List<CloneResponse> tasks; // 各任务的状态，按提交顺序；提交时校验失败的项只出现在提交的响应中（FAILED，未登记）
+}
@@ -1,11 +1,25 @@
 package com.jiwu.aiseo.siteclone.dto;
 
+import com.jiwu.aiseo.siteclone.model.SkippedResourceMode;
+import com.jiwu.aiseo.siteclone.model.SrcsetPolicy;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class CloneRequest {
     private String url;
     private int threadCount = 5;
     private int retryTimes = 3;
     private int sleepTime = 1000;
+    private double weight = 1.0; // 分享全局并发请求数的权重
+    private SrcsetPolicy srcsetPolicy = SrcsetPolicy.ORIGINAL;
+    private int srcsetTargetWidth = 1280;
+    private List<String> excludedExtensions;
+    private List<String> excludedContentTypes;
+    private long maxResourceSize = 0L;
+    private boolean conditionalReclone = false;
+    private int refreshBudget = 0;
+    private SkippedResourceMode skippedResourceMode = SkippedResourceMode.ABSOLUTE_URL;
+    private boolean distributed = false; // 由协作目录中的多个节点共同抓取（需启用 siteclone.cluster）
 }
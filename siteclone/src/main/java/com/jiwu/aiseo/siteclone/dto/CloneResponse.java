@@ -1,19 +1,57 @@
 package com.jiwu.aiseo.siteclone.dto;
 
 import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+import com.jiwu.aiseo.siteclone.model.ResourceSkipReason;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Data
 public class CloneResponse {
     private String taskId;
+    private String batchId; // 所属批次，单独提交的任务为null
+    private String clusterJobId; // 多节点协作的任务ID，单机抓取的任务为null
     private String url;
     private String outputDir;
     private CloneTaskStatus status;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
     private String errorMessage;
     private int pagesCrawled;
     private int filesDownloaded;
+    private int requestsFailed; // 下载失败的请求数（网络错误或错误状态码）
+    private int resourcesSkipped; // 按过滤规则跳过的资源总数
+    private double elapsedSeconds; // 开始执行到完成（运行中为当前时间）的秒数
+    private double pagesPerSecond;
+    private double megabytesPerSecond;
+    private long pagesPending; // 运行中任务待抓取的页面数
+    private Long etaSeconds; // 按当前页面速率估算的剩余秒数，无法估算时为null
+    private int pagesUnchanged;
+    private int resourcesUnchanged;
+    private int pagesChanged;
+    private int refreshPlanned;
+    private int refreshFetches; // 刷新实际抓取的页面数（含304）
+    private double expectedChanges;
+    private double expectedFreshness;
+    private double changeYield; // 检测到变化的页面占抓取页面的比例
+    private int srcsetCandidatesSkipped;
+    private long srcsetBytesSaved;
+    private long totalBytesDownloaded;
+    private int dedupFiles;
+    private long dedupBytesSaved;
+    private double dedupRatio; // 去重节省的字节占资源总字节的比例
+    private int cacheHits;
+    private int cacheMisses;
+    private long cacheBytesSaved;
+    private double cacheHitRate;
+    private int downloadsCoalesced;
+    private int downloadsResumed;
+    private long resumedBytes;
+    private long bytesStored; // 写入镜像目录的净字节数
+    private String snapshotId;
+    private Map<ResourceSkipReason, Integer> skippedResources;
+    private Map<ResourceSkipReason, Long> skippedResourceBytes;
 }
@@ -0,0 +1,347 @@
+package com.jiwu.aiseo.siteclone.frontier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jiwu.aiseo.siteclone.model.CloneOptions;
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+import com.jiwu.aiseo.siteclone.storage.MirrorManifest;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 多个节点协作抓取的任务在协作目录中的状态
+ *
+ * 发起节点创建任务描述并把自己的输出写入本地镜像；其他节点扫描到后加入，输出写入各自的分片目录，
+ * 抓取结束后写入分片完成标记。发起节点等所有分片完成后把分片合并到镜像，生成合并后的清单。
+ *
+ * 目录结构（{@code <协作目录>/<任务ID>/}）：
+ * <pre>
+ * job                 任务描述 (JSON)
+ * frontier/           共享抓取边界，见 {@link SharedDirectoryFrontier}
+ * shards/&lt;分片&gt;/       其他节点写入的镜像分片
+ * done/&lt;分片&gt;          分片已经写完
+ * cancelled           发起节点取消了任务
+ * manifest.tsv        合并后的镜像清单
+ * </pre>
+ */
+@Slf4j
+public final class ClusterJob {
+
+    public static final String MANIFEST_FILE = "manifest.tsv";
+    private static final String DESCRIPTOR_FILE = "job";
+    private static final String FRONTIER_DIR = "frontier";
+    private static final String SHARDS_DIR = "shards";
+    private static final String DONE_DIR = "done";
+    private static final String CANCELLED_FILE = "cancelled";
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final Path dir;
+    private final Descriptor descriptor;
+
+    private ClusterJob(Path dir, Descriptor descriptor) {
+        this.dir = dir;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * 在协作目录中创建任务
+     *
+     * @param root 协作目录
+     * @param owner 发起节点ID
+     * @param ownerTaskId 发起节点上的任务ID
+     * @param partitions URL分区数
+     */
+    public static ClusterJob create(Path root, String url, String owner, String ownerTaskId, int partitions,
+            CloneOptions options) throws IOException {
+        Descriptor descriptor = new Descriptor();
+        descriptor.setId(UUID.randomUUID().toString());
+        descriptor.setUrl(url);
+        descriptor.setOwner(owner);
+        descriptor.setOwnerTaskId(ownerTaskId);
+        descriptor.setPartitions(partitions);
+        descriptor.setOptions(options);
+        descriptor.setCreatedAt(LocalDateTime.now());
+        Path dir = root.resolve(descriptor.getId());
+        Files.createDirectories(dir.resolve(FRONTIER_DIR));
+        Files.createDirectories(dir.resolve(SHARDS_DIR));
+        Files.createDirectories(dir.resolve(DONE_DIR));
+        // 描述最后写入，其他节点看到描述时目录已经完整
+        Path temp = MirrorFiles.createTempFile(dir, "." + DESCRIPTOR_FILE, ".tmp");
+        try {
+            Files.write(temp, MAPPER.writeValueAsBytes(descriptor));
+            try {
+                Files.move(temp, dir.resolve(DESCRIPTOR_FILE), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, dir.resolve(DESCRIPTOR_FILE));
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return new ClusterJob(dir, descriptor);
+    }
+
+    /**
+     * 读取任务
+     *
+     * @return 任务；不存在或描述损坏时返回null
+     */
+    public static ClusterJob load(Path root, String id) {
+        Path dir = root.resolve(id);
+        Path file = dir.resolve(DESCRIPTOR_FILE);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return new ClusterJob(dir, MAPPER.readValue(file.toFile(), Descriptor.class));
+        } catch (IOException e) {
+            log.warn("读取协作任务描述失败: {} ({})", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 协作目录中的全部任务
+     */
+    public static List<ClusterJob> list(Path root) throws IOException {
+        List<ClusterJob> jobs = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return jobs;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                ClusterJob job = load(root, dir.getFileName().toString());
+                if (job != null) {
+                    jobs.add(job);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    public String getId() {
+        return descriptor.getId();
+    }
+
+    public Descriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * 共享抓取边界目录
+     */
+    public Path frontierDir() {
+        return dir.resolve(FRONTIER_DIR);
+    }
+
+    /**
+     * 节点的镜像分片目录
+     */
+    public Path shardDir(String shard) {
+        return dir.resolve(SHARDS_DIR).resolve(shard);
+    }
+
+    /**
+     * 是否已经没有待抓取的URL
+     */
+    public boolean isFinished() {
+        return SharedDirectoryFrontier.isFinished(frontierDir());
+    }
+
+    public void markCancelled() throws IOException {
+        Files.writeString(dir.resolve(CANCELLED_FILE), LocalDateTime.now().toString(), StandardCharsets.UTF_8);
+    }
+
+    public boolean isCancelled() {
+        return Files.exists(dir.resolve(CANCELLED_FILE));
+    }
+
+    /**
+     * 分片已经写完（抓取结束或节点退出），发起节点不再等待
+     */
+    public void markShardDone(String shard) throws IOException {
+        Files.createDirectories(dir.resolve(DONE_DIR));
+        Files.writeString(dir.resolve(DONE_DIR).resolve(shard), LocalDateTime.now().toString(), StandardCharsets.UTF_8);
+    }
+
+    public boolean isShardDone(String shard) {
+        return Files.exists(dir.resolve(DONE_DIR).resolve(shard));
+    }
+
+    /**
+     * 还没有写完的分片
+     */
+    public List<String> pendingShards() throws IOException {
+        List<String> pending = new ArrayList<>();
+        Path shards = dir.resolve(SHARDS_DIR);
+        if (!Files.isDirectory(shards)) {
+            return pending;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(shards, Files::isDirectory)) {
+            for (Path shard : dirs) {
+                String name = shard.getFileName().toString();
+                if (!isShardDone(name)) {
+                    pending.add(name);
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 把各分片合并到镜像，生成整个镜像的清单（保存在任务目录和镜像状态目录）
+     *
+     * 同一路径在多个分片中都有（如多个节点都下载了的公共资源）时保留最后修改的一份；
+     * 分片的内部状态（校验器等）不合并。合并完成后删除分片和抓取边界，保留任务描述和清单。
+     *
+     * @param mirror 发起节点的镜像目录
+     */
+    public MergeInfo mergeInto(Path mirror) throws IOException {
+        int[] files = new int[1];
+        long[] bytesAdded = new long[1];
+        Path shards = dir.resolve(SHARDS_DIR);
+        if (Files.isDirectory(shards)) {
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(shards, Files::isDirectory)) {
+                for (Path shard : dirs) {
+                    mergeShard(shard.toAbsolutePath().normalize(), mirror, files, bytesAdded);
+                }
+            }
+        }
+        MirrorManifest manifest = MirrorManifest.scan(mirror);
+        manifest.save(dir.resolve(MANIFEST_FILE));
+        Path mirrorManifest = mirror.resolve(MirrorFiles.STATE_DIR).resolve(MANIFEST_FILE);
+        long previousManifest = MirrorFiles.sizeOf(mirrorManifest);
+        manifest.save(mirrorManifest);
+        bytesAdded[0] += MirrorFiles.sizeOf(mirrorManifest) - previousManifest;
+        deleteTree(shards);
+        deleteTree(frontierDir().resolve("partitions"));
+        log.info("合并协作任务的分片: {} ({} 个文件，镜像共 {} 个文件)", getId(), files[0], manifest.size());
+        return new MergeInfo(files[0], bytesAdded[0], manifest.size(), manifest.getTotalBytes());
+    }
+
+    private static void mergeShard(Path shard, Path mirror, int[] files, long[] bytesAdded) throws IOException {
+        Files.walkFileTree(shard, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.getFileName() != null && dir.getFileName().toString().equals(MirrorFiles.STATE_DIR) && !dir.equals(shard)
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile() || MirrorFiles.isTransient(file)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path target = mirror.resolve(shard.relativize(file).toString());
+                if (Files.exists(target)
+                        && Files.getLastModifiedTime(target).compareTo(attrs.lastModifiedTime()) >= 0) {
+                    return FileVisitResult.CONTINUE;
+                }
+                long previous = MirrorFiles.sizeOf(target);
+                Files.createDirectories(target.getParent());
+                Path temp = MirrorFiles.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+                try {
+                    Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                    try {
+                        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                files[0]++;
+                bytesAdded[0] += attrs.size() - previous;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 删除任务目录
+     */
+    public void delete() {
+        deleteTree(dir);
+    }
+
+    private static void deleteTree(Path root) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            log.warn("删除协作任务目录失败: {} ({})", root, e.getMessage());
+        }
+    }
+
+    /**
+     * 任务描述，各节点按此抓取
+     */
+    @Data
+    public static class Descriptor {
+        private String id;
+        private String url;
+        private String owner; // 发起节点ID，负责合并分片
+        private String ownerTaskId; // 发起节点上的任务ID
+        private int partitions; // URL分区数
+        private CloneOptions options;
+        private LocalDateTime createdAt;
+    }
+
+    /**
+     * 合并分片的结果
+     */
+    public static final class MergeInfo {
+        private final int files;
+        private final long bytesAdded;
+        private final int mirrorFiles;
+        private final long mirrorBytes;
+
+        public MergeInfo(int files, long bytesAdded, int mirrorFiles, long mirrorBytes) {
+            this.files = files;
+            this.bytesAdded = bytesAdded;
+            this.mirrorFiles = mirrorFiles;
+            this.mirrorBytes = mirrorBytes;
+        }
+
+        /** 从分片复制到镜像的文件数 */
+        public int getFiles() { return files; }
+        /** 镜像增加的字节数（覆盖已有文件时按大小变化计，包括镜像状态目录中的清单） */
+        public long getBytesAdded() { return bytesAdded; }
+        /** 合并后镜像的文件数 */
+        public int getMirrorFiles() { return mirrorFiles; }
+        /** 合并后镜像的字节数 */
+        public long getMirrorBytes() { return mirrorBytes; }
+    }
+}
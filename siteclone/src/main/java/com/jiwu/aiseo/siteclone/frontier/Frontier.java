@@ -0,0 +1,56 @@
+package com.jiwu.aiseo.siteclone.frontier;
+
+import java.util.List;
+
+/**
+ * 抓取边界：一个任务的待抓取URL队列和URL去重
+ *
+ * Spider 通过 {@link FrontierScheduler} 使用：发现的URL经 {@link #offer} 去重后加入，抓取线程按 {@link #poll} 取出，
+ * 处理完（成功或失败）后 {@link #complete}。单机抓取使用内存中的 {@link LocalFrontier}；
+ * {@link SharedDirectoryFrontier} 让多个节点通过共享目录分担同一个任务，各节点只抓取分到自己的URL。
+ * 实现需要线程安全。
+ */
+public interface Frontier {
+
+    /**
+     * 加入发现的URL，已经见过的忽略
+     *
+     * @return 是否第一次见到
+     */
+    boolean offer(String url);
+
+    /**
+     * 取出本节点下一个待抓取的URL
+     *
+     * @return URL；本节点暂时没有待抓取的URL时返回null
+     */
+    String poll();
+
+    /**
+     * 取出的URL处理完成（包括下载失败）
+     */
+    void complete(String url);
+
+    /**
+     * 本节点待抓取的URL数
+     */
+    int size();
+
+    /**
+     * 本节点空闲（没有待抓取和进行中的URL）时等待新的URL
+     *
+     * @param timeoutMillis 最长等待时间 (毫秒)
+     * @return true 表示可能有新的URL，应重新 {@link #poll()}；false 表示整个任务已经没有待抓取的URL
+     */
+    boolean awaitWork(long timeoutMillis) throws InterruptedException;
+
+    /**
+     * 取出本节点剩余的全部待抓取URL（Spider 停止后保存抓取进度）
+     */
+    List<String> drain();
+
+    /**
+     * 本节点退出抓取，释放占用的资源
+     */
+    void close();
+}
@@ -0,0 +1,110 @@
+package com.jiwu.aiseo.siteclone.frontier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.jiwu.aiseo.siteclone.metrics.CrawlMetrics;
+
+import us.codecraft.webmagic.Request;
+import us.codecraft.webmagic.Spider;
+import us.codecraft.webmagic.SpiderListener;
+import us.codecraft.webmagic.Task;
+import us.codecraft.webmagic.scheduler.MonitorableScheduler;
+
+/**
+ * 基于 {@link Frontier} 的调度器，并记录请求在待抓取队列中的等待时间
+ *
+ * 抓取边界只保存URL，取出时由请求工厂重新创建请求（带条件请求头等）。
+ * 需要同时注册为 Spider 的监听器，请求处理完后通知抓取边界。
+ * 本节点空闲时不立即让 Spider 结束，而是等待抓取边界分来新的URL（其他节点还在抓取时），
+ * 直到抓取边界确认整个任务已经没有待抓取的URL或 Spider 被停止。
+ */
+public class FrontierScheduler implements MonitorableScheduler, SpiderListener {
+
+    private static final long IDLE_WAIT_MILLIS = 200; // 空闲时每次等待新URL的时间，期间检查 Spider 是否被停止
+
+    private final Frontier frontier;
+    private final Function<String, Request> requestFactory;
+    private final CrawlMetrics.TaskMetrics metrics;
+    private final Map<String, Long> enqueuedAt = new ConcurrentHashMap<>(); // 本节点加入的URL -> 入队时间 (纳秒)；分到其他节点的随调度器丢弃
+    private final AtomicInteger total = new AtomicInteger();
+
+    public FrontierScheduler(Frontier frontier, Function<String, Request> requestFactory, CrawlMetrics.TaskMetrics metrics) {
+        this.frontier = frontier;
+        this.requestFactory = requestFactory;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void push(Request request, Task task) {
+        long now = System.nanoTime();
+        if (frontier.offer(request.getUrl())) {
+            enqueuedAt.put(request.getUrl(), now);
+            total.incrementAndGet();
+        }
+    }
+
+    @Override
+    public Request poll(Task task) {
+        while (true) {
+            String url = frontier.poll();
+            if (url != null) {
+                Long queuedAt = enqueuedAt.remove(url);
+                if (queuedAt != null) {
+                    metrics.recordStage(CrawlMetrics.Stage.FRONTIER_WAIT, System.nanoTime() - queuedAt);
+                }
+                return requestFactory.apply(url);
+            }
+            // 还有请求在处理时由 Spider 等待它们发现新URL；本节点空闲时向抓取边界等待
+            Spider spider = (Spider) task;
+            if (spider.getThreadAlive() > 0 || spider.getStatus() != Spider.Status.Running) {
+                return null;
+            }
+            try {
+                if (!frontier.awaitWork(IDLE_WAIT_MILLIS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void onSuccess(Request request) {
+        frontier.complete(request.getUrl());
+    }
+
+    @Override
+    public void onError(Request request, Exception e) {
+        frontier.complete(request.getUrl());
+    }
+
+    @Override
+    public int getLeftRequestsCount(Task task) {
+        return frontier.size();
+    }
+
+    @Override
+    public int getTotalRequestsCount(Task task) {
+        return total.get();
+    }
+
+    /**
+     * 取出本节点剩余的全部请求（Spider 停止后保存待抓取队列），不记录等待时间
+     */
+    public List<Request> drain() {
+        List<String> urls = frontier.drain();
+        List<Request> requests = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            requests.add(requestFactory.apply(url));
+        }
+        enqueuedAt.clear();
+        return requests;
+    }
+}
@@ -0,0 +1,54 @@
+package com.jiwu.aiseo.siteclone.frontier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 单机抓取边界：内存中的先进先出队列和已见URL集合，与 WebMagic 默认的队列调度器行为相同
+ */
+public class LocalFrontier implements Frontier {
+
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+
+    @Override
+    public boolean offer(String url) {
+        return seen.add(url) && pending.add(url);
+    }
+
+    @Override
+    public String poll() {
+        return pending.poll();
+    }
+
+    @Override
+    public void complete(String url) {
+        // 只有本节点的抓取线程会加入URL，不需要记录
+    }
+
+    @Override
+    public int size() {
+        return pending.size();
+    }
+
+    @Override
+    public boolean awaitWork(long timeoutMillis) {
+        // 本节点空闲时不会再有新的URL
+        return false;
+    }
+
+    @Override
+    public List<String> drain() {
+        List<String> urls = new ArrayList<>(pending.size());
+        pending.drainTo(urls);
+        return urls;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,753 @@
+package com.jiwu.aiseo.siteclone.frontier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 多个节点通过共享目录（NFS 等，单机测试时为本地目录）分担同一个任务的抓取边界
+ *
+ * URL按哈希分到固定数量的分区。发现URL的节点把它追加到分区目录中自己的URL日志（每个文件只有一个写入者）；
+ * 持有分区租约的节点读取该分区所有节点的URL日志，去重后放入本地队列抓取，处理完的URL追加到自己的完成日志。
+ * 任务只抓取一个站点，按主机分区会让所有URL落在同一个分区，这里按整个URL的哈希分区。
+ *
+ * 协调线程定期：续租持有的分区，按存活节点数计算每个节点应持有的分区数（多出的释放，不足的认领空闲或过期的分区），
+ * 读取持有分区的新URL，并写入心跳（是否空闲、各持有分区已读取的URL日志字节数）。
+ * 认领分区时重新读取它的全部日志，完成日志中没有的URL（包括前一个持有者进行中的）重新抓取。
+ * 租约用于分工，不保证严格互斥：接管过期租约时与其他节点竞争，或持有者暂停超过租期，都可能让同一URL被抓取两次，
+ * 不影响结果。租约和心跳按各节点的时钟比较，节点之间需要同步时钟。
+ *
+ * 本节点空闲时检查整个任务是否结束：已经有URL，所有存活节点的心跳都是空闲，且每个有URL的分区都有持有者，
+ * 持有者的心跳中已读取的字节数等于该分区URL日志的当前大小。先读心跳再读日志大小：
+ * 只有处理中的节点会追加URL，之后追加的会让日志大小超过心跳中的记录，不会误判为结束。
+ *
+ * 目录结构：
+ * <pre>
+ * partitions/&lt;分区&gt;/lease               租约：持有节点和到期时间
+ * partitions/&lt;分区&gt;/urls-&lt;节点&gt;.log      节点发现的URL，每行一个
+ * partitions/&lt;分区&gt;/done-&lt;节点&gt;.log      节点处理完的URL
+ * nodes/&lt;节点&gt;                           心跳
+ * finished                               整个任务已经没有待抓取的URL
+ * </pre>
+ */
+@Slf4j
+public class SharedDirectoryFrontier implements Frontier {
+
+    public static final String FINISHED_FILE = "finished";
+    private static final String PARTITIONS_DIR = "partitions";
+    private static final String NODES_DIR = "nodes";
+    private static final String LEASE_FILE = "lease";
+    private static final String URLS_PREFIX = "urls-";
+    private static final String DONE_PREFIX = "done-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path dir;
+    private final String nodeId;
+    private final int partitions;
+    private final long leaseMillis;
+    private final long coordinationInterval;
+    private final Set<String> offered = ConcurrentHashMap.newKeySet(); // 本节点已写入URL日志的URL，不重复写入
+    private final Map<Integer, Writer> urlLogs = new HashMap<>(); // 分区 -> 本节点的URL日志，在自身的锁内写入
+    private final Map<Integer, Writer> doneLogs = new HashMap<>(); // 分区 -> 本节点的完成日志，在自身的锁内写入
+    private final TreeMap<Integer, Partition> owned = new TreeMap<>(); // 本节点持有租约的分区，在 this 锁内读写
+    private final ScheduledExecutorService coordinator;
+    private int inFlight; // 已取出、尚未处理完的URL数，在 this 锁内读写
+    private int nextPartition; // 取出URL时轮转的起始分区，在 this 锁内读写
+    private volatile boolean finished;
+
+    /**
+     * @param dir 任务的共享抓取边界目录，各节点相同
+     * @param nodeId 本节点ID，各节点不同，只能包含字母、数字、'.'、'_' 和 '-'
+     * @param partitions 分区数，各节点相同
+     * @param leaseMillis 租约和心跳的有效期 (毫秒)
+     * @param coordinationInterval 协调间隔 (毫秒)，应远小于有效期
+     */
+    private SharedDirectoryFrontier(Path dir, String nodeId, int partitions, long leaseMillis, long coordinationInterval) {
+        this.dir = dir;
+        this.nodeId = nodeId;
+        this.partitions = Math.max(1, partitions);
+        this.leaseMillis = leaseMillis;
+        this.coordinationInterval = Math.max(1, coordinationInterval);
+        this.coordinator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frontier-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 加入任务的共享抓取边界，开始协调
+     */
+    public static SharedDirectoryFrontier open(Path dir, String nodeId, int partitions, long leaseMillis,
+            long coordinationInterval) throws IOException {
+        if (!nodeId.matches("[A-Za-z0-9._-]+")) {
+            throw new IllegalArgumentException("Invalid node id: " + nodeId);
+        }
+        Files.createDirectories(dir.resolve(PARTITIONS_DIR));
+        Files.createDirectories(dir.resolve(NODES_DIR));
+        SharedDirectoryFrontier frontier = new SharedDirectoryFrontier(dir, nodeId, partitions, leaseMillis,
+                coordinationInterval);
+        frontier.coordinator.scheduleWithFixedDelay(frontier::coordinate, 0, frontier.coordinationInterval,
+                TimeUnit.MILLISECONDS);
+        return frontier;
+    }
+
+    /**
+     * 整个任务是否已经没有待抓取的URL（任意节点发现后写入标记）
+     */
+    public static boolean isFinished(Path dir) {
+        return Files.exists(dir.resolve(FINISHED_FILE));
+    }
+
+    @Override
+    public boolean offer(String url) {
+        if (!offered.add(url)) {
+            return false;
+        }
+        try {
+            append(urlLogs, partitionOf(url), URLS_PREFIX, url);
+        } catch (IOException e) {
+            offered.remove(url);
+            log.warn("写入URL日志失败: {} ({})", url, e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized String poll() {
+        if (owned.isEmpty()) {
+            return null;
+        }
+        // 从上次的下一个分区开始轮转，各分区交替抓取
+        List<Partition> order = new ArrayList<>(owned.tailMap(nextPartition).values());
+        order.addAll(owned.headMap(nextPartition).values());
+        for (Partition partition : order) {
+            String url = partition.queue.poll();
+            if (url != null) {
+                nextPartition = partition.id + 1;
+                inFlight++;
+                return url;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void complete(String url) {
+        try {
+            append(doneLogs, partitionOf(url), DONE_PREFIX, url);
+        } catch (IOException e) {
+            // 分区被接管时会重新抓取
+            log.warn("写入完成日志失败: {} ({})", url, e.getMessage());
+        }
+        synchronized (this) {
+            inFlight--;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        int size = 0;
+        for (Partition partition : owned.values()) {
+            size += partition.queue.size();
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized boolean awaitWork(long timeoutMillis) throws InterruptedException {
+        if (finished) {
+            return false;
+        }
+        if (size() == 0) {
+            wait(timeoutMillis);
+        }
+        return !finished;
+    }
+
+    @Override
+    public synchronized List<String> drain() {
+        List<String> urls = new ArrayList<>();
+        for (Partition partition : owned.values()) {
+            urls.addAll(partition.queue);
+            partition.queue.clear();
+        }
+        return urls;
+    }
+
+    /**
+     * 退出：停止协调，释放持有的分区（其他节点接管未完成的URL），删除心跳
+     */
+    @Override
+    public void close() {
+        coordinator.shutdownNow();
+        try {
+            coordinator.awaitTermination(leaseMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Integer> held;
+        synchronized (this) {
+            held = new ArrayList<>(owned.keySet());
+            owned.clear();
+        }
+        for (int partition : held) {
+            releaseLease(partition);
+        }
+        closeLogs(urlLogs);
+        closeLogs(doneLogs);
+        try {
+            Files.deleteIfExists(heartbeatFile(nodeId));
+        } catch (IOException e) {
+            log.warn("删除心跳失败: {} ({})", nodeId, e.getMessage());
+        }
+    }
+
+    private int partitionOf(String url) {
+        return Math.floorMod(url.hashCode(), partitions);
+    }
+
+    private Path partitionDir(int partition) {
+        return dir.resolve(PARTITIONS_DIR).resolve(Integer.toString(partition));
+    }
+
+    private Path heartbeatFile(String node) {
+        return dir.resolve(NODES_DIR).resolve(node);
+    }
+
+    /**
+     * 追加一行到本节点在分区中的日志，写完整行后刷新，读取方只读取完整的行
+     */
+    private void append(Map<Integer, Writer> logs, int partition, String prefix, String url) throws IOException {
+        synchronized (logs) {
+            Writer writer = logs.get(partition);
+            if (writer == null) {
+                Path partitionDir = partitionDir(partition);
+                Files.createDirectories(partitionDir);
+                writer = new BufferedWriter(Files.newBufferedWriter(partitionDir.resolve(prefix + nodeId + LOG_SUFFIX),
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+                logs.put(partition, writer);
+            }
+            writer.write(url);
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    private static void closeLogs(Map<Integer, Writer> logs) {
+        synchronized (logs) {
+            for (Writer writer : logs.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    log.warn("关闭日志失败: {}", e.getMessage());
+                }
+            }
+            logs.clear();
+        }
+    }
+
+    /**
+     * 一次协调；出错只记录日志，下次重试
+     */
+    private void coordinate() {
+        try {
+            long now = System.currentTimeMillis();
+            if (isFinished(dir)) {
+                markFinished();
+                return;
+            }
+            renewLeases(now);
+            balance(now, liveNodes(now).size());
+            readNewUrls();
+            writeHeartbeat(now);
+            if (isIdle() && allIdle(System.currentTimeMillis())) {
+                Files.writeString(dir.resolve(FINISHED_FILE), nodeId, StandardCharsets.UTF_8);
+                log.info("共享抓取边界已经没有待抓取的URL: {}", dir);
+                markFinished();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("抓取边界协调失败: {} ({})", dir, e.getMessage());
+        }
+    }
+
+    private synchronized void markFinished() {
+        finished = true;
+        notifyAll();
+    }
+
+    private synchronized boolean isIdle() {
+        return inFlight == 0 && size() == 0;
+    }
+
+    /**
+     * 续租持有的分区；租约已被其他节点接管的分区放弃
+     */
+    private void renewLeases(long now) throws IOException {
+        List<Integer> held;
+        synchronized (this) {
+            held = new ArrayList<>(owned.keySet());
+        }
+        for (int partition : held) {
+            Lease lease = readLease(partitionDir(partition).resolve(LEASE_FILE));
+            if (lease == null) {
+                if (createLease(partition, now)) {
+                    continue;
+                }
+            } else if (lease.node.equals(nodeId)) {
+                writeAtomically(partitionDir(partition).resolve(LEASE_FILE), leaseContent(now));
+                continue;
+            }
+            synchronized (this) {
+                owned.remove(partition);
+            }
+            log.info("分区 {} 已被其他节点接管: {}", partition, dir);
+        }
+    }
+
+    /**
+     * 按存活节点数调整持有的分区数：多出的释放（优先没有待抓取URL的分区），不足的认领空闲或过期的分区
+     */
+    private void balance(long now, int liveNodes) throws IOException {
+        int share = (partitions + Math.max(1, liveNodes) - 1) / Math.max(1, liveNodes);
+        List<Integer> release = new ArrayList<>();
+        int held;
+        synchronized (this) {
+            held = owned.size();
+            if (held > share) {
+                List<Partition> candidates = new ArrayList<>(owned.values());
+                candidates.sort((a, b) -> Integer.compare(a.queue.size(), b.queue.size()));
+                for (Partition partition : candidates.subList(0, held - share)) {
+                    owned.remove(partition.id);
+                    release.add(partition.id);
+                }
+            }
+        }
+        for (int partition : release) {
+            releaseLease(partition);
+        }
+        if (held >= share) {
+            return;
+        }
+        // 各节点从不同的位置开始认领，减少竞争
+        int start = Math.floorMod(nodeId.hashCode(), partitions);
+        for (int i = 0; i < partitions && held < share; i++) {
+            int partition = (start + i) % partitions;
+            synchronized (this) {
+                if (owned.containsKey(partition)) {
+                    continue;
+                }
+            }
+            if (claim(partition, now)) {
+                held++;
+            }
+        }
+    }
+
+    /**
+     * 认领分区：没有租约或租约已过期时创建自己的租约，然后读取分区的全部日志
+     */
+    private boolean claim(int partition, long now) throws IOException {
+        Path partitionDir = partitionDir(partition);
+        Files.createDirectories(partitionDir);
+        Path leaseFile = partitionDir.resolve(LEASE_FILE);
+        Lease lease = readLease(leaseFile);
+        if (lease != null && !lease.node.equals(nodeId)) {
+            if (lease.expiresAt > now) {
+                return false;
+            }
+            // 先把过期的租约改名，只有一个节点能改名成功；改走的如果已不是看到的那个（被续租或接管），放回去
+            Path stale = partitionDir.resolve("." + LEASE_FILE + "-" + nodeId + ".stale");
+            try {
+                Files.move(leaseFile, stale, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            Lease moved = readLease(stale);
+            if (moved == null || !moved.node.equals(lease.node) || moved.expiresAt != lease.expiresAt) {
+                try {
+                    Files.createLink(leaseFile, stale);
+                } catch (FileAlreadyExistsException e) {
+                    // 已有新的租约
+                }
+                Files.deleteIfExists(stale);
+                return false;
+            }
+            Files.deleteIfExists(stale);
+            log.info("接管过期的分区 {}（原持有节点 {}）: {}", partition, lease.node, dir);
+        }
+        if (lease == null || !lease.node.equals(nodeId)) {
+            if (!createLease(partition, now)) {
+                return false;
+            }
+        }
+        Partition state = load(partition);
+        synchronized (this) {
+            owned.put(partition, state);
+            if (!state.queue.isEmpty()) {
+                notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 创建租约：写入临时文件后硬链接为租约文件，已有租约时失败（硬链接不会覆盖已有文件）
+     */
+    private boolean createLease(int partition, long now) throws IOException {
+        Path partitionDir = partitionDir(partition);
+        Path temp = MirrorFiles.createTempFile(partitionDir, "." + LEASE_FILE, ".tmp");
+        try {
+            Files.writeString(temp, leaseContent(now), StandardCharsets.UTF_8);
+            Files.createLink(partitionDir.resolve(LEASE_FILE), temp);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void releaseLease(int partition) {
+        Path leaseFile = partitionDir(partition).resolve(LEASE_FILE);
+        try {
+            Lease lease = readLease(leaseFile);
+            if (lease != null && lease.node.equals(nodeId)) {
+                Files.deleteIfExists(leaseFile);
+            }
+        } catch (IOException e) {
+            log.warn("释放分区 {} 失败，租约过期后由其他节点接管: {} ({})", partition, dir, e.getMessage());
+        }
+    }
+
+    private String leaseContent(long now) {
+        return nodeId + "\n" + (now + leaseMillis) + "\n";
+    }
+
+    private static Lease readLease(Path file) throws IOException {
+        String content;
+        try {
+            content = Files.readString(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String[] lines = content.split("\n");
+        if (lines.length < 2) {
+            return new Lease("", 0); // 写入中或损坏，按过期处理
+        }
+        try {
+            return new Lease(lines[0], Long.parseLong(lines[1].trim()));
+        } catch (NumberFormatException e) {
+            return new Lease("", 0);
+        }
+    }
+
+    /**
+     * 读取分区的全部日志：完成日志中没有的URL放入队列
+     */
+    private Partition load(int partition) throws IOException {
+        Partition state = new Partition(partition);
+        Set<String> done = new HashSet<>();
+        for (Path file : logFiles(partitionDir(partition), DONE_PREFIX)) {
+            done.addAll(readLines(file, 0).lines);
+        }
+        for (Path file : logFiles(partitionDir(partition), URLS_PREFIX)) {
+            Chunk chunk = readLines(file, 0);
+            state.offsets.put(file.getFileName().toString(), chunk.end);
+            for (String url : chunk.lines) {
+                if (state.seen.add(url) && !done.contains(url)) {
+                    state.queue.add(url);
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 读取持有分区的URL日志中新追加的完整行
+     */
+    private void readNewUrls() throws IOException {
+        List<Partition> held;
+        synchronized (this) {
+            held = new ArrayList<>(owned.values());
+        }
+        for (Partition partition : held) {
+            for (Path file : logFiles(partitionDir(partition.id), URLS_PREFIX)) {
+                String name = file.getFileName().toString();
+                long offset = partition.offsets.getOrDefault(name, 0L);
+                if (Files.size(file) <= offset) {
+                    continue;
+                }
+                Chunk chunk = readLines(file, offset);
+                synchronized (this) {
+                    if (owned.get(partition.id) != partition) {
+                        break; // 已释放
+                    }
+                    partition.offsets.put(name, chunk.end);
+                    boolean added = false;
+                    for (String url : chunk.lines) {
+                        if (partition.seen.add(url)) {
+                            partition.queue.add(url);
+                            added = true;
+                        }
+                    }
+                    if (added) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Path> logFiles(Path partitionDir, String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(partitionDir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(partitionDir, prefix + "*" + LOG_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 从偏移量开始读取到最后一个换行符为止的完整行
+     */
+    private static Chunk readLines(Path file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= offset) {
+                return new Chunk(List.of(), offset);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size - offset));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // 读满为止
+            }
+            byte[] bytes = buffer.array();
+            int last = bytes.length - 1;
+            while (last >= 0 && bytes[last] != '\n') {
+                last--;
+            }
+            if (last < 0) {
+                return new Chunk(List.of(), offset);
+            }
+            List<String> lines = new ArrayList<>();
+            for (String line : new String(bytes, 0, last, StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            return new Chunk(lines, offset + last + 1);
+        }
+    }
+
+    /**
+     * 写入心跳：是否空闲和各持有分区已读取的字节数，两者在同一把锁内取得
+     */
+    private void writeHeartbeat(long now) throws IOException {
+        Map<Integer, Long> consumed = new HashMap<>();
+        boolean idle;
+        synchronized (this) {
+            idle = isIdle();
+            for (Partition partition : owned.values()) {
+                consumed.put(partition.id, partition.consumed());
+            }
+        }
+        Path file = heartbeatFile(nodeId);
+        Path temp = MirrorFiles.createTempFile(file.getParent(), "." + nodeId, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(now);
+                out.writeBoolean(idle);
+                out.writeInt(consumed.size());
+                for (Map.Entry<Integer, Long> entry : consumed.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            move(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 有效期内的心跳（节点ID -> 心跳）
+     */
+    private Map<String, Heartbeat> liveNodes(long now) throws IOException {
+        Map<String, Heartbeat> nodes = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.resolve(NODES_DIR))) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(".")) {
+                    continue;
+                }
+                Heartbeat heartbeat = readHeartbeat(file);
+                if (heartbeat != null && heartbeat.time + leaseMillis > now) {
+                    nodes.put(name, heartbeat);
+                }
+            }
+        }
+        nodes.putIfAbsent(nodeId, new Heartbeat(now, false, Map.of())); // 本节点还没有写过心跳时也计入
+        return nodes;
+    }
+
+    private static Heartbeat readHeartbeat(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long time = in.readLong();
+            boolean idle = in.readBoolean();
+            int count = in.readInt();
+            Map<Integer, Long> consumed = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                consumed.put(in.readInt(), in.readLong());
+            }
+            return new Heartbeat(time, idle, consumed);
+        } catch (IOException e) {
+            return null; // 节点退出时已删除
+        }
+    }
+
+    /**
+     * 整个任务是否已经没有待抓取和进行中的URL：先读心跳，再读各分区URL日志的大小
+     */
+    private boolean allIdle(long now) throws IOException {
+        Map<String, Heartbeat> nodes = liveNodes(now);
+        for (Heartbeat heartbeat : nodes.values()) {
+            if (!heartbeat.idle) {
+                return false;
+            }
+        }
+        long total = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            long size = 0;
+            for (Path file : logFiles(partitionDir(partition), URLS_PREFIX)) {
+                size += Files.size(file);
+            }
+            if (size == 0) {
+                continue;
+            }
+            total += size;
+            Lease lease = readLease(partitionDir(partition).resolve(LEASE_FILE));
+            if (lease == null || lease.expiresAt <= now) {
+                return false;
+            }
+            Heartbeat holder = nodes.get(lease.node);
+            if (holder == null || holder.consumed.getOrDefault(partition, -1L) != size) {
+                return false;
+            }
+        }
+        // 还没有任何URL时（发起节点尚未加入起始页）不算结束
+        return total > 0;
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Path temp = MirrorFiles.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            move(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 本节点持有的一个分区
+     */
+    private static final class Partition {
+        private final int id;
+        private final Set<String> seen = new HashSet<>();
+        private final ArrayDeque<String> queue = new ArrayDeque<>();
+        private final Map<String, Long> offsets = new HashMap<>(); // URL日志文件名 -> 已读取的字节数
+
+        private Partition(int id) {
+            this.id = id;
+        }
+
+        private long consumed() {
+            long total = 0;
+            for (long offset : offsets.values()) {
+                total += offset;
+            }
+            return total;
+        }
+    }
+
+    private static final class Lease {
+        private final String node;
+        private final long expiresAt;
+
+        private Lease(String node, long expiresAt) {
+            this.node = node;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Heartbeat {
+        private final long time;
+        private final boolean idle;
+        private final Map<Integer, Long> consumed;
+
+        private Heartbeat(long time, boolean idle, Map<Integer, Long> consumed) {
+            this.time = time;
+            this.idle = idle;
+            this.consumed = consumed;
+        }
+    }
+
+    private static final class Chunk {
+        private final List<String> lines;
+        private final long end;
+
+        private Chunk(List<String> lines, long end) {
+            this.lines = lines;
+            this.end = end;
+        }
+    }
+}
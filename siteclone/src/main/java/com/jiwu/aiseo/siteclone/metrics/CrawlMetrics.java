@@ -0,0 +1,250 @@
+package com.jiwu.aiseo.siteclone.metrics;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
+import com.jiwu.aiseo.siteclone.model.CloneTask;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * 抓取流水线的 Micrometer 指标，经 /actuator/metrics 和 /actuator/prometheus 暴露
+ *
+ * 控制标签基数：计时器和计数器只带 stage、host 等取值有限的标签，host 最多 maxHostTags 个，
+ * 之后出现的主机归入 "other"；按任务的指标只有少量 gauge（带 task 标签），任务结束时注销，
+ * 序列数只与同时运行的任务数有关。
+ */
+@Component
+public class CrawlMetrics {
+
+    public static final String STAGE = "siteclone.crawl.stage"; // 各阶段耗时
+    public static final String DNS = "siteclone.http.dns";
+    public static final String TTFB = "siteclone.http.ttfb"; // 发出请求到收到响应头，新建连接时含建连和TLS握手
+    public static final String TRANSFER = "siteclone.http.transfer"; // 读取响应体
+    public static final String RESPONSES = "siteclone.http.responses";
+    public static final String RECEIVED = "siteclone.http.received";
+    public static final String IN_FLIGHT = "siteclone.http.inflight";
+    public static final String WRITTEN = "siteclone.disk.written";
+    public static final String DEDUP = "siteclone.dedup";
+    public static final String TASKS = "siteclone.tasks.active";
+    static final String OTHER_HOST = "other";
+
+    /**
+     * 流水线阶段
+     */
+    public enum Stage {
+        FRONTIER_WAIT, // 请求在待抓取队列中等待
+        PARSE, // 页面解析和链接提取
+        REWRITE, // 页面内URL改写和序列化（不含 RESOURCES 的时间）
+        RESOURCES, // 页面处理线程同步过滤和下载元素引用的资源
+        CSS, // 样式表中的URL改写
+        WRITE; // 文件写入磁盘
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final int maxHostTags;
+    private final boolean enabled;
+    private final Set<String> hosts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final Counter dedupHits;
+    private final Counter dedupMisses;
+
+    @Autowired
+    public CrawlMetrics(MeterRegistry registry, SiteCloneProperties properties) {
+        this(registry, properties.getMetrics().getMaxHostTags(), properties.getMetrics().isEnabled());
+    }
+
+    private CrawlMetrics(MeterRegistry registry, int maxHostTags, boolean enabled) {
+        this.registry = registry;
+        this.maxHostTags = maxHostTags;
+        this.enabled = enabled;
+        Gauge.builder(IN_FLIGHT, inFlight, AtomicInteger::get).description("进行中的HTTP请求").register(registry);
+        Gauge.builder(TASKS, activeTasks, AtomicInteger::get).description("运行中的克隆任务").register(registry);
+        this.dedupHits = Counter.builder(DEDUP).tag("result", "hit").description("内容已在blob存储中的资源")
+                .register(registry);
+        this.dedupMisses = Counter.builder(DEDUP).tag("result", "miss").register(registry);
+    }
+
+    /**
+     * 主机名标签：超过上限后出现的主机统一为 "other"
+     */
+    String hostTag(String host) {
+        if (host == null || host.isEmpty()) {
+            return OTHER_HOST;
+        }
+        if (hosts.contains(host)) {
+            return host;
+        }
+        synchronized (hosts) {
+            if (hosts.size() < maxHostTags) {
+                hosts.add(host);
+                return host;
+            }
+        }
+        return hosts.contains(host) ? host : OTHER_HOST;
+    }
+
+    /**
+     * 为任务创建指标句柄，任务结束时需要 {@link TaskMetrics#close()}
+     *
+     * @param task 克隆任务
+     * @param host 任务抓取的主机
+     */
+    public TaskMetrics forTask(CloneTask task, String host) {
+        if (!enabled) {
+            return TaskMetrics.NONE;
+        }
+        activeTasks.incrementAndGet();
+        return new TaskMetrics(this, task.getId(), hostTag(host));
+    }
+
+    /**
+     * 一个任务的指标：计时器和计数器在创建时按主机解析好，热路径上不再查找
+     */
+    public static final class TaskMetrics implements AutoCloseable {
+
+        /** 不记录任何指标 */
+        public static final TaskMetrics NONE = new TaskMetrics(
+                new CrawlMetrics(new CompositeMeterRegistry(), 0, false), null, OTHER_HOST);
+
+        private final CrawlMetrics owner;
+        private final String taskId;
+        private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+        private final Timer dns;
+        private final Timer ttfbNew;
+        private final Timer ttfbReused;
+        private final Timer transfer;
+        private final Counter received;
+        private final Counter written;
+        private final Counter[] responses = new Counter[6]; // 按状态码类别：0 为请求失败，1-5 为 1xx-5xx
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final List<Meter> taskMeters = new ArrayList<>();
+        private boolean closed;
+
+        private TaskMetrics(CrawlMetrics owner, String taskId, String host) {
+            this.owner = owner;
+            this.taskId = taskId;
+            MeterRegistry registry = owner.registry;
+            for (Stage stage : Stage.values()) {
+                stages.put(stage, Timer.builder(STAGE).tag("stage", stage.tag()).tag("host", host).register(registry));
+            }
+            this.dns = Timer.builder(DNS).tag("host", host).register(registry);
+            this.ttfbNew = Timer.builder(TTFB).tag("host", host).tag("connection", "new").register(registry);
+            this.ttfbReused = Timer.builder(TTFB).tag("host", host).tag("connection", "reused").register(registry);
+            this.transfer = Timer.builder(TRANSFER).tag("host", host).register(registry);
+            this.received = Counter.builder(RECEIVED).baseUnit("bytes").tag("host", host).register(registry);
+            this.written = Counter.builder(WRITTEN).baseUnit("bytes").tag("host", host).register(registry);
+            String[] statuses = { "error", "1xx", "2xx", "3xx", "4xx", "5xx" };
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = Counter.builder(RESPONSES).tag("host", host).tag("status", statuses[i]).register(registry);
+            }
+        }
+
+        public boolean isEnabled() {
+            return owner.enabled;
+        }
+
+        public void recordStage(Stage stage, long nanos) {
+            stages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordDns(long nanos) {
+            dns.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * 收到响应头
+         *
+         * @param newConnection 本次请求是否新建了连接
+         */
+        public void recordTtfb(long nanos, boolean newConnection) {
+            (newConnection ? ttfbNew : ttfbReused).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordTransfer(long nanos, long bytes) {
+            transfer.record(nanos, TimeUnit.NANOSECONDS);
+            received.increment(bytes);
+        }
+
+        /**
+         * @param status 状态码，请求失败时为0
+         */
+        public void recordResponse(int status) {
+            int index = status / 100;
+            responses[index >= 1 && index <= 5 ? index : 0].increment();
+        }
+
+        public void recordWrite(long nanos, long bytes) {
+            recordStage(Stage.WRITE, nanos);
+            written.increment(bytes);
+        }
+
+        public void recordDedup(boolean hit) {
+            (hit ? owner.dedupHits : owner.dedupMisses).increment();
+        }
+
+        public void requestStarted() {
+            inFlight.incrementAndGet();
+            owner.inFlight.incrementAndGet();
+        }
+
+        public void requestFinished() {
+            inFlight.decrementAndGet();
+            owner.inFlight.decrementAndGet();
+        }
+
+        /**
+         * 注册任务级的 gauge（带 task 标签），任务结束时注销
+         */
+        public synchronized void gauge(String name, Supplier<Number> value) {
+            if (!owner.enabled || closed) {
+                return;
+            }
+            taskMeters.add(Gauge.builder(name, value).tag("task", taskId).strongReference(true)
+                    .register(owner.registry));
+        }
+
+        /**
+         * 注册任务的标准 gauge：页面数、去重率和进行中的请求
+         */
+        public void bindTask(CloneTask task) {
+            gauge("siteclone.task.pages", task::getPagesCrawled);
+            gauge("siteclone.task.files", task::getFilesDownloaded);
+            gauge("siteclone.task.inflight", inFlight::get);
+            gauge("siteclone.task.dedup.ratio", () -> task.getFilesDownloaded() == 0 ? 0.0
+                    : (double) task.getDedupFiles() / task.getFilesDownloaded());
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed || !owner.enabled) {
+                return;
+            }
+            closed = true;
+            taskMeters.forEach(owner.registry::remove);
+            taskMeters.clear();
+            owner.activeTasks.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.jiwu.aiseo.siteclone.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * 单个克隆任务的抓取选项
+ */
+@Data
+public class CloneOptions {
+    private int threadCount = 5; // 抓取线程数
+    private int retryTimes = 3; // 失败重试次数
+    private int sleepTime = 1000; // 两次请求之间的间隔 (毫秒)
+    private double weight = 1.0; // 分享全局并发请求数的权重，同时抓取的任务按权重比例得到请求槽位
+    private SrcsetPolicy srcsetPolicy = SrcsetPolicy.ORIGINAL; // srcset候选图片下载策略
+    private int srcsetTargetWidth = 1280; // CLOSEST 策略的目标宽度 (像素)
+    private List<String> excludedExtensions = new ArrayList<>(); // 不下载的扩展名，如 mp4、pdf
+    private List<String> excludedContentTypes = new ArrayList<>(); // 不下载的内容类型，支持前缀，如 video/
+    private long maxResourceSize = 0L; // 单个资源的最大字节数，0 表示不限制
+    private boolean conditionalReclone = false; // 重新克隆时按上次记录的 ETag / Last-Modified 发送条件请求
+    private int refreshBudget = 0; // 刷新模式的页面抓取预算，0 表示完整克隆
+    private SkippedResourceMode skippedResourceMode = SkippedResourceMode.ABSOLUTE_URL; // 被过滤资源的改写方式
+}
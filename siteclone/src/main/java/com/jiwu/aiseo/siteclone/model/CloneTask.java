@@ -1,22 +1,86 @@
 package com.jiwu.aiseo.siteclone.model;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
 
+/**
+ * 克隆任务
+ *
+ * 抓取线程更新的进度计数器是分段计数器（LongAdder），更新时不加锁也不记录时间；
+ * 读取进度通过 {@link #snapshot()} 得到一次性读取的不可变快照，速率和预计剩余时间都基于同一份快照计算。
+ */
 @Data
 public class CloneTask {
     private String id;
+    private String batchId; // 所属批次，单独提交的任务为null
+    private String clusterJobId; // 多节点协作的任务ID，单机抓取的任务为null
     private String url;
     private String outputDir;
-    private CloneTaskStatus status;
+    private volatile CloneTaskStatus status;
     private LocalDateTime createdAt;
-    private LocalDateTime updatedAt;
+    private volatile LocalDateTime updatedAt; // 状态变化或读取快照时观察到进度变化的时间
+    private volatile LocalDateTime startedAt; // 首次开始执行的时间
+    private volatile LocalDateTime finishedAt; // 完成、失败或取消的时间
     private String errorMessage;
-    private int pagesCrawled;
-    private int filesDownloaded;
-    private long totalBytesDownloaded; // 新增：总下载字节数
+    private CloneOptions options = new CloneOptions(); // 任务抓取选项
+    private int refreshPlanned; // 刷新模式按变化概率选出的页面数
+    private double expectedChanges; // 刷新计划预计检测到的变化数
+    private double expectedFreshness; // 刷新完成后镜像的预计新鲜度
+    private volatile String snapshotId; // 本次克隆生成的快照ID
+
+    // 进度计数器
+    private final LongAdder pagesCrawled = new LongAdder();
+    private final LongAdder filesDownloaded = new LongAdder();
+    private final LongAdder totalBytesDownloaded = new LongAdder(); // 总下载字节数
+    private final LongAdder requestsFailed = new LongAdder(); // 下载失败的请求数（网络错误或错误状态码）
+    private final LongAdder srcsetCandidatesSkipped = new LongAdder(); // 按srcset策略未下载的候选图片数
+    private final LongAdder srcsetBytesSaved = new LongAdder(); // 按srcset策略节省的字节数（估算）
+    private final Map<ResourceSkipReason, LongAdder> skippedResources = counters(); // 按原因统计的被过滤资源数
+    private final Map<ResourceSkipReason, LongAdder> skippedResourceBytes = counters(); // 按原因统计的节省字节数（仅统计探测到大小的资源）
+    private final LongAdder dedupFiles = new LongAdder(); // 内容已存在于blob存储、通过硬链接复用的文件数
+    private final LongAdder dedupBytesSaved = new LongAdder(); // 去重节省的磁盘字节数
+    private final LongAdder pagesUnchanged = new LongAdder(); // 重新克隆时返回304、未重新解析的页面数
+    private final LongAdder resourcesUnchanged = new LongAdder(); // 重新克隆时返回304、保留本地文件的资源数
+    private final LongAdder pagesChanged = new LongAdder(); // 重新下载后内容与上次不同的页面数
+    private final LongAdder cacheHits = new LongAdder(); // HTTP缓存命中次数（含304重新验证）
+    private final LongAdder cacheMisses = new LongAdder(); // HTTP缓存未命中、从网络下载的次数
+    private final LongAdder cacheBytesSaved = new LongAdder(); // HTTP缓存节省的下载字节数
+    private final LongAdder downloadsCoalesced = new LongAdder(); // 与进行中的同一URL下载合并、未重复下载的次数
+    private final LongAdder downloadsResumed = new LongAdder(); // 从断点续传完成的下载数
+    private final LongAdder resumedBytes = new LongAdder(); // 续传复用的已下载字节数
+    private final LongAdder bytesStored = new LongAdder(); // 写入镜像目录的净字节数（新文件计大小，覆盖的文件计大小之差）
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile LongSupplier pendingPages; // 待抓取的页面数，用于估算剩余时间；未设置时不估算
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile LongConsumer storageUsage; // 镜像的磁盘用量，执行期间写入的字节同时计入
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private LocalDateTime resumedAt; // 本次执行开始（或继续）的时间，未在执行时为null
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long activeMillis; // 之前各段执行累计的时间，暂停期间不计入速率
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long lastProgressEvents = -1; // 上次快照时的进度事件总数，用于判断进度是否变化
 
     public CloneTask(String url, String outputDir) {
         this.id = UUID.randomUUID().toString();
@@ -25,43 +89,465 @@ public class CloneTask {
         this.status = CloneTaskStatus.PENDING;
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
-        this.pagesCrawled = 0;
-        this.filesDownloaded = 0;
-        this.totalBytesDownloaded = 0L; // 初始化为0
     }
 
-    public void setRunning() {
+    private static Map<ResourceSkipReason, LongAdder> counters() {
+        Map<ResourceSkipReason, LongAdder> counters = new EnumMap<>(ResourceSkipReason.class);
+        for (ResourceSkipReason reason : ResourceSkipReason.values()) {
+            counters.put(reason, new LongAdder());
+        }
+        return counters;
+    }
+
+    public synchronized void setRunning() {
+        LocalDateTime now = LocalDateTime.now();
+        if (startedAt == null) {
+            this.startedAt = now;
+        }
+        this.resumedAt = now;
         this.status = CloneTaskStatus.RUNNING;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = now;
+    }
+
+    /**
+     * 暂停：本段执行时间计入累计时间，继续后速率不包含暂停的时间
+     */
+    public synchronized void setPaused() {
+        this.updatedAt = endRun();
+        this.status = CloneTaskStatus.PAUSED;
     }
 
-    public void setCompleted() {
+    public synchronized void setCompleted() {
+        this.finishedAt = endRun();
         this.status = CloneTaskStatus.COMPLETED;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = finishedAt;
     }
 
-    public void setFailed(String errorMessage) {
-        this.status = CloneTaskStatus.FAILED;
+    public synchronized void setFailed(String errorMessage) {
         this.errorMessage = errorMessage;
+        this.finishedAt = endRun();
+        this.status = CloneTaskStatus.FAILED;
+        this.updatedAt = finishedAt;
+    }
+
+    public synchronized void setCancelled() {
+        this.finishedAt = endRun();
+        this.status = CloneTaskStatus.CANCELLED;
+        this.updatedAt = finishedAt;
+    }
+
+    /**
+     * 服务重启时任务未结束：本段执行时间已无法得知，只保留之前累计的时间
+     */
+    public synchronized void setInterrupted() {
+        this.resumedAt = null;
+        this.status = CloneTaskStatus.INTERRUPTED;
         this.updatedAt = LocalDateTime.now();
     }
 
+    /**
+     * 任务状态是否不会再变化（完成、失败或取消）
+     */
+    public boolean isTerminal() {
+        CloneTaskStatus current = status;
+        return current == CloneTaskStatus.COMPLETED || current == CloneTaskStatus.FAILED
+                || current == CloneTaskStatus.CANCELLED;
+    }
+
+    private LocalDateTime endRun() {
+        LocalDateTime now = LocalDateTime.now();
+        if (resumedAt != null) {
+            activeMillis += Duration.between(resumedAt, now).toMillis();
+            resumedAt = null;
+        }
+        return now;
+    }
+
+    /**
+     * 累计执行时间 (毫秒)，包括正在执行的这一段
+     */
+    public synchronized long activeMillis() {
+        return activeMillis + (resumedAt == null ? 0 : Duration.between(resumedAt, LocalDateTime.now()).toMillis());
+    }
+
+    /**
+     * 从任务存储恢复累计执行时间
+     */
+    public synchronized void restoreActiveMillis(long activeMillis) {
+        this.activeMillis = activeMillis;
+    }
+
+    /**
+     * 各计数器的当前值（只包含非零的），供任务存储保存；被过滤资源按 "skippedResources.原因" 展开
+     */
+    public Map<String, Long> counterValues() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        namedCounters().forEach((name, counter) -> {
+            long value = counter.sum();
+            if (value != 0) {
+                values.put(name, value);
+            }
+        });
+        return values;
+    }
+
+    /**
+     * 从任务存储恢复计数器，未知的名称忽略
+     */
+    public void restoreCounters(Map<String, Long> values) {
+        Map<String, LongAdder> counters = namedCounters();
+        values.forEach((name, value) -> {
+            LongAdder counter = counters.get(name);
+            if (counter != null && value != null) {
+                counter.reset();
+                counter.add(value);
+            }
+        });
+    }
+
+    private Map<String, LongAdder> namedCounters() {
+        Map<String, LongAdder> counters = new LinkedHashMap<>();
+        counters.put("pagesCrawled", pagesCrawled);
+        counters.put("filesDownloaded", filesDownloaded);
+        counters.put("totalBytesDownloaded", totalBytesDownloaded);
+        counters.put("requestsFailed", requestsFailed);
+        counters.put("srcsetCandidatesSkipped", srcsetCandidatesSkipped);
+        counters.put("srcsetBytesSaved", srcsetBytesSaved);
+        counters.put("dedupFiles", dedupFiles);
+        counters.put("dedupBytesSaved", dedupBytesSaved);
+        counters.put("pagesUnchanged", pagesUnchanged);
+        counters.put("resourcesUnchanged", resourcesUnchanged);
+        counters.put("pagesChanged", pagesChanged);
+        counters.put("cacheHits", cacheHits);
+        counters.put("cacheMisses", cacheMisses);
+        counters.put("cacheBytesSaved", cacheBytesSaved);
+        counters.put("downloadsCoalesced", downloadsCoalesced);
+        counters.put("downloadsResumed", downloadsResumed);
+        counters.put("resumedBytes", resumedBytes);
+        counters.put("bytesStored", bytesStored);
+        skippedResources.forEach((reason, counter) -> counters.put("skippedResources." + reason.name(), counter));
+        skippedResourceBytes.forEach((reason, counter) -> counters.put("skippedResourceBytes." + reason.name(), counter));
+        return counters;
+    }
+
+    /**
+     * 设置待抓取页面数的来源（如调度器的队列长度），运行中的任务据此估算剩余时间
+     */
+    public void setPendingPagesSource(LongSupplier pendingPages) {
+        this.pendingPages = pendingPages;
+    }
+
+    /**
+     * 设置镜像磁盘用量的记账方，执行期间写入镜像目录的字节同时计入镜像
+     */
+    public void setStorageUsageSink(LongConsumer storageUsage) {
+        this.storageUsage = storageUsage;
+    }
+
     public void incrementPagesCrawled() {
-        this.pagesCrawled++;
-        this.updatedAt = LocalDateTime.now();
+        pagesCrawled.increment();
     }
 
     public void incrementFilesDownloaded() {
-        this.filesDownloaded++;
+        filesDownloaded.increment();
+    }
+
+    public void incrementRequestsFailed() {
+        requestsFailed.increment();
+    }
+
+    public void incrementPagesUnchanged() {
+        pagesUnchanged.increment();
+    }
+
+    public void incrementPagesChanged() {
+        pagesChanged.increment();
+    }
+
+    public synchronized void setRefreshPlan(int planned, double expectedChanges, double expectedFreshness) {
+        this.refreshPlanned = planned;
+        this.expectedChanges = expectedChanges;
+        this.expectedFreshness = expectedFreshness;
         this.updatedAt = LocalDateTime.now();
     }
 
+    public void incrementResourcesUnchanged() {
+        resourcesUnchanged.increment();
+    }
+
+    public void incrementDownloadsCoalesced() {
+        downloadsCoalesced.increment();
+    }
+
+    public void addResumedDownload(long bytes) {
+        downloadsResumed.increment();
+        resumedBytes.add(bytes);
+    }
+
     public void addBytesDownloaded(long bytes) {
-        this.totalBytesDownloaded += bytes;
-        this.updatedAt = LocalDateTime.now();
+        totalBytesDownloaded.add(bytes);
+    }
+
+    /**
+     * 记录写入镜像目录的字节数变化
+     *
+     * @param delta 新文件的大小，或覆盖文件时新旧大小之差（可以为负数）
+     */
+    public void addBytesStored(long delta) {
+        bytesStored.add(delta);
+        LongConsumer usage = storageUsage;
+        if (usage != null) {
+            usage.accept(delta);
+        }
+    }
+
+    public void addSrcsetSavings(int skippedCandidates, long bytesSaved) {
+        srcsetCandidatesSkipped.add(skippedCandidates);
+        srcsetBytesSaved.add(bytesSaved);
+    }
+
+    public void addSkippedResource(ResourceSkipReason reason, long bytes) {
+        skippedResources.get(reason).increment();
+        if (bytes > 0) {
+            skippedResourceBytes.get(reason).add(bytes);
+        }
+    }
+
+    public void addDedupResult(boolean spaceSaved, long bytes) {
+        if (spaceSaved) {
+            dedupFiles.increment();
+            dedupBytesSaved.add(bytes);
+        }
+    }
+
+    public void recordCacheLookup(boolean hit, long bytesSaved) {
+        if (hit) {
+            cacheHits.increment();
+            cacheBytesSaved.add(bytesSaved);
+        } else {
+            cacheMisses.increment();
+        }
+    }
+
+    public int getPagesCrawled() {
+        return pagesCrawled.intValue();
+    }
+
+    public int getFilesDownloaded() {
+        return filesDownloaded.intValue();
     }
 
     public long getTotalBytesDownloaded() {
-        return this.totalBytesDownloaded;
+        return totalBytesDownloaded.sum();
+    }
+
+    public int getRequestsFailed() {
+        return requestsFailed.intValue();
+    }
+
+    public int getSrcsetCandidatesSkipped() {
+        return srcsetCandidatesSkipped.intValue();
+    }
+
+    public long getSrcsetBytesSaved() {
+        return srcsetBytesSaved.sum();
+    }
+
+    public int getDedupFiles() {
+        return dedupFiles.intValue();
+    }
+
+    public long getDedupBytesSaved() {
+        return dedupBytesSaved.sum();
+    }
+
+    public int getPagesUnchanged() {
+        return pagesUnchanged.intValue();
+    }
+
+    public int getResourcesUnchanged() {
+        return resourcesUnchanged.intValue();
+    }
+
+    public int getPagesChanged() {
+        return pagesChanged.intValue();
+    }
+
+    public int getCacheHits() {
+        return cacheHits.intValue();
+    }
+
+    public int getCacheMisses() {
+        return cacheMisses.intValue();
+    }
+
+    public long getCacheBytesSaved() {
+        return cacheBytesSaved.sum();
+    }
+
+    public int getDownloadsCoalesced() {
+        return downloadsCoalesced.intValue();
+    }
+
+    public int getDownloadsResumed() {
+        return downloadsResumed.intValue();
+    }
+
+    public long getResumedBytes() {
+        return resumedBytes.sum();
+    }
+
+    public long getBytesStored() {
+        return bytesStored.sum();
+    }
+
+    /**
+     * 按原因统计的被过滤资源数（只含出现过的原因）
+     */
+    public Map<ResourceSkipReason, Integer> getSkippedResources() {
+        Map<ResourceSkipReason, Integer> result = new EnumMap<>(ResourceSkipReason.class);
+        skippedResources.forEach((reason, count) -> {
+            if (count.sum() > 0) {
+                result.put(reason, count.intValue());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 按原因统计的节省字节数（只含探测到大小的原因）
+     */
+    public Map<ResourceSkipReason, Long> getSkippedResourceBytes() {
+        Map<ResourceSkipReason, Long> result = new EnumMap<>(ResourceSkipReason.class);
+        skippedResourceBytes.forEach((reason, bytes) -> {
+            if (bytes.sum() > 0) {
+                result.put(reason, bytes.sum());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 读取进度快照
+     *
+     * 每个计数器只读取一次，派生的比例、速率和剩余时间都基于这份快照；
+     * 计数器之间不是同一时刻的原子读取，但每个计数器单调递增，快照内不会出现比例超过1之类的矛盾。
+     * 只有读取快照时加锁（用于更新 updatedAt），抓取线程更新计数器不受影响。
+     */
+    public synchronized Progress snapshot() {
+        LocalDateTime now = LocalDateTime.now();
+        Progress progress = new Progress(this, now);
+        long events = progress.pagesCrawled + progress.filesDownloaded + progress.requestsFailed
+                + progress.resourcesSkipped + progress.pagesUnchanged + progress.resourcesUnchanged;
+        if (lastProgressEvents >= 0 && events != lastProgressEvents && status == CloneTaskStatus.RUNNING) {
+            updatedAt = now;
+        }
+        lastProgressEvents = events;
+        return progress;
+    }
+
+    /**
+     * 任务进度的不可变快照，属性名与 {@link com.jiwu.aiseo.siteclone.dto.CloneResponse} 对应
+     */
+    public static final class Progress {
+        private final int pagesCrawled;
+        private final int filesDownloaded;
+        private final long totalBytesDownloaded;
+        private final int requestsFailed;
+        private final int resourcesSkipped;
+        private final Map<ResourceSkipReason, Integer> skippedResources;
+        private final Map<ResourceSkipReason, Long> skippedResourceBytes;
+        private final int srcsetCandidatesSkipped;
+        private final long srcsetBytesSaved;
+        private final int dedupFiles;
+        private final long dedupBytesSaved;
+        private final int pagesUnchanged;
+        private final int resourcesUnchanged;
+        private final int pagesChanged;
+        private final int cacheHits;
+        private final int cacheMisses;
+        private final long cacheBytesSaved;
+        private final int downloadsCoalesced;
+        private final int downloadsResumed;
+        private final long resumedBytes;
+        private final long bytesStored;
+        private final double elapsedSeconds;
+        private final double pagesPerSecond;
+        private final double megabytesPerSecond;
+        private final long pagesPending;
+        private final Long etaSeconds;
+
+        private Progress(CloneTask task, LocalDateTime now) {
+            this.pagesCrawled = task.pagesCrawled.intValue();
+            this.filesDownloaded = task.filesDownloaded.intValue();
+            this.totalBytesDownloaded = task.totalBytesDownloaded.sum();
+            this.requestsFailed = task.requestsFailed.intValue();
+            this.skippedResources = task.getSkippedResources();
+            this.skippedResourceBytes = task.getSkippedResourceBytes();
+            this.resourcesSkipped = skippedResources.values().stream().mapToInt(Integer::intValue).sum();
+            this.srcsetCandidatesSkipped = task.srcsetCandidatesSkipped.intValue();
+            this.srcsetBytesSaved = task.srcsetBytesSaved.sum();
+            this.dedupFiles = task.dedupFiles.intValue();
+            this.dedupBytesSaved = task.dedupBytesSaved.sum();
+            this.pagesUnchanged = task.pagesUnchanged.intValue();
+            this.resourcesUnchanged = task.resourcesUnchanged.intValue();
+            this.pagesChanged = task.pagesChanged.intValue();
+            this.cacheHits = task.cacheHits.intValue();
+            this.cacheMisses = task.cacheMisses.intValue();
+            this.cacheBytesSaved = task.cacheBytesSaved.sum();
+            this.downloadsCoalesced = task.downloadsCoalesced.intValue();
+            this.downloadsResumed = task.downloadsResumed.intValue();
+            this.resumedBytes = task.resumedBytes.sum();
+            this.bytesStored = task.bytesStored.sum();
+
+            // 速率按累计执行时间（不含排队和暂停）的平均值计算
+            LocalDateTime resumed = task.resumedAt;
+            this.elapsedSeconds = (task.activeMillis + (resumed == null ? 0 : Duration.between(resumed, now).toMillis()))
+                    / 1000.0;
+            this.pagesPerSecond = elapsedSeconds > 0 ? pagesCrawled / elapsedSeconds : 0;
+            this.megabytesPerSecond = elapsedSeconds > 0 ? totalBytesDownloaded / elapsedSeconds / 1048576 : 0;
+
+            LongSupplier pending = task.pendingPages;
+            boolean running = task.status == CloneTaskStatus.RUNNING;
+            this.pagesPending = running && pending != null ? Math.max(0, pending.getAsLong()) : 0;
+            this.etaSeconds = running && pending != null && pagesPerSecond > 0
+                    ? Math.round(pagesPending / pagesPerSecond) : null;
+        }
+
+        public int getPagesCrawled() { return pagesCrawled; }
+        public int getFilesDownloaded() { return filesDownloaded; }
+        public long getTotalBytesDownloaded() { return totalBytesDownloaded; }
+        public int getRequestsFailed() { return requestsFailed; }
+        public int getResourcesSkipped() { return resourcesSkipped; }
+        public Map<ResourceSkipReason, Integer> getSkippedResources() { return skippedResources; }
+        public Map<ResourceSkipReason, Long> getSkippedResourceBytes() { return skippedResourceBytes; }
+        public int getSrcsetCandidatesSkipped() { return srcsetCandidatesSkipped; }
+        public long getSrcsetBytesSaved() { return srcsetBytesSaved; }
+        public int getDedupFiles() { return dedupFiles; }
+        public long getDedupBytesSaved() { return dedupBytesSaved; }
+        public int getPagesUnchanged() { return pagesUnchanged; }
+        public int getResourcesUnchanged() { return resourcesUnchanged; }
+        public int getPagesChanged() { return pagesChanged; }
+        public int getCacheHits() { return cacheHits; }
+        public int getCacheMisses() { return cacheMisses; }
+        public long getCacheBytesSaved() { return cacheBytesSaved; }
+        public int getDownloadsCoalesced() { return downloadsCoalesced; }
+        public int getDownloadsResumed() { return downloadsResumed; }
+        public long getResumedBytes() { return resumedBytes; }
+        public long getBytesStored() { return bytesStored; }
+        public double getElapsedSeconds() { return elapsedSeconds; }
+        public double getPagesPerSecond() { return pagesPerSecond; }
+        public double getMegabytesPerSecond() { return megabytesPerSecond; }
+        public long getPagesPending() { return pagesPending; }
+        public Long getEtaSeconds() { return etaSeconds; }
+
+        public double getCacheHitRate() {
+            int lookups = cacheHits + cacheMisses;
+            return lookups > 0 ? (double) cacheHits / lookups : 0;
+        }
+
+        public double getDedupRatio() {
+            return totalBytesDownloaded > 0 ? (double) dedupBytesSaved / totalBytesDownloaded : 0;
+        }
     }
 }
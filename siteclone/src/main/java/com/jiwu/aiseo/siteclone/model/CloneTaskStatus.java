@@ -3,6 +3,9 @@ package com.jiwu.aiseo.siteclone.model;
 public enum CloneTaskStatus {
     PENDING,    // 任务等待执行
     RUNNING,    // 任务正在执行
+    PAUSED,     // 任务已暂停，待抓取队列已保存，可继续
+    INTERRUPTED, // 服务重启时任务未结束且未重新排队，可继续
     COMPLETED,  // 任务已完成
-    FAILED      // 任务失败
+    FAILED,     // 任务失败
+    CANCELLED   // 任务已取消
 }
@@ -0,0 +1,10 @@
+package com.jiwu.aiseo.siteclone.model;
+
+/**
+ * 资源被过滤（未下载）的原因
+ */
+public enum ResourceSkipReason {
+    EXTENSION,      // 扩展名在排除列表中
+    CONTENT_TYPE,   // 内容类型在排除列表中
+    SIZE            // 超过单个资源的最大体积
+}
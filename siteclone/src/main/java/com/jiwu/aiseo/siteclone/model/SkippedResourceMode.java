@@ -0,0 +1,9 @@
+package com.jiwu.aiseo.siteclone.model;
+
+/**
+ * 被过滤资源在页面中的改写方式
+ */
+public enum SkippedResourceMode {
+    ABSOLUTE_URL,   // 改写为原始的绝对URL（默认）
+    PLACEHOLDER     // 改写为占位内容（图片为透明像素，其余为 about:blank）
+}
@@ -0,0 +1,11 @@
+package com.jiwu.aiseo.siteclone.model;
+
+/**
+ * srcset / picture 候选图片的下载策略
+ */
+public enum SrcsetPolicy {
+    ORIGINAL,   // 不下载，候选URL改写为绝对URL（默认）
+    LARGEST,    // 只下载最大的候选
+    CLOSEST,    // 只下载最接近目标宽度的候选
+    ALL         // 下载全部候选
+}
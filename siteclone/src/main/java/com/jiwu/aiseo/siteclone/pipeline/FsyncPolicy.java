@@ -0,0 +1,10 @@
+package com.jiwu.aiseo.siteclone.pipeline;
+
+/**
+ * 镜像文件写入后的刷盘策略
+ */
+public enum FsyncPolicy {
+    NONE,           // 不主动刷盘，交给操作系统（默认）
+    PER_FILE,       // 每个文件改名前刷盘
+    ON_COMPLETION   // 任务结束时统一刷盘本次写入的文件
+}
@@ -0,0 +1,210 @@
+package com.jiwu.aiseo.siteclone.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jiwu.aiseo.siteclone.metrics.CrawlMetrics;
+import com.jiwu.aiseo.siteclone.model.CloneTask;
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+
+import lombok.extern.slf4j.Slf4j;
+import us.codecraft.webmagic.ResultItems;
+import us.codecraft.webmagic.Task;
+import us.codecraft.webmagic.pipeline.Pipeline;
+
+/**
+ * 镜像文件输出管道 - 把页面处理器生成的文件交给独立的I/O线程写入，抓取线程不再等待磁盘
+ *
+ * 写入队列有界：队列满时抓取线程阻塞等待，形成背压，内存中待写的页面数不会无限增长。
+ * 已创建过的目录会被记住，避免每个文件都调用一次 createDirectories。
+ * 文件先写临时文件再原子替换（同一路径可能是共享blob的硬链接，不能就地写入）。
+ * 多个写入线程更新任务计数时不加锁（计数器本身线程安全）；不同URL可能映射到同一个文件，
+ * 读取旧文件大小和替换在按路径分段的锁内进行，写入字节数不会重复计算。
+ */
+@Slf4j
+public class MirrorFilePipeline implements Pipeline, Closeable {
+
+    public static final String PATH = "mirror.path"; // ResultItems 字段：目标文件 (Path)
+    public static final String CONTENT = "mirror.content"; // ResultItems 字段：文件内容 (byte[])
+    private static final int LOCK_STRIPES = 64;
+
+    private final CloneTask cloneTask;
+    private final FsyncPolicy fsyncPolicy;
+    private final ThreadPoolExecutor executor;
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+    private final Set<Path> pendingSync = ConcurrentHashMap.newKeySet(); // ON_COMPLETION 策略下待刷盘的文件和目录
+    private final Object[] pathLocks = new Object[LOCK_STRIPES]; // 按目标路径分段的锁：替换文件并计算大小之差
+    private volatile boolean closed;
+    private volatile CrawlMetrics.TaskMetrics metrics = CrawlMetrics.TaskMetrics.NONE;
+
+    public MirrorFilePipeline(CloneTask cloneTask, int threads, int queueCapacity, FsyncPolicy fsyncPolicy) {
+        this.cloneTask = cloneTask;
+        this.fsyncPolicy = fsyncPolicy == null ? FsyncPolicy.NONE : fsyncPolicy;
+        for (int i = 0; i < pathLocks.length; i++) {
+            pathLocks[i] = new Object();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "mirror-writer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, pool) -> {
+                    // 队列已满：阻塞提交的抓取线程，直到写入线程腾出位置
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("输出管道已关闭");
+                    }
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("等待写入队列时被中断", e);
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 设置所属任务的抓取指标，记录页面写入的耗时和字节数
+     */
+    public void setMetrics(CrawlMetrics.TaskMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 等待写入的文件数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void process(ResultItems resultItems, Task task) {
+        Path path = resultItems.get(PATH);
+        byte[] content = resultItems.get(CONTENT);
+        if (path == null || content == null) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                write(path, content);
+                metrics.recordWrite(System.nanoTime() - start, content.length);
+                cloneTask.incrementPagesCrawled();
+                cloneTask.incrementFilesDownloaded(); // HTML文件也算作下载的文件
+                log.info("保存HTML文件: {}", path);
+            } catch (IOException e) {
+                log.error("保存HTML文件失败: {}", path, e);
+            }
+        });
+    }
+
+    private void write(Path path, byte[] content) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        ensureDirectory(dir);
+        Path temp;
+        try {
+            temp = MirrorFiles.createTempFile(dir, ".page", ".tmp");
+        } catch (NoSuchFileException e) {
+            // 目录在任务期间被删除，重新创建
+            createdDirectories.remove(dir);
+            ensureDirectory(dir);
+            temp = MirrorFiles.createTempFile(dir, ".page", ".tmp");
+        }
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsyncPolicy == FsyncPolicy.PER_FILE) {
+                    channel.force(true);
+                }
+            }
+            long previous;
+            synchronized (pathLocks[Math.floorMod(path.hashCode(), pathLocks.length)]) {
+                previous = MirrorFiles.sizeOf(path);
+                try {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            cloneTask.addBytesStored(content.length - previous);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (fsyncPolicy == FsyncPolicy.PER_FILE) {
+            syncDirectory(dir); // 让改名本身也落盘
+        } else if (fsyncPolicy == FsyncPolicy.ON_COMPLETION) {
+            pendingSync.add(path);
+            pendingSync.add(dir);
+        }
+    }
+
+    private void ensureDirectory(Path dir) throws IOException {
+        if (!createdDirectories.contains(dir)) {
+            Files.createDirectories(dir);
+            createdDirectories.add(dir);
+        }
+    }
+
+    /**
+     * 等待队列中的文件全部写完，并按策略刷盘；可重复调用
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+                log.warn("等待镜像文件写入超时，仍有 {} 个文件未写入", executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fsyncPolicy == FsyncPolicy.ON_COMPLETION) {
+            // 先刷文件再刷目录
+            pendingSync.stream().filter(Files::isRegularFile).forEach(MirrorFilePipeline::syncFile);
+            pendingSync.stream().filter(Files::isDirectory).forEach(MirrorFilePipeline::syncDirectory);
+            log.info("镜像文件刷盘完成: {} 项", pendingSync.size());
+            pendingSync.clear();
+        }
+    }
+
+    private static void syncFile(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.warn("刷盘失败: {} ({})", file, e.getMessage());
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // 部分平台不支持打开目录，忽略
+            log.debug("目录刷盘失败: {} ({})", dir, e.getMessage());
+        }
+    }
+}
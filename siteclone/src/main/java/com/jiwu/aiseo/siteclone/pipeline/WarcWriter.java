@@ -0,0 +1,416 @@
+package com.jiwu.aiseo.siteclone.pipeline;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WARC 1.1 写入器 - 把抓取过程中的原始HTTP交互（请求 + 响应）写入 WARC 文件，同时生成 CDX 索引
+ *
+ * 每条记录单独 gzip 压缩（可按偏移随机读取单条记录），文件达到大小上限后滚动到下一个文件。
+ * 写入在单独的追加线程中进行，抓取线程只把交互放入有界队列；队列满时抓取线程等待，形成背压。
+ * 正在写入的文件带 .open 后缀，写完后改名；CDX 按抓取顺序追加，关闭时排序后原子替换。
+ * 写出的字节数（WARC 记录和 CDX 行）随写随报，WARC 在镜像的状态目录中，计入镜像用量。
+ * HttpClient 会自动解压 gzip/deflate 响应体，记录中保存的是解码后的内容，响应头相应去掉了传输编码并改写 Content-Length。
+ */
+@Slf4j
+public class WarcWriter implements Closeable {
+
+    private static final String OPEN_SUFFIX = ".open";
+    private static final String CDX_HEADER = " CDX N b a m s k r M S V g";
+    private static final DateTimeFormatter WARC_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
+            .withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter CDX_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss")
+            .withZone(ZoneOffset.UTC);
+    private static final byte[] RECORD_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+
+    private final Path dir;
+    private final String prefix;
+    private final long maxFileSize;
+    private final ThreadPoolExecutor appender;
+    private final LongConsumer bytesWritten;
+    private final Path cdxOpen;
+    // 以下字段只在追加线程中访问
+    private BufferedWriter cdx;
+    private FileChannel current;
+    private Path currentPath;
+    private String currentName;
+    private String warcinfoId;
+    private int sequence;
+    private long records;
+    private volatile boolean closed;
+
+    /**
+     * @param dir 输出目录
+     * @param prefix 文件名前缀（通常为域名加时间戳）
+     * @param maxFileSize 单个 WARC 文件的大小上限（字节），超过后滚动
+     * @param queueCapacity 待写入交互的队列容量
+     * @param bytesWritten 接收写出的字节数，在追加线程中调用
+     */
+    public WarcWriter(Path dir, String prefix, long maxFileSize, int queueCapacity, LongConsumer bytesWritten)
+            throws IOException {
+        this.dir = dir.toAbsolutePath().normalize();
+        this.prefix = prefix;
+        this.maxFileSize = Math.max(1, maxFileSize);
+        this.bytesWritten = bytesWritten;
+        Files.createDirectories(this.dir);
+        this.cdxOpen = this.dir.resolve(prefix + ".cdx" + OPEN_SUFFIX);
+        this.appender = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "warc-appender");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, pool) -> {
+                    // 队列已满：阻塞提交的抓取线程，直到追加线程腾出位置
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("WARC写入器已关闭");
+                    }
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("等待WARC写入队列时被中断", e);
+                    }
+                });
+        this.appender.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交一次HTTP交互，由追加线程写入请求和响应两条记录
+     */
+    public void write(Exchange exchange) {
+        if (closed) {
+            return;
+        }
+        try {
+            appender.execute(() -> append(exchange));
+        } catch (RejectedExecutionException e) {
+            log.debug("WARC写入器已关闭，丢弃记录: {}", exchange.targetUri);
+        }
+    }
+
+    private void append(Exchange exchange) {
+        try {
+            if (current == null || current.size() >= maxFileSize) {
+                roll();
+            }
+            String responseId = recordId();
+            String date = WARC_DATE.format(exchange.date);
+            byte[] responseBlock = concat(exchange.responseHead, exchange.payload);
+
+            List<String> responseHeaders = new ArrayList<>();
+            responseHeaders.add("WARC-Type: response");
+            responseHeaders.add("WARC-Record-ID: " + responseId);
+            responseHeaders.add("WARC-Date: " + date);
+            responseHeaders.add("WARC-Target-URI: " + exchange.targetUri);
+            if (exchange.ipAddress != null) {
+                responseHeaders.add("WARC-IP-Address: " + exchange.ipAddress);
+            }
+            responseHeaders.add("WARC-Warcinfo-ID: " + warcinfoId);
+            responseHeaders.add("WARC-Block-Digest: sha1:" + sha1Base32(responseBlock));
+            String payloadDigest = sha1Base32(exchange.payload);
+            responseHeaders.add("WARC-Payload-Digest: sha1:" + payloadDigest);
+            responseHeaders.add("Content-Type: application/http;msgtype=response");
+            long offset = current.position();
+            long length = writeRecord(responseHeaders, responseBlock);
+
+            if (exchange.requestHead != null) {
+                List<String> requestHeaders = new ArrayList<>();
+                requestHeaders.add("WARC-Type: request");
+                requestHeaders.add("WARC-Record-ID: " + recordId());
+                requestHeaders.add("WARC-Date: " + date);
+                requestHeaders.add("WARC-Target-URI: " + exchange.targetUri);
+                requestHeaders.add("WARC-Concurrent-To: " + responseId);
+                requestHeaders.add("WARC-Warcinfo-ID: " + warcinfoId);
+                requestHeaders.add("WARC-Block-Digest: sha1:" + sha1Base32(exchange.requestHead));
+                requestHeaders.add("Content-Type: application/http;msgtype=request");
+                writeRecord(requestHeaders, exchange.requestHead);
+            }
+
+            writeCdxLine(String.join(" ", surt(exchange.targetUri), CDX_DATE.format(exchange.date),
+                    exchange.targetUri.replace(" ", "%20"), cdxField(exchange.mimeType),
+                    Integer.toString(exchange.status), payloadDigest, cdxField(exchange.redirect), "-",
+                    Long.toString(length), Long.toString(offset), currentName));
+            cdx.flush();
+            records++;
+        } catch (IOException e) {
+            log.error("写入WARC记录失败: {}", exchange.targetUri, e);
+            finishCurrent(); // 当前文件可能已损坏，下一条记录写入新文件
+        }
+    }
+
+    /**
+     * 写出一条 gzip 压缩的记录
+     *
+     * @return 压缩后的记录长度
+     */
+    private long writeRecord(List<String> headers, byte[] block) throws IOException {
+        StringBuilder head = new StringBuilder("WARC/1.1\r\n");
+        for (String header : headers) {
+            head.append(header).append("\r\n");
+        }
+        head.append("Content-Length: ").append(block.length).append("\r\n\r\n");
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(block.length / 2 + 512);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(head.toString().getBytes(StandardCharsets.UTF_8));
+            gzip.write(block);
+            gzip.write(RECORD_END);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(compressed.toByteArray());
+        while (buffer.hasRemaining()) {
+            current.write(buffer);
+        }
+        bytesWritten.accept(compressed.size());
+        return compressed.size();
+    }
+
+    /**
+     * 追加一行 CDX；关闭时排序后的文件与追加的内容大小相同，不再另外计数
+     */
+    private void writeCdxLine(String line) throws IOException {
+        cdx.write(line);
+        cdx.newLine();
+        bytesWritten.accept(line.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length());
+    }
+
+    /**
+     * 结束当前文件，打开下一个文件并写入 warcinfo 记录
+     */
+    private void roll() throws IOException {
+        finishCurrent();
+        if (cdx == null) {
+            cdx = Files.newBufferedWriter(cdxOpen, StandardCharsets.UTF_8);
+            writeCdxLine(CDX_HEADER);
+        }
+        currentName = String.format("%s-%05d.warc.gz", prefix, sequence++);
+        currentPath = dir.resolve(currentName + OPEN_SUFFIX);
+        current = FileChannel.open(currentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        warcinfoId = recordId();
+        String fields = "software: aiseo-siteclone\r\n"
+                + "format: WARC File Format 1.1\r\n"
+                + "conformsTo: https://iipc.github.io/warc-specifications/specifications/warc-format/warc-1.1/\r\n"
+                + "isPartOf: " + prefix + "\r\n";
+        List<String> headers = new ArrayList<>();
+        headers.add("WARC-Type: warcinfo");
+        headers.add("WARC-Record-ID: " + warcinfoId);
+        headers.add("WARC-Date: " + WARC_DATE.format(Instant.now()));
+        headers.add("WARC-Filename: " + currentName);
+        headers.add("Content-Type: application/warc-fields");
+        writeRecord(headers, fields.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void finishCurrent() {
+        if (current == null) {
+            return;
+        }
+        try {
+            current.close();
+            move(currentPath, dir.resolve(currentName));
+        } catch (IOException e) {
+            log.error("关闭WARC文件失败: {}", currentPath, e);
+        }
+        current = null;
+    }
+
+    /**
+     * 等待队列中的记录全部写完，关闭当前文件并生成排序后的 CDX；可重复调用
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        appender.shutdown();
+        try {
+            if (!appender.awaitTermination(10, TimeUnit.MINUTES)) {
+                log.warn("等待WARC写入超时，仍有 {} 条交互未写入", appender.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finishCurrent();
+        if (cdx == null) {
+            return;
+        }
+        try {
+            cdx.close();
+            sortCdx();
+            log.info("WARC写入完成: {} ({} 个文件，{} 次交互)", dir, sequence, records);
+        } catch (IOException e) {
+            log.error("生成CDX索引失败: {}", cdxOpen, e);
+        }
+    }
+
+    private void sortCdx() throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(cdxOpen, StandardCharsets.UTF_8));
+        String header = lines.isEmpty() ? CDX_HEADER : lines.remove(0);
+        Collections.sort(lines);
+        lines.add(0, header);
+        Path temp = MirrorFiles.createTempFile(dir, ".cdx", ".tmp");
+        try {
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            move(temp, dir.resolve(prefix + ".cdx"));
+            Files.deleteIfExists(cdxOpen);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * URL的 SURT 形式（CDX 排序键）：主机名倒序、去掉 www、小写，如 {@code com,example)/path?q=1}
+     */
+    static String surt(String url) {
+        try {
+            URI uri = URI.create(url);
+            String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+            if (host.startsWith("www.")) {
+                host = host.substring(4);
+            }
+            String[] labels = host.split("\\.");
+            StringBuilder key = new StringBuilder();
+            for (int i = labels.length - 1; i >= 0; i--) {
+                key.append(labels[i]);
+                if (i > 0) {
+                    key.append(',');
+                }
+            }
+            int port = uri.getPort();
+            if (port != -1 && !(port == 80 && "http".equals(uri.getScheme()))
+                    && !(port == 443 && "https".equals(uri.getScheme()))) {
+                key.append(':').append(port);
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            key.append(')').append(path.toLowerCase(Locale.ROOT));
+            if (uri.getRawQuery() != null) {
+                key.append('?').append(uri.getRawQuery().toLowerCase(Locale.ROOT));
+            }
+            return key.toString();
+        } catch (IllegalArgumentException e) {
+            return url.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static String cdxField(String value) {
+        return value == null || value.isBlank() ? "-" : value.trim().replace(' ', '_');
+    }
+
+    private static String recordId() {
+        return "<urn:uuid:" + UUID.randomUUID() + ">";
+    }
+
+    private static byte[] concat(byte[] head, byte[] body) {
+        byte[] result = new byte[head.length + body.length];
+        System.arraycopy(head, 0, result, 0, head.length);
+        System.arraycopy(body, 0, result, head.length, body.length);
+        return result;
+    }
+
+    private static String sha1Base32(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder result = new StringBuilder();
+            int buffer = 0;
+            int bits = 0;
+            for (byte b : digest) {
+                buffer = (buffer << 8) | (b & 0xFF);
+                bits += 8;
+                while (bits >= 5) {
+                    result.append(BASE32[(buffer >> (bits - 5)) & 0x1F]);
+                    bits -= 5;
+                }
+            }
+            if (bits > 0) {
+                result.append(BASE32[(buffer << (5 - bits)) & 0x1F]);
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 不可用", e);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 一次HTTP交互
+     */
+    public static final class Exchange {
+        private final String targetUri;
+        private final Instant date;
+        private final String ipAddress;
+        private final byte[] requestHead;
+        private final byte[] responseHead;
+        private final byte[] payload;
+        private final int status;
+        private final String mimeType;
+        private final String redirect;
+
+        /**
+         * @param targetUri 请求的URL
+         * @param date 交互时间
+         * @param ipAddress 服务器IP，未知时为null
+         * @param requestHead 请求行和请求头（含结尾空行），未知时为null，只写响应记录
+         * @param responseHead 状态行和响应头（含结尾空行）
+         * @param payload 响应体
+         * @param status 状态码
+         * @param mimeType 响应的内容类型，可为null
+         * @param redirect 重定向目标（Location），可为null
+         */
+        public Exchange(String targetUri, Instant date, String ipAddress, byte[] requestHead, byte[] responseHead,
+                byte[] payload, int status, String mimeType, String redirect) {
+            this.targetUri = targetUri;
+            this.date = date.truncatedTo(ChronoUnit.SECONDS);
+            this.ipAddress = ipAddress;
+            this.requestHead = requestHead;
+            this.responseHead = responseHead;
+            this.payload = payload == null ? new byte[0] : payload;
+            this.status = status;
+            this.mimeType = mimeType;
+            this.redirect = redirect;
+        }
+
+        public String getTargetUri() { return targetUri; }
+        public Instant getDate() { return date; }
+        public int getStatus() { return status; }
+    }
+}
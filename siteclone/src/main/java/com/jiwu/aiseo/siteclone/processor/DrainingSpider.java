@@ -0,0 +1,58 @@
+package com.jiwu.aiseo.siteclone.processor;
+
+import us.codecraft.webmagic.Spider;
+import us.codecraft.webmagic.processor.PageProcessor;
+
+/**
+ * 可以中途停止的 Spider
+ *
+ * WebMagic 的 {@link Spider#stop()} 只让调度循环退出，随后立即关闭输出管道和线程池，
+ * 仍在下载或解析的页面写入时管道已经关闭。这里关闭前先等进行中的请求处理完，
+ * 它们发现的新URL留在队列中，可以保存后继续抓取。
+ * 在 {@link #run()} 开始之前调用 {@link #stop()} 也会生效（WebMagic 会忽略这种停止）。
+ */
+public class DrainingSpider extends Spider {
+
+    private static final long DRAIN_POLL_MILLIS = 50;
+
+    private volatile boolean stopRequested;
+
+    public DrainingSpider(PageProcessor pageProcessor) {
+        super(pageProcessor);
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+        super.stop();
+    }
+
+    /**
+     * 是否被中途停止（而不是抓取完所有页面后结束）
+     */
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    @Override
+    protected void initComponent() {
+        super.initComponent();
+        // run() 已把状态置为运行中；之前收到的停止请求在这里补上，调度循环不会开始
+        if (stopRequested) {
+            stat.set(STAT_STOPPED);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            while (getThreadAlive() > 0) {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("等待进行中的请求被中断，直接关闭: {}", getUUID());
+        }
+        super.close();
+    }
+}
@@ -5,11 +5,25 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -19,18 +33,36 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
+import com.jiwu.aiseo.siteclone.downloader.CustomHttpClientDownloader;
+import com.jiwu.aiseo.siteclone.downloader.HttpResponseCache;
+import com.jiwu.aiseo.siteclone.metrics.CrawlMetrics;
+import com.jiwu.aiseo.siteclone.model.CloneOptions;
 import com.jiwu.aiseo.siteclone.model.CloneTask;
+import com.jiwu.aiseo.siteclone.model.SkippedResourceMode;
+import com.jiwu.aiseo.siteclone.pipeline.MirrorFilePipeline;
+import com.jiwu.aiseo.siteclone.pipeline.WarcWriter;
+import com.jiwu.aiseo.siteclone.scheduling.FairShareScheduler;
+import com.jiwu.aiseo.siteclone.storage.BlobStore;
+import com.jiwu.aiseo.siteclone.storage.FrontierCheckpoint;
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+import com.jiwu.aiseo.siteclone.storage.ValidatorStore;
+import com.jiwu.aiseo.siteclone.utils.ResourceFilter;
 import com.jiwu.aiseo.siteclone.utils.ResourceProcessor;
+import com.jiwu.aiseo.siteclone.utils.RevisitScheduler;
 import com.jiwu.aiseo.siteclone.utils.SecurityUtils;
+import com.jiwu.aiseo.siteclone.utils.SitemapParser;
 import com.jiwu.aiseo.siteclone.utils.WebResourceDownloader;
 import com.jiwu.aiseo.siteclone.utils.WebsitePathMapper;
 
 import us.codecraft.webmagic.Page;
+import us.codecraft.webmagic.Request;
 import us.codecraft.webmagic.Site;
 import us.codecraft.webmagic.processor.PageProcessor;
 
 public class WebsiteMirrorProcessor implements PageProcessor {
     private static final Logger logger = LoggerFactory.getLogger(WebsiteMirrorProcessor.class);
+    private static final long BACKGROUND_TIMEOUT_MINUTES = 10; // 结束时等待后台任务的最长时间
+    private static final String IMAGE_PLACEHOLDER = "data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7"; // 1x1透明GIF
 
     private final Site site;
     private final String outputDir;
@@ -38,13 +70,30 @@ public class WebsiteMirrorProcessor implements PageProcessor {
     private final CloneTask cloneTask;
     private final SiteCloneProperties properties; // 添加配置属性
     private final ConcurrentHashMap<String, Boolean> urlCache = new ConcurrentHashMap<>();
+    private final Set<String> processedStylesheets = ConcurrentHashMap.newKeySet(); // 已处理过的样式表，避免重复改写
+    private final Set<String> discoveredAssets = ConcurrentHashMap.newKeySet(); // 已从JS中发现并处理过的资源URL
+    private final ExecutorService downloadExecutor; // 资源并行下载线程池
+    private final ExecutorService discoveryExecutor; // JS扫描和样式表改写线程池
+    private final AtomicInteger backgroundTasks = new AtomicInteger(); // 已提交、尚未完成的后台任务（资源下载、JS扫描、样式表改写）
     private final WebsitePathMapper pathMapper; // 路径映射器
     private final ResourceProcessor resourceProcessor; // 资源处理器
     private final WebResourceDownloader resourceDownloader; // 资源下载器
+    private final ValidatorStore validatorStore; // 镜像的校验器存储，用于条件重新克隆
     private final boolean preserveOriginalUrls; // 是否保留原始URL
+    private final MirrorFilePipeline outputPipeline; // 页面文件输出管道
+    private final WarcWriter warcWriter; // 原始HTTP交互的WARC输出，未启用时为null
+    private final AtomicInteger refreshBudgetLeft = new AtomicInteger(); // 刷新模式剩余的页面抓取预算
+    private volatile boolean refreshMode; // 是否按刷新计划抓取
+    private volatile CrawlMetrics.TaskMetrics metrics = CrawlMetrics.TaskMetrics.NONE; // 所属任务的抓取指标
+    private volatile CustomHttpClientDownloader downloader; // 替换的下载器（如离线回放），为null时各处使用默认的网络下载器
 
     public WebsiteMirrorProcessor(String domain, int retryTimes, int sleepTime, String outputDir, CloneTask cloneTask, 
             SiteCloneProperties properties, boolean preserveOriginalUrls) {
+        this(domain, retryTimes, sleepTime, outputDir, cloneTask, properties, preserveOriginalUrls, null, null);
+    }
+
+    public WebsiteMirrorProcessor(String domain, int retryTimes, int sleepTime, String outputDir, CloneTask cloneTask, 
+            SiteCloneProperties properties, boolean preserveOriginalUrls, BlobStore blobStore, HttpResponseCache responseCache) {
         this.preserveOriginalUrls = preserveOriginalUrls;
         this.site = Site.me()
                 .setDomain(domain)
@@ -70,11 +119,26 @@ public class WebsiteMirrorProcessor implements PageProcessor {
         this.properties = properties; // 保存配置属性
         this.pathMapper = new WebsitePathMapper(outputDir, domain); // 初始化路径映射器
         
+        // 加载上次克隆记录的校验器；条件重新克隆时页面可能返回304，需要交给process处理
+        this.validatorStore = ValidatorStore.load(Paths.get(outputDir, ".siteclone", "validators"));
+        if (cloneTask.getOptions().isConditionalReclone()) {
+            site.setAcceptStatCode(Set.of(200, 304));
+        }
+        
+        SiteCloneProperties.Output output = properties.getOutput();
+        this.outputPipeline = new MirrorFilePipeline(cloneTask, output.getWriterThreads(), output.getQueueCapacity(),
+                output.getFsyncPolicy());
+        
         // 初始化资源下载器
-        this.resourceDownloader = new WebResourceDownloader(site, cloneTask, properties);
+        this.resourceDownloader = new WebResourceDownloader(site, cloneTask, properties, blobStore, responseCache,
+                validatorStore);
+        this.warcWriter = output.isWarcEnabled() ? createWarcWriter(output) : null;
+        resourceDownloader.setWarcWriter(warcWriter);
         
-        // 初始化资源处理器
-        this.resourceProcessor = new ResourceProcessor(pathMapper, resourceDownloader);
+        // 初始化资源处理器，CSS引用的资源使用独立的下载线程池并行下载
+        this.downloadExecutor = createExecutor("resource-download-", properties.getCrawler().getMaxConcurrentDownloads());
+        this.discoveryExecutor = createExecutor("js-discovery-", 2);
+        this.resourceProcessor = new ResourceProcessor(pathMapper, resourceDownloader, downloadExecutor);
         
         // 添加常见的JS URL替换规则
         resourceProcessor.addJsUrlReplacement("https://" + domain + "/", "./");
@@ -86,6 +150,22 @@ public class WebsiteMirrorProcessor implements PageProcessor {
         createDirectories();
     }
 
+    /**
+     * 创建后台线程池（守护线程，空闲后自动回收，不阻止JVM退出）
+     */
+    private static ExecutorService createExecutor(String namePrefix, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void createDirectories() {
         try {
             Files.createDirectories(Paths.get(outputDir));
@@ -103,7 +183,12 @@ public class WebsiteMirrorProcessor implements PageProcessor {
 
     @Override
     public void process(Page page) {
+        long parseStart = System.nanoTime();
         logger.info("处理页面: {}", page.getUrl());
+        if (page.getStatusCode() == 304) {
+            processNotModified(page);
+            return;
+        }
         // 提取页面中的所有链接，保留.html等后缀
         // 使用LinkedHashSet保持顺序同时去重
         // 修改正则表达式以支持端口和多语言字符
@@ -121,11 +206,21 @@ public class WebsiteMirrorProcessor implements PageProcessor {
                 logger.debug("URL已在缓存中，跳过: {}", link);
             }
         }
-        page.addTargetRequests(newLinks);
+        for (String link : newLinks) {
+            // 刷新模式只追加镜像中还没有的页面，且受剩余预算限制
+            if (refreshMode && (validatorStore.get(link) != null || refreshBudgetLeft.getAndDecrement() <= 0)) {
+                continue;
+            }
+            page.addTargetRequest(createRequest(link));
+        }
+        List<String> pageResources = Collections.synchronizedList(new ArrayList<>()); // 本页面成功下载的资源，供下次条件克隆重新验证
 
         // 解析当前页面
         String htmlContent = page.getHtml().toString();
         Document doc = Jsoup.parse(htmlContent);
+        long rewriteStart = System.nanoTime();
+        metrics.recordStage(CrawlMetrics.Stage.PARSE, rewriteStart - parseStart);
+        long resourceNanos = 0; // 同步过滤和下载资源的时间，从改写阶段中扣除
 
         // 获取当前页面URL
         String url = page.getUrl().toString();
@@ -171,12 +266,21 @@ public class WebsiteMirrorProcessor implements PageProcessor {
             }
         }
         
-        // 处理srcset属性
+        // 处理srcset属性（包括 picture 中的 source），按任务的srcset策略选择要下载的候选
         Elements elementsWithSrcset = doc.select("[srcset]");
+        CloneOptions options = cloneTask.getOptions();
+        int srcsetSkipped = 0;
+        long srcsetBytesSaved = 0;
         for (Element element : elementsWithSrcset) {
             String srcset = element.attr("srcset");
-            String newSrcset = resourceProcessor.processSrcset(srcset, baseUrl, currentPagePath);
-            element.attr("srcset", newSrcset);
+            ResourceProcessor.SrcsetResult result = resourceProcessor.processSrcset(srcset, baseUrl, currentPagePath,
+                    options.getSrcsetPolicy(), options.getSrcsetTargetWidth());
+            element.attr("srcset", result.getSrcset());
+            srcsetSkipped += result.getSkippedCandidates();
+            srcsetBytesSaved += result.getEstimatedBytesSaved();
+        }
+        if (srcsetSkipped > 0) {
+            cloneTask.addSrcsetSavings(srcsetSkipped, srcsetBytesSaved);
         }
 
         // 定义需要处理的资源类型
@@ -272,12 +376,34 @@ public class WebsiteMirrorProcessor implements PageProcessor {
 
                     // 处理逻辑：当前域名资源下载，外部资源保留原始URL
                     if (isCurrentDomainResource) {
+                        // 按任务的过滤规则跳过不需要的类型和超大资源
+                        long resourceStart = System.nanoTime();
+                        ResourceFilter.Decision skip = resourceDownloader.filter(absUrl);
+                        if (skip != null) {
+                            resourceNanos += System.nanoTime() - resourceStart;
+                            element.attr(attrName, skippedResourceUrl(element, absUrl));
+                            logger.debug("资源被过滤规则跳过: {} ({})", absUrl, skip.getReason());
+                            continue;
+                        }
+                        
                         // 下载当前域名资源并更新链接
-                        if (resourceDownloader.downloadResource(absUrl, resourceMapping.getLocalPath())) {
+                        boolean downloaded = resourceDownloader.downloadResource(absUrl, resourceMapping.getLocalPath());
+                        resourceNanos += System.nanoTime() - resourceStart;
+                        if (downloaded) {
+                            if (!element.tagName().equals("a")) {
+                                pageResources.add(absUrl);
+                            }
                             // 如果是CSS文件，下载后处理其中的URL引用
-                            if (element.tagName().equals("link") && attrName.equals("href") && element.attr("rel").equals("stylesheet")) {
+                            if (element.tagName().equals("link") && attrName.equals("href") && element.attr("rel").equals("stylesheet")
+                                    && processedStylesheets.add(resourceMapping.getLocalPath())) {
                                 // 异步处理CSS文件中的URL引用，避免阻塞主流程
-                                processCssFileAsync(resourceMapping.getLocalPath(), baseUrl);
+                                // CSS中的相对URL相对于样式表自身解析，而不是引用它的页面
+                                processCssFileAsync(resourceMapping.getLocalPath(), absUrl);
+                            }
+                            
+                            // 如果是JS文件，扫描其中懒加载的chunk和资源
+                            if (element.tagName().equals("script") && discoveredAssets.add(absUrl)) {
+                                discoverJsAssetsAsync(resourceMapping.getLocalPath(), absUrl, 0);
                             }
                             
                             // 计算从当前页面到资源的正确相对路径
@@ -307,23 +433,320 @@ public class WebsiteMirrorProcessor implements PageProcessor {
         interceptorScript.text(resourceProcessor.createInterceptorScript());
         doc.body().appendChild(interceptorScript);
         
-        // 保存处理后的HTML文件
+        // 处理后的HTML交给输出管道写入（页面计数在写入完成后更新）
+        page.putField(MirrorFilePipeline.PATH, Paths.get(currentPagePath));
+        page.putField(MirrorFilePipeline.CONTENT, doc.outerHtml().getBytes());
+        metrics.recordStage(CrawlMetrics.Stage.RESOURCES, resourceNanos);
+        metrics.recordStage(CrawlMetrics.Stage.REWRITE, System.nanoTime() - rewriteStart - resourceNanos);
+
+        boolean known = validatorStore.get(url) != null;
+        byte[] pageBytes = page.getBytes() != null ? page.getBytes() : page.getRawText().getBytes();
+        boolean changed = validatorStore.recordPage(url, ValidatorStore.firstHeader(page.getHeaders(), "ETag"),
+                ValidatorStore.firstHeader(page.getHeaders(), "Last-Modified"), BlobStore.sha256(pageBytes),
+                links, pageResources);
+        if (known && changed) {
+            cloneTask.incrementPagesChanged();
+        }
+    }
+
+    /**
+     * 页面文件输出管道，需要加入 Spider
+     */
+    public MirrorFilePipeline getOutputPipeline() {
+        return outputPipeline;
+    }
+
+    /**
+     * 替换资源下载和 sitemap 读取使用的下载器（如 {@link com.jiwu.aiseo.siteclone.downloader.ReplayDownloader}）；
+     * Spider 的页面下载器需要由调用方同样替换
+     */
+    public void setDownloader(CustomHttpClientDownloader downloader) {
+        this.downloader = downloader;
+        downloader.setWarcWriter(warcWriter);
+        resourceDownloader.setDownloader(downloader);
+    }
+
+    /**
+     * 设置所属任务的抓取指标：页面处理各阶段的耗时，以及资源下载和文件写入；Spider 的页面下载器需要由调用方同样设置
+     */
+    public void setMetrics(CrawlMetrics.TaskMetrics metrics) {
+        this.metrics = metrics;
+        resourceDownloader.setMetrics(metrics); // 同时设置到替换的下载器
+        outputPipeline.setMetrics(metrics);
+    }
+
+    /**
+     * 设置资源下载使用的共享请求槽位；Spider 的页面下载器需要由调用方用同一个流设置
+     */
+    public void setFetchShare(FairShareScheduler fetchSlots, FairShareScheduler.Flow fetchFlow) {
+        resourceDownloader.setFetchShare(fetchSlots, fetchFlow);
+    }
+
+    /**
+     * WARC写入器，需要设置到 Spider 使用的下载器；未启用时为null
+     */
+    public WarcWriter getWarcWriter() {
+        return warcWriter;
+    }
+
+    /**
+     * 每次克隆写入一组新的 WARC 文件，保存在镜像状态目录中，不出现在可浏览的镜像里
+     */
+    private WarcWriter createWarcWriter(SiteCloneProperties.Output output) {
+        String prefix = domain + "-" + DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC)
+                .format(Instant.now());
         try {
-            Path htmlFilePath = Paths.get(currentPagePath);
-            Files.createDirectories(htmlFilePath.getParent());
-            Files.write(htmlFilePath, doc.outerHtml().getBytes());
-            logger.info("保存HTML文件: {}", htmlFilePath);
-
-            // 增加页面爬取和文件下载计数
-            synchronized (cloneTask) {
-                cloneTask.incrementPagesCrawled();
-                cloneTask.incrementFilesDownloaded(); // HTML文件也算作下载的文件
+            return new WarcWriter(Paths.get(outputDir, MirrorFiles.STATE_DIR, "warc"), prefix,
+                    output.getWarcMaxFileSize(), output.getWarcQueueCapacity(), cloneTask::addBytesStored);
+        } catch (IOException e) {
+            logger.error("创建WARC写入器失败，本次克隆不生成WARC: {}", outputDir, e);
+            return null;
+        }
+    }
+
+    /**
+     * 创建抓取请求；条件重新克隆时，本地已有的页面带上次记录的校验器
+     * 
+     * @param url 页面URL
+     * @return 抓取请求
+     */
+    public Request createRequest(String url) {
+        Request request = new Request(url);
+        if (cloneTask.getOptions().isConditionalReclone()) {
+            ValidatorStore.Validator validator = validatorStore.get(url);
+            if (validator != null && validator.hasValidator()
+                    && Files.exists(Paths.get(pathMapper.mapUrlToLocalPath(url).getLocalPath()))) {
+                for (Map.Entry<String, String> header : validator.conditionalHeaders().entrySet()) {
+                    request.addHeader(header.getKey(), header.getValue());
+                }
             }
+        }
+        return request;
+    }
+
+    /**
+     * 镜像是否有上次克隆留下的页面访问历史
+     */
+    public boolean hasHistory() {
+        return validatorStore.snapshot().values().stream().anyMatch(ValidatorStore.Validator::isPage);
+    }
+
+    /**
+     * 进入刷新模式：结合访问历史和 sitemap 的 lastmod 估计各页面已变化的概率，在预算内选出最可能变化的页面
+     *
+     * 计划外的预算用于抓取刷新过程中新发现的页面；未修改的页面不再展开出链和资源。
+     *
+     * @param startUrl 任务起始URL
+     * @param budget 页面抓取预算
+     * @return 初始抓取请求
+     */
+    public List<Request> startRefresh(String startUrl, int budget) {
+        refreshMode = true;
+        Map<String, Long> sitemap = new LinkedHashMap<>();
+        try {
+            URI start = new URI(startUrl);
+            CustomHttpClientDownloader sitemapDownloader = downloader != null ? downloader : new CustomHttpClientDownloader();
+            Map<String, Long> declared = new SitemapParser(sitemapUrl -> {
+                Page page = sitemapDownloader.fetch(sitemapUrl, site, null);
+                return page != null && page.getStatusCode() == 200 ? page.getBytes() : null;
+            }).read(start.getScheme() + "://" + start.getRawAuthority());
+            for (Map.Entry<String, Long> entry : declared.entrySet()) {
+                String host = new URI(entry.getKey()).getHost();
+                if (host != null && host.equalsIgnoreCase(start.getHost())) {
+                    sitemap.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("读取sitemap失败，仅按访问历史制定刷新计划: {} ({})", startUrl, e.getMessage());
+        }
+
+        RevisitScheduler.Plan plan = new RevisitScheduler(properties.getCrawler().getDefaultChangeInterval())
+                .plan(validatorStore, sitemap, budget, System.currentTimeMillis());
+        List<String> urls = plan.getUrls().isEmpty() ? List.of(startUrl) : plan.getUrls();
+        refreshBudgetLeft.set(budget - urls.size());
+        cloneTask.setRefreshPlan(urls.size(), plan.getExpectedChanges(), plan.getExpectedFreshness());
+        List<Request> requests = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            urlCache.put(url, true);
+            requests.add(createRequest(url));
+        }
+        logger.info("刷新计划: 预算 {}，选出 {} 个页面，预计变化 {}，预计新鲜度 {}", budget, urls.size(),
+                String.format("%.2f", plan.getExpectedChanges()), String.format("%.3f", plan.getExpectedFreshness()));
+        return requests;
+    }
+
+    /**
+     * 页面未修改（304）：保留本地文件，不重新解析；按上次记录的出链继续抓取，并重新验证页面引用的资源
+     */
+    private void processNotModified(Page page) {
+        page.setSkip(true);
+        String url = page.getUrl().toString();
+        cloneTask.incrementPagesUnchanged();
+        validatorStore.recordNotModified(url);
+        ValidatorStore.Validator validator = validatorStore.get(url);
+        if (validator == null || refreshMode) {
+            // 刷新模式下出链和资源不在本次预算内
+            logger.info("页面未修改，保留本地文件: {}", url);
+            return;
+        }
+        for (String link : validator.getLinks()) {
+            if (urlCache.putIfAbsent(link, true) == null) {
+                page.addTargetRequest(createRequest(link));
+            }
+        }
+        for (String resourceUrl : validator.getResources()) {
+            runInBackground(downloadExecutor, () -> revalidateResource(resourceUrl));
+        }
+        logger.info("页面未修改，保留本地文件: {} (出链 {} 个，资源 {} 个)", url, validator.getLinks().size(),
+                validator.getResources().size());
+    }
+
+    /**
+     * 重新验证未修改页面引用的资源；样式表内容有更新时交给改写线程池重新改写其中的URL
+     *
+     * 在资源下载线程池中执行，不能在这里直接改写：改写要等待样式表引用的资源在同一个线程池中下载完成
+     */
+    private void revalidateResource(String resourceUrl) {
+        try {
+            String localPath = pathMapper.mapUrlToLocalPath(resourceUrl).getLocalPath();
+            Path file = Paths.get(localPath);
+            Object before = Files.exists(file) ? Files.readAttributes(file, BasicFileAttributes.class).fileKey() : null;
+            if (!resourceDownloader.downloadResource(resourceUrl, localPath)) {
+                return;
+            }
+            Object after = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            // 文件被替换（fileKey变化）说明内容有更新
+            boolean updated = before == null || !before.equals(after);
+            if (updated && new URI(resourceUrl).getPath().toLowerCase().endsWith(".css")) {
+                processCssFileAsync(localPath, resourceUrl);
+            }
+        } catch (Exception e) {
+            logger.warn("重新验证资源失败: {} ({})", resourceUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * 提交后台任务并计数，{@link #finish()} 据此等待所有后台任务完成
+     */
+    private void runInBackground(ExecutorService executor, Runnable task) {
+        backgroundTasks.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    backgroundTasks.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backgroundTasks.decrementAndGet();
+            logger.debug("任务已结束，不再处理后台任务");
+        }
+    }
+
+    /**
+     * 任务结束（或暂停、取消、出错）时等待后台的资源下载、JS扫描和样式表改写完成，再等页面文件写完，并保存镜像状态（校验器）
+     *
+     * Spider 需要已经停止，之后不能再处理页面
+     */
+    public void finish() {
+        awaitBackgroundTasks();
+        downloadExecutor.shutdown();
+        discoveryExecutor.shutdown();
+        resourceDownloader.close();
+        outputPipeline.close();
+        if (warcWriter != null) {
+            warcWriter.close();
+        }
+        try {
+            cloneTask.addBytesStored(validatorStore.save());
+            logger.info("保存校验器: {} 个URL", validatorStore.size());
         } catch (IOException e) {
-            logger.error("保存HTML文件失败: {}", url, e);
+            logger.error("保存校验器失败: {}", outputDir, e);
         }
     }
 
+    /**
+     * 等待后台任务完成；后台任务会提交新的后台任务（JS中发现的资源、样式表引用的资源），计数归零才算完成
+     */
+    private void awaitBackgroundTasks() {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(BACKGROUND_TIMEOUT_MINUTES);
+        try {
+            while (backgroundTasks.get() > 0) {
+                if (System.nanoTime() > deadline) {
+                    logger.warn("等待后台任务超时，剩余 {} 个未完成: {}", backgroundTasks.get(), outputDir);
+                    return;
+                }
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 保存抓取进度，继续时由 {@link #resumeFrontier()} 读取
+     *
+     * @param pending Spider 停止后队列中剩余的请求
+     */
+    public void saveFrontier(List<Request> pending) throws IOException {
+        List<String> urls = new ArrayList<>(pending.size());
+        for (Request request : pending) {
+            urls.add(request.getUrl());
+        }
+        Set<String> seen = new LinkedHashSet<>(urlCache.keySet());
+        seen.add(cloneTask.getUrl()); // 起始页不经过链接去重，也要记下
+        cloneTask.addBytesStored(new FrontierCheckpoint(urls, seen, refreshMode, refreshBudgetLeft.get())
+                .save(FrontierCheckpoint.file(Paths.get(outputDir))));
+        logger.info("保存抓取进度: 待抓取 {} 个页面，已发现 {} 个URL", urls.size(), seen.size());
+    }
+
+    /**
+     * 恢复暂停时保存的抓取进度：已发现的URL不再重复抓取，刷新模式保持原来的剩余预算
+     *
+     * @return 待抓取的请求；没有保存的进度时返回null
+     */
+    public List<Request> resumeFrontier() {
+        FrontierCheckpoint checkpoint = FrontierCheckpoint.load(FrontierCheckpoint.file(Paths.get(outputDir)));
+        if (checkpoint == null) {
+            return null;
+        }
+        for (String url : checkpoint.getSeen()) {
+            urlCache.put(url, true);
+        }
+        refreshMode = checkpoint.isRefreshMode();
+        refreshBudgetLeft.set(checkpoint.getRefreshBudgetLeft());
+        List<Request> requests = new ArrayList<>(checkpoint.getPending().size());
+        for (String url : checkpoint.getPending()) {
+            requests.add(createRequest(url));
+        }
+        logger.info("恢复抓取进度: 待抓取 {} 个页面，已发现 {} 个URL", requests.size(), checkpoint.getSeen().size());
+        return requests;
+    }
+
+    /**
+     * 删除保存的抓取进度（任务完成或取消）
+     */
+    public void discardFrontier() {
+        cloneTask.addBytesStored(-FrontierCheckpoint.delete(FrontierCheckpoint.file(Paths.get(outputDir))));
+    }
+
+    /**
+     * 被过滤资源在页面中的替代URL
+     * 
+     * 链接始终保留绝对URL，避免页面导航失效；其余元素按任务选项改写为占位内容
+     */
+    private String skippedResourceUrl(Element element, String absUrl) {
+        if (cloneTask.getOptions().getSkippedResourceMode() != SkippedResourceMode.PLACEHOLDER
+                || element.tagName().equals("a") || element.tagName().equals("form")) {
+            return absUrl;
+        }
+        if (element.tagName().equals("img") || element.tagName().equals("input")) {
+            return IMAGE_PLACEHOLDER;
+        }
+        return "about:blank";
+    }
+
     /**
      * 获取绝对URL
      * 
@@ -420,16 +843,70 @@ public class WebsiteMirrorProcessor implements PageProcessor {
      * @param baseUrl 基础URL
      */
     private void processCssFileAsync(String cssFilePath, String baseUrl) {
-        new Thread(() -> {
+        // 调用时文件已写完；不能放在资源下载线程池中，改写时要等待其中引用的资源下载完成
+        runInBackground(discoveryExecutor, () -> {
             try {
-                // 等待一小段时间确保文件写入完成
-                Thread.sleep(100);
-                resourceProcessor.processCssFile(cssFilePath, baseUrl);
+                processCssFile(cssFilePath, baseUrl);
                 logger.info("异步处理CSS文件完成: {}", cssFilePath);
             } catch (Exception e) {
                 logger.error("异步处理CSS文件失败: {}", cssFilePath, e);
             }
-        }).start();
+        });
+    }
+
+    /**
+     * 改写样式表中的URL引用，记录CSS阶段耗时
+     */
+    private void processCssFile(String cssFilePath, String baseUrl) {
+        long start = System.nanoTime();
+        resourceProcessor.processCssFile(cssFilePath, baseUrl);
+        metrics.recordStage(CrawlMetrics.Stage.CSS, System.nanoTime() - start);
+    }
+
+    /**
+     * 异步扫描JS文件，把发现的同源资源加入下载队列
+     * 
+     * @param jsFilePath JS文件路径
+     * @param jsUrl JS文件URL
+     * @param depth 当前递归深度（页面直接引用的脚本为0）
+     */
+    private void discoverJsAssetsAsync(String jsFilePath, String jsUrl, int depth) {
+        if (!properties.getCrawler().isJsDiscoveryEnabled()) {
+            return;
+        }
+        runInBackground(discoveryExecutor, () -> {
+            List<String> assetUrls = resourceProcessor.findJsAssetUrls(jsFilePath, jsUrl,
+                    properties.getCrawler().getJsScanTimeBudget());
+            for (String assetUrl : assetUrls) {
+                if (discoveredAssets.add(assetUrl)) {
+                    runInBackground(downloadExecutor, () -> downloadDiscoveredAsset(assetUrl, depth + 1));
+                }
+            }
+        });
+    }
+
+    /**
+     * 下载从JS中发现的资源；新的JS继续递归扫描，CSS处理其中的URL引用
+     */
+    private void downloadDiscoveredAsset(String assetUrl, int depth) {
+        try {
+            WebsitePathMapper.PathMappingResult mapping = pathMapper.mapUrlToLocalPath(assetUrl);
+            if (!resourceDownloader.downloadResource(assetUrl, mapping.getLocalPath())) {
+                logger.debug("下载JS中发现的资源失败: {}", assetUrl);
+                return;
+            }
+            logger.info("下载JS中发现的资源: {} -> {}", assetUrl, mapping.getLocalPath());
+
+            String path = new URI(assetUrl).getPath().toLowerCase();
+            if ((path.endsWith(".js") || path.endsWith(".mjs"))
+                    && depth < properties.getCrawler().getJsDiscoveryMaxDepth()) {
+                discoverJsAssetsAsync(mapping.getLocalPath(), assetUrl, depth);
+            } else if (path.endsWith(".css") && processedStylesheets.add(mapping.getLocalPath())) {
+                runInBackground(discoveryExecutor, () -> processCssFile(mapping.getLocalPath(), assetUrl));
+            }
+        } catch (Exception e) {
+            logger.error("处理JS中发现的资源失败: {}", assetUrl, e);
+        }
     }
 
     @Override
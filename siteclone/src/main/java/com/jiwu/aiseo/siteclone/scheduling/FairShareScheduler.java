@@ -0,0 +1,198 @@
+package com.jiwu.aiseo.siteclone.scheduling;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 加权公平队列 (Self-Clocked Fair Queuing)：在多个流之间分配固定数量的槽位
+ *
+ * 每次申请按 {@code max(虚拟时间, 流上次的完成标签) + 1 / 权重} 得到完成标签，有空闲槽位时按标签从小到大发放，
+ * 发放时虚拟时间推进到该标签。同时等待的流按权重比例交替得到槽位，持续大量申请的流不会让其他流饿死；
+ * 空闲后重新申请的流从当前虚拟时间开始，不会积攒额度。
+ *
+ * 既可以异步提交（{@link #submit}，获得槽位后在执行器上运行，等待期间不占线程），
+ * 也可以阻塞申请（{@link #acquire}）；两种方式都需要在用完后 {@link #release()}。
+ */
+@Slf4j
+public class FairShareScheduler {
+
+    private final String name;
+    private final int capacity;
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>();
+    private int inUse;
+    private double virtualTime;
+    private long sequence; // 标签相同时按申请顺序发放
+
+    /**
+     * @param name 名称，用于日志
+     * @param capacity 槽位数
+     */
+    public FairShareScheduler(String name, int capacity) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * 创建一个流
+     *
+     * @param weight 权重，大于0；同时等待时得到的槽位与权重成正比
+     */
+    public Flow flow(double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+        return new Flow(weight);
+    }
+
+    /**
+     * 异步申请一个槽位，获得后在执行器上运行任务；任务结束后由调用方 {@link #release()}
+     *
+     * @return 申请凭据，发放前可以取消
+     */
+    public Ticket submit(Flow flow, Executor executor, Runnable task) {
+        Ticket ticket;
+        synchronized (this) {
+            ticket = enqueue(flow, () -> executor.execute(task));
+        }
+        dispatch();
+        return ticket;
+    }
+
+    /**
+     * 阻塞申请一个槽位，用完后 {@link #release()}
+     *
+     * @throws InterruptedException 等待时被中断，此时未占用槽位
+     */
+    public void acquire(Flow flow) throws InterruptedException {
+        CountDownLatch granted = new CountDownLatch(1);
+        Ticket ticket;
+        synchronized (this) {
+            ticket = enqueue(flow, granted::countDown);
+        }
+        dispatch();
+        try {
+            granted.await();
+        } catch (InterruptedException e) {
+            if (!ticket.cancel()) {
+                // 中断的同时已经发放，归还槽位
+                release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 归还一个槽位，发放给等待中标签最小的申请
+     */
+    public void release() {
+        synchronized (this) {
+            inUse--;
+        }
+        dispatch();
+    }
+
+    /**
+     * 正在使用的槽位数
+     */
+    public synchronized int getInUse() {
+        return inUse;
+    }
+
+    /**
+     * 等待中的申请数
+     */
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private Ticket enqueue(Flow flow, Runnable onGrant) {
+        double tag = Math.max(virtualTime, flow.finishTag) + 1 / flow.weight;
+        flow.finishTag = tag;
+        Ticket ticket = new Ticket(tag, sequence++, onGrant);
+        waiting.add(ticket);
+        return ticket;
+    }
+
+    /**
+     * 把空闲槽位发放给等待中的申请；回调在锁外执行（提交到执行器或唤醒等待的线程）
+     */
+    private void dispatch() {
+        while (true) {
+            Ticket next;
+            synchronized (this) {
+                if (inUse >= capacity || waiting.isEmpty()) {
+                    return;
+                }
+                next = waiting.poll();
+                next.granted = true;
+                inUse++;
+                virtualTime = next.tag;
+            }
+            try {
+                next.onGrant.run();
+            } catch (RuntimeException e) {
+                // 执行器拒绝等情况：槽位没有被使用，归还后继续发放
+                log.error("{} 发放槽位后启动失败", name, e);
+                synchronized (this) {
+                    inUse--;
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个流：标签在流内递增，流之间按标签交替
+     */
+    public static final class Flow {
+        private final double weight;
+        private double finishTag; // 在调度器的锁内读写
+
+        private Flow(double weight) {
+            this.weight = weight;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * 一次申请
+     */
+    public final class Ticket implements Comparable<Ticket> {
+        private final double tag;
+        private final long sequence;
+        private final Runnable onGrant;
+        private boolean granted; // 在调度器的锁内读写
+
+        private Ticket(double tag, long sequence, Runnable onGrant) {
+            this.tag = tag;
+            this.sequence = sequence;
+            this.onGrant = onGrant;
+        }
+
+        /**
+         * 取消尚未发放的申请
+         *
+         * @return 是否取消成功；已经发放时返回false，槽位仍需归还
+         */
+        public boolean cancel() {
+            synchronized (FairShareScheduler.this) {
+                return !granted && waiting.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            int byTag = Double.compare(tag, other.tag);
+            return byTag != 0 ? byTag : Long.compare(sequence, other.sequence);
+        }
+    }
+}
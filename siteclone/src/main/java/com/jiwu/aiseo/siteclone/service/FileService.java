@@ -7,21 +7,31 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+import com.jiwu.aiseo.siteclone.storage.PackResource;
+import com.jiwu.aiseo.siteclone.storage.PackStore;
+
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
 public class FileService {
 
+    @Autowired
+    private PackStore packStore;
+
     /**
      * 获取克隆任务的输出目录中的所有文件
      *
@@ -31,9 +41,17 @@ public class FileService {
     public List<String> listFiles(String outputDir) {
         Path basePath = Paths.get(outputDir).normalize();
         try (Stream<Path> walk = Files.walk(basePath)) {
-            return walk.filter(Files::isRegularFile)
+            // .siteclone 目录保存的是克隆状态（校验器、镜像包等），不属于镜像内容
+            Set<String> files = walk.filter(Files::isRegularFile)
+                    .filter(path -> !basePath.relativize(path).startsWith(MirrorFiles.STATE_DIR))
                     .map(Path::toString)
-                    .collect(Collectors.toList());
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            // 已打包的文件
+            PackStore.PackReader reader = packStore.open(basePath);
+            if (reader != null) {
+                reader.getEntries().keySet().forEach(path -> files.add(basePath.resolve(path).toString()));
+            }
+            return List.copyOf(files);
         } catch (IOException e) {
             log.error("Failed to list files in directory: {}", outputDir, e);
             throw new RuntimeException("Failed to list files", e);
@@ -49,6 +67,15 @@ public class FileService {
     public Map<String, Object> getFileMetadata(String filePath) {
         try {
             Path path = Paths.get(filePath);
+            PackStore.Located located = Files.exists(path) ? null : packStore.locate(path);
+            if (located != null) {
+                Map<String, Object> metadata = new HashMap<>();
+                metadata.put("name", path.getFileName().toString());
+                metadata.put("size", located.getEntry().getLength());
+                metadata.put("lastModified", located.getCreatedAt());
+                metadata.put("path", filePath);
+                return metadata;
+            }
             BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
             
             Map<String, Object> metadata = new HashMap<>();
@@ -76,6 +103,10 @@ public class FileService {
             Resource resource = new UrlResource(path.toUri());
             if (resource.exists()) {
                 return resource;
+            }
+            PackStore.Located located = packStore.locate(path);
+            if (located != null) {
+                return new PackResource(located);
             } else {
                 throw new RuntimeException("File not found: " + filePath);
             }
@@ -92,7 +123,12 @@ public class FileService {
      */
     public String getContentType(String filePath) {
         try {
-            return Files.probeContentType(Paths.get(filePath));
+            Path path = Paths.get(filePath);
+            PackStore.Located located = Files.exists(path) ? null : packStore.locate(path);
+            if (located != null && !located.getEntry().getContentType().isEmpty()) {
+                return located.getEntry().getContentType();
+            }
+            return Files.probeContentType(path);
         } catch (IOException e) {
             log.error("Failed to determine content type for file: {}", filePath, e);
             return "application/octet-stream";
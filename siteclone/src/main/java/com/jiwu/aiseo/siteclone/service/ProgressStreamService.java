@@ -0,0 +1,218 @@
+package com.jiwu.aiseo.siteclone.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
+import com.jiwu.aiseo.siteclone.dto.CloneResponse;
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 任务进度推送 (Server-Sent Events)
+ *
+ * 一个后台线程按固定间隔推送：同一周期内每个被订阅的任务只读取一次进度，与订阅的连接数无关；
+ * 每个连接只收到与上次推送相比变化的字段（首次为完整状态），多个任务的变化合并为一个事件。
+ * 任务完成、失败或取消后推送最后一次变化并取消订阅（暂停的任务保持订阅），连接上的任务都结束后关闭连接。
+ */
+@Slf4j
+@Service
+public class ProgressStreamService {
+
+    public static final String EVENT = "progress"; // 事件名，数据为变化的数组，每项含 taskId 和变化的字段
+    private static final TypeReference<LinkedHashMap<String, Object>> FIELDS = new TypeReference<>() {
+    };
+
+    private final SiteCloneService siteCloneService;
+    private final ObjectMapper objectMapper;
+    private final SiteCloneProperties.Progress config;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    public ProgressStreamService(SiteCloneService siteCloneService, ObjectMapper objectMapper,
+            SiteCloneProperties properties) {
+        this.siteCloneService = siteCloneService;
+        this.objectMapper = objectMapper;
+        this.config = properties.getProgress();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = Math.max(100, config.getStreamInterval());
+        scheduler.scheduleWithFixedDelay(this::publish, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 订阅任务进度
+     *
+     * @param taskIds 任务ID（去重后不超过 maxTasksPerStream 个）
+     * @param intervalMillis 客户端希望的推送间隔，小于 streamInterval 时按 streamInterval；为null时使用 streamInterval
+     * @return 推送连接；连接数已达上限时返回null
+     */
+    public SseEmitter subscribe(List<String> taskIds, Long intervalMillis) {
+        Set<String> ids = new LinkedHashSet<>(taskIds);
+        if (ids.isEmpty() || ids.size() > config.getMaxTasksPerStream()) {
+            throw new IllegalArgumentException("taskIds must contain 1 to " + config.getMaxTasksPerStream() + " tasks");
+        }
+        if (subscriptions.size() >= config.getMaxStreams()) {
+            return null;
+        }
+        long interval = Math.max(config.getStreamInterval(), intervalMillis == null ? 0 : intervalMillis);
+        SseEmitter emitter = new SseEmitter(config.getStreamTimeout());
+        Subscription subscription = new Subscription(emitter, ids, interval);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> {
+            subscriptions.remove(subscription);
+            emitter.complete();
+        });
+        emitter.onError(e -> subscriptions.remove(subscription));
+        subscriptions.add(subscription);
+        // 完整的初始状态在后台线程上推送，不占用请求线程
+        scheduler.execute(() -> publish(subscription, new HashMap<>(), System.currentTimeMillis()));
+        return emitter;
+    }
+
+    /**
+     * 当前打开的推送连接数
+     */
+    public int getStreamCount() {
+        return subscriptions.size();
+    }
+
+    private void publish() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long tick = config.getStreamInterval();
+        Map<String, Map<String, Object>> states = new HashMap<>(); // 本周期读取过的任务状态，供所有连接共用
+        for (Subscription subscription : subscriptions) {
+            // 容许半个周期的调度误差，避免间隔为周期整数倍的连接被推迟一个周期
+            if (now - subscription.lastSent >= subscription.interval - tick / 2
+                    || now - subscription.lastActivity >= config.getKeepAliveInterval()) {
+                publish(subscription, states, now);
+            }
+        }
+    }
+
+    private void publish(Subscription subscription, Map<String, Map<String, Object>> states, long now) {
+        try {
+            List<Map<String, Object>> deltas = subscription.collect(states);
+            subscription.lastSent = now;
+            if (!deltas.isEmpty()) {
+                subscription.emitter.send(SseEmitter.event().name(EVENT).data(deltas, MediaType.APPLICATION_JSON));
+                subscription.lastActivity = now;
+            } else if (now - subscription.lastActivity >= config.getKeepAliveInterval()) {
+                subscription.emitter.send(SseEmitter.event().comment("keepalive"));
+                subscription.lastActivity = now;
+            }
+            if (subscription.isDone()) {
+                subscriptions.remove(subscription);
+                subscription.emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            log.debug("推送任务进度失败，关闭连接: {}", e.getMessage());
+            subscriptions.remove(subscription);
+        } catch (RuntimeException e) {
+            log.warn("推送任务进度失败", e);
+            subscriptions.remove(subscription);
+            subscription.emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * 任务的当前状态（按JSON字段展开），同一周期内只读取一次
+     */
+    private Map<String, Object> state(String taskId, Map<String, Map<String, Object>> states) {
+        return states.computeIfAbsent(taskId, id -> {
+            CloneResponse response = siteCloneService.getTaskStatus(id);
+            return objectMapper.convertValue(response, FIELDS);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            subscription.emitter.complete();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * 一个推送连接：订阅的任务和每个任务上次推送的字段
+     */
+    private final class Subscription {
+        private final SseEmitter emitter;
+        private final Set<String> taskIds; // 仍在订阅的任务，只在推送线程上修改
+        private final long interval;
+        private final Map<String, Map<String, Object>> sent = new HashMap<>();
+        private volatile long lastSent;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private Subscription(SseEmitter emitter, Set<String> taskIds, long interval) {
+            this.emitter = emitter;
+            this.taskIds = taskIds;
+            this.interval = interval;
+        }
+
+        /**
+         * 与上次推送相比变化的字段；结束（或不存在）的任务在推送后取消订阅
+         */
+        private List<Map<String, Object>> collect(Map<String, Map<String, Object>> states) {
+            List<Map<String, Object>> deltas = new ArrayList<>();
+            List<String> finished = new ArrayList<>();
+            for (String taskId : taskIds) {
+                Map<String, Object> state = state(taskId, states);
+                Map<String, Object> previous = sent.get(taskId);
+                Map<String, Object> delta = new LinkedHashMap<>();
+                for (Map.Entry<String, Object> field : state.entrySet()) {
+                    if (previous == null || !Objects.equals(previous.get(field.getKey()), field.getValue())) {
+                        delta.put(field.getKey(), field.getValue());
+                    }
+                }
+                if (!delta.isEmpty()) {
+                    delta.put("taskId", taskId);
+                    deltas.add(delta);
+                    sent.put(taskId, state);
+                }
+                Object status = state.get("status");
+                if (status == null || CloneTaskStatus.COMPLETED.name().equals(status)
+                        || CloneTaskStatus.FAILED.name().equals(status)
+                        || CloneTaskStatus.CANCELLED.name().equals(status)) {
+                    finished.add(taskId);
+                }
+            }
+            finished.forEach(taskId -> {
+                taskIds.remove(taskId);
+                sent.remove(taskId);
+            });
+            return deltas;
+        }
+
+        private boolean isDone() {
+            return taskIds.isEmpty();
+        }
+    }
+}
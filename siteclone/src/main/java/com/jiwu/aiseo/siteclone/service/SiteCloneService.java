@@ -1,31 +1,71 @@
 package com.jiwu.aiseo.siteclone.service;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
 import com.jiwu.aiseo.siteclone.downloader.CustomHttpClientDownloader;
+import com.jiwu.aiseo.siteclone.downloader.HttpResponseCache;
+import com.jiwu.aiseo.siteclone.metrics.CrawlMetrics;
 import com.jiwu.aiseo.siteclone.config.StaticResourceConfig;
+import com.jiwu.aiseo.siteclone.dto.BatchCloneRequest;
+import com.jiwu.aiseo.siteclone.dto.BatchCloneResponse;
 import com.jiwu.aiseo.siteclone.dto.CloneRequest;
 import com.jiwu.aiseo.siteclone.dto.CloneResponse;
+import com.jiwu.aiseo.siteclone.frontier.ClusterJob;
+import com.jiwu.aiseo.siteclone.frontier.Frontier;
+import com.jiwu.aiseo.siteclone.frontier.FrontierScheduler;
+import com.jiwu.aiseo.siteclone.frontier.LocalFrontier;
+import com.jiwu.aiseo.siteclone.frontier.SharedDirectoryFrontier;
+import com.jiwu.aiseo.siteclone.model.CloneOptions;
 import com.jiwu.aiseo.siteclone.model.CloneTask;
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+import com.jiwu.aiseo.siteclone.processor.DrainingSpider;
 import com.jiwu.aiseo.siteclone.processor.WebsiteMirrorProcessor;
+import com.jiwu.aiseo.siteclone.scheduling.FairShareScheduler;
+import com.jiwu.aiseo.siteclone.storage.BlobStore;
+import com.jiwu.aiseo.siteclone.storage.DiskUsageLedger;
+import com.jiwu.aiseo.siteclone.storage.FrontierCheckpoint;
+import com.jiwu.aiseo.siteclone.storage.MirrorManifest;
+import com.jiwu.aiseo.siteclone.storage.PackStore;
+import com.jiwu.aiseo.siteclone.storage.SnapshotStore;
+import com.jiwu.aiseo.siteclone.storage.TaskStore;
 import com.jiwu.aiseo.siteclone.utils.SecurityUtils;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import us.codecraft.webmagic.Spider;
+import us.codecraft.webmagic.Request;
 
 @Service
 @Slf4j
@@ -37,15 +77,167 @@ public class SiteCloneService {
     @Autowired
     private StaticResourceConfig staticResourceConfig;
 
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private HttpResponseCache httpResponseCache;
+
+    @Autowired
+    private SnapshotStore snapshotStore;
+
+    @Autowired
+    private PackStore packStore;
+
+    @Autowired
+    private CrawlMetrics crawlMetrics;
+
+    @Autowired
+    private TaskStore taskStore;
+
+    @Autowired
+    private DiskUsageLedger diskUsageLedger;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
     @Value("${siteclone.download.base-dir}")
     private String downloadBaseDir;
 
     @Value("${siteclone.download.sub-dir}")
     private String downloadSubDir;
 
-    private final Map<String, CloneTask> tasks = new ConcurrentHashMap<>();
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    private final Map<String, CloneTask> tasks = new ConcurrentHashMap<>(); // 任务存储中的任务，进度计数器在内存中更新，状态变化时写回存储
+    private final Map<String, TaskRun> runs = new ConcurrentHashMap<>(); // 未结束任务的运行控制，任务完成、失败或取消后移除
+    private FairShareScheduler taskSlots; // 同时执行的任务数；排队的任务按批次（单独提交的任务各自一个流）公平地开始
+    private FairShareScheduler fetchSlots; // 所有任务共享的并发请求数，执行中的任务按权重分配
+    private final Object mirrorLock = new Object(); // 淘汰镜像与在同一镜像上创建任务互斥
+    private String nodeId; // 多节点协作中本节点的ID
+
+    @PostConstruct
+    public void init() {
+        taskSlots = new FairShareScheduler("task-slots", properties.getCrawler().getMaxRunningTasks());
+        fetchSlots = new FairShareScheduler("fetch-slots", properties.getCrawler().getMaxTotalThreads());
+        Map<String, FairShareScheduler.Flow> batchFlows = new HashMap<>();
+        for (TaskStore.TaskRecord record : taskStore.findAll()) {
+            CloneTask task = restoreTask(record);
+            tasks.put(task.getId(), task);
+            if (!task.isTerminal()) {
+                FairShareScheduler.Flow queueFlow = task.getBatchId() == null ? taskSlots.flow(1)
+                        : batchFlows.computeIfAbsent(task.getBatchId(), id -> taskSlots.flow(1));
+                runs.put(task.getId(), new TaskRun(queueFlow));
+            }
+        }
+        log.info("Loaded {} clone tasks from task store", tasks.size());
+        reconcileDiskUsage();
+        if (properties.getCluster().isEnabled()) {
+            nodeId = resolveNodeId();
+            log.info("Cluster cloning enabled: node {} (directory {})", nodeId, clusterRoot());
+        }
+    }
+
+    /**
+     * 配置的节点ID；未配置时使用主机名和服务端口，同一主机上的多个实例也不相同，重启后不变
+     */
+    private String resolveNodeId() {
+        String configured = properties.getCluster().getNodeId();
+        if (configured != null && !configured.isBlank()) {
+            return configured.trim();
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return (host + "-" + serverPort).replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * 让镜像用量账本与镜像目录一致：目录已不存在的镜像移除，账本中没有的镜像（如启用配额之前生成的）
+     * 遍历目录统计一次字节数，按目录修改时间登记，淘汰时按最近使用时间排在前面
+     *
+     * 已登记的镜像只列出镜像根目录的一层，不遍历镜像内容
+     */
+    private void reconcileDiskUsage() {
+        Path root = mirrorsRoot();
+        for (DiskUsageLedger.MirrorUsage usage : diskUsageLedger.list()) {
+            if (!Files.isDirectory(root.resolve(usage.getDomain()))) {
+                diskUsageLedger.remove(usage.getDomain());
+            }
+        }
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        int registered = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String domain = dir.getFileName().toString();
+                if (!diskUsageLedger.needsMeasure(domain)) {
+                    continue;
+                }
+                try {
+                    diskUsageLedger.register(domain, DiskUsageLedger.measure(dir), Files.getLastModifiedTime(dir).toMillis());
+                    registered++;
+                } catch (IOException e) {
+                    log.warn("Failed to measure mirror directory: {} ({})", dir, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list mirror directories: {} ({})", root, e.getMessage());
+        }
+        if (registered > 0) {
+            log.info("Measured disk usage of {} mirrors without recorded usage", registered);
+        }
+        diskUsageLedger.save();
+    }
+
+    /**
+     * 服务启动完成后处理上次未结束的任务（运行中或排队中）：重新排队，或标记为 INTERRUPTED 等待手动继续
+     *
+     * 暂停时保存的抓取进度会被接着使用；运行中被中断的任务没有保存进度，从起始页重新抓取，已写入的文件保留
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedTasks() {
+        List<TaskStore.TaskRecord> interrupted = new ArrayList<>(taskStore.findByStatus(CloneTaskStatus.RUNNING));
+        interrupted.addAll(taskStore.findByStatus(CloneTaskStatus.PENDING));
+        for (TaskStore.TaskRecord record : interrupted) {
+            CloneTask task = tasks.get(record.getId());
+            TaskRun run = runs.get(record.getId());
+            if (task == null || run == null) {
+                continue;
+            }
+            synchronized (run) {
+                if (properties.getTask().isRequeueInterrupted()) {
+                    run.resume();
+                    task.setStatus(CloneTaskStatus.PENDING);
+                    persist(task);
+                    submit(task, run);
+                    log.info("Re-queued interrupted clone task: {}", task.getId());
+                } else {
+                    task.setInterrupted();
+                    persist(task);
+                    log.info("Marked clone task as interrupted: {}", task.getId());
+                }
+            }
+        }
+    }
 
     public CloneResponse startClone(CloneRequest request) {
+        return startClone(request, null, null);
+    }
+
+    /**
+     * 校验请求并创建任务，提交到任务队列
+     *
+     * @param batchId 所属批次，单独提交时为null
+     * @param queueFlow 任务队列中的流（同一批次共用），为null时单独创建
+     */
+    private CloneResponse startClone(CloneRequest request, String batchId, FairShareScheduler.Flow queueFlow) {
         try {
             // 验证输入参数
             if (!SecurityUtils.isUrlSafe(request.getUrl())) {
@@ -63,6 +255,27 @@ public class SiteCloneService {
                 throw new IllegalArgumentException("Sleep time must be between " + properties.getSecurity().getMinSleepTime() + " and " + properties.getSecurity().getMaxSleepTime() + " ms");
             }
 
+            if (request.getSrcsetTargetWidth() < 1) {
+                throw new IllegalArgumentException("srcsetTargetWidth must be positive");
+            }
+            if (request.getMaxResourceSize() < 0) {
+                throw new IllegalArgumentException("maxResourceSize must not be negative");
+            }
+            if (request.getRefreshBudget() < 0) {
+                throw new IllegalArgumentException("refreshBudget must not be negative");
+            }
+            if (!(request.getWeight() > 0) || request.getWeight() > properties.getSecurity().getMaxWeight()) {
+                throw new IllegalArgumentException("Weight must be positive and at most " + properties.getSecurity().getMaxWeight());
+            }
+            if (request.isDistributed()) {
+                if (!properties.getCluster().isEnabled()) {
+                    throw new IllegalArgumentException("Distributed cloning requires siteclone.cluster.enabled");
+                }
+                if (request.getRefreshBudget() > 0) {
+                    throw new IllegalArgumentException("Refresh mode cannot be distributed");
+                }
+            }
+
             // 解析URL获取域名
             URL url = URI.create(request.getUrl()).toURL();
             String domain = url.getHost();
@@ -72,22 +285,45 @@ public class SiteCloneService {
                 throw new SecurityException("Unsafe domain: " + domain);
             }
 
+            // 磁盘可用空间不足时先淘汰镜像，仍然不足则拒绝
+            if (!hasFreeSpace()) {
+                enforceDiskQuota();
+                if (!hasFreeSpace()) {
+                    throw new IllegalStateException("Insufficient disk space: " + usableSpace()
+                            + " bytes free, at least " + properties.getStorage().getMinFreeSpace() + " required");
+                }
+            }
+
             // 创建安全的输出目录
             Path outputPath = SecurityUtils.createSafeOutputPath(downloadBaseDir, downloadSubDir, domain);
             String outputDir = outputPath.toString();
-            
-            // 确保目录存在
-            File dir = outputPath.toFile();
-            if (!dir.exists() && !dir.mkdirs()) {
-                throw new RuntimeException("Failed to create download directory: " + outputDir);
+            CloneTask task = new CloneTask(request.getUrl(), outputDir);
+            task.setBatchId(batchId);
+            task.setOptions(toOptions(request));
+            if (request.isDistributed()) {
+                // 其他节点扫描协作目录后加入
+                ClusterJob job = ClusterJob.create(clusterRoot(), task.getUrl(), nodeId, task.getId(),
+                        properties.getCluster().getPartitions(), task.getOptions());
+                task.setClusterJobId(job.getId());
+                log.info("Created cluster clone job: {} for task {}", job.getId(), task.getId());
             }
 
-            // 创建任务
-            CloneTask task = new CloneTask(request.getUrl(), outputDir);
-            tasks.put(task.getId(), task);
+            // 目录和任务一起创建，期间镜像不会被淘汰
+            synchronized (mirrorLock) {
+                File dir = outputPath.toFile();
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new RuntimeException("Failed to create download directory: " + outputDir);
+                }
+                tasks.put(task.getId(), task);
+                persist(task);
+                diskUsageLedger.usage(domain);
+                diskUsageLedger.touch(domain);
+            }
 
             // 异步执行克隆任务
-            executeCloneTask(task, domain, request.getThreadCount(), request.getRetryTimes(), request.getSleepTime());
+            TaskRun run = new TaskRun(queueFlow != null ? queueFlow : taskSlots.flow(1));
+            runs.put(task.getId(), run);
+            submit(task, run);
 
             // 返回响应
             return convertToResponse(task);
@@ -96,6 +332,11 @@ public class SiteCloneService {
             CloneTask task = new CloneTask(request.getUrl(), null);
             task.setFailed("Invalid input: " + e.getMessage());
             return convertToResponse(task);
+        } catch (IllegalStateException e) {
+            log.warn("Clone task refused: {} ({})", request.getUrl(), e.getMessage());
+            CloneTask task = new CloneTask(request.getUrl(), null);
+            task.setFailed(e.getMessage());
+            return convertToResponse(task);
         } catch (MalformedURLException e) {
             log.error("Malformed URL: {}", request.getUrl(), e);
             CloneTask task = new CloneTask(request.getUrl(), null);
@@ -120,63 +361,1049 @@ public class SiteCloneService {
         return convertToResponse(task);
     }
 
-    @Async
-    protected void executeCloneTask(CloneTask task, String domain, int threadCount, int retryTimes, int sleepTime) {
+    /**
+     * 批量提交：每一项按单个任务校验和创建，校验失败的项返回未登记的 FAILED 响应，不影响其他项
+     *
+     * 批次的任务在任务队列中共用一个流：多个批次（以及单独提交的任务）同时排队时轮流开始，
+     * 大批次不会让后提交的小批次一直等待；开始后按各项的权重分享并发请求数
+     *
+     * @return 批次ID和汇总进度
+     */
+    public BatchCloneResponse startBatch(BatchCloneRequest request) {
+        List<CloneRequest> items = request.getItems();
+        int maxBatchSize = properties.getTask().getMaxBatchSize();
+        if (items == null || items.isEmpty() || items.size() > maxBatchSize) {
+            throw new IllegalArgumentException("items must contain 1 to " + maxBatchSize + " clone requests");
+        }
+        String batchId = UUID.randomUUID().toString();
+        FairShareScheduler.Flow queueFlow = taskSlots.flow(1);
+        List<CloneResponse> responses = new ArrayList<>(items.size());
+        for (CloneRequest item : items) {
+            responses.add(startClone(item, batchId, queueFlow));
+        }
+        log.info("Submitted clone batch: {} ({} items)", batchId, items.size());
+        return summarize(batchId, responses);
+    }
+
+    /**
+     * 批次的汇总进度
+     *
+     * @return 汇总进度；批次不存在（或其任务都已删除）时返回null
+     */
+    public BatchCloneResponse getBatchStatus(String batchId) {
+        List<CloneResponse> responses = new ArrayList<>();
+        for (TaskStore.TaskRecord record : taskStore.findByBatch(batchId)) {
+            CloneTask task = tasks.get(record.getId());
+            if (task != null) {
+                responses.add(convertToResponse(task));
+            }
+        }
+        return responses.isEmpty() ? null : summarize(batchId, responses);
+    }
+
+    private static BatchCloneResponse summarize(String batchId, List<CloneResponse> responses) {
+        BatchCloneResponse batch = new BatchCloneResponse();
+        batch.setBatchId(batchId);
+        batch.setTasks(responses);
+        Map<CloneTaskStatus, Integer> statusCounts = new EnumMap<>(CloneTaskStatus.class);
+        for (CloneResponse response : responses) {
+            if (!batchId.equals(response.getBatchId())) {
+                continue; // 校验失败、未登记的项
+            }
+            batch.setTotal(batch.getTotal() + 1);
+            statusCounts.merge(response.getStatus(), 1, Integer::sum);
+            if (batch.getCreatedAt() == null || response.getCreatedAt().isBefore(batch.getCreatedAt())) {
+                batch.setCreatedAt(response.getCreatedAt());
+            }
+            CloneTaskStatus status = response.getStatus();
+            if (status == CloneTaskStatus.COMPLETED || status == CloneTaskStatus.FAILED
+                    || status == CloneTaskStatus.CANCELLED) {
+                batch.setFinished(batch.getFinished() + 1);
+            }
+            batch.setPagesCrawled(batch.getPagesCrawled() + response.getPagesCrawled());
+            batch.setFilesDownloaded(batch.getFilesDownloaded() + response.getFilesDownloaded());
+            batch.setTotalBytesDownloaded(batch.getTotalBytesDownloaded() + response.getTotalBytesDownloaded());
+            batch.setPagesPending(batch.getPagesPending() + response.getPagesPending());
+            if (status == CloneTaskStatus.RUNNING) {
+                batch.setPagesPerSecond(batch.getPagesPerSecond() + response.getPagesPerSecond());
+            }
+        }
+        batch.setStatusCounts(statusCounts);
+        batch.setProgress(batch.getTotal() > 0 ? (double) batch.getFinished() / batch.getTotal() : 1.0);
+        return batch;
+    }
+
+    /**
+     * 按状态和域名查询任务（使用任务存储的索引）
+     *
+     * @param status 任务状态，为null时不限
+     * @param domain 域名，为null时不限
+     * @return 任务列表，按创建顺序
+     */
+    public List<CloneResponse> listTasks(CloneTaskStatus status, String domain) {
+        List<TaskStore.TaskRecord> records;
+        if (status != null) {
+            records = taskStore.findByStatus(status);
+        } else if (domain != null) {
+            records = taskStore.findByDomain(domain);
+        } else {
+            records = taskStore.findAll();
+        }
+        List<CloneResponse> responses = new ArrayList<>(records.size());
+        for (TaskStore.TaskRecord record : records) {
+            CloneTask task = tasks.get(record.getId());
+            if (task != null && (domain == null || domain.equals(record.getDomain()))) {
+                responses.add(convertToResponse(task));
+            }
+        }
+        responses.sort(Comparator.comparing(CloneResponse::getCreatedAt));
+        return responses;
+    }
+
+    /**
+     * 删除任务及其镜像目录，并回收不再被其他镜像引用的blob
+     *
+     * @param taskId 任务ID
+     * @return 是否找到并删除了任务
+     */
+    public boolean deleteTask(String taskId) {
+        CloneTask task = tasks.get(taskId);
+        if (task == null) {
+            return false;
+        }
+        if (task.getStatus() == CloneTaskStatus.PENDING || task.getStatus() == CloneTaskStatus.RUNNING) {
+            throw new IllegalArgumentException("Task is still running: " + taskId);
+        }
+        tasks.remove(taskId);
+        runs.remove(taskId);
+        try {
+            taskStore.remove(taskId);
+        } catch (IOException e) {
+            log.error("Failed to remove clone task from task store: {}", taskId, e);
+        }
+
+        // 协作任务：发起节点删除协作目录中的任务；其他节点的分片由发起节点合并后删除
+        if (task.getClusterJobId() != null) {
+            ClusterJob job = properties.getCluster().isEnabled() ? ClusterJob.load(clusterRoot(), task.getClusterJobId()) : null;
+            if (job != null && isClusterOwner(job, task)) {
+                job.delete();
+            }
+            if (!Paths.get(task.getOutputDir()).startsWith(mirrorsRoot())) {
+                log.info("Deleted cluster clone task: {} (shard left to the job owner)", taskId);
+                return true;
+            }
+        }
+
+        // 同一域名的任务共用输出目录，只有没有其他任务引用时才删除
+        String outputDir = task.getOutputDir();
+        boolean shared = !taskStore.findByDomain(domainOf(task)).isEmpty();
+        if (outputDir != null && !shared) {
+            Path root = Paths.get(outputDir);
+            deleteTree(root);
+            packStore.evict(root);
+            diskUsageLedger.remove(domainOf(task));
+            blobStore.collectGarbage();
+        }
+        log.info("Deleted clone task: {} (output directory {})", taskId, shared ? "kept, shared with other tasks" : "removed");
+        return true;
+    }
+
+    /**
+     * 暂停任务：等进行中的请求处理完、后台的资源下载和样式表改写完成、页面文件写完后停止，
+     * 保存待抓取队列，归还占用的抓取线程；停止完成后状态变为 PAUSED
+     *
+     * @param taskId 任务ID
+     * @return 任务当前状态；任务不存在时返回null
+     */
+    public CloneResponse pauseTask(String taskId) {
+        CloneTask task = tasks.get(taskId);
+        if (task == null) {
+            return null;
+        }
+        TaskRun run = runs.get(taskId);
+        if (run == null) {
+            throw new IllegalArgumentException("Task is not running: " + taskId);
+        }
+        synchronized (run) {
+            if (task.getStatus() != CloneTaskStatus.PENDING && task.getStatus() != CloneTaskStatus.RUNNING) {
+                throw new IllegalArgumentException("Task is not running: " + taskId);
+            }
+            if (task.getClusterJobId() != null) {
+                // 抓取进度在协作目录中，由其他节点继续，不能单独暂停
+                throw new IllegalArgumentException("Distributed tasks cannot be paused, cancel instead: " + taskId);
+            }
+            run.request(RunAction.PAUSE);
+            if (run.cancelQueued()) {
+                // 还在队列中，直接暂停
+                stopped(task, run);
+            }
+        }
+        log.info("Pausing clone task: {}", taskId);
+        return convertToResponse(task);
+    }
+
+    /**
+     * 继续暂停（或服务重启时被中断）的任务，从保存的待抓取队列接着抓取
+     *
+     * @param taskId 任务ID
+     * @return 任务当前状态；任务不存在时返回null
+     */
+    public CloneResponse resumeTask(String taskId) {
+        CloneTask task = tasks.get(taskId);
+        if (task == null) {
+            return null;
+        }
+        TaskRun run = runs.get(taskId);
+        if (run == null) {
+            throw new IllegalArgumentException("Task is not paused: " + taskId);
+        }
+        synchronized (run) {
+            if (task.getStatus() != CloneTaskStatus.PAUSED && task.getStatus() != CloneTaskStatus.INTERRUPTED) {
+                throw new IllegalArgumentException("Task is not paused: " + taskId);
+            }
+            run.resume();
+            task.setStatus(CloneTaskStatus.PENDING);
+            persist(task);
+            submit(task, run);
+        }
+        log.info("Resuming clone task: {}", taskId);
+        return convertToResponse(task);
+    }
+
+    /**
+     * 取消任务：运行中的任务与暂停一样先停止并写完已抓取的页面，但不保存待抓取队列，也不生成快照和打包
+     *
+     * @param taskId 任务ID
+     * @return 任务当前状态；任务不存在时返回null
+     */
+    public CloneResponse cancelTask(String taskId) {
+        CloneTask task = tasks.get(taskId);
+        if (task == null) {
+            return null;
+        }
+        TaskRun run = runs.get(taskId);
+        if (run == null) {
+            throw new IllegalArgumentException("Task has already finished: " + taskId);
+        }
+        synchronized (run) {
+            if (task.isTerminal()) {
+                throw new IllegalArgumentException("Task has already finished: " + taskId);
+            }
+            run.request(RunAction.CANCEL);
+            cancelClusterJob(task);
+            if (task.getStatus() == CloneTaskStatus.PAUSED || task.getStatus() == CloneTaskStatus.INTERRUPTED
+                    || run.cancelQueued()) {
+                // 暂停或还在队列中的任务没有在执行，直接结束
+                stopped(task, run);
+            }
+        }
+        log.info("Cancelling clone task: {}", taskId);
+        return convertToResponse(task);
+    }
+
+    /**
+     * 发起节点取消协作任务时通知其他节点；其他节点取消自己的任务只是退出，剩下的URL由其余节点抓取
+     */
+    private void cancelClusterJob(CloneTask task) {
+        if (task.getClusterJobId() == null || !properties.getCluster().isEnabled()) {
+            return;
+        }
+        ClusterJob job = ClusterJob.load(clusterRoot(), task.getClusterJobId());
+        if (job != null && isClusterOwner(job, task)) {
+            try {
+                job.markCancelled();
+            } catch (IOException e) {
+                log.warn("Failed to mark cluster clone job as cancelled: {} ({})", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 加入其他节点发起的协作任务：本节点的输出写入任务的分片，与其他任务一样排队执行
+     *
+     * 同时把发起节点已取消的协作任务在本节点的任务取消
+     */
+    @Scheduled(fixedDelayString = "#{@siteCloneProperties.cluster.joinInterval}")
+    public void joinClusterJobs() {
+        if (!properties.getCluster().isEnabled()) {
+            return;
+        }
+        Map<String, CloneTask> joined = new HashMap<>();
+        for (CloneTask task : tasks.values()) {
+            if (task.getClusterJobId() != null) {
+                joined.put(task.getClusterJobId(), task);
+            }
+        }
+        List<ClusterJob> jobs;
+        try {
+            jobs = ClusterJob.list(clusterRoot());
+        } catch (IOException e) {
+            log.warn("Failed to list cluster clone jobs: {} ({})", clusterRoot(), e.getMessage());
+            return;
+        }
+        for (ClusterJob job : jobs) {
+            CloneTask local = joined.get(job.getId());
+            if (local != null) {
+                if (job.isCancelled() && !local.isTerminal() && !isClusterOwner(job, local)) {
+                    log.info("Cluster clone job cancelled by its owner: {}", job.getId());
+                    cancelTask(local.getId());
+                }
+                continue;
+            }
+            if (job.isFinished() || job.isCancelled() || nodeId.equals(job.getDescriptor().getOwner())
+                    || job.isShardDone(nodeId)) {
+                continue;
+            }
+            if (!SecurityUtils.isUrlSafe(job.getDescriptor().getUrl())) {
+                log.warn("Skipping cluster clone job with unsafe URL: {} ({})", job.getId(), job.getDescriptor().getUrl());
+                continue;
+            }
+            try {
+                Path shard = job.shardDir(nodeId);
+                Files.createDirectories(shard);
+                CloneTask task = new CloneTask(job.getDescriptor().getUrl(), shard.toString());
+                task.setClusterJobId(job.getId());
+                task.setOptions(job.getDescriptor().getOptions());
+                tasks.put(task.getId(), task);
+                persist(task);
+                TaskRun run = new TaskRun(taskSlots.flow(1));
+                runs.put(task.getId(), run);
+                submit(task, run);
+                log.info("Joined cluster clone job: {} as task {}", job.getId(), task.getId());
+            } catch (IOException e) {
+                log.warn("Failed to join cluster clone job: {} ({})", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 提交到任务队列，得到执行槽位后在任务线程池执行；排队期间不占用线程，可以暂停或取消
+     *
+     * 不能用 @Async 标注的方法代替：同一个类内部的调用不经过 Spring 代理，会在请求线程上同步执行
+     */
+    private void submit(CloneTask task, TaskRun run) {
+        if (taskSlots.getWaiting() >= properties.getTask().getMaxQueuedTasks()) {
+            runs.remove(task.getId());
+            task.setFailed("Too many clone tasks queued, please try again later");
+            persist(task);
+            log.warn("Clone task rejected, task queue is full: {}", task.getId());
+            return;
+        }
+        run.ticket = taskSlots.submit(run.queueFlow, taskExecutor, () -> executeCloneTask(task, run));
+    }
+
+    private void executeCloneTask(CloneTask task, TaskRun run) {
+        try {
+            if (run.action != null) {
+                // 发放槽位的同时收到了暂停或取消
+                stopped(task, run);
+                return;
+            }
+            executeCrawl(task, run);
+        } finally {
+            taskSlots.release();
+        }
+    }
+
+    private void executeCrawl(CloneTask task, TaskRun run) {
+        // 线程数不超过共享的并发请求数，多出的线程只会等待
+        int threads = Math.min(task.getOptions().getThreadCount(), fetchSlots.getCapacity());
         task.setRunning();
+        persist(task);
+        String domain = domainOf(task);
+        CrawlMetrics.TaskMetrics metrics = crawlMetrics.forTask(task, domain);
+        metrics.bindTask(task);
 
+        boolean stopRequested = false;
         try {
-            WebsiteMirrorProcessor processor = new WebsiteMirrorProcessor(
-                domain, 
-                retryTimes, 
-                sleepTime, 
-                task.getOutputDir(), 
-                task,
-                properties, // 传递配置属性
-                staticResourceConfig.isPreserveOriginalUrls() // 传递是否保留原始URL的配置
-            );
-
-            Spider.create(processor)
-                    .setDownloader(new CustomHttpClientDownloader())
-                    .addUrl(task.getUrl())
-                    .thread(threadCount)
-                    .run();
-
-            task.setCompleted();
-            log.info("Clone task completed: {}", task.getId());
+            stopRequested = crawl(task, run, domain, threads, metrics);
         } catch (Exception e) {
+            runs.remove(task.getId());
             task.setFailed(e.getMessage());
+            persist(task);
             log.error("Clone task failed: {}", task.getId(), e);
+        } finally {
+            task.setPendingPagesSource(null);
+            task.setStorageUsageSink(null);
+            diskUsageLedger.touch(domain);
+            diskUsageLedger.save();
+            metrics.close();
+        }
+        if (stopRequested) {
+            stopped(task, run);
         }
     }
 
     /**
-     * 定期清理过期任务
+     * 执行一次抓取
+     *
+     * @param domain 任务的域名
+     * @param threads 抓取线程数
+     * @return 是否被暂停或取消（而不是抓取完所有页面）
      */
-    @Scheduled(fixedDelayString = "#{@siteCloneProperties.task.cleanupInterval}")
-    public void cleanupExpiredTasks() {
-        long currentTime = System.currentTimeMillis();
-        long maxAge = properties.getTask().getMaxTaskAge();
-        
-        tasks.entrySet().removeIf(entry -> {
-            CloneTask task = entry.getValue();
-            long taskAge = currentTime - task.getCreatedAt().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
-            
-            if (taskAge > maxAge) {
-                log.info("Removing expired task: {} (age: {} ms)", entry.getKey(), taskAge);
+    private boolean crawl(CloneTask task, TaskRun run, String domain, int threads, CrawlMetrics.TaskMetrics metrics) throws IOException {
+        // 协作任务的其他节点写入协作目录中的分片，不属于本节点的镜像
+        ClusterJob job = clusterJob(task);
+        if (job != null && !isClusterOwner(job, task)) {
+            return crawlShard(task, run, domain, threads, metrics, job);
+        }
+        Path mirror = Paths.get(task.getOutputDir());
+
+        // 本次写入镜像目录的字节计入镜像的磁盘用量
+        DiskUsageLedger.Usage usage = diskUsageLedger.usage(domain);
+        diskUsageLedger.touch(domain);
+        task.setStorageUsageSink(usage::add);
+
+        // 打包的镜像先还原为普通文件，抓取和条件请求都基于普通文件进行
+        if (packStore.hasPack(mirror)) {
+            PackStore.UnpackInfo unpacked = packStore.unpack(mirror);
+            usage.add(unpacked.getRestoredBytes() - unpacked.getPackBytes());
+        }
+
+        WebsiteMirrorProcessor processor = createProcessor(task, domain, metrics);
+        Frontier frontier = null;
+        FrontierScheduler scheduler;
+        DrainingSpider spider;
+        try {
+            frontier = job == null ? new LocalFrontier() : openSharedFrontier(job);
+            scheduler = new FrontierScheduler(frontier, processor::createRequest, metrics);
+            spider = createSpider(task, processor, frontier, scheduler, threads, metrics);
+            List<Request> resumed = job == null && run.resuming ? processor.resumeFrontier() : null;
+            if (resumed != null) {
+                resumed.forEach(spider::addRequest);
+            } else if (task.getOptions().getRefreshBudget() > 0 && processor.hasHistory()) {
+                // 刷新模式：镜像已有访问历史时按变化概率在预算内挑选页面，否则按完整克隆处理
+                for (Request request : processor.startRefresh(task.getUrl(), task.getOptions().getRefreshBudget())) {
+                    spider.addRequest(request);
+                }
+            } else {
+                spider.addRequest(processor.createRequest(task.getUrl()));
+            }
+            run.attach(spider);
+            spider.run();
+        } finally {
+            // 中途出错时同样要停止后台线程池、关闭输出管道和WARC，并保存已经记录的校验器
+            try {
+                processor.finish();
+            } finally {
+                if (frontier != null) {
+                    frontier.close();
+                }
+            }
+        }
+
+        if (spider.isStopRequested()) {
+            if (job == null && run.action != RunAction.CANCEL) {
+                processor.saveFrontier(scheduler.drain());
+            }
+            return true;
+        }
+        processor.discardFrontier();
+        if (job != null) {
+            // 其他节点的分片写完后合并到镜像；等待期间被取消时不合并
+            if (!awaitShards(job, run)) {
                 return true;
             }
+            ClusterJob.MergeInfo merged = job.mergeInto(mirror);
+            usage.add(merged.getBytesAdded());
+            log.info("Merged cluster clone shards: {} ({} files copied, mirror has {} files)", task.getId(),
+                    merged.getFiles(), merged.getMirrorFiles());
+        }
+        createSnapshot(task, domain);
+        packMirror(task, mirror, usage);
+
+        runs.remove(task.getId());
+        task.setCompleted();
+        persist(task);
+        log.info("Clone task completed: {}", task.getId());
+        return false;
+    }
+
+    /**
+     * 作为协作任务的其他节点抓取：输出写入协作目录中本节点的分片，结束后标记分片完成，由发起节点合并
+     *
+     * @return 是否被取消（而不是整个任务抓取完）
+     */
+    private boolean crawlShard(CloneTask task, TaskRun run, String domain, int threads, CrawlMetrics.TaskMetrics metrics,
+            ClusterJob job) throws IOException {
+        WebsiteMirrorProcessor processor = createProcessor(task, domain, metrics);
+        Frontier frontier = null;
+        DrainingSpider spider;
+        try {
+            frontier = openSharedFrontier(job);
+            FrontierScheduler scheduler = new FrontierScheduler(frontier, processor::createRequest, metrics);
+            spider = createSpider(task, processor, frontier, scheduler, threads, metrics);
+            // 起始页由发起节点加入，这里只抓取分到本节点的URL
+            run.attach(spider);
+            spider.run();
+        } finally {
+            try {
+                processor.finish();
+            } finally {
+                if (frontier != null) {
+                    frontier.close();
+                    job.markShardDone(shardName(task));
+                }
+            }
+        }
+        if (spider.isStopRequested()) {
+            return true;
+        }
+        runs.remove(task.getId());
+        task.setCompleted();
+        persist(task);
+        log.info("Cluster clone shard completed: {} (job {})", task.getId(), job.getId());
+        return false;
+    }
+
+    private WebsiteMirrorProcessor createProcessor(CloneTask task, String domain, CrawlMetrics.TaskMetrics metrics) {
+        HttpResponseCache responseCache = properties.getCache().isEnabled() ? httpResponseCache : null;
+        WebsiteMirrorProcessor processor = new WebsiteMirrorProcessor(
+            domain, 
+            task.getOptions().getRetryTimes(), 
+            task.getOptions().getSleepTime(), 
+            task.getOutputDir(), 
+            task,
+            properties, // 传递配置属性
+            staticResourceConfig.isPreserveOriginalUrls(), // 传递是否保留原始URL的配置
+            properties.getStorage().isDedupEnabled() ? blobStore : null,
+            responseCache
+        );
+        processor.setMetrics(metrics);
+        return processor;
+    }
+
+    /**
+     * 创建任务的 Spider：下载器按任务权重分享全局并发请求数，调度器基于抓取边界
+     */
+    private DrainingSpider createSpider(CloneTask task, WebsiteMirrorProcessor processor, Frontier frontier,
+            FrontierScheduler scheduler, int threads, CrawlMetrics.TaskMetrics metrics) {
+        HttpResponseCache responseCache = properties.getCache().isEnabled() ? httpResponseCache : null;
+        // 页面和资源请求按任务的权重分享全局并发请求数
+        FairShareScheduler.Flow fetchFlow = fetchSlots.flow(task.getOptions().getWeight());
+        processor.setFetchShare(fetchSlots, fetchFlow);
+        CustomHttpClientDownloader downloader = new CustomHttpClientDownloader(responseCache, task);
+        downloader.setFetchShare(fetchSlots, fetchFlow);
+        downloader.setWarcWriter(processor.getWarcWriter());
+        downloader.setMetrics(metrics);
+        DrainingSpider spider = new DrainingSpider(processor);
+        spider.setDownloader(downloader)
+                .setScheduler(scheduler)
+                .addPipeline(processor.getOutputPipeline())
+                .thread(threads)
+                .setEmptySleepTime(properties.getCrawler().getEmptySleepTime());
+        spider.setSpiderListeners(new ArrayList<>(List.of(scheduler)));
+        task.setPendingPagesSource(() -> scheduler.getLeftRequestsCount(spider));
+        metrics.gauge("siteclone.task.frontier.size", frontier::size);
+        metrics.gauge("siteclone.task.output.queue", processor.getOutputPipeline()::getQueueSize);
+        return spider;
+    }
+
+    private SharedDirectoryFrontier openSharedFrontier(ClusterJob job) throws IOException {
+        SiteCloneProperties.Cluster cluster = properties.getCluster();
+        return SharedDirectoryFrontier.open(job.frontierDir(), nodeId, job.getDescriptor().getPartitions(),
+                cluster.getLeaseDuration(), cluster.getCoordinationInterval());
+    }
+
+    /**
+     * 等待其他节点写完分片，超时后合并已有的分片
+     *
+     * @return 是否可以合并；等待期间任务被取消时返回false
+     */
+    private boolean awaitShards(ClusterJob job, TaskRun run) throws IOException {
+        long deadline = System.currentTimeMillis() + properties.getCluster().getMergeTimeout();
+        try {
+            List<String> pending;
+            while (!(pending = job.pendingShards()).isEmpty()) {
+                if (run.action != null) {
+                    return false;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    log.warn("Timed out waiting for cluster clone shards, merging what is available: {} (pending {})",
+                            job.getId(), pending);
+                    return true;
+                }
+                Thread.sleep(properties.getCluster().getCoordinationInterval());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
+        }
+        return true;
+    }
+
+    /**
+     * 任务所属的协作任务
+     *
+     * @return 协作任务；单机任务返回null
+     * @throws IOException 协作任务已不存在（协作目录被删除或不可访问）
+     */
+    private ClusterJob clusterJob(CloneTask task) throws IOException {
+        if (task.getClusterJobId() == null) {
+            return null;
+        }
+        ClusterJob job = properties.getCluster().isEnabled() ? ClusterJob.load(clusterRoot(), task.getClusterJobId()) : null;
+        if (job == null) {
+            throw new IOException("Cluster clone job not available: " + task.getClusterJobId());
+        }
+        return job;
+    }
+
+    private boolean isClusterOwner(ClusterJob job, CloneTask task) {
+        return nodeId.equals(job.getDescriptor().getOwner()) && task.getId().equals(job.getDescriptor().getOwnerTaskId());
+    }
+
+    /**
+     * 其他节点的任务写入的分片名（加入时的节点ID，节点ID变化后仍写入原来的分片）
+     */
+    private static String shardName(CloneTask task) {
+        return Paths.get(task.getOutputDir()).getFileName().toString();
+    }
+
+    private Path clusterRoot() {
+        return Paths.get(properties.getCluster().getDir()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 停止后的任务状态：暂停的任务保留抓取进度，取消的任务删除抓取进度并结束
+     */
+    private void stopped(CloneTask task, TaskRun run) {
+        synchronized (run) {
+            if (run.action == RunAction.CANCEL) {
+                long freed = FrontierCheckpoint.delete(FrontierCheckpoint.file(Paths.get(task.getOutputDir())));
+                String domain = domainOf(task);
+                if (freed > 0 && diskUsageLedger.contains(domain)) {
+                    diskUsageLedger.usage(domain).add(-freed);
+                }
+                markShardLeft(task);
+                runs.remove(task.getId());
+                task.setCancelled();
+                log.info("Clone task cancelled: {}", task.getId());
+            } else {
+                task.setPaused();
+                log.info("Clone task paused: {}", task.getId());
+            }
+            persist(task);
+        }
+    }
+
+    /**
+     * 其他节点的任务取消后，发起节点不再等待它的分片（还没开始执行时分片是空的）
+     */
+    private void markShardLeft(CloneTask task) {
+        if (task.getClusterJobId() == null || !properties.getCluster().isEnabled()) {
+            return;
+        }
+        ClusterJob job = ClusterJob.load(clusterRoot(), task.getClusterJobId());
+        if (job != null && !isClusterOwner(job, task)) {
+            try {
+                job.markShardDone(shardName(task));
+            } catch (IOException e) {
+                log.warn("Failed to mark cluster clone shard as done: {} ({})", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 为完成的克隆生成快照并清理旧快照；快照失败不影响任务结果
+     */
+    private void createSnapshot(CloneTask task, String domain) {
+        if (!properties.getStorage().isSnapshotEnabled()) {
+            return;
+        }
+        try {
+            SnapshotStore.SnapshotInfo snapshot = snapshotStore.create(domain, Paths.get(task.getOutputDir()));
+            task.setSnapshotId(snapshot.getId());
+            // 删除快照后blob可能不再被引用
+            if (snapshotStore.applyRetention(domain) > 0) {
+                blobStore.collectGarbage();
+            }
+        } catch (IOException e) {
+            log.error("Failed to create snapshot for task: {}", task.getId(), e);
+        }
+    }
+
+    /**
+     * 按配置把完成的镜像打包；打包失败时镜像保持普通文件，不影响任务结果
+     */
+    private void packMirror(CloneTask task, Path mirror, DiskUsageLedger.Usage usage) {
+        if (!properties.getStorage().isPackEnabled()) {
+            return;
+        }
+        try {
+            PackStore.PackInfo info = packStore.pack(mirror, properties.getStorage().isPackRemoveLooseFiles());
+            usage.add(info.getStoredBytes() - info.getRemovedBytes());
+            // 删除的普通文件可能是blob的最后一个硬链接
+            if (info.getRemovedFiles() > 0) {
+                blobStore.collectGarbage();
+            }
+        } catch (IOException e) {
+            log.error("Failed to pack mirror for task: {}", task.getId(), e);
+        }
+    }
+
+    /**
+     * 把域名镜像的包还原为普通目录
+     *
+     * @param domain 域名
+     * @return 还原的文件数
+     */
+    public int unpackMirror(String domain) throws IOException {
+        if (!SecurityUtils.isDomainSafe(domain)) {
+            throw new SecurityException("Unsafe domain: " + domain);
+        }
+        Path mirror = SecurityUtils.createSafeOutputPath(downloadBaseDir, downloadSubDir, domain);
+        boolean running = taskStore.findByDomain(domain).stream().anyMatch(record ->
+                record.getStatus() == CloneTaskStatus.PENDING || record.getStatus() == CloneTaskStatus.RUNNING);
+        if (running) {
+            throw new IllegalArgumentException("Clone task is still running for domain: " + domain);
+        }
+        PackStore.UnpackInfo unpacked = packStore.unpack(mirror);
+        if (diskUsageLedger.contains(domain)) {
+            diskUsageLedger.usage(domain).add(unpacked.getRestoredBytes() - unpacked.getPackBytes());
+            diskUsageLedger.save();
+        }
+        return unpacked.getFiles();
+    }
+
+    /**
+     * 各镜像的磁盘用量，按最近使用时间从旧到新（即淘汰顺序）
+     */
+    public List<DiskUsageLedger.MirrorUsage> listMirrors() {
+        return diskUsageLedger.list();
+    }
+
+    /**
+     * 固定或取消固定镜像，固定的镜像不会被配额或未使用时间淘汰
+     *
+     * @param domain 域名
+     * @param pinned 是否固定
+     * @return 镜像的用量；镜像不存在时返回null
+     */
+    public DiskUsageLedger.MirrorUsage setMirrorPinned(String domain, boolean pinned) {
+        if (!SecurityUtils.isDomainSafe(domain)) {
+            throw new SecurityException("Unsafe domain: " + domain);
+        }
+        if (!diskUsageLedger.setPinned(domain, pinned)) {
+            return null;
+        }
+        diskUsageLedger.save();
+        log.info("Mirror {}: {}", pinned ? "pinned" : "unpinned", domain);
+        return diskUsageLedger.list().stream().filter(usage -> usage.getDomain().equals(domain)).findFirst().orElse(null);
+    }
+
+    /**
+     * 按磁盘配额、未使用时间和可用空间淘汰镜像
+     *
+     * 按最近使用（抓取或浏览）时间从旧到新检查：超过未使用时间的镜像、或合计用量超过配额、或磁盘可用空间
+     * 低于下限时淘汰，直到都满足为止。固定的镜像和有未结束任务（排队、运行、暂停、中断）的镜像跳过。
+     * 淘汰删除镜像目录、该域名的快照（与镜像以硬链接共享内容）和任务记录，再回收不再被引用的blob。
+     */
+    @Scheduled(fixedDelayString = "#{@siteCloneProperties.storage.quotaCheckInterval}")
+    public void enforceDiskQuota() {
+        SiteCloneProperties.Storage storage = properties.getStorage();
+        synchronized (mirrorLock) {
+            long now = System.currentTimeMillis();
+            int evicted = 0;
+            boolean collected = true;
+            for (DiskUsageLedger.MirrorUsage usage : diskUsageLedger.list()) {
+                boolean idle = storage.getMirrorMaxIdle() > 0 && now - usage.getLastUsed() > storage.getMirrorMaxIdle();
+                boolean overQuota = storage.getDiskQuota() > 0 && diskUsageLedger.totalBytes() > storage.getDiskQuota();
+                boolean lowSpace = !hasFreeSpace();
+                if (!idle && !overQuota && !lowSpace) {
+                    break; // 之后的镜像更近被使用，也不会超过未使用时间
+                }
+                if (usage.isPinned() || hasUnfinishedTask(usage.getDomain())) {
+                    continue;
+                }
+                evictMirror(usage, idle ? "idle" : overQuota ? "over quota" : "low disk space");
+                evicted++;
+                collected = false;
+                if (lowSpace) {
+                    // 共享的blob回收后空间才真正释放，再判断是否还需要继续淘汰
+                    blobStore.collectGarbage();
+                    collected = true;
+                }
+            }
+            if (!collected) {
+                blobStore.collectGarbage();
+            }
+            diskUsageLedger.save();
+            if (evicted > 0) {
+                log.info("Disk quota check evicted {} mirrors, {} bytes in use, {} bytes free", evicted,
+                        diskUsageLedger.totalBytes(), usableSpace());
+            }
+            if (storage.getDiskQuota() > 0 && diskUsageLedger.totalBytes() > storage.getDiskQuota()) {
+                log.warn("Disk quota exceeded and no more mirrors can be evicted: {} bytes in use, quota {}",
+                        diskUsageLedger.totalBytes(), storage.getDiskQuota());
+            }
+        }
+    }
+
+    /**
+     * 淘汰一个镜像：删除镜像目录、快照和该域名的任务记录（调用方持有 mirrorLock）
+     */
+    private void evictMirror(DiskUsageLedger.MirrorUsage usage, String reason) {
+        String domain = usage.getDomain();
+        Path mirror = SecurityUtils.createSafeOutputPath(downloadBaseDir, downloadSubDir, domain);
+        deleteTree(mirror);
+        packStore.evict(mirror);
+        try {
+            snapshotStore.deleteAll(domain);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Failed to delete snapshots of evicted mirror {}: {}", domain, e.getMessage());
+        }
+        for (TaskStore.TaskRecord record : taskStore.findByDomain(domain)) {
+            tasks.remove(record.getId());
+            runs.remove(record.getId());
+            try {
+                taskStore.remove(record.getId());
+            } catch (IOException e) {
+                log.error("Failed to remove clone task of evicted mirror from task store: {}", record.getId(), e);
+            }
+        }
+        diskUsageLedger.remove(domain);
+        log.info("Evicted mirror {} ({}, {} bytes, last used {})", domain, reason, usage.getBytes(),
+                Instant.ofEpochMilli(usage.getLastUsed()));
+    }
+
+    /**
+     * 域名是否有未结束（排队、运行、暂停、中断）的任务
+     */
+    private boolean hasUnfinishedTask(String domain) {
+        return taskStore.findByDomain(domain).stream().anyMatch(record -> {
+            CloneTask task = tasks.get(record.getId());
+            return task != null && !task.isTerminal();
         });
+    }
+
+    private boolean hasFreeSpace() {
+        long minFreeSpace = properties.getStorage().getMinFreeSpace();
+        return minFreeSpace <= 0 || usableSpace() >= minFreeSpace;
+    }
+
+    /**
+     * 镜像所在文件系统的可用字节数，无法获取时视为不受限
+     */
+    private long usableSpace() {
+        Path root = mirrorsRoot();
+        try {
+            Files.createDirectories(root);
+            return Files.getFileStore(root).getUsableSpace();
+        } catch (IOException e) {
+            log.warn("Failed to read free disk space: {} ({})", root, e.getMessage());
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private Path mirrorsRoot() {
+        return Paths.get(downloadBaseDir, downloadSubDir).toAbsolutePath().normalize();
+    }
+
+    private static void deleteTree(Path root) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.error("Failed to delete output directory: {}", root, e);
+        }
+    }
+
+    /**
+     * 列出域名的镜像快照
+     *
+     * @param domain 域名
+     * @return 快照列表（从旧到新）
+     */
+    public List<SnapshotStore.SnapshotInfo> listSnapshots(String domain) throws IOException {
+        if (!SecurityUtils.isDomainSafe(domain)) {
+            throw new SecurityException("Unsafe domain: " + domain);
+        }
+        return snapshotStore.list(domain);
+    }
+
+    /**
+     * 按清单比较同一域名的两个快照
+     *
+     * @param domain 域名
+     * @param from 较旧的快照ID
+     * @param to 较新的快照ID
+     * @return 差异
+     */
+    public MirrorManifest.Diff diffSnapshots(String domain, String from, String to) throws IOException {
+        if (!SecurityUtils.isDomainSafe(domain)) {
+            throw new SecurityException("Unsafe domain: " + domain);
+        }
+        return snapshotStore.diff(domain, from, to);
+    }
+
+    /**
+     * 定期清理过期任务：按创建时间索引只读取过期的任务，未结束（排队、运行、暂停）的任务保留
+     */
+    @Scheduled(fixedDelayString = "#{@siteCloneProperties.task.cleanupInterval}")
+    public void cleanupExpiredTasks() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(properties.getTask().getMaxTaskAge()));
+        for (TaskStore.TaskRecord record : taskStore.findCreatedBefore(cutoff)) {
+            CloneTask task = tasks.get(record.getId());
+            if (task != null && !task.isTerminal()) {
+                continue;
+            }
+            log.info("Removing expired task: {} (created at {})", record.getId(), record.getCreatedAt());
+            tasks.remove(record.getId());
+            runs.remove(record.getId());
+            try {
+                taskStore.remove(record.getId());
+            } catch (IOException e) {
+                log.error("Failed to remove expired task from task store: {}", record.getId(), e);
+            }
+        }
         
         if (!tasks.isEmpty()) {
             log.debug("Task cleanup completed. Active tasks: {}", tasks.size());
         }
     }
 
+    /**
+     * 把任务的当前状态写入任务存储；写入失败只记录日志，不影响任务执行
+     */
+    private void persist(CloneTask task) {
+        TaskStore.TaskRecord record = new TaskStore.TaskRecord();
+        BeanUtils.copyProperties(task, record);
+        record.setDomain(domainOf(task));
+        record.setActiveMillis(task.activeMillis());
+        record.setCounters(task.counterValues());
+        try {
+            taskStore.put(record);
+        } catch (IOException e) {
+            log.error("Failed to persist clone task: {}", task.getId(), e);
+        }
+    }
+
+    /**
+     * 从任务存储的记录重建任务
+     */
+    private static CloneTask restoreTask(TaskStore.TaskRecord record) {
+        CloneTask task = new CloneTask(record.getUrl(), record.getOutputDir());
+        BeanUtils.copyProperties(record, task);
+        if (task.getOptions() == null) {
+            task.setOptions(new CloneOptions());
+        }
+        task.restoreActiveMillis(record.getActiveMillis());
+        task.restoreCounters(record.getCounters());
+        return task;
+    }
+
+    private static String domainOf(CloneTask task) {
+        return URI.create(task.getUrl()).getHost();
+    }
+
+    private CloneOptions toOptions(CloneRequest request) {
+        CloneOptions options = new CloneOptions();
+        options.setThreadCount(request.getThreadCount());
+        options.setRetryTimes(request.getRetryTimes());
+        options.setSleepTime(request.getSleepTime());
+        if (request.getSrcsetPolicy() != null) {
+            options.setSrcsetPolicy(request.getSrcsetPolicy());
+        }
+        options.setSrcsetTargetWidth(request.getSrcsetTargetWidth());
+        if (request.getExcludedExtensions() != null) {
+            options.setExcludedExtensions(new ArrayList<>(request.getExcludedExtensions()));
+        }
+        if (request.getExcludedContentTypes() != null) {
+            options.setExcludedContentTypes(new ArrayList<>(request.getExcludedContentTypes()));
+        }
+        options.setMaxResourceSize(request.getMaxResourceSize());
+        // 刷新依赖上次记录的校验器，始终使用条件请求
+        options.setConditionalReclone(request.isConditionalReclone() || request.getRefreshBudget() > 0);
+        options.setRefreshBudget(request.getRefreshBudget());
+        options.setWeight(request.getWeight());
+        if (request.getSkippedResourceMode() != null) {
+            options.setSkippedResourceMode(request.getSkippedResourceMode());
+        }
+        return options;
+    }
+
     private CloneResponse convertToResponse(CloneTask task) {
         CloneResponse response = new CloneResponse();
+        // 计数器仍在被抓取线程更新：先复制任务属性，再用一次读取的进度快照覆盖计数和派生指标
+        CloneTask.Progress progress = task.snapshot();
         BeanUtils.copyProperties(task, response);
+        BeanUtils.copyProperties(progress, response);
+        int pageFetches = progress.getPagesCrawled() + progress.getPagesUnchanged();
+        if (task.getOptions().getRefreshBudget() > 0) {
+            response.setRefreshFetches(pageFetches);
+        }
+        if (progress.getPagesCrawled() > 0) {
+            response.setChangeYield((double) progress.getPagesChanged() / pageFetches);
+        }
         response.setTaskId(task.getId()); // 显式设置taskId
         return response;
     }
-}
\ No newline at end of file
+
+    private enum RunAction {
+        PAUSE,
+        CANCEL
+    }
+
+    /**
+     * 一个未结束任务的运行控制，暂停后继续时沿用
+     */
+    private static final class TaskRun {
+        private final FairShareScheduler.Flow queueFlow; // 任务队列中的流，同一批次的任务共用
+        private volatile FairShareScheduler.Ticket ticket; // 本次执行在任务队列中的申请
+        private volatile boolean resuming; // 是否从保存的抓取进度继续
+        private volatile RunAction action; // 请求的停止方式，未请求时为null
+        private volatile DrainingSpider spider; // 本次执行的 Spider，开始抓取前为null
+
+        private TaskRun(FairShareScheduler.Flow queueFlow) {
+            this.queueFlow = queueFlow;
+        }
+
+        /**
+         * 取消还在任务队列中的执行
+         *
+         * @return 是否取消成功；已经开始执行（或未提交）时返回false
+         */
+        private boolean cancelQueued() {
+            FairShareScheduler.Ticket queued = ticket;
+            return queued != null && queued.cancel();
+        }
+
+        /**
+         * 请求停止；取消优先于暂停，正在暂停的任务仍可取消
+         */
+        private synchronized void request(RunAction requested) {
+            if (action != RunAction.CANCEL) {
+                action = requested;
+            }
+            if (spider != null) {
+                spider.stop();
+            }
+        }
+
+        /**
+         * 关联本次执行的 Spider，之前收到的停止请求立即生效
+         */
+        private synchronized void attach(DrainingSpider spider) {
+            this.spider = spider;
+            if (action != null) {
+                spider.stop();
+            }
+        }
+
+        private synchronized void resume() {
+            resuming = true;
+            action = null;
+            spider = null;
+            ticket = null;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 内容寻址的资源存储 - 以 SHA-256 为键保存资源内容，镜像目录中的文件通过硬链接引用
+ *
+ * 引用计数直接使用文件系统的链接数：blob 自身占 1，每个镜像文件再占 1，
+ * 链接数回到 1 的 blob 不再被任何镜像引用，可以被回收。
+ * 文件系统不支持硬链接时退化为复制，镜像文件与 blob 互不影响，只是失去去重效果。
+ *
+ * 约定：镜像中的文件只能通过“写临时文件再原子替换”的方式修改，
+ * 不能就地写入，否则会同时修改所有共享同一 blob 的镜像。
+ */
+@Slf4j
+public class BlobStore {
+
+    private static final long STALE_TEMP_AGE = 3600000L; // 残留临时文件的清理阈值 (1小时)
+
+    private final Path root;
+
+    public BlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 保存内容并在目标位置创建引用
+     *
+     * @param content 资源内容
+     * @param target 镜像中的目标文件（已存在时被原子替换）
+     * @return 保存结果
+     * @throws IOException 写入失败
+     */
+    public StoreResult store(byte[] content, Path target) throws IOException {
+        String hash = sha256(content);
+        Path blob = blobPath(hash);
+        boolean existed = Files.isRegularFile(blob);
+        if (!existed) {
+            Files.createDirectories(blob.getParent());
+            Path temp = MirrorFiles.createTempFile(blob.getParent(), hash, ".tmp");
+            try {
+                Files.write(temp, content);
+                moveAtomically(temp, blob);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        // 先在旁边创建链接再原子替换，目标已存在（重新克隆时内容有更新）也不会就地改写旧的blob
+        Path tempLink = parent.resolve("." + target.getFileName() + "." + hash.substring(0, 12) + "."
+                + Thread.currentThread().getId() + ".lnk");
+        try {
+            Files.deleteIfExists(tempLink);
+            Files.createLink(tempLink, blob);
+            moveAtomically(tempLink, target);
+            // 目标已经链接到同一个blob时 rename 不做任何事，临时链接需要自己删除
+            Files.deleteIfExists(tempLink);
+            return new StoreResult(hash, content.length, existed, true);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.deleteIfExists(tempLink);
+            // 跨文件系统、不支持硬链接，或 blob 恰好被并发回收：直接写入独立副本
+            log.debug("无法创建硬链接，改为写入副本: {} ({})", target, e.getMessage());
+            Path temp = MirrorFiles.createTempFile(parent, ".blob", ".tmp");
+            try {
+                Files.write(temp, content);
+                moveAtomically(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return new StoreResult(hash, content.length, existed, false);
+        }
+    }
+
+    /**
+     * 回收不再被任何镜像引用的 blob
+     *
+     * @return 回收结果
+     */
+    public GcResult collectGarbage() {
+        int removed = 0;
+        long freedBytes = 0;
+        if (!Files.isDirectory(root)) {
+            return new GcResult(0, 0);
+        }
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(root)) {
+            for (Path shard : shards) {
+                if (!Files.isDirectory(shard)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(shard)) {
+                    for (Path blob : blobs) {
+                        String name = blob.getFileName().toString();
+                        long size = Files.size(blob);
+                        if (name.endsWith(".tmp")) {
+                            if (now - Files.getLastModifiedTime(blob).toMillis() > STALE_TEMP_AGE) {
+                                Files.deleteIfExists(blob);
+                            }
+                            continue;
+                        }
+                        if (linkCount(blob) == 1 && Files.deleteIfExists(blob)) {
+                            removed++;
+                            freedBytes += size;
+                        }
+                    }
+                }
+            }
+        } catch (UnsupportedOperationException e) {
+            log.warn("文件系统不支持读取链接数，跳过blob回收: {}", root);
+        } catch (IOException e) {
+            log.error("回收blob失败: {}", root, e);
+        }
+        if (removed > 0) {
+            log.info("回收未引用的blob: {} 个，释放 {} 字节", removed, freedBytes);
+        }
+        return new GcResult(removed, freedBytes);
+    }
+
+    private Path blobPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static int linkCount(Path path) throws IOException {
+        return ((Number) Files.getAttribute(path, "unix:nlink")).intValue();
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 计算内容的 SHA-256（十六进制小写）
+     */
+    public static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 保存结果
+     */
+    public static final class StoreResult {
+        private final String hash;
+        private final long size;
+        private final boolean deduplicated;
+        private final boolean linked;
+
+        public StoreResult(String hash, long size, boolean deduplicated, boolean linked) {
+            this.hash = hash;
+            this.size = size;
+            this.deduplicated = deduplicated;
+            this.linked = linked;
+        }
+
+        public String getHash() { return hash; }
+        public long getSize() { return size; }
+        /** 内容在保存前已存在于存储中 */
+        public boolean isDeduplicated() { return deduplicated; }
+        /** 目标文件是指向 blob 的硬链接（false 表示写入了独立副本） */
+        public boolean isLinked() { return linked; }
+        /** 是否节省了磁盘空间 */
+        public boolean isSpaceSaved() { return deduplicated && linked; }
+    }
+
+    /**
+     * 回收结果
+     */
+    public static final class GcResult {
+        private final int removedBlobs;
+        private final long freedBytes;
+
+        public GcResult(int removedBlobs, long freedBytes) {
+            this.removedBlobs = removedBlobs;
+            this.freedBytes = freedBytes;
+        }
+
+        public int getRemovedBlobs() { return removedBlobs; }
+        public long getFreedBytes() { return freedBytes; }
+    }
+}
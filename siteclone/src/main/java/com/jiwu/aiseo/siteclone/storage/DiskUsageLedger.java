@@ -0,0 +1,258 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 各镜像占用的磁盘字节数和最近使用时间，磁盘配额按此选择淘汰的镜像
+ *
+ * 字节数由写入方增量累计（页面、资源、样式表和脚本的改写、续传文件、WARC、校验器和抓取进度等状态文件，
+ * 以及打包和解包时的变化），不遍历镜像目录；账本中没有记录的镜像（如启用配额之前生成的）登记时遍历一次。
+ * 按文件的逻辑大小计算，与其他镜像或快照以硬链接共享的内容在每个镜像中都计入。
+ * 账本保存在状态文件中，任务结束和定期检查时写回；服务异常退出时丢失的只是最近一段时间的变化。
+ */
+@Slf4j
+public class DiskUsageLedger {
+
+    public static final String FILE_NAME = "mirror-usage";
+    private static final int FORMAT_VERSION = 2; // 2: 增加是否已统计过目录的标记
+
+    private final Path file;
+    private final Map<String, Usage> mirrors = new ConcurrentHashMap<>();
+
+    public DiskUsageLedger(Path dir) {
+        this.file = dir.resolve(FILE_NAME);
+        load();
+    }
+
+    /**
+     * 镜像的用量，不存在时创建（最近使用时间为当前时间）
+     */
+    public Usage usage(String domain) {
+        return mirrors.computeIfAbsent(domain, key -> new Usage(System.currentTimeMillis()));
+    }
+
+    /**
+     * 镜像是否需要遍历目录统计字节数：账本中没有，或者是旧格式账本中未经统计的记录
+     */
+    public boolean needsMeasure(String domain) {
+        Usage usage = mirrors.get(domain);
+        return usage == null || !usage.measured;
+    }
+
+    /**
+     * 按遍历目录得到的字节数登记镜像，之后由写入方增量累计；已登记的镜像保留最近使用时间和固定状态
+     *
+     * @param bytes 镜像目录的字节数，见 {@link #measure(Path)}
+     * @param lastUsed 新登记时的最近使用时间 (毫秒)
+     */
+    public void register(String domain, long bytes, long lastUsed) {
+        Usage usage = mirrors.computeIfAbsent(domain, key -> new Usage(lastUsed));
+        usage.bytes.reset();
+        usage.bytes.add(bytes);
+        usage.measured = true;
+    }
+
+    /**
+     * 遍历镜像目录，统计所有普通文件（包括状态目录和续传文件）的逻辑大小之和
+     */
+    public static long measure(Path mirror) throws IOException {
+        long[] total = new long[1];
+        Files.walkFileTree(mirror, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    total[0] += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // 遍历期间被删除的文件
+            }
+        });
+        return total[0];
+    }
+
+    /**
+     * 更新已登记镜像的最近使用时间，未登记的忽略
+     */
+    public void touch(String domain) {
+        Usage usage = mirrors.get(domain);
+        if (usage != null) {
+            usage.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 固定或取消固定镜像，固定的镜像不会被淘汰
+     *
+     * @return 镜像是否已登记
+     */
+    public boolean setPinned(String domain, boolean pinned) {
+        Usage usage = mirrors.get(domain);
+        if (usage == null) {
+            return false;
+        }
+        usage.pinned = pinned;
+        return true;
+    }
+
+    public void remove(String domain) {
+        mirrors.remove(domain);
+    }
+
+    public boolean contains(String domain) {
+        return mirrors.containsKey(domain);
+    }
+
+    /**
+     * 所有镜像的字节数之和
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (Usage usage : mirrors.values()) {
+            total += usage.bytes.sum();
+        }
+        return total;
+    }
+
+    /**
+     * 各镜像的用量，按最近使用时间从旧到新
+     */
+    public List<MirrorUsage> list() {
+        List<MirrorUsage> result = new ArrayList<>(mirrors.size());
+        mirrors.forEach((domain, usage) -> result.add(new MirrorUsage(domain, usage.bytes.sum(), usage.lastUsed,
+                usage.pinned)));
+        result.sort(Comparator.comparingLong(MirrorUsage::getLastUsed));
+        return result;
+    }
+
+    /**
+     * 写入状态文件：写入临时文件后原子替换
+     */
+    public synchronized void save() {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "." + FILE_NAME, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    Map<String, Usage> usages = Map.copyOf(mirrors);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(usages.size());
+                    for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+                        Usage usage = entry.getValue();
+                        out.writeUTF(entry.getKey());
+                        out.writeLong(usage.bytes.sum());
+                        out.writeLong(usage.lastUsed);
+                        out.writeBoolean(usage.pinned);
+                        out.writeBoolean(usage.measured);
+                    }
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("保存镜像用量失败: {} ({})", file, e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt();
+            if (version != 1 && version != FORMAT_VERSION) {
+                log.warn("不支持的镜像用量格式，重新统计: {}", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String domain = in.readUTF();
+                Usage usage = new Usage(0);
+                usage.bytes.add(in.readLong());
+                usage.lastUsed = in.readLong();
+                usage.pinned = in.readBoolean();
+                // 版本1的账本把未统计的镜像按0登记，字节数不可信，启动时重新统计一次
+                usage.measured = version != 1 && in.readBoolean();
+                mirrors.put(domain, usage);
+            }
+        } catch (IOException e) {
+            mirrors.clear();
+            log.warn("读取镜像用量失败，重新统计: {} ({})", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 一个镜像的用量，写入线程直接累加
+     */
+    public static final class Usage {
+        private final LongAdder bytes = new LongAdder();
+        private volatile long lastUsed;
+        private volatile boolean pinned;
+        private volatile boolean measured = true; // 字节数覆盖了目录中的全部文件；新建的镜像从0开始累计
+
+        private Usage(long lastUsed) {
+            this.lastUsed = lastUsed;
+        }
+
+        /**
+         * 累计字节数的变化（删除或缩小文件时为负数）
+         */
+        public void add(long delta) {
+            bytes.add(delta);
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+    }
+
+    /**
+     * 镜像用量的只读快照
+     */
+    public static final class MirrorUsage {
+        private final String domain;
+        private final long bytes;
+        private final long lastUsed;
+        private final boolean pinned;
+
+        public MirrorUsage(String domain, long bytes, long lastUsed, boolean pinned) {
+            this.domain = domain;
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+            this.pinned = pinned;
+        }
+
+        public String getDomain() { return domain; }
+        public long getBytes() { return bytes; }
+        /** 最近一次抓取或访问的时间 (毫秒) */
+        public long getLastUsed() { return lastUsed; }
+        public boolean isPinned() { return pinned; }
+    }
+}
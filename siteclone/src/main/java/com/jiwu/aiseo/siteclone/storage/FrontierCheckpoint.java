@@ -0,0 +1,141 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 暂停时保存的抓取进度：待抓取的页面、已发现的URL和刷新模式的剩余预算
+ *
+ * 继续时据此重建待抓取队列，已发现的URL不再重复加入，不需要从起始页重新抓取。
+ * 保存在镜像状态目录中，任务完成或取消后删除。
+ */
+@Slf4j
+public final class FrontierCheckpoint {
+
+    public static final String FILE_NAME = "frontier";
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<String> pending;
+    private final Set<String> seen;
+    private final boolean refreshMode;
+    private final int refreshBudgetLeft;
+
+    public FrontierCheckpoint(List<String> pending, Collection<String> seen, boolean refreshMode, int refreshBudgetLeft) {
+        this.pending = List.copyOf(pending);
+        this.seen = new LinkedHashSet<>(seen);
+        this.refreshMode = refreshMode;
+        this.refreshBudgetLeft = refreshBudgetLeft;
+    }
+
+    /**
+     * 镜像的抓取进度文件
+     */
+    public static Path file(Path mirrorDir) {
+        return mirrorDir.resolve(MirrorFiles.STATE_DIR).resolve(FILE_NAME);
+    }
+
+    /**
+     * 读取抓取进度
+     *
+     * @param file 进度文件
+     * @return 抓取进度；文件不存在或损坏时返回null，按新任务处理
+     */
+    public static FrontierCheckpoint load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                log.warn("不支持的抓取进度格式，忽略: {}", file);
+                return null;
+            }
+            boolean refreshMode = in.readBoolean();
+            int refreshBudgetLeft = in.readInt();
+            List<String> pending = readList(in);
+            List<String> seen = readList(in);
+            return new FrontierCheckpoint(pending, seen, refreshMode, refreshBudgetLeft);
+        } catch (IOException e) {
+            log.warn("读取抓取进度失败，从起始页重新抓取: {} ({})", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入临时文件后原子替换，写入中断时保留上一次的进度
+     *
+     * @return 文件大小的变化，计入镜像用量
+     */
+    public long save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        long previous = MirrorFiles.sizeOf(file);
+        Path temp = Files.createTempFile(file.getParent(), "." + FILE_NAME, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeBoolean(refreshMode);
+                out.writeInt(refreshBudgetLeft);
+                writeList(out, pending);
+                writeList(out, seen);
+            }
+            long size = Files.size(temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return size - previous;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 删除抓取进度文件
+     *
+     * @return 释放的字节数，文件不存在或删除失败时为0
+     */
+    public static long delete(Path file) {
+        try {
+            long size = MirrorFiles.sizeOf(file);
+            return Files.deleteIfExists(file) ? size : 0;
+        } catch (IOException e) {
+            log.warn("删除抓取进度失败: {} ({})", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void writeList(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(Math.min(count, 4096));
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    public List<String> getPending() { return pending; }
+    public Set<String> getSeen() { return seen; }
+    public boolean isRefreshMode() { return refreshMode; }
+    public int getRefreshBudgetLeft() { return refreshBudgetLeft; }
+}
@@ -0,0 +1,63 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.jiwu.aiseo.siteclone.downloader.PartialDownload;
+
+/**
+ * 镜像文件工具
+ */
+public final class MirrorFiles {
+
+    public static final String STATE_DIR = ".siteclone"; // 镜像的内部状态目录（校验器、打包文件等），不属于镜像内容
+
+    private MirrorFiles() {
+    }
+
+    /**
+     * 是否为写入过程中的临时文件（原子替换的临时文件、临时硬链接、未完成的续传文件），不属于镜像内容
+     */
+    public static boolean isTransient(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(".") && (name.endsWith(".tmp") || name.endsWith(".lnk")
+                || name.endsWith(PartialDownload.PART_SUFFIX) || name.endsWith(PartialDownload.META_SUFFIX));
+    }
+
+    /**
+     * 在目录中创建用于原子替换的临时文件
+     *
+     * 与 {@link Files#createTempFile} 不同，权限按进程的 umask 创建（通常为 644），
+     * 改名后的镜像文件能被 Web 服务器等其他用户读取；后者固定为 600。
+     *
+     * @param dir 目标文件所在目录
+     * @param prefix 文件名前缀
+     * @param suffix 文件名后缀
+     * @return 新建的空文件
+     */
+    public static Path createTempFile(Path dir, String prefix, String suffix) throws IOException {
+        while (true) {
+            Path temp = dir.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + suffix);
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // 名称冲突，换一个随机名重试
+            }
+        }
+    }
+
+    /**
+     * 文件当前的大小，不存在时为0；覆盖文件前调用，用于计算镜像用量的变化
+     */
+    public static long sizeOf(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+}
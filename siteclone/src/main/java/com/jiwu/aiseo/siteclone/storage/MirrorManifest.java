@@ -0,0 +1,226 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 镜像清单 - 记录镜像中每个文件的相对路径、大小和 SHA-256
+ *
+ * 文本格式，每行一个文件：{@code sha256<TAB>size<TAB>path}，按路径排序；
+ * 两个快照的差异只需比较清单，不用遍历目录树。
+ */
+public class MirrorManifest {
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    public MirrorManifest() {
+    }
+
+    /**
+     * 读取清单文件
+     */
+    public static MirrorManifest load(Path file) throws IOException {
+        MirrorManifest manifest = new MirrorManifest();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 3);
+                if (fields.length != 3) {
+                    throw new IOException("清单格式错误: " + file);
+                }
+                manifest.put(fields[2], fields[0], Long.parseLong(fields[1]));
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * 计算镜像目录的清单，不包括镜像状态目录和写入中的临时文件
+     */
+    public static MirrorManifest scan(Path mirrorDir) throws IOException {
+        MirrorManifest manifest = new MirrorManifest();
+        Path mirror = mirrorDir.toAbsolutePath().normalize();
+        Files.walkFileTree(mirror, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.getFileName() != null && dir.getFileName().toString().equals(MirrorFiles.STATE_DIR) && !dir.equals(mirror)
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && !MirrorFiles.isTransient(file)) {
+                    manifest.put(mirror.relativize(file).toString().replace('\\', '/'), sha256(file), attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return manifest;
+    }
+
+    /**
+     * 写入清单（先写临时文件再原子替换）
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), ".manifest", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    writer.write(entry.getValue().hash + "\t" + entry.getValue().size + "\t" + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public void put(String path, String hash, long size) {
+        entries.put(path, new Entry(hash, size));
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * 按路径排序的全部条目（只读）
+     */
+    public Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.size;
+        }
+        return total;
+    }
+
+    /**
+     * 与较新的清单比较
+     *
+     * @param newer 较新的清单
+     * @return 差异
+     */
+    public Diff diff(MirrorManifest newer) {
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> modified = new ArrayList<>();
+        int unchanged = 0;
+        long changedBytes = 0;
+        for (Map.Entry<String, Entry> entry : newer.entries.entrySet()) {
+            Entry old = entries.get(entry.getKey());
+            if (old == null) {
+                added.add(entry.getKey());
+                changedBytes += entry.getValue().size;
+            } else if (!old.hash.equals(entry.getValue().hash)) {
+                modified.add(entry.getKey());
+                changedBytes += entry.getValue().size;
+            } else {
+                unchanged++;
+            }
+        }
+        for (String path : entries.keySet()) {
+            if (!newer.entries.containsKey(path)) {
+                removed.add(path);
+            }
+        }
+        return new Diff(added, removed, modified, unchanged, changedBytes);
+    }
+
+    /**
+     * 计算文件的 SHA-256（流式读取，不把整个文件读入内存）
+     */
+    public static String sha256(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 清单条目
+     */
+    public static final class Entry {
+        private final String hash;
+        private final long size;
+
+        public Entry(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() { return hash; }
+        public long getSize() { return size; }
+    }
+
+    /**
+     * 两个清单的差异
+     */
+    public static final class Diff {
+        private final List<String> added;
+        private final List<String> removed;
+        private final List<String> modified;
+        private final int unchanged;
+        private final long changedBytes;
+
+        public Diff(List<String> added, List<String> removed, List<String> modified, int unchanged, long changedBytes) {
+            this.added = added;
+            this.removed = removed;
+            this.modified = modified;
+            this.unchanged = unchanged;
+            this.changedBytes = changedBytes;
+        }
+
+        /** 新增的文件 */
+        public List<String> getAdded() { return added; }
+        /** 删除的文件 */
+        public List<String> getRemoved() { return removed; }
+        /** 内容有变化的文件 */
+        public List<String> getModified() { return modified; }
+        /** 未变化的文件数 */
+        public int getUnchanged() { return unchanged; }
+        /** 新增和变化文件的字节数 */
+        public long getChangedBytes() { return changedBytes; }
+    }
+}
@@ -0,0 +1,72 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * 镜像包中的文件，内容直接从内存映射的分段读取
+ */
+public class PackResource extends AbstractResource {
+
+    private final PackStore.Located located;
+    private final String filename;
+
+    public PackResource(PackStore.Located located) {
+        this.located = located;
+        String path = located.getEntry().getPath();
+        this.filename = path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        ByteBuffer buffer = located.read();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return located.getEntry().getLength();
+    }
+
+    @Override
+    public long lastModified() {
+        return located.getCreatedAt();
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getDescription() {
+        return "pack entry [" + located.getEntry().getPath() + "]";
+    }
+}
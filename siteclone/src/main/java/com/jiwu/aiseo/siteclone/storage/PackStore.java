@@ -0,0 +1,586 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 镜像打包存储 - 把镜像中的大量小文件顺序追加到少数几个分段文件中，另存一份索引
+ *
+ * 目录结构：{@code <镜像>/.siteclone/pack/segment-00000.pack ...} 和 {@code index}，
+ * 索引记录 相对路径 -> (分段, 偏移, 长度, 内容类型, SHA-256)；内容相同的文件在包内只保存一份。
+ * 读取时分段以只读方式内存映射，按索引切片返回，不再为每个文件打开一次文件。
+ * 打包先写入临时目录，完成后整体替换旧包；超过单个映射上限 (2GB) 的文件保留为普通文件。
+ */
+@Slf4j
+public class PackStore {
+
+    private static final String PACK_DIR = "pack";
+    private static final String INDEX_FILE = "index";
+    private static final int FORMAT_VERSION = 1;
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE; // 单个 MappedByteBuffer 的上限
+
+    private final long segmentSize;
+    private final Map<Path, PackReader> readers = new ConcurrentHashMap<>(); // 镜像目录 -> 已打开的包
+
+    /**
+     * @param segmentSize 单个分段的目标大小（字节）
+     */
+    public PackStore(long segmentSize) {
+        this.segmentSize = Math.max(1, Math.min(segmentSize, MAX_SEGMENT_SIZE));
+    }
+
+    /**
+     * 镜像目录中的包目录
+     */
+    public static Path packDir(Path mirrorDir) {
+        return mirrorDir.toAbsolutePath().normalize().resolve(MirrorFiles.STATE_DIR).resolve(PACK_DIR);
+    }
+
+    public boolean hasPack(Path mirrorDir) {
+        return Files.isRegularFile(packDir(mirrorDir).resolve(INDEX_FILE));
+    }
+
+    /**
+     * 把镜像目录打包
+     *
+     * @param mirrorDir 镜像目录
+     * @param removeLooseFiles 打包后是否删除已入包的普通文件（打包期间被修改的文件会保留）
+     * @return 打包结果
+     */
+    public synchronized PackInfo pack(Path mirrorDir, boolean removeLooseFiles) throws IOException {
+        Path mirror = mirrorDir.toAbsolutePath().normalize();
+        Path packDir = packDir(mirror);
+        Path temp = packDir.resolveSibling(PACK_DIR + ".tmp");
+        deleteTree(temp);
+        Files.createDirectories(temp);
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        Map<String, Long> packedModified = new HashMap<>(); // 打包时的修改时间，删除普通文件前用于确认未被改动
+        Map<String, Entry> byHash = new HashMap<>();
+        long[] storedBytes = new long[1];
+        try (SegmentWriter writer = new SegmentWriter(temp)) {
+            List<Path> files = new ArrayList<>();
+            Files.walkFileTree(mirror, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.getFileName() != null && dir.getFileName().toString().equals(MirrorFiles.STATE_DIR)
+                            && !dir.equals(mirror) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !MirrorFiles.isTransient(file) && attrs.size() <= MAX_SEGMENT_SIZE) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            files.sort(Comparator.naturalOrder()); // 同一目录的文件相邻存放，顺序读取更友好
+
+            for (Path file : files) {
+                String relative = mirror.relativize(file).toString().replace('\\', '/');
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                Entry written = writer.append(relative, file, contentType(file));
+                Entry existing = byHash.get(written.hash);
+                Entry entry = written;
+                if (existing != null && existing.length == written.length) {
+                    writer.rollback(written); // 包内已有相同内容，撤销本次追加
+                    entry = new Entry(relative, existing.segment, existing.offset, existing.length, written.contentType,
+                            written.hash);
+                } else {
+                    byHash.put(written.hash, written);
+                    storedBytes[0] += written.length;
+                }
+                entries.put(relative, entry);
+                packedModified.put(relative, modified);
+            }
+            writer.finish();
+            writeIndex(temp.resolve(INDEX_FILE), writer.segmentCount(), entries.values());
+        } catch (IOException | RuntimeException e) {
+            deleteTree(temp);
+            throw e;
+        }
+
+        // 替换旧包：已打开的映射在 Linux 上删除文件后仍然有效
+        readers.remove(mirror);
+        Path old = packDir.resolveSibling(PACK_DIR + ".old");
+        deleteTree(old);
+        if (Files.exists(packDir)) {
+            Files.move(packDir, old);
+        }
+        move(temp, packDir);
+        deleteTree(old);
+
+        int removed = 0;
+        long removedBytes = 0;
+        if (removeLooseFiles) {
+            for (Map.Entry<String, Long> packed : packedModified.entrySet()) {
+                Path file = mirror.resolve(packed.getKey());
+                if (Files.getLastModifiedTime(file).toMillis() == packed.getValue()) {
+                    long size = Files.size(file);
+                    if (Files.deleteIfExists(file)) {
+                        removed++;
+                        removedBytes += size;
+                    }
+                }
+            }
+            removeEmptyDirectories(mirror);
+        }
+        PackInfo info = new PackInfo(entries.size(), open(mirror).segments.length, storedBytes[0], removed, removedBytes);
+        log.info("镜像打包完成: {} ({} 个文件，{} 个分段，{} 字节，删除普通文件 {} 个)", mirror, info.getFiles(),
+                info.getSegments(), info.getStoredBytes(), removed);
+        return info;
+    }
+
+    /**
+     * 把包还原为普通目录
+     *
+     * @param mirrorDir 包所在的镜像目录
+     * @param targetDir 输出目录（可以是镜像目录本身）；已存在的文件不覆盖
+     * @return 写出的文件数
+     */
+    public int extract(Path mirrorDir, Path targetDir) throws IOException {
+        return extract(mirrorDir, targetDir, new long[1]);
+    }
+
+    /**
+     * @param restoredBytes 累计写出的字节数
+     */
+    private int extract(Path mirrorDir, Path targetDir, long[] restoredBytes) throws IOException {
+        PackReader reader = open(mirrorDir);
+        if (reader == null) {
+            return 0;
+        }
+        Path target = targetDir.toAbsolutePath().normalize();
+        int written = 0;
+        for (Entry entry : reader.entries.values()) {
+            Path file = target.resolve(entry.path).normalize();
+            if (!file.startsWith(target) || Files.exists(file)) {
+                continue;
+            }
+            Files.createDirectories(file.getParent());
+            Path temp = MirrorFiles.createTempFile(file.getParent(), ".unpack", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = reader.read(entry);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                move(temp, file);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            written++;
+            restoredBytes[0] += entry.length;
+        }
+        return written;
+    }
+
+    /**
+     * 把包还原到镜像目录并删除包（重新克隆前调用，抓取仍按普通文件进行）
+     *
+     * @return 解包结果
+     */
+    public synchronized UnpackInfo unpack(Path mirrorDir) throws IOException {
+        Path mirror = mirrorDir.toAbsolutePath().normalize();
+        long[] restoredBytes = new long[1];
+        int written = extract(mirror, mirror, restoredBytes);
+        readers.remove(mirror);
+        Path packDir = packDir(mirror);
+        long packBytes = 0;
+        if (Files.isDirectory(packDir)) {
+            try (Stream<Path> files = Files.list(packDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    packBytes += Files.size(file);
+                }
+            }
+        }
+        deleteTree(packDir);
+        log.info("镜像解包完成: {} ({} 个文件)", mirror, written);
+        return new UnpackInfo(written, restoredBytes[0], packBytes);
+    }
+
+    /**
+     * 打开镜像目录的包（已打开的直接复用）
+     *
+     * @return 包读取器，没有包时返回null
+     */
+    public PackReader open(Path mirrorDir) throws IOException {
+        Path mirror = mirrorDir.toAbsolutePath().normalize();
+        PackReader reader = readers.get(mirror);
+        if (reader != null || !hasPack(mirror)) {
+            return reader;
+        }
+        synchronized (this) {
+            reader = readers.get(mirror);
+            if (reader == null && hasPack(mirror)) {
+                reader = PackReader.load(packDir(mirror));
+                readers.put(mirror, reader);
+            }
+            return reader;
+        }
+    }
+
+    /**
+     * 查找文件所在的包：从文件所在目录逐级向上寻找带包的镜像目录
+     *
+     * @param file 文件的绝对路径
+     * @return 包中的位置，文件不在任何包中时返回null
+     */
+    public Located locate(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        try {
+            for (Path dir = normalized.getParent(); dir != null; dir = dir.getParent()) {
+                PackReader reader = open(dir);
+                if (reader != null) {
+                    Entry entry = reader.entries.get(dir.relativize(normalized).toString().replace('\\', '/'));
+                    return entry == null ? null : new Located(reader, entry);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取镜像包失败: {} ({})", file, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 关闭镜像目录的包（目录被删除时调用）
+     */
+    public void evict(Path mirrorDir) {
+        readers.remove(mirrorDir.toAbsolutePath().normalize());
+    }
+
+    private static String contentType(Path file) {
+        try {
+            String type = Files.probeContentType(file);
+            return type == null ? "" : type;
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void writeIndex(Path file, int segments, Iterable<Entry> entries) throws IOException {
+        List<Entry> list = new ArrayList<>();
+        entries.forEach(list::add);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(segments);
+            out.writeInt(list.size());
+            for (Entry entry : list) {
+                out.writeUTF(entry.path);
+                out.writeInt(entry.segment);
+                out.writeLong(entry.offset);
+                out.writeLong(entry.length);
+                out.writeUTF(entry.contentType);
+                out.writeUTF(entry.hash);
+            }
+        }
+    }
+
+    private static void removeEmptyDirectories(Path mirror) throws IOException {
+        try (Stream<Path> walk = Files.walk(mirror)) {
+            List<Path> dirs = walk.filter(Files::isDirectory)
+                    .filter(dir -> !dir.equals(mirror) && !mirror.relativize(dir).startsWith(MirrorFiles.STATE_DIR))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+            for (Path dir : dirs) {
+                try (Stream<Path> children = Files.list(dir)) {
+                    if (children.findAny().isEmpty()) {
+                        Files.deleteIfExists(dir);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String segmentName(int segment) {
+        return String.format("segment-%05d.pack", segment);
+    }
+
+    /**
+     * 分段写入器：追加文件内容，当前分段写满后切换到新的分段
+     */
+    private final class SegmentWriter implements AutoCloseable {
+        private final Path dir;
+        private int segment = -1;
+        private FileChannel channel;
+
+        SegmentWriter(Path dir) {
+            this.dir = dir;
+        }
+
+        Entry append(String relative, Path file, String contentType) throws IOException {
+            long size = Files.size(file);
+            if (channel == null || (channel.size() > 0 && channel.size() + size > segmentSize)) {
+                nextSegment();
+            }
+            long offset = channel.size();
+            MessageDigest digest = sha256();
+            channel.position(offset);
+            byte[] buffer = new byte[65536];
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                }
+            } catch (IOException e) {
+                channel.truncate(offset);
+                throw e;
+            }
+            long length = channel.size() - offset;
+            return new Entry(relative, segment, offset, length, contentType, HexFormat.of().formatHex(digest.digest()));
+        }
+
+        void rollback(Entry entry) throws IOException {
+            channel.truncate(entry.offset);
+        }
+
+        int segmentCount() {
+            return segment + 1;
+        }
+
+        void finish() throws IOException {
+            if (channel != null) {
+                channel.force(true);
+            }
+        }
+
+        private void nextSegment() throws IOException {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+            segment++;
+            channel = FileChannel.open(dir.resolve(segmentName(segment)), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        private MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 不可用", e);
+            }
+        }
+    }
+
+    /**
+     * 已打开的包：索引常驻内存，分段只读映射
+     */
+    public static final class PackReader {
+        private final Map<String, Entry> entries;
+        private final MappedByteBuffer[] segments;
+        private final long createdAt;
+
+        private PackReader(Map<String, Entry> entries, MappedByteBuffer[] segments, long createdAt) {
+            this.entries = entries;
+            this.segments = segments;
+            this.createdAt = createdAt;
+        }
+
+        static PackReader load(Path packDir) throws IOException {
+            Path indexFile = packDir.resolve(INDEX_FILE);
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            MappedByteBuffer[] segments;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                int version = in.readInt();
+                if (version != FORMAT_VERSION) {
+                    throw new IOException("不支持的镜像包格式: " + version);
+                }
+                segments = new MappedByteBuffer[in.readInt()];
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Entry entry = new Entry(in.readUTF(), in.readInt(), in.readLong(), in.readLong(), in.readUTF(),
+                            in.readUTF());
+                    entries.put(entry.path, entry);
+                }
+            }
+            for (int i = 0; i < segments.length; i++) {
+                try (FileChannel channel = FileChannel.open(packDir.resolve(segmentName(i)), StandardOpenOption.READ)) {
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            return new PackReader(Collections.unmodifiableMap(entries), segments,
+                    Files.getLastModifiedTime(indexFile).toMillis());
+        }
+
+        /**
+         * 按相对路径排列的全部条目
+         */
+        public Map<String, Entry> getEntries() {
+            return entries;
+        }
+
+        /** 打包时间 (毫秒) */
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * 读取条目内容（只读视图，不复制）
+         */
+        public ByteBuffer read(Entry entry) {
+            ByteBuffer buffer = segments[entry.segment].duplicate();
+            buffer.position((int) entry.offset);
+            buffer.limit((int) (entry.offset + entry.length));
+            return buffer.slice().asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * 包索引条目
+     */
+    public static final class Entry {
+        private final String path;
+        private final int segment;
+        private final long offset;
+        private final long length;
+        private final String contentType;
+        private final String hash;
+
+        Entry(String path, int segment, long offset, long length, String contentType, String hash) {
+            this.path = path;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.contentType = contentType;
+            this.hash = hash;
+        }
+
+        /** 在镜像中的相对路径 */
+        public String getPath() { return path; }
+        public int getSegment() { return segment; }
+        public long getOffset() { return offset; }
+        public long getLength() { return length; }
+        /** 内容类型，未知时为空字符串 */
+        public String getContentType() { return contentType; }
+        public String getHash() { return hash; }
+    }
+
+    /**
+     * 文件在包中的位置
+     */
+    public static final class Located {
+        private final PackReader reader;
+        private final Entry entry;
+
+        Located(PackReader reader, Entry entry) {
+            this.reader = reader;
+            this.entry = entry;
+        }
+
+        public Entry getEntry() { return entry; }
+        public long getCreatedAt() { return reader.getCreatedAt(); }
+        public ByteBuffer read() { return reader.read(entry); }
+    }
+
+    /**
+     * 打包结果
+     */
+    public static final class PackInfo {
+        private final int files;
+        private final int segments;
+        private final long storedBytes;
+        private final int removedFiles;
+        private final long removedBytes;
+
+        public PackInfo(int files, int segments, long storedBytes, int removedFiles, long removedBytes) {
+            this.files = files;
+            this.segments = segments;
+            this.storedBytes = storedBytes;
+            this.removedFiles = removedFiles;
+            this.removedBytes = removedBytes;
+        }
+
+        public int getFiles() { return files; }
+        public int getSegments() { return segments; }
+        /** 包内实际保存的字节数（相同内容只计一次） */
+        public long getStoredBytes() { return storedBytes; }
+        /** 删除的普通文件数 */
+        public int getRemovedFiles() { return removedFiles; }
+        /** 删除的普通文件的字节数 */
+        public long getRemovedBytes() { return removedBytes; }
+    }
+
+    /**
+     * 解包结果
+     */
+    public static final class UnpackInfo {
+        private final int files;
+        private final long restoredBytes;
+        private final long packBytes;
+
+        public UnpackInfo(int files, long restoredBytes, long packBytes) {
+            this.files = files;
+            this.restoredBytes = restoredBytes;
+            this.packBytes = packBytes;
+        }
+
+        /** 还原的文件数 */
+        public int getFiles() { return files; }
+        /** 还原的文件的字节数 */
+        public long getRestoredBytes() { return restoredBytes; }
+        /** 删除的包（分段和索引）的字节数 */
+        public long getPackBytes() { return packBytes; }
+    }
+}
@@ -0,0 +1,330 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 镜像快照存储 - 每次克隆完成后为域名生成一个不可变的快照目录
+ *
+ * 目录结构：{@code root/<domain>/<snapshotId>/files/...}，同目录下保存 manifest.tsv 和 snapshot.properties。
+ * 快照中的文件全部是硬链接：内容与上一个快照相同的文件链接到上一个快照（页面每次都会重新写入，
+ * 这样相同内容也只占一份空间），其余文件链接到当前镜像。镜像文件只会被原子替换、不会就地修改
+ * （见 {@link BlobStore}），所以之后的克隆不会改动已有快照。
+ * 快照先在临时目录中生成，完成后整体改名，外部只会看到完整的快照。
+ */
+@Slf4j
+public class SnapshotStore {
+
+    public static final String MANIFEST_FILE = "manifest.tsv";
+    private static final String INFO_FILE = "snapshot.properties";
+    private static final String FILES_DIR = "files";
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final Pattern ID_PATTERN = Pattern.compile("\\d{8}-\\d{6}-\\d{3}");
+
+    private final Path root;
+    private final int maxSnapshots; // 每个域名保留的快照数，0 表示不限制
+    private final long maxAge; // 快照最长保留时间 (毫秒)，0 表示不限制
+
+    public SnapshotStore(Path root, int maxSnapshots, long maxAge) {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxSnapshots = maxSnapshots;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * 为镜像目录生成快照
+     *
+     * @param domain 域名
+     * @param mirrorDir 镜像目录
+     * @return 新快照的信息
+     * @throws IOException 生成失败
+     */
+    public synchronized SnapshotInfo create(String domain, Path mirrorDir) throws IOException {
+        Path domainDir = domainDir(domain);
+        Files.createDirectories(domainDir);
+        List<SnapshotInfo> existing = list(domain);
+        SnapshotInfo previous = existing.isEmpty() ? null : existing.get(existing.size() - 1);
+        MirrorManifest previousManifest = previous == null ? new MirrorManifest() : loadManifest(domain, previous.getId());
+        Path previousFiles = previous == null ? null : domainDir.resolve(previous.getId()).resolve(FILES_DIR);
+
+        String id = nextId(domainDir);
+        Path temp = domainDir.resolve(".tmp-" + id);
+        Path files = temp.resolve(FILES_DIR);
+        MirrorManifest manifest = new MirrorManifest();
+        int[] linkedFiles = new int[1];
+        long[] linkedBytes = new long[1];
+        Path mirror = mirrorDir.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(files);
+            Files.walkFileTree(mirror, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.getFileName() != null && dir.getFileName().toString().equals(MirrorFiles.STATE_DIR) && !dir.equals(mirror)
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!attrs.isRegularFile() || MirrorFiles.isTransient(file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String relative = mirror.relativize(file).toString().replace('\\', '/');
+                    Path target = files.resolve(relative);
+                    Files.createDirectories(target.getParent());
+                    // 先链接到镜像当前的文件，之后再读取快照中的这份（镜像文件随后被替换也不影响）
+                    link(target, file);
+                    MirrorManifest.Entry old = previousManifest.get(relative);
+                    Path oldFile = previousFiles == null ? null : previousFiles.resolve(relative);
+                    String hash;
+                    if (old != null && Files.isRegularFile(oldFile) && Files.isSameFile(oldFile, target)) {
+                        hash = old.getHash(); // 与上一个快照是同一个文件，无需重新计算
+                    } else {
+                        hash = MirrorManifest.sha256(target);
+                        if (old != null && old.getHash().equals(hash) && Files.isRegularFile(oldFile)) {
+                            // 内容相同但已被重新写入（如每次重新保存的页面），改为链接到上一个快照
+                            Files.delete(target);
+                            link(target, oldFile);
+                        }
+                    }
+                    long size = Files.size(target);
+                    if (old != null && old.getHash().equals(hash)) {
+                        linkedFiles[0]++;
+                        linkedBytes[0] += size;
+                    }
+                    manifest.put(relative, hash, size);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            manifest.save(temp.resolve(MANIFEST_FILE));
+            SnapshotInfo info = new SnapshotInfo(id, System.currentTimeMillis(), manifest.size(),
+                    manifest.getTotalBytes(), linkedFiles[0], linkedBytes[0]);
+            writeInfo(temp.resolve(INFO_FILE), info);
+            try {
+                Files.move(temp, domainDir.resolve(id), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, domainDir.resolve(id));
+            }
+            log.info("生成快照: {}/{} ({} 个文件，{} 个与上一快照共享，新增 {} 字节)", domain, id, info.getFiles(),
+                    info.getSharedFiles(), info.getTotalBytes() - info.getSharedBytes());
+            return info;
+        } finally {
+            deleteTree(temp);
+        }
+    }
+
+    /**
+     * 列出域名的快照（按时间从旧到新）
+     */
+    public List<SnapshotInfo> list(String domain) throws IOException {
+        List<SnapshotInfo> snapshots = new ArrayList<>();
+        Path domainDir = domainDir(domain);
+        if (!Files.isDirectory(domainDir)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(domainDir)) {
+            for (Path dir : dirs) {
+                Path infoFile = dir.resolve(INFO_FILE);
+                if (ID_PATTERN.matcher(dir.getFileName().toString()).matches() && Files.isRegularFile(infoFile)) {
+                    snapshots.add(readInfo(dir.getFileName().toString(), infoFile));
+                }
+            }
+        }
+        snapshots.sort(Comparator.comparing(SnapshotInfo::getId));
+        return snapshots;
+    }
+
+    /**
+     * 读取快照清单
+     */
+    public MirrorManifest loadManifest(String domain, String snapshotId) throws IOException {
+        return MirrorManifest.load(snapshotDir(domain, snapshotId).resolve(MANIFEST_FILE));
+    }
+
+    /**
+     * 快照中镜像文件的根目录
+     */
+    public Path filesDir(String domain, String snapshotId) {
+        return snapshotDir(domain, snapshotId).resolve(FILES_DIR);
+    }
+
+    /**
+     * 比较两个快照（只读取清单）
+     *
+     * @param domain 域名
+     * @param from 较旧的快照ID
+     * @param to 较新的快照ID
+     * @return 差异
+     */
+    public MirrorManifest.Diff diff(String domain, String from, String to) throws IOException {
+        return loadManifest(domain, from).diff(loadManifest(domain, to));
+    }
+
+    /**
+     * 按保留策略删除旧快照，最新的快照始终保留
+     *
+     * @return 删除的快照数
+     */
+    public synchronized int applyRetention(String domain) throws IOException {
+        List<SnapshotInfo> snapshots = list(domain);
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (int i = 0; i < snapshots.size() - 1; i++) {
+            SnapshotInfo snapshot = snapshots.get(i);
+            boolean overCount = maxSnapshots > 0 && snapshots.size() - i > maxSnapshots;
+            boolean tooOld = maxAge > 0 && now - snapshot.getCreatedAt() > maxAge;
+            if (overCount || tooOld) {
+                deleteTree(snapshotDir(domain, snapshot.getId()));
+                removed++;
+                log.info("按保留策略删除快照: {}/{}", domain, snapshot.getId());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 删除域名的所有快照（镜像被淘汰时调用，快照与镜像以硬链接共享内容，不删除则空间不会释放）
+     *
+     * @return 删除的快照数
+     */
+    public synchronized int deleteAll(String domain) throws IOException {
+        int count = list(domain).size();
+        deleteTree(domainDir(domain));
+        if (count > 0) {
+            log.info("删除域名的所有快照: {} ({} 个)", domain, count);
+        }
+        return count;
+    }
+
+    private Path domainDir(String domain) {
+        Path dir = root.resolve(domain).normalize();
+        if (domain.isEmpty() || !dir.getParent().equals(root)) {
+            throw new IllegalArgumentException("Invalid domain: " + domain);
+        }
+        return dir;
+    }
+
+    private Path snapshotDir(String domain, String snapshotId) {
+        if (snapshotId == null || !ID_PATTERN.matcher(snapshotId).matches()) {
+            throw new IllegalArgumentException("Invalid snapshot id: " + snapshotId);
+        }
+        Path dir = domainDir(domain).resolve(snapshotId);
+        if (!Files.isDirectory(dir)) {
+            throw new IllegalArgumentException("Snapshot not found: " + domain + "/" + snapshotId);
+        }
+        return dir;
+    }
+
+    private static String nextId(Path domainDir) {
+        LocalDateTime time = LocalDateTime.now();
+        String id = time.format(ID_FORMAT);
+        // 同一毫秒内连续生成时顺延，保证ID递增
+        while (Files.exists(domainDir.resolve(id))) {
+            time = time.plusNanos(1_000_000);
+            id = time.format(ID_FORMAT);
+        }
+        return id;
+    }
+
+    private static void link(Path link, Path existing) throws IOException {
+        try {
+            Files.createLink(link, existing);
+        } catch (UnsupportedOperationException | IOException e) {
+            // 不支持硬链接或跨文件系统时退化为复制
+            Files.copy(existing, link, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeInfo(Path file, SnapshotInfo info) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("createdAt", Long.toString(info.getCreatedAt()));
+        properties.setProperty("files", Integer.toString(info.getFiles()));
+        properties.setProperty("totalBytes", Long.toString(info.getTotalBytes()));
+        properties.setProperty("sharedFiles", Integer.toString(info.getSharedFiles()));
+        properties.setProperty("sharedBytes", Long.toString(info.getSharedBytes()));
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, null);
+        }
+    }
+
+    private static SnapshotInfo readInfo(String id, Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return new SnapshotInfo(id,
+                Long.parseLong(properties.getProperty("createdAt", "0")),
+                Integer.parseInt(properties.getProperty("files", "0")),
+                Long.parseLong(properties.getProperty("totalBytes", "0")),
+                Integer.parseInt(properties.getProperty("sharedFiles", "0")),
+                Long.parseLong(properties.getProperty("sharedBytes", "0")));
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * 快照信息
+     */
+    public static final class SnapshotInfo {
+        private final String id;
+        private final long createdAt;
+        private final int files;
+        private final long totalBytes;
+        private final int sharedFiles;
+        private final long sharedBytes;
+
+        public SnapshotInfo(String id, long createdAt, int files, long totalBytes, int sharedFiles, long sharedBytes) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.files = files;
+            this.totalBytes = totalBytes;
+            this.sharedFiles = sharedFiles;
+            this.sharedBytes = sharedBytes;
+        }
+
+        public String getId() { return id; }
+        /** 生成时间 (毫秒) */
+        public long getCreatedAt() { return createdAt; }
+        public LocalDateTime getCreatedTime() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAt), ZoneId.systemDefault());
+        }
+        /** 文件数 */
+        public int getFiles() { return files; }
+        /** 快照的逻辑大小 */
+        public long getTotalBytes() { return totalBytes; }
+        /** 与上一个快照共享（硬链接）的文件数 */
+        public int getSharedFiles() { return sharedFiles; }
+        /** 与上一个快照共享的字节数，逻辑大小减去它约为本快照新占用的空间 */
+        public long getSharedBytes() { return sharedBytes; }
+    }
+}
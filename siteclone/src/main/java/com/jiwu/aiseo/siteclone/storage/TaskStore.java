@@ -0,0 +1,455 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jiwu.aiseo.siteclone.model.CloneOptions;
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 任务存储 - 保存任务元数据、状态变化和最终统计的追加日志，服务重启后任务仍可查询和继续
+ *
+ * 每次写入在日志末尾追加任务的完整记录（长度 + CRC32 + 内容），删除追加一条删除标记；
+ * 启动时按顺序重放，末尾不完整或校验失败的记录（写入时进程退出）被截掉；日志中间的记录损坏时拒绝启动，不修改日志。
+ * 校验通过但无法解析的记录（如回滚到旧版本后遇到新的状态值）跳过，原样保留在日志中（压缩时也保留），升级回来后仍可读取。
+ * 被覆盖或删除的记录超过阈值后，把有效记录重写到新文件并原子替换（压缩）。
+ * 内存中保存每个任务的最新记录，按状态、域名、批次和创建时间建立索引。
+ */
+@Slf4j
+public class TaskStore {
+
+    public static final String LOG_FILE = "tasks.log";
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024; // 单条记录的上限，超过视为损坏
+
+    private final Path file;
+    private final int compactionThreshold;
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    private final Map<String, byte[]> records = new LinkedHashMap<>(); // 任务ID -> 最新记录（序列化后），读取时反序列化出独立的副本
+    private final Map<String, TaskRecord> summaries = new HashMap<>(); // 任务ID -> 建立索引用的字段
+    private final Map<CloneTaskStatus, Set<String>> byStatus = new EnumMap<>(CloneTaskStatus.class);
+    private final Map<String, Set<String>> byDomain = new HashMap<>();
+    private final Map<String, Set<String>> byBatch = new HashMap<>();
+    private final TreeMap<LocalDateTime, Set<String>> byCreatedAt = new TreeMap<>();
+    private final Map<String, byte[]> undecodable = new LinkedHashMap<>(); // 任务ID -> 无法解析的最新记录（原始内容），压缩时原样写回
+    private long logRecords; // 日志中的记录数，包括已失效的
+
+    /**
+     * @param dir 存储目录
+     * @param compactionThreshold 失效记录达到该数量时压缩日志
+     */
+    public TaskStore(Path dir, int compactionThreshold) {
+        this.file = dir.toAbsolutePath().normalize().resolve(LOG_FILE);
+        this.compactionThreshold = Math.max(1, compactionThreshold);
+        load();
+    }
+
+    /**
+     * 保存任务的最新状态（新增或覆盖）
+     */
+    public synchronized void put(TaskRecord record) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(record);
+        append(OP_PUT, record.getId(), json);
+        apply(record.getId(), json, record);
+        compactIfNeeded();
+    }
+
+    /**
+     * 删除任务记录
+     *
+     * @return 记录是否存在
+     */
+    public synchronized boolean remove(String id) throws IOException {
+        if (!records.containsKey(id)) {
+            return false;
+        }
+        append(OP_REMOVE, id, null);
+        apply(id, null, null);
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * 按ID查找
+     *
+     * @return 记录的副本，不存在时返回null
+     */
+    public synchronized TaskRecord get(String id) {
+        byte[] json = records.get(id);
+        return json == null ? null : decode(json);
+    }
+
+    /**
+     * 所有任务，按创建顺序
+     */
+    public synchronized List<TaskRecord> findAll() {
+        return decodeAll(records.keySet());
+    }
+
+    public synchronized List<TaskRecord> findByStatus(CloneTaskStatus status) {
+        return decodeAll(byStatus.getOrDefault(status, Set.of()));
+    }
+
+    public synchronized List<TaskRecord> findByDomain(String domain) {
+        return decodeAll(byDomain.getOrDefault(domain, Set.of()));
+    }
+
+    /**
+     * 批次中的任务，按提交顺序
+     */
+    public synchronized List<TaskRecord> findByBatch(String batchId) {
+        return decodeAll(byBatch.getOrDefault(batchId, Set.of()));
+    }
+
+    /**
+     * 创建时间早于指定时间的任务，从旧到新
+     */
+    public synchronized List<TaskRecord> findCreatedBefore(LocalDateTime time) {
+        List<String> ids = new ArrayList<>();
+        byCreatedAt.headMap(time, false).values().forEach(ids::addAll);
+        return decodeAll(ids);
+    }
+
+    public synchronized int size() {
+        return records.size();
+    }
+
+    private List<TaskRecord> decodeAll(Collection<String> ids) {
+        List<TaskRecord> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            byte[] json = records.get(id);
+            if (json != null) {
+                result.add(decode(json));
+            }
+        }
+        return result;
+    }
+
+    private TaskRecord decode(byte[] json) {
+        try {
+            return mapper.readValue(json, TaskRecord.class);
+        } catch (IOException e) {
+            // 写入时已经序列化成功过，不会发生
+            throw new IllegalStateException("Failed to decode task record", e);
+        }
+    }
+
+    /**
+     * 更新内存中的最新记录和索引
+     *
+     * @param json 序列化后的记录，删除时为null
+     */
+    private void apply(String id, byte[] json, TaskRecord record) {
+        undecodable.remove(id);
+        TaskRecord previous = summaries.remove(id);
+        if (previous != null) {
+            unindex(byStatus, previous.getStatus(), id);
+            unindex(byDomain, previous.getDomain(), id);
+            unindex(byBatch, previous.getBatchId(), id);
+            unindex(byCreatedAt, previous.getCreatedAt(), id);
+        }
+        if (json == null) {
+            records.remove(id);
+            return;
+        }
+        records.put(id, json); // 覆盖时保留原来的位置，遍历顺序即创建顺序
+        summaries.put(id, record);
+        index(byStatus, record.getStatus(), id);
+        index(byDomain, record.getDomain(), id);
+        index(byBatch, record.getBatchId(), id);
+        index(byCreatedAt, record.getCreatedAt(), id);
+    }
+
+    private static <K> void index(Map<K, Set<String>> index, K key, String id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    private static <K> void unindex(Map<K, Set<String>> index, K key, String id) {
+        if (key == null) {
+            return;
+        }
+        Set<String> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * 追加一条记录并刷盘，记录很少（每个任务只在状态变化时写入），刷盘的开销可以忽略
+     */
+    private void append(byte op, String id, byte[] json) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer frame = ByteBuffer.wrap(frame(op, id, json));
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            channel.force(false);
+        }
+        logRecords++;
+    }
+
+    /**
+     * 记录格式：内容长度 (int)、内容的CRC32 (int)、内容（操作、任务ID、JSON）
+     */
+    private static byte[] frame(byte op, String id, byte[] json) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(op);
+            out.writeUTF(id);
+            if (json != null) {
+                out.write(json);
+            }
+        }
+        return frame(payload.toByteArray());
+    }
+
+    private static byte[] frame(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer frame = ByteBuffer.allocate(8 + bytes.length);
+        frame.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+        return frame.array();
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        DataInputStream input;
+        long size;
+        try {
+            size = Files.size(file);
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        } catch (IOException e) {
+            // 不能当作空存储继续：之后的压缩会覆盖原有的任务
+            throw new UncheckedIOException("Failed to open task store: " + file, e);
+        }
+        long valid = 0; // 最后一条完整记录的结束位置
+        String tornTail = null; // 末尾不完整记录的原因
+        try (DataInputStream in = input) {
+            while (valid < size) {
+                if (size - valid < 8) {
+                    tornTail = "incomplete record header";
+                    break;
+                }
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 3 || length > MAX_RECORD_SIZE) {
+                    // 崩溃后文件系统可能在末尾留下全零的块
+                    if (!zeroFilled(valid)) {
+                        throw corrupted(valid, "invalid record length " + length);
+                    }
+                    tornTail = "zero-filled tail";
+                    break;
+                }
+                if (size - valid - 8 < length) {
+                    tornTail = "incomplete record";
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    // 只有最后一条记录可能是写了一半的
+                    if (valid + 8 + length != size) {
+                        throw corrupted(valid, "checksum mismatch");
+                    }
+                    tornTail = "checksum mismatch";
+                    break;
+                }
+                replay(payload, valid);
+                logRecords++;
+                valid += 8 + length;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read task store: " + file, e);
+        }
+        if (tornTail != null) {
+            // 写入中断留下的不完整记录：截掉，之后的追加从完整记录之后开始
+            log.warn("任务存储末尾的记录不完整，已截断: {} ({}，保留 {} 个任务)", file, tornTail, records.size());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            } catch (IOException truncateError) {
+                log.error("截断任务存储失败: {}", file, truncateError);
+            }
+        }
+        log.info("加载任务存储: {} 个任务 ({} 条记录, {})", records.size(), logRecords, file);
+        if (!undecodable.isEmpty()) {
+            log.warn("任务存储中有 {} 个任务的记录无法解析，已跳过并保留在日志中: {}", undecodable.size(),
+                    undecodable.keySet());
+        }
+        try {
+            compactIfNeeded();
+        } catch (IOException e) {
+            log.warn("压缩任务存储失败: {} ({})", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 从指定位置到文件末尾是否全是零字节
+     */
+    private boolean zeroFilled(long from) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            channel.position(from);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() != 0) {
+                        return false;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        return true;
+    }
+
+    private UncheckedIOException corrupted(long position, String reason) {
+        // 不截断：之后的记录仍然完整，需要人工处理
+        return new UncheckedIOException(new IOException(
+                "Corrupted task store " + file + " at offset " + position + ": " + reason));
+    }
+
+    /**
+     * 重放一条校验通过的记录；内容无法解析时跳过该任务并保留原始记录
+     */
+    private void replay(byte[] payload, long position) {
+        String id;
+        byte op;
+        byte[] json;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            op = in.readByte();
+            id = in.readUTF();
+            json = in.readAllBytes();
+        } catch (IOException e) {
+            throw corrupted(position, "malformed record");
+        }
+        if (op == OP_REMOVE) {
+            apply(id, null, null);
+            return;
+        }
+        TaskRecord record = null;
+        if (op == OP_PUT) {
+            try {
+                record = mapper.readValue(json, TaskRecord.class);
+            } catch (IOException e) {
+                log.warn("跳过无法解析的任务记录: {} ({})", id, e.getMessage());
+            }
+        } else {
+            log.warn("跳过未知类型的任务记录: {} (类型 {})", id, op);
+        }
+        if (record != null) {
+            apply(id, json, record);
+        } else {
+            // 较早的记录已经过时，不再使用
+            apply(id, null, null);
+            undecodable.put(id, payload);
+        }
+    }
+
+    /**
+     * 失效记录达到阈值时把有效记录写入新文件并原子替换
+     */
+    private void compactIfNeeded() throws IOException {
+        if (logRecords - records.size() - undecodable.size() < compactionThreshold) {
+            return;
+        }
+        Path temp = Files.createTempFile(file.getParent(), "." + LOG_FILE, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+                    ByteBuffer frame = ByteBuffer.wrap(frame(OP_PUT, entry.getKey(), entry.getValue()));
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                }
+                for (byte[] payload : undecodable.values()) {
+                    ByteBuffer frame = ByteBuffer.wrap(frame(payload));
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("压缩任务存储: {} 条记录 -> {} 条", logRecords, records.size() + undecodable.size());
+        logRecords = records.size() + undecodable.size();
+    }
+
+    /**
+     * 任务记录：元数据、选项、状态和计数器
+     */
+    @Data
+    public static class TaskRecord {
+        private String id;
+        private String batchId;
+        private String clusterJobId;
+        private String url;
+        private String domain;
+        private String outputDir;
+        private CloneTaskStatus status;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private String errorMessage;
+        private CloneOptions options;
+        private String snapshotId;
+        private int refreshPlanned;
+        private double expectedChanges;
+        private double expectedFreshness;
+        private long activeMillis; // 累计执行时间 (毫秒)
+        private Map<String, Long> counters = new LinkedHashMap<>(); // 进度计数器，见 CloneTask#counterValues()
+    }
+}
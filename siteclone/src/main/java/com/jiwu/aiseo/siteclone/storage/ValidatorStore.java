@@ -0,0 +1,295 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 校验器存储 - 记录镜像中每个URL上次下载时的 ETag / Last-Modified
+ *
+ * 页面还会记录它的出链和引用的资源：重新克隆时页面返回 304 不会被重新解析，
+ * 需要靠这些记录继续向下抓取并检查资源是否有更新。
+ * 同时保留每个URL的访问历史（内容哈希、访问次数、检测到的变化次数），供刷新调度估计变化率。
+ */
+@Slf4j
+public class ValidatorStore {
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path file;
+    private final Map<String, Validator> entries = new ConcurrentHashMap<>();
+
+    private ValidatorStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 加载校验器存储，文件不存在或损坏时返回空存储
+     *
+     * @param file 存储文件
+     * @return 校验器存储
+     */
+    public static ValidatorStore load(Path file) {
+        ValidatorStore store = new ValidatorStore(file);
+        if (!Files.isRegularFile(file)) {
+            return store;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt();
+            if (version < 1 || version > FORMAT_VERSION) {
+                log.warn("不支持的校验器存储格式，忽略: {}", file);
+                return store;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String url = in.readUTF();
+                String etag = emptyToNull(in.readUTF());
+                String lastModified = emptyToNull(in.readUTF());
+                List<String> links = readList(in);
+                List<String> resources = readList(in);
+                Validator validator;
+                if (version >= 2) {
+                    boolean page = in.readBoolean();
+                    String contentHash = emptyToNull(in.readUTF());
+                    long firstVisit = in.readLong();
+                    long lastVisit = in.readLong();
+                    int visits = in.readInt();
+                    int changes = in.readInt();
+                    validator = new Validator(etag, lastModified, links, resources, page, contentHash,
+                            firstVisit, lastVisit, visits, changes);
+                } else {
+                    // 旧格式没有访问历史，按访问过一次处理
+                    long modified = Files.getLastModifiedTime(file).toMillis();
+                    validator = new Validator(etag, lastModified, links, resources, !links.isEmpty() || !resources.isEmpty(),
+                            null, modified, modified, 1, 0);
+                }
+                store.entries.put(url, validator);
+            }
+            log.info("加载校验器: {} 个URL ({})", count, file);
+        } catch (IOException e) {
+            log.warn("读取校验器存储失败，按首次克隆处理: {} ({})", file, e.getMessage());
+            store.entries.clear();
+        }
+        return store;
+    }
+
+    public Validator get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * 所有URL的当前记录（只读快照）
+     */
+    public Map<String, Validator> snapshot() {
+        return Map.copyOf(entries);
+    }
+
+    /**
+     * 记录资源下载结果
+     *
+     * @return 内容是否与上次不同（首次下载也算变化）
+     */
+    public boolean recordResource(String url, String etag, String lastModified, String contentHash) {
+        return record(url, etag, lastModified, contentHash, false, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * 记录页面下载结果及其出链和资源
+     *
+     * @return 内容是否与上次不同（首次下载也算变化）
+     */
+    public boolean recordPage(String url, String etag, String lastModified, String contentHash,
+            List<String> links, List<String> resources) {
+        return record(url, etag, lastModified, contentHash, true, List.copyOf(links), List.copyOf(resources));
+    }
+
+    /**
+     * 记录一次未修改的访问（304）
+     */
+    public void recordNotModified(String url) {
+        long now = System.currentTimeMillis();
+        entries.computeIfPresent(url, (key, previous) -> new Validator(previous.etag, previous.lastModified,
+                previous.links, previous.resources, previous.page, previous.contentHash,
+                previous.firstVisit, now, previous.visits + 1, previous.changes));
+    }
+
+    private boolean record(String url, String etag, String lastModified, String contentHash, boolean page,
+            List<String> links, List<String> resources) {
+        long now = System.currentTimeMillis();
+        boolean[] changed = new boolean[1];
+        entries.compute(url, (key, previous) -> {
+            if (previous == null) {
+                changed[0] = true;
+                return new Validator(etag, lastModified, links, resources, page, contentHash, now, now, 1, 0);
+            }
+            // 没有哈希可比较时（旧格式）不计为变化
+            changed[0] = previous.contentHash != null && !previous.contentHash.equals(contentHash);
+            // 页面URL又作为资源下载时，保留页面的出链和资源，条件重新克隆时仍从这个页面继续展开
+            boolean keepGraph = !page && previous.page;
+            return new Validator(etag, lastModified, keepGraph ? previous.links : links,
+                    keepGraph ? previous.resources : resources, page || previous.page, contentHash,
+                    previous.firstVisit, now, previous.visits + 1, previous.changes + (changed[0] ? 1 : 0));
+        });
+        return changed[0];
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 写回磁盘（先写临时文件再原子替换）
+     *
+     * @return 文件大小的变化，校验器文件在镜像目录中，计入镜像用量
+     */
+    public long save() throws IOException {
+        Files.createDirectories(file.getParent());
+        long previous = MirrorFiles.sizeOf(file);
+        Path temp = Files.createTempFile(file.getParent(), ".validators", ".tmp");
+        try {
+            Map<String, Validator> snapshot = new LinkedHashMap<>(entries);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Validator> entry : snapshot.entrySet()) {
+                    Validator validator = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(validator.etag == null ? "" : validator.etag);
+                    out.writeUTF(validator.lastModified == null ? "" : validator.lastModified);
+                    writeList(out, validator.links);
+                    writeList(out, validator.resources);
+                    out.writeBoolean(validator.page);
+                    out.writeUTF(validator.contentHash == null ? "" : validator.contentHash);
+                    out.writeLong(validator.firstVisit);
+                    out.writeLong(validator.lastVisit);
+                    out.writeInt(validator.visits);
+                    out.writeInt(validator.changes);
+                }
+            }
+            long size = Files.size(temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return size - previous;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 从响应头中取出指定头部的第一个值（名称不区分大小写）
+     */
+    public static String firstHeader(Map<String, List<String>> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 单个URL的校验器及访问历史
+     */
+    public static final class Validator {
+        private final String etag;
+        private final String lastModified;
+        private final List<String> links;
+        private final List<String> resources;
+        private final boolean page;
+        private final String contentHash;
+        private final long firstVisit;
+        private final long lastVisit;
+        private final int visits;
+        private final int changes;
+
+        private Validator(String etag, String lastModified, List<String> links, List<String> resources, boolean page,
+                String contentHash, long firstVisit, long lastVisit, int visits, int changes) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.links = links;
+            this.resources = resources;
+            this.page = page;
+            this.contentHash = contentHash;
+            this.firstVisit = firstVisit;
+            this.lastVisit = lastVisit;
+            this.visits = visits;
+            this.changes = changes;
+        }
+
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        /** 页面的出链（同站页面） */
+        public List<String> getLinks() { return links; }
+        /** 页面引用并已下载的资源 */
+        public List<String> getResources() { return resources; }
+        /** 是否为页面（否则为资源） */
+        public boolean isPage() { return page; }
+        public String getContentHash() { return contentHash; }
+        /** 首次访问时间 (毫秒) */
+        public long getFirstVisit() { return firstVisit; }
+        /** 最近一次访问时间 (毫秒) */
+        public long getLastVisit() { return lastVisit; }
+        /** 访问次数 */
+        public int getVisits() { return visits; }
+        /** 相邻两次访问之间检测到内容变化的次数 */
+        public int getChanges() { return changes; }
+
+        public boolean hasValidator() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * 条件请求头
+         */
+        public Map<String, String> conditionalHeaders() {
+            Map<String, String> headers = new LinkedHashMap<>();
+            if (etag != null) {
+                headers.put("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                headers.put("If-Modified-Since", lastModified);
+            }
+            return headers;
+        }
+    }
+}
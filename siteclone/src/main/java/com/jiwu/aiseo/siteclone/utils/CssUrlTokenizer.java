@@ -0,0 +1,373 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSS URL 词法扫描器 - 单遍线性扫描样式表，收集所有外部资源引用
+ *
+ * 直接在字节上扫描：CSS 的所有语法分隔符都是 ASCII，UTF-8 多字节序列按规范视为标识符字符，
+ * 因此可以直接工作在内存映射的 ByteBuffer 上，不需要先把整个文件解码成字符串。
+ * 支持 url()（含引号/无引号/转义）、@import "x.css"、image-set() 中的字符串参数，并跳过注释。
+ */
+public final class CssUrlTokenizer {
+
+    private CssUrlTokenizer() {
+    }
+
+    /**
+     * 扫描样式表中的所有URL引用
+     *
+     * @param css 样式表内容（从 position 到 limit）
+     * @return 按出现顺序排列的URL引用
+     */
+    public static List<CssUrlReference> tokenize(ByteBuffer css) {
+        List<CssUrlReference> references = new ArrayList<>();
+        int limit = css.limit();
+        int i = css.position();
+        int parenDepth = 0;
+        int imageSetDepth = -1;
+        boolean afterImport = false;
+
+        while (i < limit) {
+            int c = css.get(i) & 0xFF;
+
+            // 注释
+            if (c == '/' && i + 1 < limit && css.get(i + 1) == '*') {
+                i = skipComment(css, i + 2, limit);
+                continue;
+            }
+
+            // 字符串：@import 的目标或 image-set() 的候选图片
+            if (c == '"' || c == '\'') {
+                int end = skipString(css, i, limit);
+                if (afterImport || (imageSetDepth >= 0 && parenDepth == imageSetDepth + 1)) {
+                    String url = decode(css, i + 1, stringContentEnd(css, i, end), true);
+                    references.add(new CssUrlReference(i + 1, stringContentEnd(css, i, end), url, (char) c,
+                            afterImport ? Kind.IMPORT : Kind.IMAGE_SET));
+                }
+                afterImport = false;
+                i = end;
+                continue;
+            }
+
+            // @import
+            if (c == '@') {
+                int end = skipName(css, i + 1, limit);
+                afterImport = equalsIgnoreCase(css, i + 1, end, "import");
+                i = end;
+                continue;
+            }
+
+            // 标识符及函数名
+            if (isNameStart(c)) {
+                int end = skipName(css, i, limit);
+                if (end < limit && css.get(end) == '(') {
+                    if (equalsIgnoreCase(css, i, end, "url")) {
+                        i = readUrlFunction(css, end + 1, limit, afterImport, references);
+                        afterImport = false;
+                        continue;
+                    }
+                    if (imageSetDepth < 0 && (equalsIgnoreCase(css, i, end, "image-set")
+                            || equalsIgnoreCase(css, i, end, "-webkit-image-set"))) {
+                        imageSetDepth = parenDepth;
+                    }
+                }
+                i = end;
+                continue;
+            }
+
+            if (c == '(') {
+                parenDepth++;
+            } else if (c == ')') {
+                if (parenDepth > 0) {
+                    parenDepth--;
+                }
+                if (parenDepth == imageSetDepth) {
+                    imageSetDepth = -1;
+                }
+            } else if (c == ';' || c == '{' || c == '}') {
+                afterImport = false;
+            } else if (c == '\\') {
+                // 标识符之外的转义，直接跳过被转义字符
+                i += 2;
+                continue;
+            }
+            i++;
+        }
+        return references;
+    }
+
+    /**
+     * 读取 url( 之后的内容
+     *
+     * @return url() 之后的位置
+     */
+    private static int readUrlFunction(ByteBuffer css, int start, int limit, boolean isImport,
+            List<CssUrlReference> references) {
+        int i = skipWhitespace(css, start, limit);
+        if (i >= limit) {
+            return limit;
+        }
+        Kind kind = isImport ? Kind.IMPORT : Kind.URL;
+        int c = css.get(i) & 0xFF;
+
+        // url("...") / url('...')
+        if (c == '"' || c == '\'') {
+            int end = skipString(css, i, limit);
+            int contentEnd = stringContentEnd(css, i, end);
+            references.add(new CssUrlReference(i + 1, contentEnd, decode(css, i + 1, contentEnd, true), (char) c, kind));
+            i = skipWhitespace(css, end, limit);
+            // 跳过到右括号（容忍不规范的尾随内容）
+            while (i < limit && css.get(i) != ')') {
+                i++;
+            }
+            return Math.min(i + 1, limit);
+        }
+
+        // url(unquoted)
+        int valueStart = i;
+        while (i < limit) {
+            c = css.get(i) & 0xFF;
+            if (c == '\\' && i + 1 < limit) {
+                i = skipEscape(css, i, limit);
+                continue;
+            }
+            if (c == ')' || isWhitespace(c)) {
+                break;
+            }
+            i++;
+        }
+        int valueEnd = i;
+        i = skipWhitespace(css, i, limit);
+        if (i < limit && css.get(i) == ')') {
+            i++;
+        }
+        if (valueEnd > valueStart) {
+            references.add(new CssUrlReference(valueStart, valueEnd, decode(css, valueStart, valueEnd, false), (char) 0, kind));
+        }
+        return i;
+    }
+
+    /**
+     * 跳过一个转义序列：十六进制转义最多 6 位，其后的一个空白属于转义本身
+     */
+    private static int skipEscape(ByteBuffer css, int i, int limit) {
+        int hexEnd = i + 1;
+        while (hexEnd < limit && hexEnd - i <= 6 && Character.digit(css.get(hexEnd), 16) >= 0) {
+            hexEnd++;
+        }
+        if (hexEnd == i + 1) {
+            return i + 2;
+        }
+        if (hexEnd < limit && isWhitespace(css.get(hexEnd) & 0xFF)) {
+            hexEnd++;
+        }
+        return hexEnd;
+    }
+
+    private static int skipComment(ByteBuffer css, int i, int limit) {
+        while (i + 1 < limit) {
+            if (css.get(i) == '*' && css.get(i + 1) == '/') {
+                return i + 2;
+            }
+            i++;
+        }
+        return limit;
+    }
+
+    /**
+     * 跳过字符串，返回结束引号之后的位置（未闭合的字符串在换行处结束）
+     */
+    private static int skipString(ByteBuffer css, int start, int limit) {
+        byte quote = css.get(start);
+        int i = start + 1;
+        while (i < limit) {
+            byte b = css.get(i);
+            if (b == '\\') {
+                i += 2;
+                continue;
+            }
+            if (b == quote) {
+                return i + 1;
+            }
+            if (b == '\n') {
+                return i;
+            }
+            i++;
+        }
+        return limit;
+    }
+
+    private static int stringContentEnd(ByteBuffer css, int start, int end) {
+        if (end - 1 > start && end <= css.limit() && css.get(end - 1) == css.get(start)) {
+            return end - 1;
+        }
+        return end;
+    }
+
+    private static int skipName(ByteBuffer css, int i, int limit) {
+        while (i < limit) {
+            int c = css.get(i) & 0xFF;
+            if (c == '\\' && i + 1 < limit) {
+                i += 2;
+            } else if (isNameChar(c)) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(ByteBuffer css, int i, int limit) {
+        while (i < limit && isWhitespace(css.get(i) & 0xFF)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNameStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '-' || c >= 0x80;
+    }
+
+    private static boolean isNameChar(int c) {
+        return isNameStart(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer css, int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int k = 0; k < name.length(); k++) {
+            int c = css.get(start + k) & 0xFF;
+            if (Character.toLowerCase(c) != name.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按 CSS 语法解码转义序列，得到真实的URL值（按 UTF-8 解释）
+     */
+    private static String decode(ByteBuffer css, int start, int end, boolean quoted) {
+        boolean hasEscape = false;
+        for (int i = start; i < end; i++) {
+            if (css.get(i) == '\\') {
+                hasEscape = true;
+                break;
+            }
+        }
+        if (!hasEscape) {
+            byte[] raw = new byte[end - start];
+            css.get(start, raw);
+            return new String(raw, StandardCharsets.UTF_8).trim();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+        int i = start;
+        while (i < end) {
+            byte b = css.get(i);
+            if (b != '\\' || i + 1 >= end) {
+                out.write(b);
+                i++;
+                continue;
+            }
+            byte next = css.get(i + 1);
+            if (quoted && (next == '\n' || next == '\r' || next == '\f')) {
+                // 字符串内的续行
+                i += (next == '\r' && i + 2 < end && css.get(i + 2) == '\n') ? 3 : 2;
+                continue;
+            }
+            int hexEnd = i + 1;
+            while (hexEnd < end && hexEnd - i <= 6 && Character.digit(css.get(hexEnd), 16) >= 0) {
+                hexEnd++;
+            }
+            if (hexEnd > i + 1) {
+                int codePoint = 0;
+                for (int k = i + 1; k < hexEnd; k++) {
+                    codePoint = codePoint * 16 + Character.digit(css.get(k), 16);
+                }
+                if (codePoint == 0 || codePoint > Character.MAX_CODE_POINT
+                        || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+                    codePoint = 0xFFFD;
+                }
+                byte[] encoded = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+                out.write(encoded, 0, encoded.length);
+                i = hexEnd;
+                if (i < end && isWhitespace(css.get(i) & 0xFF)) {
+                    i++;
+                }
+            } else {
+                out.write(next);
+                i += 2;
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * 将新的URL按原来的书写方式编码，保证写回后仍是合法的CSS
+     *
+     * @param url 新的URL
+     * @param quote 原始引号字符，无引号时为 0
+     * @return 可直接写入样式表的文本
+     */
+    public static String encode(String url, char quote) {
+        StringBuilder sb = new StringBuilder(url.length() + 8);
+        for (int i = 0; i < url.length(); i++) {
+            char ch = url.charAt(i);
+            if (ch == '\\' || (quote != 0 && ch == quote)
+                    || (quote == 0 && (ch == '"' || ch == '\'' || ch == '(' || ch == ')'))) {
+                sb.append('\\').append(ch);
+            } else if (ch == '\n' || ch == '\r' || ch == '\f' || (quote == 0 && (ch == ' ' || ch == '\t'))) {
+                sb.append('\\').append(Integer.toHexString(ch)).append(' ');
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 引用类型
+     */
+    public enum Kind {
+        URL,        // url(...)
+        IMPORT,     // @import "..." 或 @import url(...)
+        IMAGE_SET   // image-set("..." 1x)
+    }
+
+    /**
+     * 样式表中的一个URL引用，start/end 为需要替换的原始字节区间（不含引号）
+     */
+    public static final class CssUrlReference {
+        private final int start;
+        private final int end;
+        private final String url;
+        private final char quote;
+        private final Kind kind;
+
+        public CssUrlReference(int start, int end, String url, char quote, Kind kind) {
+            this.start = start;
+            this.end = end;
+            this.url = url;
+            this.quote = quote;
+            this.kind = kind;
+        }
+
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public String getUrl() { return url; }
+        public char getQuote() { return quote; }
+        public Kind getKind() { return kind; }
+    }
+}
@@ -0,0 +1,591 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * JS资源词法扫描器 - 从打包后的JS中找出懒加载的chunk和静态资源路径
+ *
+ * 只做词法分析，不做语法分析：正确区分字符串、模板字符串、正则字面量和注释，
+ * 把看起来像资源路径的字符串字面量收集起来；另外识别 webpack 的 chunk 清单
+ * （形如 "static/js/" + e + "." + {12:"ab3f"}[e] + ".chunk.js"）并展开为具体文件名。
+ * 扫描受时间预算限制，超时后返回已经找到的结果。
+ */
+public final class JsAssetLexer {
+
+    // 可作为资源下载的扩展名
+    private static final Pattern ASSET_PATH_PATTERN = Pattern.compile(
+            "(?i)^[^\\s<>{}*\"'`$|^]+\\.(m?js|cjs|css|json|wasm|png|jpe?g|gif|webp|avif|svg|ico|woff2?|ttf|otf|eot)$");
+
+    // 这些关键字之后出现的 / 是正则字面量而不是除号
+    private static final Set<String> REGEX_PRECEDING_KEYWORDS = Set.of(
+            "return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw",
+            "case", "do", "else", "yield", "await");
+
+    // 每扫描这么多字节检查一次时间预算
+    private static final int BUDGET_CHECK_INTERVAL = 4096;
+
+    private enum TokenType { STRING, TEMPLATE, IDENT, NUMBER, PUNCT, REGEX, EOF }
+
+    private final ByteBuffer js;
+    private final int limit;
+    private final long deadline;
+    private int pos;
+    private boolean regexAllowed = true;
+    private int braceDepth;
+    // 模板字符串中 ${ 对应的花括号深度
+    private final Deque<Integer> templateStack = new ArrayDeque<>();
+    private int nextBudgetCheck;
+    private boolean truncated;
+
+    // 当前token
+    private TokenType type;
+    private String value;
+
+    private JsAssetLexer(ByteBuffer js, long timeBudgetNanos) {
+        this.js = js;
+        this.limit = js.limit();
+        this.pos = js.position();
+        this.deadline = System.nanoTime() + timeBudgetNanos;
+        this.nextBudgetCheck = pos + BUDGET_CHECK_INTERVAL;
+    }
+
+    /**
+     * 扫描JS内容，收集候选资源路径
+     *
+     * @param js JS内容（从 position 到 limit）
+     * @param timeBudgetMillis 时间预算（毫秒）
+     * @return 扫描结果
+     */
+    public static ScanResult scan(ByteBuffer js, long timeBudgetMillis) {
+        JsAssetLexer lexer = new JsAssetLexer(js, timeBudgetMillis * 1_000_000L);
+        Set<String> paths = new LinkedHashSet<>();
+        lexer.run(paths);
+        return new ScanResult(new ArrayList<>(paths), lexer.truncated);
+    }
+
+    private void run(Set<String> paths) {
+        // 最近的token，用于识别 chunk 清单前面的字符串拼接
+        List<Object[]> history = new ArrayList<>();
+        ChunkManifest pending = null;
+        boolean expectSuffix = false;
+
+        while (true) {
+            next();
+            if (type == TokenType.EOF) {
+                break;
+            }
+
+            // chunk 清单之后的 + ".chunk.js" 后缀
+            if (pending != null) {
+                if (!expectSuffix && type == TokenType.PUNCT && "+".equals(value)) {
+                    expectSuffix = true;
+                    continue;
+                }
+                if (expectSuffix && type == TokenType.STRING) {
+                    pending.parts.add(value);
+                    expectSuffix = false;
+                    continue;
+                }
+                pending.expandTo(paths);
+                pending = null;
+                expectSuffix = false;
+            }
+
+            if ((type == TokenType.STRING || type == TokenType.TEMPLATE) && isAssetPath(value)) {
+                paths.add(value);
+            }
+
+            if (type == TokenType.PUNCT && "{".equals(value)) {
+                ChunkManifest manifest = tryReadChunkManifest(history);
+                if (manifest != null) {
+                    pending = manifest;
+                    history.clear();
+                    continue;
+                }
+            }
+
+            history.add(new Object[]{type, value});
+            if (history.size() > 16) {
+                history.remove(0);
+            }
+        }
+        if (pending != null) {
+            pending.expandTo(paths);
+        }
+    }
+
+    /**
+     * 尝试把 { 开始的对象字面量解析为 chunk 清单：{key:"hash",...}[ident]
+     * 解析失败时回退到 { 之后继续正常扫描
+     */
+    private ChunkManifest tryReadChunkManifest(List<Object[]> history) {
+        int savedPos = pos;
+        boolean savedRegexAllowed = regexAllowed;
+        int savedBraceDepth = braceDepth;
+        // 前瞻可能进入或结束模板字符串的 ${ }，回退时一并恢复
+        Deque<Integer> savedTemplateStack = new ArrayDeque<>(templateStack);
+        TokenType savedType = type;
+        String savedValue = value;
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        boolean ok = false;
+        while (true) {
+            next();
+            if (type == TokenType.PUNCT && "}".equals(value)) {
+                ok = !entries.isEmpty();
+                break;
+            }
+            if (type != TokenType.NUMBER && type != TokenType.IDENT && type != TokenType.STRING) {
+                break;
+            }
+            String key = value;
+            next();
+            if (type != TokenType.PUNCT || !":".equals(value)) {
+                break;
+            }
+            next();
+            if (type != TokenType.STRING) {
+                break;
+            }
+            entries.put(key, value);
+            next();
+            if (type == TokenType.PUNCT && "}".equals(value)) {
+                ok = true;
+                break;
+            }
+            if (type != TokenType.PUNCT || !",".equals(value)) {
+                break;
+            }
+        }
+
+        String indexVar = null;
+        if (ok) {
+            next();
+            if (type == TokenType.PUNCT && "[".equals(value)) {
+                next();
+                if (type == TokenType.IDENT) {
+                    indexVar = value;
+                    next();
+                    ok = type == TokenType.PUNCT && "]".equals(value);
+                } else {
+                    ok = false;
+                }
+            } else {
+                ok = false;
+            }
+        }
+
+        if (!ok) {
+            pos = savedPos;
+            regexAllowed = savedRegexAllowed;
+            braceDepth = savedBraceDepth;
+            templateStack.clear();
+            templateStack.addAll(savedTemplateStack);
+            type = savedType;
+            value = savedValue;
+            return null;
+        }
+
+        // 向前回溯拼接表达式：STRING + ident + STRING + {清单}[ident]
+        List<Object> parts = new ArrayList<>();
+        int i = history.size() - 1;
+        while (i >= 1 && history.get(i)[0] == TokenType.PUNCT && "+".equals(history.get(i)[1])) {
+            Object[] operand = history.get(i - 1);
+            if (operand[0] == TokenType.STRING) {
+                parts.add(0, operand[1]);
+            } else if (operand[0] == TokenType.IDENT && indexVar.equals(operand[1])) {
+                parts.add(0, ChunkManifest.KEY);
+            } else {
+                break;
+            }
+            i -= 2;
+        }
+        parts.add(ChunkManifest.VALUE);
+        return new ChunkManifest(parts, entries);
+    }
+
+    /**
+     * 读取下一个token
+     */
+    private void next() {
+        while (pos < limit) {
+            checkBudget();
+            if (truncated) {
+                break;
+            }
+            int c = js.get(pos) & 0xFF;
+
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == 0x0B || c == 0x0C) {
+                pos++;
+                continue;
+            }
+            if (c == '/' && pos + 1 < limit) {
+                int n = js.get(pos + 1);
+                if (n == '/') {
+                    while (pos < limit && js.get(pos) != '\n') {
+                        pos++;
+                    }
+                    continue;
+                }
+                if (n == '*') {
+                    pos += 2;
+                    while (pos + 1 < limit && !(js.get(pos) == '*' && js.get(pos + 1) == '/')) {
+                        pos++;
+                    }
+                    pos = Math.min(pos + 2, limit);
+                    continue;
+                }
+            }
+
+            if (c == '"' || c == '\'') {
+                value = readString((byte) c);
+                type = TokenType.STRING;
+                regexAllowed = false;
+                return;
+            }
+            if (c == '`') {
+                pos++;
+                readTemplate(true);
+                return;
+            }
+            if (c == '}' && !templateStack.isEmpty() && templateStack.peek() == braceDepth) {
+                // ${ ... } 结束，继续读取模板字符串
+                templateStack.pop();
+                braceDepth--;
+                pos++;
+                readTemplate(false);
+                return;
+            }
+            if (c == '/' && regexAllowed) {
+                skipRegex();
+                type = TokenType.REGEX;
+                value = null;
+                regexAllowed = false;
+                return;
+            }
+            if (isIdentStart(c)) {
+                int start = pos;
+                while (pos < limit && isIdentPart(js.get(pos) & 0xFF)) {
+                    pos++;
+                }
+                value = ascii(start, pos);
+                type = TokenType.IDENT;
+                regexAllowed = REGEX_PRECEDING_KEYWORDS.contains(value);
+                return;
+            }
+            if (c >= '0' && c <= '9' || (c == '.' && pos + 1 < limit && Character.isDigit(js.get(pos + 1)))) {
+                int start = pos;
+                while (pos < limit && (isIdentPart(js.get(pos) & 0xFF) || js.get(pos) == '.')) {
+                    pos++;
+                }
+                value = ascii(start, pos);
+                type = TokenType.NUMBER;
+                regexAllowed = false;
+                return;
+            }
+
+            // 标点
+            pos++;
+            value = String.valueOf((char) c);
+            type = TokenType.PUNCT;
+            if (c == '{') {
+                braceDepth++;
+            } else if (c == '}') {
+                braceDepth--;
+            }
+            regexAllowed = c != ')' && c != ']';
+            return;
+        }
+        type = TokenType.EOF;
+        value = null;
+    }
+
+    /**
+     * 读取模板字符串片段，遇到 ${ 时暂停并记录嵌套深度
+     * 只有不含表达式的完整模板字符串才作为候选值
+     *
+     * @param head 是否从模板字符串开头的反引号读起（否则是 ${ ... } 之后的片段）
+     */
+    private void readTemplate(boolean head) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean hasSubstitution = false;
+        while (pos < limit) {
+            byte b = js.get(pos);
+            if (b == '\\' && pos + 1 < limit) {
+                pos = readEscape(pos, out);
+                continue;
+            }
+            if (b == '`') {
+                pos++;
+                break;
+            }
+            if (b == '$' && pos + 1 < limit && js.get(pos + 1) == '{') {
+                pos += 2;
+                braceDepth++;
+                templateStack.push(braceDepth);
+                hasSubstitution = true;
+                break;
+            }
+            out.write(b);
+            pos++;
+        }
+        if (hasSubstitution) {
+            type = TokenType.PUNCT;
+            value = "${";
+        } else if (head) {
+            type = TokenType.TEMPLATE;
+            value = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } else {
+            // 含表达式的模板字符串的结尾片段
+            type = TokenType.PUNCT;
+            value = "`";
+        }
+        regexAllowed = hasSubstitution;
+    }
+
+    private String readString(byte quote) {
+        pos++;
+        int start = pos;
+        // 快速路径：没有转义时直接截取
+        while (pos < limit) {
+            byte b = js.get(pos);
+            if (b == quote) {
+                String s = utf8(start, pos);
+                pos++;
+                return s;
+            }
+            if (b == '\\' || b == '\n') {
+                break;
+            }
+            pos++;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bytes(start, pos), 0, pos - start);
+        while (pos < limit) {
+            byte b = js.get(pos);
+            if (b == quote) {
+                pos++;
+                break;
+            }
+            if (b == '\n') {
+                break;
+            }
+            if (b == '\\' && pos + 1 < limit) {
+                pos = readEscape(pos, out);
+                continue;
+            }
+            out.write(b);
+            pos++;
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解码一个转义序列，返回转义之后的位置
+     */
+    private int readEscape(int at, ByteArrayOutputStream out) {
+        byte e = js.get(at + 1);
+        switch (e) {
+            case 'n': out.write('\n'); return at + 2;
+            case 't': out.write('\t'); return at + 2;
+            case 'r': out.write('\r'); return at + 2;
+            case '\n': return at + 2;
+            case 'x':
+                if (at + 3 < limit) {
+                    int v = hex(at + 2, at + 4);
+                    if (v >= 0) {
+                        writeCodePoint(out, v);
+                        return at + 4;
+                    }
+                }
+                break;
+            case 'u':
+                if (at + 2 < limit && js.get(at + 2) == '{') {
+                    int close = at + 3;
+                    while (close < limit && close < at + 10 && js.get(close) != '}') {
+                        close++;
+                    }
+                    int v = hex(at + 3, close);
+                    if (v >= 0 && close < limit) {
+                        writeCodePoint(out, v);
+                        return close + 1;
+                    }
+                } else if (at + 5 < limit) {
+                    int v = hex(at + 2, at + 6);
+                    if (v >= 0) {
+                        writeCodePoint(out, v);
+                        return at + 6;
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        out.write(e);
+        return at + 2;
+    }
+
+    private void skipRegex() {
+        pos++;
+        boolean inClass = false;
+        while (pos < limit) {
+            byte b = js.get(pos);
+            if (b == '\\') {
+                pos += 2;
+                continue;
+            }
+            if (b == '\n') {
+                return;
+            }
+            if (b == '[') {
+                inClass = true;
+            } else if (b == ']') {
+                inClass = false;
+            } else if (b == '/' && !inClass) {
+                pos++;
+                break;
+            }
+            pos++;
+        }
+        // 标志位
+        while (pos < limit && isIdentPart(js.get(pos) & 0xFF)) {
+            pos++;
+        }
+    }
+
+    private void checkBudget() {
+        if (pos >= nextBudgetCheck) {
+            nextBudgetCheck = pos + BUDGET_CHECK_INTERVAL;
+            if (System.nanoTime() > deadline) {
+                truncated = true;
+                pos = limit;
+            }
+        }
+    }
+
+    private int hex(int start, int end) {
+        if (end <= start) {
+            return -1;
+        }
+        int v = 0;
+        for (int i = start; i < end; i++) {
+            int d = Character.digit(js.get(i), 16);
+            if (d < 0) {
+                return -1;
+            }
+            v = v * 16 + d;
+        }
+        return v <= Character.MAX_CODE_POINT ? v : -1;
+    }
+
+    private static void writeCodePoint(ByteArrayOutputStream out, int codePoint) {
+        byte[] encoded = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+        out.write(encoded, 0, encoded.length);
+    }
+
+    private byte[] bytes(int start, int end) {
+        byte[] raw = new byte[end - start];
+        js.get(start, raw);
+        return raw;
+    }
+
+    private String utf8(int start, int end) {
+        return new String(bytes(start, end), StandardCharsets.UTF_8);
+    }
+
+    private String ascii(int start, int end) {
+        return new String(bytes(start, end), StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isIdentStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c >= 0x80;
+    }
+
+    private static boolean isIdentPart(int c) {
+        return isIdentStart(c) || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * 判断字符串字面量是否像一个可下载的资源路径
+     */
+    static boolean isAssetPath(String s) {
+        if (s.length() < 4 || s.length() > 2048) {
+            return false;
+        }
+        String path = s;
+        int cut = indexOfAny(path, '?', '#');
+        if (cut >= 0) {
+            path = path.substring(0, cut);
+        }
+        if (!ASSET_PATH_PATTERN.matcher(path).matches()) {
+            return false;
+        }
+        // 裸文件名（如 "jquery.js"）多半是模块名或提示文本，至少要带目录
+        return s.startsWith("/") || s.startsWith("./") || s.startsWith("../")
+                || s.startsWith("http://") || s.startsWith("https://") || path.indexOf('/') > 0;
+    }
+
+    private static int indexOfAny(String s, char a, char b) {
+        int i = s.indexOf(a);
+        int j = s.indexOf(b);
+        return i < 0 ? j : (j < 0 ? i : Math.min(i, j));
+    }
+
+    /**
+     * webpack chunk 清单：由若干字符串片段、chunk id 和 hash 拼接出 chunk 文件名
+     */
+    private static final class ChunkManifest {
+        static final Object KEY = new Object();
+        static final Object VALUE = new Object();
+
+        final List<Object> parts;
+        final Map<String, String> entries;
+
+        ChunkManifest(List<Object> parts, Map<String, String> entries) {
+            this.parts = parts;
+            this.entries = entries;
+        }
+
+        void expandTo(Set<String> paths) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                StringBuilder sb = new StringBuilder();
+                for (Object part : parts) {
+                    sb.append(part == KEY ? entry.getKey() : part == VALUE ? entry.getValue() : part);
+                }
+                String path = sb.toString();
+                if (isAssetPath(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * 扫描结果
+     */
+    public static final class ScanResult {
+        private final List<String> paths;
+        private final boolean truncated;
+
+        public ScanResult(List<String> paths, boolean truncated) {
+            this.paths = paths;
+            this.truncated = truncated;
+        }
+
+        /** 按出现顺序排列的候选资源路径（未解析为绝对URL） */
+        public List<String> getPaths() { return paths; }
+        /** 是否因为超出时间预算而提前结束 */
+        public boolean isTruncated() { return truncated; }
+    }
+}
@@ -0,0 +1,212 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多模式替换器 - 基于 Aho–Corasick 自动机，一次扫描同时匹配所有替换规则
+ *
+ * 自动机工作在 UTF-8 字节上，可以直接扫描内存映射的文件；
+ * 匹配语义为“最左优先、同起点取最长”，匹配区间互不重叠。
+ */
+public final class MultiPatternReplacer {
+
+    private static final int ALPHABET = 256;
+
+    private final byte[][] replacements;
+    private final int[] patternLengths;
+    // 完整的状态转移表（已展开失败链接），transitions[state * 256 + byte]
+    private final int[] transitions;
+    // 每个状态对应的最长完整模式（沿字典后缀链接），-1 表示无
+    private final int[] output;
+    // 每个状态在字典树中的深度
+    private final int[] depth;
+
+    private MultiPatternReplacer(List<byte[]> patterns, byte[][] replacements) {
+        this.replacements = replacements;
+        this.patternLengths = new int[patterns.size()];
+
+        int maxStates = 1;
+        for (byte[] pattern : patterns) {
+            maxStates += pattern.length;
+        }
+        int[] trie = new int[maxStates * ALPHABET];
+        Arrays.fill(trie, -1);
+        int[] out = new int[maxStates];
+        Arrays.fill(out, -1);
+        int[] dep = new int[maxStates];
+        int stateCount = 1;
+
+        // 1. 构建字典树
+        for (int p = 0; p < patterns.size(); p++) {
+            byte[] pattern = patterns.get(p);
+            patternLengths[p] = pattern.length;
+            int state = 0;
+            for (byte b : pattern) {
+                int slot = state * ALPHABET + (b & 0xFF);
+                if (trie[slot] < 0) {
+                    trie[slot] = stateCount;
+                    dep[stateCount] = dep[state] + 1;
+                    stateCount++;
+                }
+                state = trie[slot];
+            }
+            out[state] = p;
+        }
+
+        // 2. BFS 计算失败链接，并把转移表展开为完整的 DFA
+        int[] fail = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < ALPHABET; b++) {
+            int next = trie[b];
+            if (next < 0) {
+                trie[b] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            if (out[state] < 0) {
+                out[state] = out[fail[state]];
+            }
+            for (int b = 0; b < ALPHABET; b++) {
+                int slot = state * ALPHABET + b;
+                int next = trie[slot];
+                if (next < 0) {
+                    trie[slot] = trie[fail[state] * ALPHABET + b];
+                } else {
+                    fail[next] = trie[fail[state] * ALPHABET + b];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(trie, stateCount * ALPHABET);
+        this.output = Arrays.copyOf(out, stateCount);
+        this.depth = Arrays.copyOf(dep, stateCount);
+    }
+
+    /**
+     * 根据替换表构建自动机，空模式会被忽略
+     *
+     * @param rules 原始文本 -> 替换文本
+     * @return 替换器
+     */
+    public static MultiPatternReplacer compile(Map<String, String> rules) {
+        List<byte[]> patterns = new ArrayList<>(rules.size());
+        List<byte[]> values = new ArrayList<>(rules.size());
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            if (rule.getKey() == null || rule.getKey().isEmpty()) {
+                continue;
+            }
+            patterns.add(rule.getKey().getBytes(StandardCharsets.UTF_8));
+            values.add(rule.getValue() == null ? new byte[0] : rule.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        return new MultiPatternReplacer(patterns, values.toArray(new byte[0][]));
+    }
+
+    /**
+     * 查找第一个（最左最长）匹配，不分配任何对象
+     *
+     * @param input 输入内容（从 position 到 limit）
+     * @return 第一个匹配的起始位置，没有匹配时返回 -1
+     */
+    public int findFirst(ByteBuffer input) {
+        try {
+            return scan(input, input.position(), null, null);
+        } catch (IOException e) {
+            // 不写出时不会发生
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从 from 开始执行替换，把结果流式写入输出通道（from 之前的内容由调用方负责）
+     *
+     * @param input 输入内容
+     * @param from 开始位置，通常为 {@link #findFirst} 的结果
+     * @param out 输出通道
+     * @return 替换次数
+     * @throws IOException 写出失败
+     */
+    public int replace(ByteBuffer input, int from, WritableByteChannel out) throws IOException {
+        int[] count = new int[1];
+        scan(input, from, out, count);
+        return count[0];
+    }
+
+    /**
+     * 扫描输入；out 为 null 时只查找第一个匹配
+     */
+    private int scan(ByteBuffer input, int from, WritableByteChannel out, int[] count) throws IOException {
+        int limit = input.limit();
+        int state = 0;
+        int copied = from;
+        int matchStart = -1;
+        int matchEnd = -1;
+        int matchPattern = -1;
+        int i = from;
+
+        while (true) {
+            if (i < limit) {
+                state = transitions[state * ALPHABET + (input.get(i) & 0xFF)];
+                i++;
+                int pattern = output[state];
+                if (pattern >= 0) {
+                    int start = i - patternLengths[pattern];
+                    if (matchStart < 0 || start < matchStart || (start == matchStart && i > matchEnd)) {
+                        matchStart = start;
+                        matchEnd = i;
+                        matchPattern = pattern;
+                    }
+                }
+                // 仍可能存在起点不晚于当前候选的更长匹配，继续扫描
+                if (matchStart < 0 || i - depth[state] <= matchStart) {
+                    continue;
+                }
+            } else if (matchStart < 0) {
+                break;
+            }
+
+            // 确认当前候选匹配
+            if (out == null) {
+                return matchStart;
+            }
+            write(out, input.slice(copied, matchStart - copied));
+            write(out, ByteBuffer.wrap(replacements[matchPattern]));
+            count[0]++;
+            copied = matchEnd;
+            i = matchEnd;
+            state = 0;
+            matchStart = -1;
+        }
+
+        if (out == null) {
+            return -1;
+        }
+        write(out, input.slice(copied, limit - copied));
+        return -1;
+    }
+
+    private static void write(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * 规则数量
+     */
+    public int size() {
+        return replacements.length;
+    }
+}
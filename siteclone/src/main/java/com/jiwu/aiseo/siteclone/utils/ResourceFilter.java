@@ -0,0 +1,133 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.jiwu.aiseo.siteclone.downloader.ResourceProbe;
+import com.jiwu.aiseo.siteclone.model.CloneOptions;
+import com.jiwu.aiseo.siteclone.model.ResourceSkipReason;
+
+/**
+ * 资源过滤器 - 按扩展名、内容类型和大小决定资源是否需要下载
+ *
+ * 扩展名规则直接按URL判断；只有配置了内容类型或大小规则时才会发起探测请求，
+ * 默认选项下不产生任何额外请求。
+ */
+public class ResourceFilter {
+
+    private final Set<String> excludedExtensions = new HashSet<>();
+    private final List<String> excludedContentTypes = new ArrayList<>();
+    private final long maxResourceSize;
+    private final Function<String, ResourceProbe> prober;
+
+    public ResourceFilter(CloneOptions options, Function<String, ResourceProbe> prober) {
+        if (options.getExcludedExtensions() != null) {
+            for (String extension : options.getExcludedExtensions()) {
+                String normalized = extension == null ? "" : extension.trim().toLowerCase(Locale.ROOT);
+                if (normalized.startsWith(".")) {
+                    normalized = normalized.substring(1);
+                }
+                if (!normalized.isEmpty()) {
+                    excludedExtensions.add(normalized);
+                }
+            }
+        }
+        if (options.getExcludedContentTypes() != null) {
+            for (String type : options.getExcludedContentTypes()) {
+                String normalized = type == null ? "" : type.trim().toLowerCase(Locale.ROOT);
+                if (normalized.endsWith("*")) {
+                    normalized = normalized.substring(0, normalized.length() - 1);
+                }
+                if (!normalized.isEmpty()) {
+                    excludedContentTypes.add(normalized);
+                }
+            }
+        }
+        this.maxResourceSize = Math.max(0, options.getMaxResourceSize());
+        this.prober = prober;
+    }
+
+    /**
+     * 是否配置了任何过滤规则
+     */
+    public boolean isActive() {
+        return !excludedExtensions.isEmpty() || needsProbe();
+    }
+
+    private boolean needsProbe() {
+        return !excludedContentTypes.isEmpty() || maxResourceSize > 0;
+    }
+
+    /**
+     * 判断资源是否需要跳过
+     *
+     * @param url 资源的绝对URL
+     * @return 跳过原因及已知的资源大小；需要下载时返回null
+     */
+    public Decision evaluate(String url) {
+        String extension = extensionOf(url);
+        if (extension != null && excludedExtensions.contains(extension)) {
+            return new Decision(ResourceSkipReason.EXTENSION, -1);
+        }
+        if (!needsProbe()) {
+            return null;
+        }
+
+        ResourceProbe probe = prober.apply(url);
+        if (probe == null || !probe.isSuccess()) {
+            // 探测失败时不做判断，交给正常的下载流程
+            return null;
+        }
+        String contentType = probe.getContentType();
+        if (contentType != null) {
+            for (String excluded : excludedContentTypes) {
+                if (contentType.startsWith(excluded)) {
+                    return new Decision(ResourceSkipReason.CONTENT_TYPE, probe.getContentLength());
+                }
+            }
+        }
+        if (maxResourceSize > 0 && probe.getContentLength() > maxResourceSize) {
+            return new Decision(ResourceSkipReason.SIZE, probe.getContentLength());
+        }
+        return null;
+    }
+
+    private static String extensionOf(String url) {
+        try {
+            String path = new URI(url).getPath();
+            if (path == null) {
+                return null;
+            }
+            int slash = path.lastIndexOf('/');
+            int dot = path.lastIndexOf('.');
+            if (dot <= slash || dot == path.length() - 1) {
+                return null;
+            }
+            return path.substring(dot + 1).toLowerCase(Locale.ROOT);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 过滤结果
+     */
+    public static final class Decision {
+        private final ResourceSkipReason reason;
+        private final long contentLength;
+
+        public Decision(ResourceSkipReason reason, long contentLength) {
+            this.reason = reason;
+            this.contentLength = contentLength;
+        }
+
+        public ResourceSkipReason getReason() { return reason; }
+        /** 资源大小，未知时为 -1 */
+        public long getContentLength() { return contentLength; }
+    }
+}
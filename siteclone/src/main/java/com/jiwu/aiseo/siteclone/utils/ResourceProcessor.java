@@ -1,13 +1,27 @@
 package com.jiwu.aiseo.siteclone.utils;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.jiwu.aiseo.siteclone.model.SrcsetPolicy;
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -18,22 +32,26 @@ public class ResourceProcessor {
 
     private final WebsitePathMapper pathMapper;
     private final ResourceDownloader downloader;
+    private final Executor downloadExecutor; // CSS资源批量下载使用的线程池
     
     // 用于替换JS文件中的硬编码URL
-    private final Map<String, String> jsUrlReplacements = new HashMap<>();
-    
-    // CSS中URL的正则表达式
-    private static final Pattern CSS_URL_PATTERN = Pattern.compile("url\\(['\"]?([^'\")]+)['\"]?\\)");
-    
-    // JS中URL的正则表达式（简单匹配，可能需要根据实际情况调整）
-    private static final Pattern JS_URL_PATTERN = Pattern.compile("(['\"])((https?://)[^'\"]+)\\1");
+    private final Map<String, String> jsUrlReplacements = new LinkedHashMap<>();
+    private volatile MultiPatternReplacer jsReplacer; // 由替换规则构建的多模式自动机
     
     // 内联样式中URL的正则表达式
     private static final Pattern INLINE_STYLE_URL_PATTERN = Pattern.compile("url\\(['\"]?([^'\")]+)['\"]?\\)");
     
+    // 超过该大小的文件使用内存映射读取
+    private static final long MMAP_THRESHOLD = 256 * 1024;
+    
     public ResourceProcessor(WebsitePathMapper pathMapper, ResourceDownloader downloader) {
+        this(pathMapper, downloader, Runnable::run);
+    }
+    
+    public ResourceProcessor(WebsitePathMapper pathMapper, ResourceDownloader downloader, Executor downloadExecutor) {
         this.pathMapper = pathMapper;
         this.downloader = downloader;
+        this.downloadExecutor = downloadExecutor;
     }
     
     /**
@@ -43,12 +61,17 @@ public class ResourceProcessor {
      * @param replacementUrl 替换URL
      */
     public void addJsUrlReplacement(String originalUrl, String replacementUrl) {
-        jsUrlReplacements.put(originalUrl, replacementUrl);
+        synchronized (jsUrlReplacements) {
+            jsUrlReplacements.put(originalUrl, replacementUrl);
+            jsReplacer = null;
+        }
     }
     
     /**
      * 处理CSS文件中的URL引用
      * 
+     * 先用词法扫描器一次性收集所有引用，再并行批量下载，最后单遍流式写出改写后的样式表
+     * 
      * @param cssFilePath CSS文件路径
      * @param baseUrl 基础URL
      * @return 是否成功处理
@@ -61,49 +84,58 @@ public class ResourceProcessor {
                 return false;
             }
             
-            String cssContent = new String(Files.readAllBytes(path));
-            
-            // 使用正则表达式查找CSS中的URL
-            Matcher matcher = CSS_URL_PATTERN.matcher(cssContent);
-            StringBuffer newCssContent = new StringBuffer();
-            
-            while (matcher.find()) {
-                String originalUrl = matcher.group(1);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer css = readForScan(channel);
+                List<CssUrlTokenizer.CssUrlReference> references = CssUrlTokenizer.tokenize(css);
+                if (references.isEmpty()) {
+                    log.debug("CSS文件中没有URL引用: {}", cssFilePath);
+                    return true;
+                }
                 
-                // 跳过数据URI和空URL
-                if (originalUrl.isEmpty() || originalUrl.startsWith("data:") || 
-                    originalUrl.startsWith("#") || originalUrl.startsWith("javascript:")) {
-                    matcher.appendReplacement(newCssContent, "url(" + originalUrl + ")");
-                    continue;
+                // 1. 解析所有引用的绝对URL，去重后并行下载
+                Map<String, CompletableFuture<String>> downloads = new LinkedHashMap<>();
+                String[] absUrls = new String[references.size()];
+                for (int i = 0; i < references.size(); i++) {
+                    String originalUrl = references.get(i).getUrl();
+                    // 跳过数据URI和空URL
+                    if (originalUrl.isEmpty() || originalUrl.startsWith("data:") || 
+                        originalUrl.startsWith("#") || originalUrl.startsWith("javascript:")) {
+                        continue;
+                    }
+                    String absUrl = getAbsoluteUrl(baseUrl, percentEncodeIllegalChars(originalUrl));
+                    absUrls[i] = absUrl;
+                    downloads.computeIfAbsent(absUrl, url -> downloadForCss(cssFilePath, url));
                 }
+                CompletableFuture.allOf(downloads.values().toArray(new CompletableFuture<?>[0])).join();
                 
-                try {
-                    // 获取绝对URL
-                    String absUrl = getAbsoluteUrl(baseUrl, originalUrl);
-                    
-                    // 使用路径映射器获取本地路径
-                    WebsitePathMapper.PathMappingResult mapping = pathMapper.mapUrlToLocalPath(absUrl);
-                    
-                    // 下载资源并更新CSS中的URL
-                    if (downloader.downloadResource(absUrl, mapping.getLocalPath())) {
-                        // 计算从CSS文件到资源文件的相对路径
-                        String relativePath = calculateRelativePathFromCssFile(cssFilePath, mapping.getLocalPath());
-                        matcher.appendReplacement(newCssContent, "url(" + relativePath + ")");
-                        log.debug("CSS中URL已替换为本地路径: {} -> {}", originalUrl, relativePath);
-                    } else {
-                        // 下载失败，保留原始URL
-                        matcher.appendReplacement(newCssContent, "url(" + absUrl + ")");
-                        log.warn("无法下载CSS资源，保留原始URL: {}", originalUrl);
+                // 2. 单遍流式写出：原样复制引用之间的字节，只替换URL本身
+                Path tempPath = MirrorFiles.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+                try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                    int position = css.position();
+                    for (int i = 0; i < references.size(); i++) {
+                        if (absUrls[i] == null) {
+                            continue;
+                        }
+                        CssUrlTokenizer.CssUrlReference reference = references.get(i);
+                        String localUrl = downloads.get(absUrls[i]).join();
+                        String replacement = localUrl != null ? localUrl : absUrls[i];
+                        if (localUrl == null) {
+                            log.warn("无法下载CSS资源，保留原始URL: {}", reference.getUrl());
+                        } else {
+                            log.debug("CSS中URL已替换为本地路径: {} -> {}", reference.getUrl(), localUrl);
+                        }
+                        writeFully(out, css.slice(position, reference.getStart() - position));
+                        writeFully(out, ByteBuffer.wrap(CssUrlTokenizer.encode(replacement, reference.getQuote())
+                                .getBytes(StandardCharsets.UTF_8)));
+                        position = reference.getEnd();
                     }
-                } catch (Exception e) {
-                    log.error("处理CSS中的URL失败: {}", originalUrl, e);
-                    matcher.appendReplacement(newCssContent, "url(" + originalUrl + ")");
+                    writeFully(out, css.slice(position, css.limit() - position));
                 }
+                long delta = Files.size(tempPath) - channel.size();
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                downloader.addBytesStored(delta);
             }
-            matcher.appendTail(newCssContent);
             
-            // 写回CSS文件
-            Files.write(path, newCssContent.toString().getBytes());
             log.info("成功处理CSS文件: {}", cssFilePath);
             return true;
             
@@ -113,6 +145,76 @@ public class ResourceProcessor {
         }
     }
     
+    /**
+     * 异步下载CSS引用的资源
+     * 
+     * @return 下载成功时为相对CSS文件的路径，失败时为null
+     */
+    private CompletableFuture<String> downloadForCss(String cssFilePath, String absUrl) {
+        // 路径映射在当前线程完成，只有网络下载交给下载线程池
+        String localPath;
+        try {
+            localPath = pathMapper.mapUrlToLocalPath(absUrl).getLocalPath();
+        } catch (Exception e) {
+            log.error("处理CSS中的URL失败: {}", absUrl, e);
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return downloader.downloadResource(absUrl, localPath)
+                        ? calculateRelativePathFromCssFile(cssFilePath, localPath) : null;
+            } catch (Exception e) {
+                log.error("处理CSS中的URL失败: {}", absUrl, e);
+                return null;
+            }
+        }, downloadExecutor);
+    }
+    
+    /**
+     * 读取待扫描的文件内容，大文件使用内存映射避免整体复制到堆内
+     */
+    private static ByteBuffer readForScan(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size >= MMAP_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // 读满为止
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * 对CSS转义解码后可能出现的URI非法字符（空格、引号等）做百分号编码
+     */
+    private static String percentEncodeIllegalChars(String url) {
+        StringBuilder sb = null;
+        for (int i = 0; i < url.length(); i++) {
+            char ch = url.charAt(i);
+            boolean illegal = ch <= 0x20 || ch == 0x7F || "\"<>\\^`{|}".indexOf(ch) >= 0;
+            if (illegal && sb == null) {
+                sb = new StringBuilder(url.length() + 16).append(url, 0, i);
+            }
+            if (sb != null) {
+                if (illegal) {
+                    sb.append('%').append(Character.toUpperCase(Character.forDigit(ch >> 4, 16)))
+                            .append(Character.toUpperCase(Character.forDigit(ch & 0xF, 16)));
+                } else {
+                    sb.append(ch);
+                }
+            }
+        }
+        return sb == null ? url : sb.toString();
+    }
+    
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+    
     /**
      * 计算从CSS文件到资源文件的相对路径
      * 
@@ -141,6 +243,8 @@ public class ResourceProcessor {
     /**
      * 处理JavaScript文件中的硬编码URL
      * 
+     * 所有替换规则编译为一个多模式自动机，单遍扫描；没有匹配的文件不会产生任何写出
+     * 
      * @param jsFilePath JS文件路径
      * @param baseUrl 基础URL
      * @return 是否成功处理
@@ -153,36 +257,30 @@ public class ResourceProcessor {
                 return false;
             }
             
-            String jsContent = new String(Files.readAllBytes(path));
-            boolean modified = false;
-            
-            // 1. 应用配置的URL替换规则
-            for (Map.Entry<String, String> replacement : jsUrlReplacements.entrySet()) {
-                String originalContent = jsContent;
-                jsContent = jsContent.replace(replacement.getKey(), replacement.getValue());
-                if (!originalContent.equals(jsContent)) {
-                    modified = true;
-                    log.debug("JS中替换硬编码URL: {} -> {}", replacement.getKey(), replacement.getValue());
-                }
+            MultiPatternReplacer replacer = getJsReplacer();
+            if (replacer.size() == 0) {
+                return true;
             }
             
-            // 2. 使用正则表达式查找并处理JS中的URL
-            Matcher matcher = JS_URL_PATTERN.matcher(jsContent);
-            StringBuffer newJsContent = new StringBuffer();
-            
-            while (matcher.find()) {
-                String quote = matcher.group(1); // 引号类型 (' 或 ")
-                String fullUrl = matcher.group(2); // 完整URL
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer js = readForScan(channel);
+                int firstMatch = replacer.findFirst(js);
+                if (firstMatch < 0) {
+                    log.debug("JS文件中没有需要替换的URL: {}", jsFilePath);
+                    return true;
+                }
                 
-                // 保留所有URL，不做修改
-                matcher.appendReplacement(newJsContent, quote + fullUrl + quote);
-            }
-            
-            if (modified) {
-                matcher.appendTail(newJsContent);
-                // 写回JS文件
-                Files.write(path, newJsContent.toString().getBytes());
-                log.info("成功处理JS文件: {}", jsFilePath);
+                // 匹配之前的内容原样复制，其余部分由自动机流式改写
+                Path tempPath = MirrorFiles.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+                int replaced;
+                try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                    writeFully(out, js.slice(js.position(), firstMatch - js.position()));
+                    replaced = replacer.replace(js, firstMatch, out);
+                }
+                long delta = Files.size(tempPath) - channel.size();
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                downloader.addBytesStored(delta);
+                log.info("成功处理JS文件: {} (替换 {} 处)", jsFilePath, replaced);
             }
             
             return true;
@@ -193,6 +291,66 @@ public class ResourceProcessor {
         }
     }
     
+    /**
+     * 获取由当前替换规则构建的自动机，规则变化后重新构建
+     */
+    private MultiPatternReplacer getJsReplacer() {
+        MultiPatternReplacer replacer = jsReplacer;
+        if (replacer == null) {
+            synchronized (jsUrlReplacements) {
+                replacer = jsReplacer;
+                if (replacer == null) {
+                    replacer = MultiPatternReplacer.compile(jsUrlReplacements);
+                    jsReplacer = replacer;
+                }
+            }
+        }
+        return replacer;
+    }
+    
+    /**
+     * 扫描JS文件，找出其中懒加载的chunk、动态import和fetch的同源资源
+     * 
+     * 以 / 开头的路径相对站点根目录，./ 和 ../ 相对JS文件本身，
+     * 不带前缀的相对路径（如 "assets/x.js"、"static/js/1.chunk.js"）按打包工具的惯例相对站点根目录
+     * 
+     * @param jsFilePath JS文件路径
+     * @param jsUrl JS文件的URL
+     * @param timeBudgetMillis 单个文件的扫描时间预算（毫秒）
+     * @return 同源资源的绝对URL
+     */
+    public List<String> findJsAssetUrls(String jsFilePath, String jsUrl, long timeBudgetMillis) {
+        List<String> urls = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(jsFilePath), StandardOpenOption.READ)) {
+            JsAssetLexer.ScanResult result = JsAssetLexer.scan(readForScan(channel), timeBudgetMillis);
+            if (result.isTruncated()) {
+                log.warn("JS扫描超出时间预算 {}ms，只使用部分结果: {}", timeBudgetMillis, jsFilePath);
+            }
+            
+            URI jsUri = new URI(jsUrl);
+            String origin = jsUri.getScheme() + "://" + jsUri.getRawAuthority();
+            for (String path : result.getPaths()) {
+                String absUrl;
+                if (path.startsWith("./") || path.startsWith("../")) {
+                    absUrl = getAbsoluteUrl(jsUrl, percentEncodeIllegalChars(path));
+                } else if (path.startsWith("//")) {
+                    absUrl = jsUri.getScheme() + ":" + path;
+                } else if (path.startsWith("http://") || path.startsWith("https://")) {
+                    absUrl = path;
+                } else {
+                    absUrl = origin + (path.startsWith("/") ? "" : "/") + percentEncodeIllegalChars(path);
+                }
+                if (isSameDomain(absUrl, jsUrl)) {
+                    urls.add(absUrl);
+                }
+            }
+            log.debug("JS文件中发现 {} 个同源资源: {}", urls.size(), jsFilePath);
+        } catch (Exception e) {
+            log.error("扫描JS文件失败: {}", jsFilePath, e);
+        }
+        return urls;
+    }
+    
     /**
      * 处理HTML中的内联样式
      * 
@@ -256,36 +414,28 @@ public class ResourceProcessor {
         }
         
         try {
-            String[] srcsetParts = srcset.split(",");
             StringBuilder newSrcset = new StringBuilder();
             
-            for (int i = 0; i < srcsetParts.length; i++) {
-                String part = srcsetParts[i].trim();
-                String[] urlAndDescriptor = part.split("\\s+", 2);
-                String url = urlAndDescriptor[0];
-                String descriptor = urlAndDescriptor.length > 1 ? " " + urlAndDescriptor[1] : "";
+            for (SrcsetCandidate candidate : parseSrcset(srcset)) {
+                String url = candidate.url;
+                String descriptor = candidate.descriptor.isEmpty() ? "" : " " + candidate.descriptor;
+                if (newSrcset.length() > 0) {
+                    newSrcset.append(", ");
+                }
                 
                 // 跳过数据URI和空URL
-                if (url.isEmpty() || url.startsWith("data:") || 
-                    url.startsWith("#") || url.startsWith("javascript:")) {
-                    if (i > 0) newSrcset.append(", ");
+                if (url.startsWith("data:") || url.startsWith("#") || url.startsWith("javascript:")) {
                     newSrcset.append(url).append(descriptor);
                     continue;
                 }
                 
                 try {
-                    // 获取绝对URL
+                    // 获取绝对URL，保留原始URL，不下载资源
                     String absUrl = getAbsoluteUrl(baseUrl, url);
-                    
-                    // 保留原始URL，不下载资源
-                    if (i > 0) {
-                        newSrcset.append(", ");
-                    }
                     newSrcset.append(absUrl).append(descriptor);
                     log.debug("srcset中URL已替换为绝对URL: {} -> {}", url, absUrl);
                 } catch (Exception e) {
                     log.error("处理srcset中的URL失败: {}", url, e);
-                    if (i > 0) newSrcset.append(", ");
                     newSrcset.append(url).append(descriptor);
                 }
             }
@@ -298,6 +448,160 @@ public class ResourceProcessor {
         }
     }
     
+    /**
+     * 按策略处理srcset属性（同样适用于 picture 中的 source 元素）
+     * 
+     * 被选中的候选下载到本地并改写为相对路径，未被选中的候选从srcset中移除；
+     * 下载失败的候选保留绝对URL。ORIGINAL 策略与 {@link #processSrcset(String, String, String)} 相同。
+     * 
+     * @param srcset srcset属性值
+     * @param baseUrl 基础URL
+     * @param currentPagePath 当前页面路径
+     * @param policy 下载策略
+     * @param targetWidth CLOSEST 策略的目标宽度
+     * @return 处理结果
+     */
+    public SrcsetResult processSrcset(String srcset, String baseUrl, String currentPagePath,
+            SrcsetPolicy policy, int targetWidth) {
+        if (policy == null || policy == SrcsetPolicy.ORIGINAL) {
+            return new SrcsetResult(processSrcset(srcset, baseUrl, currentPagePath), 0, 0);
+        }
+        List<SrcsetCandidate> candidates = parseSrcset(srcset);
+        if (candidates.isEmpty()) {
+            return new SrcsetResult(srcset, 0, 0);
+        }
+        
+        // 1. 选择需要下载的候选
+        List<SrcsetCandidate> selected;
+        if (policy == SrcsetPolicy.ALL) {
+            selected = candidates;
+        } else {
+            SrcsetCandidate best = policy == SrcsetPolicy.LARGEST
+                    ? selectLargest(candidates) : selectClosest(candidates, targetWidth);
+            selected = List.of(best);
+        }
+        
+        // 2. 下载并改写被选中的候选
+        StringBuilder newSrcset = new StringBuilder();
+        long fetchedBytes = -1;
+        SrcsetCandidate fetched = null;
+        for (SrcsetCandidate candidate : selected) {
+            String url = candidate.url;
+            String rewritten = url;
+            if (!url.startsWith("data:")) {
+                String absUrl = getAbsoluteUrl(baseUrl, url);
+                rewritten = absUrl;
+                try {
+                    String localPath = pathMapper.mapUrlToLocalPath(absUrl).getLocalPath();
+                    if (downloader.downloadResource(absUrl, localPath)) {
+                        rewritten = pathMapper.calculateRelativePath(currentPagePath, localPath);
+                        if (fetched == null) {
+                            fetched = candidate;
+                            fetchedBytes = Files.size(Paths.get(localPath));
+                        }
+                    } else {
+                        log.warn("下载srcset候选失败，保留原始URL: {}", absUrl);
+                    }
+                } catch (Exception e) {
+                    log.error("处理srcset中的URL失败: {}", url, e);
+                }
+            }
+            if (newSrcset.length() > 0) {
+                newSrcset.append(", ");
+            }
+            newSrcset.append(rewritten).append(candidate.descriptor.isEmpty() ? "" : " " + candidate.descriptor);
+        }
+        
+        // 3. 估算未下载候选节省的字节数：按描述符比例的平方（像素面积）缩放已下载候选的大小
+        int skipped = candidates.size() - selected.size();
+        long bytesSaved = 0;
+        if (skipped > 0 && fetched != null && fetchedBytes > 0) {
+            for (SrcsetCandidate candidate : candidates) {
+                if (selected.contains(candidate)) {
+                    continue;
+                }
+                double ratio = fetched.size() > 0 ? candidate.size() / fetched.size() : 1.0;
+                bytesSaved += (long) (fetchedBytes * ratio * ratio);
+            }
+        }
+        return new SrcsetResult(newSrcset.toString(), skipped, bytesSaved);
+    }
+    
+    private static SrcsetCandidate selectLargest(List<SrcsetCandidate> candidates) {
+        SrcsetCandidate best = candidates.get(0);
+        for (SrcsetCandidate candidate : candidates) {
+            if (candidate.size() > best.size()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * 选择最接近目标宽度的候选；使用密度描述符（x）时以 1x 为目标
+     */
+    private static SrcsetCandidate selectClosest(List<SrcsetCandidate> candidates, int targetWidth) {
+        SrcsetCandidate best = candidates.get(0);
+        double bestDistance = Double.MAX_VALUE;
+        for (SrcsetCandidate candidate : candidates) {
+            double target = candidate.isWidth() ? targetWidth : 1.0;
+            double distance = Math.abs(candidate.size() - target);
+            if (distance < bestDistance || (distance == bestDistance && candidate.size() > best.size())) {
+                best = candidate;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * 按 HTML 规范解析srcset：URL 本身可以包含逗号，描述符中的逗号只在括号内出现
+     */
+    static List<SrcsetCandidate> parseSrcset(String srcset) {
+        List<SrcsetCandidate> candidates = new ArrayList<>();
+        if (srcset == null) {
+            return candidates;
+        }
+        int i = 0;
+        int n = srcset.length();
+        while (i < n) {
+            while (i < n && (Character.isWhitespace(srcset.charAt(i)) || srcset.charAt(i) == ',')) {
+                i++;
+            }
+            if (i >= n) {
+                break;
+            }
+            int urlStart = i;
+            while (i < n && !Character.isWhitespace(srcset.charAt(i))) {
+                i++;
+            }
+            String url = srcset.substring(urlStart, i);
+            String descriptor = "";
+            if (url.endsWith(",")) {
+                url = url.replaceAll(",+$", "");
+            } else {
+                int descStart = i;
+                int depth = 0;
+                while (i < n) {
+                    char ch = srcset.charAt(i);
+                    if (ch == '(') {
+                        depth++;
+                    } else if (ch == ')' && depth > 0) {
+                        depth--;
+                    } else if (ch == ',' && depth == 0) {
+                        break;
+                    }
+                    i++;
+                }
+                descriptor = srcset.substring(descStart, i).trim();
+            }
+            if (!url.isEmpty()) {
+                candidates.add(new SrcsetCandidate(url, descriptor));
+            }
+        }
+        return candidates;
+    }
+    
     /**
      * 创建拦截器脚本，用于处理动态加载的资源
      * 
@@ -374,6 +678,58 @@ public class ResourceProcessor {
         }
     }
     
+    /**
+     * srcset中的一个候选
+     */
+    static final class SrcsetCandidate {
+        final String url;
+        final String descriptor;
+        
+        SrcsetCandidate(String url, String descriptor) {
+            this.url = url;
+            this.descriptor = descriptor;
+        }
+        
+        boolean isWidth() {
+            return descriptor.endsWith("w");
+        }
+        
+        /**
+         * 描述符的数值（宽度或像素密度），没有描述符时为 1x
+         */
+        double size() {
+            for (String part : descriptor.split("\\s+")) {
+                if (part.length() > 1 && (part.endsWith("w") || part.endsWith("x"))) {
+                    try {
+                        return Double.parseDouble(part.substring(0, part.length() - 1));
+                    } catch (NumberFormatException e) {
+                        return 1.0;
+                    }
+                }
+            }
+            return 1.0;
+        }
+    }
+    
+    /**
+     * srcset处理结果
+     */
+    public static final class SrcsetResult {
+        private final String srcset;
+        private final int skippedCandidates;
+        private final long estimatedBytesSaved;
+        
+        public SrcsetResult(String srcset, int skippedCandidates, long estimatedBytesSaved) {
+            this.srcset = srcset;
+            this.skippedCandidates = skippedCandidates;
+            this.estimatedBytesSaved = estimatedBytesSaved;
+        }
+        
+        public String getSrcset() { return srcset; }
+        public int getSkippedCandidates() { return skippedCandidates; }
+        public long getEstimatedBytesSaved() { return estimatedBytesSaved; }
+    }
+    
     /**
      * 资源下载器接口
      */
@@ -386,5 +742,13 @@ public class ResourceProcessor {
          * @return 是否成功下载
          */
         boolean downloadResource(String url, String localPath);
+
+        /**
+         * 记录改写镜像中的文件引起的大小变化，计入任务的存储字节数和镜像用量
+         *
+         * @param delta 新旧大小之差（可以为负数）
+         */
+        default void addBytesStored(long delta) {
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.jiwu.aiseo.siteclone.storage.ValidatorStore;
+
+/**
+ * 自适应刷新调度 - 根据每个页面过去的访问历史估计变化率，把有限的抓取预算分配给最可能已经变化的页面
+ *
+ * 页面变化按泊松过程建模：变化率 λ 用 Cho & Garcia-Molina 的偏差修正估计
+ * λ = -ln((n - X + 0.5) / (n + 0.5)) / I，其中 n 为访问间隔数，X 为检测到变化的间隔数，I 为平均访问间隔；
+ * 距上次访问 t 时间后页面已变化的概率为 1 - e^(-λt)。
+ * sitemap 的 lastmod 晚于上次访问时视为必然变化，早于上次访问时只保留很小的概率（lastmod 不一定可靠）。
+ */
+public class RevisitScheduler {
+
+    private static final double LASTMOD_UNCHANGED_PROBABILITY = 0.05;
+    private static final long MIN_INTERVAL = 60000L; // 估计时的最小平均间隔 (1分钟)，避免同一次克隆内的重复访问放大变化率
+
+    private final double defaultChangeRate; // 只访问过一次的页面使用的先验变化率 (次/毫秒)
+
+    /**
+     * @param defaultChangeInterval 没有历史时假设的平均变化间隔 (毫秒)
+     */
+    public RevisitScheduler(long defaultChangeInterval) {
+        this.defaultChangeRate = 1.0 / Math.max(1, defaultChangeInterval);
+    }
+
+    /**
+     * 估计页面的变化率 (次/毫秒)
+     */
+    public double changeRate(ValidatorStore.Validator validator) {
+        int intervals = validator.getVisits() - 1;
+        if (intervals <= 0) {
+            return defaultChangeRate;
+        }
+        double meanInterval = Math.max(MIN_INTERVAL, (double) (validator.getLastVisit() - validator.getFirstVisit()) / intervals);
+        int changes = Math.min(validator.getChanges(), intervals);
+        return -Math.log((intervals - changes + 0.5) / (intervals + 0.5)) / meanInterval;
+    }
+
+    /**
+     * 页面自上次访问以来已经变化的概率
+     *
+     * @param validator 页面记录
+     * @param sitemapLastmod sitemap 中的 lastmod (毫秒)，没有时为 -1
+     * @param now 当前时间 (毫秒)
+     */
+    public double changeProbability(ValidatorStore.Validator validator, long sitemapLastmod, long now) {
+        if (sitemapLastmod > 0) {
+            return sitemapLastmod > validator.getLastVisit() ? 1.0 : LASTMOD_UNCHANGED_PROBABILITY;
+        }
+        long age = Math.max(0, now - validator.getLastVisit());
+        return 1 - Math.exp(-changeRate(validator) * age);
+    }
+
+    /**
+     * 制定刷新计划
+     *
+     * @param store 镜像的访问历史
+     * @param sitemap sitemap 中的 URL -> lastmod (毫秒，未知为 -1)
+     * @param budget 本次刷新的抓取预算（页面数）
+     * @param now 当前时间 (毫秒)
+     * @return 刷新计划
+     */
+    public Plan plan(ValidatorStore store, Map<String, Long> sitemap, int budget, long now) {
+        List<Candidate> candidates = new ArrayList<>();
+        Map<String, ValidatorStore.Validator> pages = store.snapshot();
+        for (Map.Entry<String, ValidatorStore.Validator> entry : pages.entrySet()) {
+            if (!entry.getValue().isPage()) {
+                continue;
+            }
+            long lastmod = sitemap.getOrDefault(entry.getKey(), -1L);
+            candidates.add(new Candidate(entry.getKey(), changeProbability(entry.getValue(), lastmod, now)));
+        }
+        // sitemap 中出现、镜像里还没有的页面一定需要抓取
+        for (String url : sitemap.keySet()) {
+            if (!pages.containsKey(url)) {
+                candidates.add(new Candidate(url, 1.0));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::probability).reversed());
+
+        List<String> selected = new ArrayList<>();
+        double expectedChanges = 0;
+        double stalenessLeft = 0;
+        int known = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            boolean isKnown = pages.containsKey(candidate.url());
+            if (isKnown) {
+                known++;
+            }
+            if (i < budget) {
+                selected.add(candidate.url());
+                expectedChanges += candidate.probability();
+            } else if (isKnown) {
+                stalenessLeft += candidate.probability();
+            }
+        }
+        // 抓取过的页面刷新后是新鲜的，未抓取的页面按仍未变化的概率计
+        double expectedFreshness = known == 0 ? 1.0 : 1.0 - stalenessLeft / known;
+        return new Plan(selected, expectedChanges, expectedFreshness);
+    }
+
+    private static final class Candidate {
+        private final String url;
+        private final double probability;
+
+        private Candidate(String url, double probability) {
+            this.url = url;
+            this.probability = probability;
+        }
+
+        String url() { return url; }
+        double probability() { return probability; }
+    }
+
+    /**
+     * 刷新计划
+     */
+    public static final class Plan {
+        private final List<String> urls;
+        private final double expectedChanges;
+        private final double expectedFreshness;
+
+        public Plan(List<String> urls, double expectedChanges, double expectedFreshness) {
+            this.urls = urls;
+            this.expectedChanges = expectedChanges;
+            this.expectedFreshness = expectedFreshness;
+        }
+
+        /** 按变化概率从高到低排列的待抓取页面 */
+        public List<String> getUrls() { return urls; }
+        /** 预计能检测到的变化数 */
+        public double getExpectedChanges() { return expectedChanges; }
+        /** 刷新完成后镜像的预计新鲜度（页面仍与源站一致的比例） */
+        public double getExpectedFreshness() { return expectedFreshness; }
+    }
+}
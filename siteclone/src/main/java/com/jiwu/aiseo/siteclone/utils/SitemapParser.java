@@ -0,0 +1,127 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * sitemap 解析器 - 读取 robots.txt 中声明的 sitemap 和默认的 /sitemap.xml，收集 URL 及其 lastmod
+ *
+ * 支持 sitemap 索引（展开一层）和 gzip 压缩的 sitemap。
+ */
+@Slf4j
+public class SitemapParser {
+
+    private static final int MAX_SITEMAPS = 20;
+    private static final int MAX_URLS = 50000;
+
+    private final Function<String, byte[]> fetcher;
+
+    /**
+     * @param fetcher 下载函数，失败时返回null
+     */
+    public SitemapParser(Function<String, byte[]> fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * 读取站点的 sitemap
+     *
+     * @param origin 站点根地址，如 https://example.com
+     * @return URL -> lastmod (毫秒，未声明时为 -1)
+     */
+    public Map<String, Long> read(String origin) {
+        Set<String> sitemaps = new LinkedHashSet<>();
+        byte[] robots = fetcher.apply(origin + "/robots.txt");
+        if (robots != null) {
+            for (String line : new String(robots, StandardCharsets.UTF_8).split("\\r?\\n")) {
+                if (line.regionMatches(true, 0, "Sitemap:", 0, 8)) {
+                    sitemaps.add(line.substring(8).trim());
+                }
+            }
+        }
+        sitemaps.add(origin + "/sitemap.xml");
+
+        Map<String, Long> urls = new LinkedHashMap<>();
+        List<String> queue = new ArrayList<>(sitemaps);
+        Set<String> visited = new LinkedHashSet<>();
+        for (int i = 0; i < queue.size() && visited.size() < MAX_SITEMAPS && urls.size() < MAX_URLS; i++) {
+            String sitemapUrl = queue.get(i);
+            if (!visited.add(sitemapUrl)) {
+                continue;
+            }
+            Document doc = parse(fetcher.apply(sitemapUrl));
+            if (doc == null) {
+                continue;
+            }
+            for (Element sitemap : doc.select("sitemapindex > sitemap > loc")) {
+                queue.add(sitemap.text().trim());
+            }
+            for (Element url : doc.select("urlset > url")) {
+                Element loc = url.selectFirst("loc");
+                if (loc == null || loc.text().isBlank()) {
+                    continue;
+                }
+                Element lastmod = url.selectFirst("lastmod");
+                urls.put(loc.text().trim(), lastmod == null ? -1L : parseLastmod(lastmod.text()));
+                if (urls.size() >= MAX_URLS) {
+                    break;
+                }
+            }
+        }
+        log.debug("读取sitemap: {} 个sitemap，{} 个URL", visited.size(), urls.size());
+        return urls;
+    }
+
+    private static Document parse(byte[] content) {
+        if (content == null || content.length == 0) {
+            return null;
+        }
+        try {
+            if (content.length > 2 && (content[0] & 0xFF) == 0x1F && (content[1] & 0xFF) == 0x8B) {
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+                    content = in.readAllBytes();
+                }
+            }
+            return Jsoup.parse(new String(content, StandardCharsets.UTF_8), "", Parser.xmlParser());
+        } catch (IOException e) {
+            log.debug("解析sitemap失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 解析 W3C Datetime 格式的 lastmod（如 2024-01-02 或 2024-01-02T10:00:00+08:00）
+     */
+    static long parseLastmod(String value) {
+        String text = value.trim();
+        try {
+            return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            try {
+                return LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text)
+                        .atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            } catch (Exception ignored) {
+                return -1;
+            }
+        }
+    }
+}
@@ -2,12 +2,28 @@ package com.jiwu.aiseo.siteclone.utils;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
 import com.jiwu.aiseo.siteclone.downloader.CustomHttpClientDownloader;
+import com.jiwu.aiseo.siteclone.downloader.HttpResponseCache;
+import com.jiwu.aiseo.siteclone.downloader.PartialDownload;
+import com.jiwu.aiseo.siteclone.metrics.CrawlMetrics;
+import com.jiwu.aiseo.siteclone.pipeline.WarcWriter;
 import com.jiwu.aiseo.siteclone.model.CloneTask;
+import com.jiwu.aiseo.siteclone.scheduling.FairShareScheduler;
+import com.jiwu.aiseo.siteclone.storage.BlobStore;
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+import com.jiwu.aiseo.siteclone.storage.ValidatorStore;
 
 import lombok.extern.slf4j.Slf4j;
+import us.codecraft.webmagic.Page;
 import us.codecraft.webmagic.Site;
 
 /**
@@ -19,21 +35,129 @@ public class WebResourceDownloader implements ResourceProcessor.ResourceDownload
     private final Site site;
     private final CloneTask cloneTask;
     private final SiteCloneProperties properties;
-    private final CustomHttpClientDownloader downloader;
+    private volatile CustomHttpClientDownloader downloader;
+    private volatile CrawlMetrics.TaskMetrics metrics = CrawlMetrics.TaskMetrics.NONE;
+    private volatile FairShareScheduler fetchSlots; // 共享的请求槽位，为null时不限制
+    private volatile FairShareScheduler.Flow fetchFlow;
+    private final ResourceFilter resourceFilter;
+    private final BlobStore blobStore; // 内容寻址存储，为null时直接写入镜像目录
+    private final ValidatorStore validatorStore; // 镜像的校验器存储，为null时不记录
+    private final Set<String> revalidated = ConcurrentHashMap.newKeySet(); // 本次任务已重新验证过的URL
+    private final ConcurrentHashMap<String, Optional<ResourceFilter.Decision>> filterDecisions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>(); // 正在下载的URL
 
     public WebResourceDownloader(Site site, CloneTask cloneTask, SiteCloneProperties properties) {
+        this(site, cloneTask, properties, null, null, null);
+    }
+
+    public WebResourceDownloader(Site site, CloneTask cloneTask, SiteCloneProperties properties, BlobStore blobStore,
+            HttpResponseCache responseCache, ValidatorStore validatorStore) {
         this.site = site;
+        this.blobStore = blobStore;
+        this.validatorStore = validatorStore;
         this.cloneTask = cloneTask;
         this.properties = properties;
-        this.downloader = new CustomHttpClientDownloader();
+        this.downloader = new CustomHttpClientDownloader(responseCache, cloneTask);
+        this.resourceFilter = new ResourceFilter(cloneTask.getOptions(), url -> downloader.probe(url, site));
+    }
+
+    /**
+     * 替换资源下载使用的下载器（如离线回放）
+     */
+    public void setDownloader(CustomHttpClientDownloader downloader) {
+        downloader.setMetrics(metrics);
+        downloader.setFetchShare(fetchSlots, fetchFlow);
+        CustomHttpClientDownloader replaced = this.downloader;
+        this.downloader = downloader;
+        if (replaced != downloader) {
+            replaced.close();
+        }
+    }
+
+    /**
+     * 任务结束时关闭下载器（资源探测的连接池），之后不再下载
+     */
+    public void close() {
+        downloader.close();
+    }
+
+    /**
+     * 设置所有任务共享的请求槽位，资源下载与页面下载按同一个流申请
+     */
+    public void setFetchShare(FairShareScheduler fetchSlots, FairShareScheduler.Flow fetchFlow) {
+        this.fetchSlots = fetchSlots;
+        this.fetchFlow = fetchFlow;
+        downloader.setFetchShare(fetchSlots, fetchFlow);
+    }
+
+    /**
+     * 设置所属任务的抓取指标，同时用于资源下载的网络请求
+     */
+    public void setMetrics(CrawlMetrics.TaskMetrics metrics) {
+        this.metrics = metrics;
+        downloader.setMetrics(metrics);
+    }
+
+    /**
+     * 设置WARC写入器，资源下载的网络交互同样写入WARC
+     */
+    public void setWarcWriter(WarcWriter warcWriter) {
+        downloader.setWarcWriter(warcWriter);
+    }
+
+    /**
+     * 按任务的过滤规则检查资源，每个URL只判断（探测）一次，跳过的资源计入任务统计
+     * 
+     * @param url 资源的绝对URL
+     * @return 跳过原因；需要下载时返回null
+     */
+    public ResourceFilter.Decision filter(String url) {
+        if (!resourceFilter.isActive() || url == null) {
+            return null;
+        }
+        Optional<ResourceFilter.Decision> cached = filterDecisions.get(url);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        Optional<ResourceFilter.Decision> decision = Optional.ofNullable(resourceFilter.evaluate(url));
+        if (filterDecisions.putIfAbsent(url, decision) == null && decision.isPresent()) {
+            cloneTask.addSkippedResource(decision.get().getReason(), decision.get().getContentLength());
+            log.info("按过滤规则跳过资源: {} (原因: {}, 大小: {})", url, decision.get().getReason(),
+                    decision.get().getContentLength());
+        }
+        return filterDecisions.get(url).orElse(null);
+    }
+
+    private boolean isConditionalReclone() {
+        return validatorStore != null && cloneTask.getOptions().isConditionalReclone();
     }
 
+    /**
+     * 下载资源；同一URL的并发调用合并为一次下载，后到的调用等待并共享结果
+     */
     @Override
     public boolean downloadResource(String url, String localPath) {
         if (url == null || url.trim().isEmpty()) {
             return false;
         }
+        CompletableFuture<Boolean> flight = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(url, flight);
+        if (existing != null) {
+            cloneTask.incrementDownloadsCoalesced();
+            log.debug("等待进行中的下载: {}", url);
+            return existing.join();
+        }
+        boolean result = false;
+        try {
+            result = doDownloadResource(url, localPath);
+            return result;
+        } finally {
+            inFlight.remove(url, flight);
+            flight.complete(result);
+        }
+    }
 
+    private boolean doDownloadResource(String url, String localPath) {
         try {
             // 检查域名是否匹配或是否为允许的外部域名
             String fileDomain = extractDomain(url);
@@ -48,11 +172,23 @@ public class WebResourceDownloader implements ResourceProcessor.ResourceDownload
                 log.debug("下载允许的外部域名文件: {}", url);
             }
             
-            // 检查文件是否已存在
+            // 检查文件是否已存在：普通模式直接复用，重新克隆模式按校验器发送条件请求（每个URL只检查一次）
             java.io.File file = new java.io.File(localPath);
+            Map<String, String> conditionalHeaders = null;
             if (file.exists()) {
-                log.debug("文件已存在，跳过: {}", localPath);
-                return true;
+                if (!isConditionalReclone() || !revalidated.add(url)) {
+                    log.debug("文件已存在，跳过: {}", localPath);
+                    return true;
+                }
+                ValidatorStore.Validator validator = validatorStore.get(url);
+                if (validator != null && validator.hasValidator()) {
+                    conditionalHeaders = validator.conditionalHeaders();
+                }
+            }
+            
+            // 按任务的过滤规则检查类型和大小
+            if (filter(url) != null) {
+                return false;
             }
             
             // 确保目录存在
@@ -61,17 +197,71 @@ public class WebResourceDownloader implements ResourceProcessor.ResourceDownload
                 parentDir.mkdirs();
             }
             
-            // 下载文件
-            byte[] content = downloader.download(url, site);
+            // 下载文件：较大的文件写入 .part，传输中断时在重试次数内从断点续传
+            long resumeThreshold = properties.getCrawler().getResumeThreshold();
+            long partBytes = resumeThreshold > 0 ? PartialDownload.footprint(file.toPath()) : 0;
+            PartialDownload partial = resumeThreshold > 0 ? PartialDownload.forTarget(file.toPath(), url, resumeThreshold) : null;
+            Page page;
+            for (int attempt = 0; ; attempt++) {
+                long offset = partial == null ? 0 : partial.getOffset();
+                page = downloader.fetch(url, site, conditionalHeaders, partial);
+                boolean failed = page == null || !page.isDownloadSuccess();
+                if (!failed || partial == null || attempt >= site.getRetryTimes() || partial.getOffset() <= offset) {
+                    break;
+                }
+                log.info("下载中断，从 {} 字节处续传: {}", partial.getOffset(), url);
+            }
+            if (partial != null) {
+                // .part 也在镜像目录中：续传记录的增长、丢弃都计入镜像用量
+                long footprint = partial.footprint();
+                cloneTask.addBytesStored(footprint - partBytes);
+                partBytes = footprint;
+            }
+            if (partial != null && partial.getResumedBytes() > 0 && page != null && page.getStatusCode() == 200) {
+                cloneTask.addResumedDownload(partial.getResumedBytes());
+            }
+            if (page != null && page.getStatusCode() == 304) {
+                cloneTask.incrementResourcesUnchanged();
+                validatorStore.recordNotModified(url);
+                log.debug("资源未修改，保留本地文件: {}", localPath);
+                return true;
+            }
+            byte[] content = page == null ? null : page.getBytes();
             if (content == null || content.length == 0) {
                 log.warn("下载文件失败: {} 内容为空", url);
-                return false;
+                // 重新克隆时下载失败，保留上次的文件
+                return file.exists();
             }
             
-            // 写入文件
-            try (java.io.FileOutputStream fos = new java.io.FileOutputStream(file)) {
-                fos.write(content);
-                fos.flush();
+            // 写入文件：启用去重时通过blob存储创建硬链接；文件可能与其他镜像共享，只能整体替换
+            long writeStart = System.nanoTime();
+            long previousSize = file.length(); // 不存在时为0
+            if (blobStore != null) {
+                BlobStore.StoreResult stored = blobStore.store(content, file.toPath());
+                cloneTask.addDedupResult(stored.isSpaceSaved(), content.length);
+                metrics.recordDedup(stored.isSpaceSaved());
+                metrics.recordWrite(System.nanoTime() - writeStart, stored.isSpaceSaved() ? 0 : content.length);
+            } else {
+                java.nio.file.Path tempFile = MirrorFiles.createTempFile(file.toPath().getParent(), ".download", ".tmp");
+                try {
+                    Files.write(tempFile, content);
+                    Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                metrics.recordWrite(System.nanoTime() - writeStart, content.length);
+            }
+            cloneTask.incrementFilesDownloaded();
+            cloneTask.addBytesDownloaded(content.length);
+            cloneTask.addBytesStored(content.length - previousSize);
+            if (partial != null) {
+                partial.discard();
+                cloneTask.addBytesStored(-partBytes);
+            }
+            revalidated.add(url); // 本次任务刚下载的内容无需再验证
+            if (validatorStore != null) {
+                validatorStore.recordResource(url, ValidatorStore.firstHeader(page.getHeaders(), "ETag"),
+                        ValidatorStore.firstHeader(page.getHeaders(), "Last-Modified"), BlobStore.sha256(content));
             }
             
             log.info("成功下载文件: {} (大小: {} 字节)", localPath, content.length);
@@ -82,6 +272,11 @@ public class WebResourceDownloader implements ResourceProcessor.ResourceDownload
         
         return false;
     }
+
+    @Override
+    public void addBytesStored(long delta) {
+        cloneTask.addBytesStored(delta);
+    }
     
     /**
      * 提取URL的域名
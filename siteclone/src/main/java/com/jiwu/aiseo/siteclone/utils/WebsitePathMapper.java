@@ -6,8 +6,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 网站路径映射器 - 负责维护网站文件的正确相对路径关系
@@ -17,8 +17,9 @@ public class WebsitePathMapper {
     
     private final String baseOutputDir;
     private final String siteDomain;
-    private final Map<String, String> urlToLocalPathMap = new HashMap<>();
-    private final Map<String, String> localPathToRelativeMap = new HashMap<>();
+    // 爬虫线程和资源下载线程会并发访问
+    private final Map<String, String> urlToLocalPathMap = new ConcurrentHashMap<>();
+    private final Map<String, String> localPathToRelativeMap = new ConcurrentHashMap<>();
     
     public WebsitePathMapper(String baseOutputDir, String siteDomain) {
         this.baseOutputDir = baseOutputDir;
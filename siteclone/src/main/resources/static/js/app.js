@@ -1,6 +1,7 @@
 document.addEventListener('DOMContentLoaded', function() {
     let currentTaskId = null;
     let pollingInterval = null;
+    let eventSource = null;
 
     // 表单提交处理
     document.getElementById('cloneForm').addEventListener('submit', async function(e) {
@@ -31,7 +32,7 @@ document.addEventListener('DOMContentLoaded', function() {
             currentTaskId = data.taskId;
             updateTaskDetails(data);
             document.getElementById('taskDetails').style.display = 'block';
-            startPolling();
+            startStreaming();
 
         } catch (error) {
             alert('提交任务失败: ' + error.message);
@@ -55,6 +56,30 @@ document.addEventListener('DOMContentLoaded', function() {
         }
     });
 
+    // 暂停、继续、取消任务；停止需要等进行中的请求处理完，状态稍后由推送或轮询更新
+    ['pause', 'resume', 'cancel'].forEach(action => {
+        document.getElementById(action + 'Btn').addEventListener('click', async function() {
+            if (!currentTaskId) return;
+            this.disabled = true;
+            try {
+                const response = await fetch(`/api/clone/${currentTaskId}/${action}`, { method: 'POST' });
+                if (!response.ok) {
+                    const error = await response.json().catch(() => ({}));
+                    throw new Error(error.message || `HTTP error! status: ${response.status}`);
+                }
+                const data = await response.json();
+                handleTaskStatus(data);
+                if (action === 'resume' && !eventSource && !pollingInterval) {
+                    startStreaming();
+                }
+            } catch (error) {
+                showAlert('操作失败: ' + error.message, 'danger');
+            } finally {
+                this.disabled = false;
+            }
+        });
+    });
+
     // 显示通知的函数
     function showAlert(message, type = 'danger') {
         const alertDiv = document.createElement('div');
@@ -69,7 +94,42 @@ document.addEventListener('DOMContentLoaded', function() {
         container.appendChild(alertDiv);
     }
 
-    // 轮询任务状态
+    // 服务端推送任务状态（SSE）：只收到变化的字段，合并到本地状态；浏览器不支持或连接失败时退回轮询
+    function startStreaming() {
+        stopUpdates();
+        if (!window.EventSource) {
+            startPolling();
+            return;
+        }
+        const taskId = currentTaskId;
+        const state = {};
+        let received = false;
+        const source = new EventSource(`/api/clone/stream?taskIds=${encodeURIComponent(taskId)}`);
+        source.addEventListener('progress', function(e) {
+            received = true;
+            JSON.parse(e.data).forEach(delta => {
+                if (delta.taskId === taskId) {
+                    Object.assign(state, delta);
+                }
+            });
+            if (taskId === currentTaskId) {
+                handleTaskStatus(Object.assign({}, state));
+            }
+        });
+        source.onerror = function() {
+            // 收到过推送后浏览器会自动重连（重连后重新收到完整状态）；从未连上（如连接数已满）时改为轮询
+            if (!received || source.readyState === EventSource.CLOSED) {
+                source.close();
+                if (eventSource === source) {
+                    eventSource = null;
+                    startPolling();
+                }
+            }
+        };
+        eventSource = source;
+    }
+
+    // 轮询任务状态（推送不可用时使用）
     function startPolling() {
         if (pollingInterval) {
             clearInterval(pollingInterval);
@@ -78,6 +138,18 @@ document.addEventListener('DOMContentLoaded', function() {
         pollingInterval = setInterval(fetchTaskStatus, 2000);
     }
 
+    // 停止推送和轮询
+    function stopUpdates() {
+        if (eventSource) {
+            eventSource.close();
+            eventSource = null;
+        }
+        if (pollingInterval) {
+            clearInterval(pollingInterval);
+            pollingInterval = null;
+        }
+    }
+
     // 获取任务状态 - 增强错误处理
     async function fetchTaskStatus() {
         if (!currentTaskId) return;
@@ -89,26 +161,29 @@ document.addEventListener('DOMContentLoaded', function() {
             }
 
             const data = await response.json();
-            updateTaskDetails(data);
-
-            // 如果任务完成或失败，停止轮询
-            if (data.status === 'COMPLETED' || data.status === 'FAILED') {
-                clearInterval(pollingInterval);
-                if (data.status === 'COMPLETED' && data.outputDir) {
-                    loadFilesList(data.outputDir).catch(e => {
-                        console.error('加载文件列表失败:', e);
-                        showAlert('加载文件列表失败: ' + e.message, 'warning');
-                    });
-                }
-            }
+            handleTaskStatus(data);
 
         } catch (error) {
             console.error('获取任务状态失败:', error);
-            clearInterval(pollingInterval);
+            stopUpdates();
             showAlert('获取任务状态失败: ' + error.message, 'danger');
         }
     }
 
+    // 显示任务状态；任务完成、失败或取消时停止推送和轮询
+    function handleTaskStatus(data) {
+        updateTaskDetails(data);
+        if (data.status === 'COMPLETED' || data.status === 'FAILED' || data.status === 'CANCELLED') {
+            stopUpdates();
+            if (data.status === 'COMPLETED' && data.outputDir) {
+                loadFilesList(data.outputDir).catch(e => {
+                    console.error('加载文件列表失败:', e);
+                    showAlert('加载文件列表失败: ' + e.message, 'warning');
+                });
+            }
+        }
+    }
+
     // 更新任务详情显示
     function updateTaskDetails(data) {
         document.getElementById('taskId').textContent = data.taskId;
@@ -118,6 +193,11 @@ document.addEventListener('DOMContentLoaded', function() {
         const statusElement = document.getElementById('status');
         statusElement.textContent = getStatusText(data.status);
         statusElement.className = 'badge ' + getStatusClass(data.status);
+        const running = data.status === 'PENDING' || data.status === 'RUNNING';
+        document.getElementById('pauseBtn').style.display = running ? 'inline-block' : 'none';
+        const paused = data.status === 'PAUSED' || data.status === 'INTERRUPTED';
+        document.getElementById('resumeBtn').style.display = paused ? 'inline-block' : 'none';
+        document.getElementById('cancelBtn').style.display = running || paused ? 'inline-block' : 'none';
 
         document.getElementById('createdAt').textContent = formatDateTime(data.createdAt);
         document.getElementById('updatedAt').textContent = formatDateTime(data.updatedAt);
@@ -191,8 +271,11 @@ document.addEventListener('DOMContentLoaded', function() {
         const statusMap = {
             'PENDING': '等待中',
             'RUNNING': '运行中',
+            'PAUSED': '已暂停',
+            'INTERRUPTED': '已中断',
             'COMPLETED': '已完成',
-            'FAILED': '失败'
+            'FAILED': '失败',
+            'CANCELLED': '已取消'
         };
         return statusMap[status] || status;
     }
@@ -202,8 +285,11 @@ document.addEventListener('DOMContentLoaded', function() {
         const classMap = {
             'PENDING': 'bg-secondary',
             'RUNNING': 'bg-primary',
+            'PAUSED': 'bg-warning',
+            'INTERRUPTED': 'bg-warning',
             'COMPLETED': 'bg-success',
-            'FAILED': 'bg-danger'
+            'FAILED': 'bg-danger',
+            'CANCELLED': 'bg-dark'
         };
         return classMap[status] || 'bg-secondary';
     }
@@ -0,0 +1,91 @@
+package com.jiwu.aiseo.siteclone.downloader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import us.codecraft.webmagic.Page;
+import us.codecraft.webmagic.Request;
+import us.codecraft.webmagic.Site;
+
+class CustomHttpClientDownloaderTest {
+
+    private static final String BODY = "a{}";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private final List<String> validators = new CopyOnWriteArrayList<>(); // 每个请求带的 If-None-Match
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/a.css", exchange -> {
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            validators.add(String.valueOf(ifNoneMatch));
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            // 测试服务器在 304 之后不保证连接可复用
+            exchange.getResponseHeaders().add("Connection", "close");
+            if ("\"v1\"".equals(ifNoneMatch)) {
+                // 重新验证期间条目被淘汰：304 到达时缓存里已经没有内容
+                deleteCacheFiles();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/css");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void deleteCacheFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void refetchesWhenRevalidatedEntryLostItsBody() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(dir, 1 << 20, 3600_000);
+        CustomHttpClientDownloader downloader = new CustomHttpClientDownloader(cache, null);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/a.css";
+        Site site = Site.me().setRetryTimes(0);
+
+        assertEquals(BODY, downloader.download(new Request(url), site.toTask()).getRawText());
+        Page page = downloader.download(new Request(url), site.toTask());
+        assertEquals(200, page.getStatusCode(), "不把 304 交给 Spider");
+        assertEquals(BODY, page.getRawText());
+        assertEquals(List.of("null", "\"v1\"", "null"), validators, "重新请求不带条件头");
+        assertTrue(page.isDownloadSuccess());
+    }
+}
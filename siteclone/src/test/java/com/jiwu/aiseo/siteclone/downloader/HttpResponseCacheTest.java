@@ -0,0 +1,81 @@
+package com.jiwu.aiseo.siteclone.downloader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HttpResponseCacheTest {
+
+    private static final String URL = "https://example.com/a.css";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void doesNotStoreSessionCookies() {
+        HttpResponseCache cache = new HttpResponseCache(dir, 1 << 20, 3600_000);
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("Cache-Control", List.of("max-age=600"));
+        headers.put("Content-Type", List.of("text/css"));
+        headers.put("Set-Cookie", List.of("session=secret; Path=/"));
+        headers.put("set-cookie2", List.of("legacy=secret"));
+        assertTrue(cache.store(URL, Map.of(), 200, headers, "a{}".getBytes(StandardCharsets.UTF_8)));
+
+        HttpResponseCache.CachedResponse cached = cache.lookup(URL, Map.of());
+        assertCookieFree(cached);
+        assertEquals("text/css", cached.getHeader("Content-Type"));
+        // 重启后从磁盘加载的条目同样没有
+        assertCookieFree(new HttpResponseCache(dir, 1 << 20, 3600_000).lookup(URL, Map.of()));
+    }
+
+    @Test
+    void doesNotKeepCookiesFromRevalidation() {
+        HttpResponseCache cache = new HttpResponseCache(dir, 1 << 20, 3600_000);
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("Cache-Control", List.of("no-cache"));
+        headers.put("ETag", List.of("\"v1\""));
+        cache.store(URL, Map.of(), 200, headers, "a{}".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, List<String>> notModified = new LinkedHashMap<>();
+        notModified.put("ETag", List.of("\"v1\""));
+        notModified.put("Set-Cookie", List.of("session=secret"));
+        HttpResponseCache.CachedResponse refreshed = cache.freshen(cache.lookup(URL, Map.of()), notModified);
+
+        assertCookieFree(refreshed);
+        assertEquals("\"v1\"", refreshed.getETag());
+    }
+
+    @Test
+    void storesAuthorizedResponsesOnlyWhenExplicitlyShareable() {
+        HttpResponseCache cache = new HttpResponseCache(dir, 1 << 20, 3600_000);
+        Map<String, String> authorized = Map.of("authorization", "Bearer secret");
+        byte[] body = "a{}".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(cache.store(URL, authorized, 200, Map.of("Cache-Control", List.of("max-age=600")), body));
+        assertNull(cache.lookup(URL, authorized));
+        assertTrue(cache.store(URL + "?public", authorized, 200,
+                Map.of("Cache-Control", List.of("public, max-age=600")), body));
+        assertTrue(cache.store(URL + "?revalidate", authorized, 200,
+                Map.of("Cache-Control", List.of("must-revalidate, max-age=600")), body));
+        assertTrue(cache.store(URL + "?shared", authorized, 200, Map.of("Cache-Control", List.of("s-maxage=600")), body));
+        // 不带授权的请求不受限制
+        assertTrue(cache.store(URL, Map.of(), 200, Map.of("Cache-Control", List.of("max-age=600")), body));
+    }
+
+    private static void assertCookieFree(HttpResponseCache.CachedResponse cached) {
+        assertNotNull(cached);
+        assertNull(cached.getHeader("Set-Cookie"));
+        assertNull(cached.getHeader("Set-Cookie2"));
+    }
+}
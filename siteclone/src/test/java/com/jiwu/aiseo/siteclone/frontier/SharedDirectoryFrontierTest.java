@@ -0,0 +1,202 @@
+package com.jiwu.aiseo.siteclone.frontier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 两个节点在同一个临时目录上共享抓取边界：分工、租约接管和结束检测
+ */
+class SharedDirectoryFrontierTest {
+
+    private static final int PARTITIONS = 4;
+    private static final long LEASE_MILLIS = 1000;
+    private static final long INTERVAL_MILLIS = 20;
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path dir;
+
+    private final List<SharedDirectoryFrontier> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeFrontiers() {
+        opened.forEach(SharedDirectoryFrontier::close);
+    }
+
+    @Test
+    void twoNodesSplitPartitionsAndCrawlEachUrlOnce() throws Exception {
+        SharedDirectoryFrontier a = open("node-a");
+        SharedDirectoryFrontier b = open("node-b");
+        awaitBalanced();
+
+        Set<String> urls = urls(40);
+        for (String url : urls) {
+            assertTrue((url.hashCode() % 2 == 0 ? a : b).offer(url));
+        }
+        assertFalse(a.offer(urls.iterator().next()), "同一节点不重复写入URL日志");
+
+        List<String> crawledByA = new ArrayList<>();
+        List<String> crawledByB = new ArrayList<>();
+        await(() -> {
+            crawl(a, crawledByA);
+            crawl(b, crawledByB);
+            return crawledByA.size() + crawledByB.size() >= urls.size();
+        }, "两个节点抓完所有URL");
+
+        Set<String> crawled = new HashSet<>(crawledByA);
+        crawled.addAll(crawledByB);
+        assertEquals(urls, crawled);
+        assertEquals(urls.size(), crawledByA.size() + crawledByB.size(), "租约稳定时每个URL只抓取一次");
+        assertFalse(crawledByA.isEmpty());
+        assertFalse(crawledByB.isEmpty());
+
+        await(() -> SharedDirectoryFrontier.isFinished(dir), "所有节点空闲后写入结束标记");
+        assertFalse(a.awaitWork(LEASE_MILLIS), "结束后不再等待新的URL");
+        assertFalse(b.awaitWork(LEASE_MILLIS));
+    }
+
+    @Test
+    void notFinishedBeforeAnyUrlIsOffered() throws Exception {
+        SharedDirectoryFrontier a = open("node-a");
+        SharedDirectoryFrontier b = open("node-b");
+        awaitBalanced();
+        Thread.sleep(INTERVAL_MILLIS * 10);
+        assertFalse(SharedDirectoryFrontier.isFinished(dir), "发起节点加入起始页之前不算结束");
+
+        a.offer("https://example.com/");
+        List<String> crawled = new ArrayList<>();
+        await(() -> {
+            crawl(a, crawled);
+            crawl(b, crawled);
+            return !crawled.isEmpty();
+        }, "起始页被持有分区的节点取出");
+        assertEquals(List.of("https://example.com/"), crawled);
+        await(() -> SharedDirectoryFrontier.isFinished(dir), "起始页处理完后结束");
+    }
+
+    @Test
+    void closedNodesPartitionsAreTakenOverWithInFlightUrls() throws Exception {
+        SharedDirectoryFrontier a = open("node-a");
+        SharedDirectoryFrontier b = open("node-b");
+        awaitBalanced();
+
+        Set<String> urls = urls(40);
+        urls.forEach(a::offer);
+        // a 取出一个URL后退出，没有完成：接管的节点要重新抓取它
+        String[] inFlight = new String[1];
+        await(() -> (inFlight[0] = a.poll()) != null, "a 取出一个URL");
+        a.close();
+        opened.remove(a);
+
+        List<String> crawledByB = new ArrayList<>();
+        await(() -> {
+            crawl(b, crawledByB);
+            return new HashSet<>(crawledByB).containsAll(urls);
+        }, "b 接管 a 释放的分区并抓完所有URL");
+        assertTrue(crawledByB.contains(inFlight[0]));
+        assertEquals(PARTITIONS, leasesHeldBy("node-b"));
+        await(() -> SharedDirectoryFrontier.isFinished(dir), "剩下的节点处理完后结束");
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndUnfinishedUrlsRequeued() throws Exception {
+        // 崩溃的节点留下的租约和日志：u1 已完成，u2 还在处理中
+        Path partition = dir.resolve("partitions").resolve("0");
+        Files.createDirectories(partition);
+        Path lease = partition.resolve("lease");
+        Files.writeString(lease, "ghost\n" + (System.currentTimeMillis() + 60_000) + "\n", StandardCharsets.UTF_8);
+        Files.writeString(partition.resolve("urls-ghost.log"), "https://example.com/u1\nhttps://example.com/u2\n",
+                StandardCharsets.UTF_8);
+        Files.writeString(partition.resolve("done-ghost.log"), "https://example.com/u1\n", StandardCharsets.UTF_8);
+
+        SharedDirectoryFrontier a = open("node-a", 1);
+        Thread.sleep(INTERVAL_MILLIS * 10);
+        assertNull(a.poll(), "租约未过期时不接管");
+        assertFalse(SharedDirectoryFrontier.isFinished(dir), "有URL的分区没有存活的持有者时不算结束");
+
+        Files.writeString(lease, "ghost\n" + (System.currentTimeMillis() - 1) + "\n", StandardCharsets.UTF_8);
+        String[] polled = new String[1];
+        await(() -> (polled[0] = a.poll()) != null, "接管过期的租约");
+        assertEquals("https://example.com/u2", polled[0]);
+        assertNull(a.poll(), "已完成的URL不重新抓取");
+        assertEquals(1, leasesHeldBy("node-a"));
+
+        a.complete(polled[0]);
+        await(() -> SharedDirectoryFrontier.isFinished(dir), "接管的URL处理完后结束");
+    }
+
+    private SharedDirectoryFrontier open(String nodeId) throws IOException {
+        return open(nodeId, PARTITIONS);
+    }
+
+    private SharedDirectoryFrontier open(String nodeId, int partitions) throws IOException {
+        SharedDirectoryFrontier frontier = SharedDirectoryFrontier.open(dir, nodeId, partitions, LEASE_MILLIS,
+                INTERVAL_MILLIS);
+        opened.add(frontier);
+        return frontier;
+    }
+
+    /**
+     * 取出节点当前能取出的全部URL并标记完成
+     */
+    private static void crawl(SharedDirectoryFrontier frontier, List<String> crawled) {
+        for (String url = frontier.poll(); url != null; url = frontier.poll()) {
+            crawled.add(url);
+            frontier.complete(url);
+        }
+    }
+
+    private void awaitBalanced() throws InterruptedException {
+        await(() -> leasesHeldBy("node-a") == PARTITIONS / 2 && leasesHeldBy("node-b") == PARTITIONS / 2,
+                "两个节点各持有一半分区");
+    }
+
+    private int leasesHeldBy(String nodeId) {
+        int held = 0;
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            Path lease = dir.resolve("partitions").resolve(Integer.toString(partition)).resolve("lease");
+            try {
+                if (Files.exists(lease) && Files.readString(lease, StandardCharsets.UTF_8).startsWith(nodeId + "\n")) {
+                    held++;
+                }
+            } catch (IOException e) {
+                // 续租时被替换，下一轮再读
+            }
+        }
+        return held;
+    }
+
+    private static Set<String> urls(int count) {
+        Set<String> urls = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            urls.add("https://example.com/page-" + i + ".html");
+        }
+        return urls;
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("等待超时: " + description);
+            }
+            Thread.sleep(INTERVAL_MILLIS / 2);
+        }
+    }
+}
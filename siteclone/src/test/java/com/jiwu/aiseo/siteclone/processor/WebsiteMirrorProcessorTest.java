@@ -0,0 +1,103 @@
+package com.jiwu.aiseo.siteclone.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
+import com.jiwu.aiseo.siteclone.downloader.CustomHttpClientDownloader;
+import com.jiwu.aiseo.siteclone.downloader.PartialDownload;
+import com.jiwu.aiseo.siteclone.model.CloneTask;
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+import com.jiwu.aiseo.siteclone.storage.ValidatorStore;
+
+import us.codecraft.webmagic.Page;
+import us.codecraft.webmagic.Request;
+import us.codecraft.webmagic.Site;
+import us.codecraft.webmagic.selector.PlainText;
+
+class WebsiteMirrorProcessorTest {
+
+    private static final String DOMAIN = "example.com";
+    private static final String BASE_URL = "https://" + DOMAIN + "/";
+    private static final int DOWNLOAD_THREADS = 2;
+    private static final int STYLESHEETS = DOWNLOAD_THREADS * 3;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void revalidatingMoreChangedStylesheetsThanDownloadThreadsCompletes() throws Exception {
+        Path mirror = dir.resolve(DOMAIN);
+        List<String> stylesheets = new ArrayList<>();
+        for (int i = 0; i < STYLESHEETS; i++) {
+            String url = BASE_URL + "css/s" + i + ".css";
+            stylesheets.add(url);
+            Path local = mirror.resolve("css").resolve("s" + i + ".css");
+            Files.createDirectories(local.getParent());
+            Files.writeString(local, "body{}", StandardCharsets.UTF_8);
+        }
+        // 上次克隆记录的首页及其引用的样式表
+        ValidatorStore validators = ValidatorStore.load(mirror.resolve(MirrorFiles.STATE_DIR).resolve("validators"));
+        validators.recordPage(BASE_URL, "\"v1\"", null, "hash", List.of(), stylesheets);
+        validators.save();
+
+        CloneTask task = new CloneTask(BASE_URL, mirror.toString());
+        task.getOptions().setConditionalReclone(true);
+        SiteCloneProperties properties = new SiteCloneProperties();
+        properties.getCrawler().setMaxConcurrentDownloads(DOWNLOAD_THREADS);
+        WebsiteMirrorProcessor processor = new WebsiteMirrorProcessor(DOMAIN, 0, 0, mirror.toString(), task,
+                properties, false, null, null);
+        processor.setDownloader(new StaticDownloader());
+
+        Page notModified = new Page();
+        notModified.setStatusCode(304);
+        notModified.setUrl(new PlainText(BASE_URL));
+        notModified.setRequest(new Request(BASE_URL));
+        processor.process(notModified);
+
+        // 所有下载线程都在等待样式表引用的图片时，finish 会一直等到后台任务超时
+        Thread finisher = new Thread(processor::finish, "finish");
+        finisher.setDaemon(true);
+        finisher.start();
+        finisher.join(30_000);
+        assertFalse(finisher.isAlive(), "样式表改写不能占住下载线程池");
+
+        for (int i = 0; i < STYLESHEETS; i++) {
+            String css = Files.readString(mirror.resolve("css").resolve("s" + i + ".css"), StandardCharsets.UTF_8);
+            assertEquals("body{background:url(../images/bg" + i + ".png)}", css);
+            assertTrue(Files.exists(mirror.resolve("images").resolve("bg" + i + ".png")));
+        }
+    }
+
+    /**
+     * 不访问网络：样式表引用一张图片，图片返回固定内容
+     */
+    private static final class StaticDownloader extends CustomHttpClientDownloader {
+        @Override
+        public Page fetch(String url, Site site, Map<String, String> extraHeaders, PartialDownload partial) {
+            String path = url.substring(BASE_URL.length());
+            String body = path.startsWith("css/s")
+                    ? "body{background:url(" + BASE_URL + "images/bg" + path.replaceAll("\\D", "") + ".png)}"
+                    : "png";
+            Page page = new Page();
+            page.setStatusCode(200);
+            page.setDownloadSuccess(true);
+            page.setBytes(body.getBytes(StandardCharsets.UTF_8));
+            page.setHeaders(Map.of());
+            page.setUrl(new PlainText(url));
+            page.setRequest(new Request(url));
+            return page;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.jiwu.aiseo.siteclone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.jiwu.aiseo.siteclone.config.SiteCloneProperties;
+import com.jiwu.aiseo.siteclone.config.StaticResourceConfig;
+import com.jiwu.aiseo.siteclone.dto.CloneRequest;
+import com.jiwu.aiseo.siteclone.dto.CloneResponse;
+import com.jiwu.aiseo.siteclone.metrics.CrawlMetrics;
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+import com.jiwu.aiseo.siteclone.storage.BlobStore;
+import com.jiwu.aiseo.siteclone.storage.DiskUsageLedger;
+import com.jiwu.aiseo.siteclone.storage.MirrorFiles;
+import com.jiwu.aiseo.siteclone.storage.PackStore;
+import com.jiwu.aiseo.siteclone.storage.SnapshotStore;
+import com.jiwu.aiseo.siteclone.storage.TaskStore;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.cumulative.CumulativeTimer;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.pause.PauseDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SiteCloneServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void failedCrawlStillShutsDownProcessorAndSavesValidators() throws Exception {
+        // 调度器取出起始页时记录指标失败，异常从 Spider.run() 抛出
+        SiteCloneService service = service();
+
+        CloneRequest request = new CloneRequest();
+        request.setUrl("https://example.com/");
+        request.setThreadCount(1);
+        request.setRetryTimes(0);
+        CloneResponse response = service.startClone(request);
+
+        CloneResponse status = service.getTaskStatus(response.getTaskId());
+        assertEquals(CloneTaskStatus.FAILED, status.getStatus());
+        assertEquals("metrics failure", status.getErrorMessage());
+        assertTrue(Files.exists(Paths.get(status.getOutputDir()).resolve(MirrorFiles.STATE_DIR).resolve("validators")),
+                "出错的任务也保存校验器");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (taskThreadsAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(!taskThreadsAlive(), "出错的任务不留下后台线程");
+    }
+
+    private SiteCloneService service() throws ReflectiveOperationException {
+        SiteCloneProperties properties = new SiteCloneProperties();
+        properties.getDownload().setBaseDir(dir.toString());
+        properties.getDownload().setSubDir("mirrors");
+        properties.getCache().setEnabled(false);
+        CrawlMetrics crawlMetrics = new CrawlMetrics(new FailingFrontierWaitRegistry(), properties);
+        SiteCloneService service = new SiteCloneService();
+        setField(service, "properties", properties);
+        setField(service, "staticResourceConfig", new StaticResourceConfig());
+        setField(service, "blobStore", new BlobStore(dir.resolve(".blobs")));
+        setField(service, "snapshotStore", new SnapshotStore(dir.resolve(".snapshots"), 1, 0));
+        setField(service, "packStore", new PackStore(properties.getStorage().getPackSegmentSize()));
+        setField(service, "crawlMetrics", crawlMetrics);
+        setField(service, "taskStore", new TaskStore(dir.resolve(".tasks"), 100));
+        setField(service, "diskUsageLedger", new DiskUsageLedger(dir.resolve(".storage")));
+        setField(service, "taskExecutor", (Executor) Runnable::run); // 在提交的线程中执行完任务
+        setField(service, "downloadBaseDir", dir.toString());
+        setField(service, "downloadSubDir", "mirrors");
+        service.init();
+        return service;
+    }
+
+    private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static boolean taskThreadsAlive() {
+        return Thread.getAllStackTraces().keySet().stream().map(Thread::getName).anyMatch(name ->
+                name.startsWith("resource-download-") || name.startsWith("js-discovery-")
+                        || name.startsWith("mirror-writer-"));
+    }
+
+    /**
+     * 记录队列等待时间时抛出异常的指标注册表
+     */
+    private static final class FailingFrontierWaitRegistry extends SimpleMeterRegistry {
+        @Override
+        protected Timer newTimer(Meter.Id id, DistributionStatisticConfig config, PauseDetector pauseDetector) {
+            if (!"frontier_wait".equals(id.getTag("stage"))) {
+                return super.newTimer(id, config, pauseDetector);
+            }
+            return new CumulativeTimer(id, Clock.SYSTEM, config, pauseDetector, TimeUnit.SECONDS) {
+                @Override
+                protected void recordNonNegative(long amount, TimeUnit unit) {
+                    throw new IllegalStateException("metrics failure");
+                }
+            };
+        }
+    }
+}
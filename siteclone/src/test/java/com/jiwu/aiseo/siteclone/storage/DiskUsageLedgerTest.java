@@ -0,0 +1,67 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskUsageLedgerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void measureCountsStateDirectoryAndPartialDownloads() throws IOException {
+        Path mirror = dir.resolve("example.com");
+        Files.createDirectories(mirror.resolve(MirrorFiles.STATE_DIR).resolve("warc"));
+        Files.write(mirror.resolve("index.html"), new byte[100]);
+        Files.write(mirror.resolve(".video.mp4.part"), new byte[30]);
+        Files.write(mirror.resolve(MirrorFiles.STATE_DIR).resolve("validators"), new byte[20]);
+        Files.write(mirror.resolve(MirrorFiles.STATE_DIR).resolve("warc").resolve("a.warc.gz"), new byte[7]);
+
+        assertEquals(157, DiskUsageLedger.measure(mirror));
+    }
+
+    @Test
+    void unknownMirrorIsMeasuredOnceAndKeptAcrossRestarts() {
+        DiskUsageLedger ledger = new DiskUsageLedger(dir);
+        assertTrue(ledger.needsMeasure("example.com"));
+
+        ledger.register("example.com", 1000, 1L);
+        ledger.usage("example.com").add(24);
+        ledger.save();
+
+        DiskUsageLedger reloaded = new DiskUsageLedger(dir);
+        assertFalse(reloaded.needsMeasure("example.com"));
+        assertEquals(1024, reloaded.totalBytes());
+    }
+
+    @Test
+    void versionOneEntriesAreRemeasuredButKeepPinAndLastUsed() throws IOException {
+        // 版本1的账本：未统计的镜像按0登记
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(dir.resolve(DiskUsageLedger.FILE_NAME)))) {
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeUTF("example.com");
+            out.writeLong(0);
+            out.writeLong(42L);
+            out.writeBoolean(true);
+        }
+        DiskUsageLedger ledger = new DiskUsageLedger(dir);
+        assertTrue(ledger.needsMeasure("example.com"));
+
+        ledger.register("example.com", 2048, 99L);
+        DiskUsageLedger.MirrorUsage usage = ledger.list().get(0);
+        assertEquals(2048, usage.getBytes());
+        assertEquals(42L, usage.getLastUsed());
+        assertTrue(usage.isPinned());
+        assertFalse(ledger.needsMeasure("example.com"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.jiwu.aiseo.siteclone.model.CloneTaskStatus;
+
+class TaskStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void truncatesIncompleteTailRecord() throws IOException {
+        TaskStore store = new TaskStore(dir, 1000);
+        store.put(record("a", CloneTaskStatus.COMPLETED));
+        store.put(record("b", CloneTaskStatus.RUNNING));
+        Path log = dir.resolve(TaskStore.LOG_FILE);
+        long size = Files.size(log);
+        // 写入时进程退出：最后一条记录只写了一半
+        byte[] frame = frame(1, "c", "{\"id\":\"c\",\"status\":\"PENDING\"}");
+        Files.write(log, Arrays.copyOf(frame, frame.length - 5), StandardOpenOption.APPEND);
+
+        TaskStore reloaded = new TaskStore(dir, 1000);
+        assertEquals(2, reloaded.size());
+        assertNull(reloaded.get("c"));
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    void truncatesZeroFilledTail() throws IOException {
+        TaskStore store = new TaskStore(dir, 1000);
+        store.put(record("a", CloneTaskStatus.COMPLETED));
+        Path log = dir.resolve(TaskStore.LOG_FILE);
+        long size = Files.size(log);
+        Files.write(log, new byte[4096], StandardOpenOption.APPEND);
+
+        assertEquals(1, new TaskStore(dir, 1000).size());
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    void keepsRecordsAfterUndecodableRecord() throws IOException {
+        TaskStore store = new TaskStore(dir, 1000);
+        store.put(record("a", CloneTaskStatus.COMPLETED));
+        Path log = dir.resolve(TaskStore.LOG_FILE);
+        // 新版本写入、旧版本不认识的状态值
+        Files.write(log, frame(1, "future", "{\"id\":\"future\",\"status\":\"ARCHIVED\"}"), StandardOpenOption.APPEND);
+        store = new TaskStore(dir, 1000);
+        store.put(record("b", CloneTaskStatus.RUNNING));
+        long size = Files.size(log);
+
+        TaskStore reloaded = new TaskStore(dir, 1000);
+        assertEquals(2, reloaded.size());
+        assertNotNull(reloaded.get("a"));
+        assertEquals(CloneTaskStatus.RUNNING, reloaded.get("b").getStatus());
+        assertNull(reloaded.get("future"));
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    void compactionPreservesUndecodableRecord() throws IOException {
+        Path log = dir.resolve(TaskStore.LOG_FILE);
+        Files.createDirectories(dir);
+        byte[] future = frame(1, "future", "{\"id\":\"future\",\"status\":\"ARCHIVED\"}");
+        Files.write(log, future);
+
+        TaskStore store = new TaskStore(dir, 2);
+        for (int i = 0; i < 4; i++) {
+            store.put(record("a", CloneTaskStatus.RUNNING)); // 覆盖同一个任务，触发压缩
+        }
+
+        byte[] compacted = Files.readAllBytes(log);
+        assertTrue(indexOf(compacted, future) >= 0, "undecodable record must survive compaction");
+        assertEquals(1, new TaskStore(dir, 2).size());
+    }
+
+    @Test
+    void refusesToLoadCorruptedMiddleRecord() throws IOException {
+        TaskStore store = new TaskStore(dir, 1000);
+        store.put(record("a", CloneTaskStatus.COMPLETED));
+        store.put(record("b", CloneTaskStatus.COMPLETED));
+        Path log = dir.resolve(TaskStore.LOG_FILE);
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[12] ^= 0x40; // 第一条记录的内容
+        Files.write(log, bytes);
+
+        assertThrows(UncheckedIOException.class, () -> new TaskStore(dir, 1000));
+        assertArrayEquals(bytes, Files.readAllBytes(log));
+    }
+
+    private static TaskStore.TaskRecord record(String id, CloneTaskStatus status) {
+        TaskStore.TaskRecord record = new TaskStore.TaskRecord();
+        record.setId(id);
+        record.setUrl("https://example.com/");
+        record.setDomain("example.com");
+        record.setStatus(status);
+        record.setCreatedAt(LocalDateTime.now());
+        return record;
+    }
+
+    /**
+     * 按日志格式编码一条记录：长度、CRC32、内容（操作、任务ID、JSON）
+     */
+    private static byte[] frame(int op, String id, String json) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(op);
+            out.writeUTF(id);
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return ByteBuffer.allocate(8 + bytes.length).putInt(bytes.length).putInt((int) crc.getValue()).put(bytes).array();
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,47 @@
+package com.jiwu.aiseo.siteclone.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ValidatorStoreTest {
+
+    private static final String PAGE = "https://example.com/index.html";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void resourceFetchKeepsPageLinkGraph() throws Exception {
+        ValidatorStore store = ValidatorStore.load(dir.resolve("validators"));
+        store.recordPage(PAGE, "\"p1\"", null, "hash-1", List.of("https://example.com/a.html"),
+                List.of("https://example.com/a.css"));
+        // 同一个URL又被当作资源（如 <link rel=prefetch>）下载
+        store.recordResource(PAGE, "\"p2\"", null, "hash-1");
+
+        ValidatorStore.Validator validator = store.get(PAGE);
+        assertTrue(validator.isPage());
+        assertEquals(List.of("https://example.com/a.html"), validator.getLinks());
+        assertEquals(List.of("https://example.com/a.css"), validator.getResources());
+        assertEquals("\"p2\"", validator.getEtag());
+
+        store.save();
+        ValidatorStore reloaded = ValidatorStore.load(dir.resolve("validators"));
+        assertEquals(List.of("https://example.com/a.html"), reloaded.get(PAGE).getLinks());
+    }
+
+    @Test
+    void pageFetchReplacesLinkGraph() {
+        ValidatorStore store = ValidatorStore.load(dir.resolve("validators"));
+        store.recordPage(PAGE, null, null, "hash-1", List.of("https://example.com/a.html"), List.of());
+        boolean changed = store.recordPage(PAGE, null, null, "hash-2", List.of("https://example.com/b.html"), List.of());
+
+        assertTrue(changed);
+        assertEquals(List.of("https://example.com/b.html"), store.get(PAGE).getLinks());
+    }
+}
@@ -0,0 +1,95 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.jiwu.aiseo.siteclone.utils.CssUrlTokenizer.CssUrlReference;
+import com.jiwu.aiseo.siteclone.utils.CssUrlTokenizer.Kind;
+
+class CssUrlTokenizerTest {
+
+    @Test
+    void findsQuotedAndUnquotedUrls() {
+        String css = "a{background:url(img/a.png)} b{background:url( \"img/b.png\" )} c{background:URL('img/c.png')}";
+        List<CssUrlReference> refs = tokenize(css);
+
+        assertEquals(3, refs.size());
+        assertEquals("img/a.png", refs.get(0).getUrl());
+        assertEquals((char) 0, refs.get(0).getQuote());
+        assertEquals("img/b.png", refs.get(1).getUrl());
+        assertEquals('"', refs.get(1).getQuote());
+        assertEquals("img/c.png", refs.get(2).getUrl());
+        assertEquals('\'', refs.get(2).getQuote());
+        // 替换区间不含引号
+        assertEquals("img/b.png", css.substring(refs.get(1).getStart(), refs.get(1).getEnd()));
+    }
+
+    @Test
+    void decodesEscapes() {
+        List<CssUrlReference> refs = tokenize(
+                "a{background:url(my\\ image\\(1\\).png)} b{background:url('caf\\e9 .png')} c{background:url(\"a\\\"b.png\")}");
+
+        assertEquals(3, refs.size());
+        assertEquals("my image(1).png", refs.get(0).getUrl());
+        assertEquals("café.png", refs.get(1).getUrl());
+        assertEquals("a\"b.png", refs.get(2).getUrl());
+    }
+
+    @Test
+    void skipsComments() {
+        List<CssUrlReference> refs = tokenize(
+                "/* url(old.png) */ a{background:url(new.png)} /* @import \"x.css\"; */ b{color:red}/* unterminated url(x.png)");
+
+        assertEquals(1, refs.size());
+        assertEquals("new.png", refs.get(0).getUrl());
+    }
+
+    @Test
+    void ignoresUrlInsideStrings() {
+        List<CssUrlReference> refs = tokenize("a::before{content:\"url(fake.png)\"} b{background:url(real.png)}");
+
+        assertEquals(1, refs.size());
+        assertEquals("real.png", refs.get(0).getUrl());
+    }
+
+    @Test
+    void findsImportsAndImageSetCandidates() {
+        List<CssUrlReference> refs = tokenize(
+                "@import \"base.css\"; @import url(theme.css) screen;"
+                        + " a{background:image-set(\"a-1x.png\" 1x, url(a-2x.png) 2x)} b{font-family:\"Not A Url\"}");
+
+        assertEquals(4, refs.size());
+        assertEquals("base.css", refs.get(0).getUrl());
+        assertEquals(Kind.IMPORT, refs.get(0).getKind());
+        assertEquals("theme.css", refs.get(1).getUrl());
+        assertEquals(Kind.IMPORT, refs.get(1).getKind());
+        assertEquals("a-1x.png", refs.get(2).getUrl());
+        assertEquals(Kind.IMAGE_SET, refs.get(2).getKind());
+        assertEquals("a-2x.png", refs.get(3).getUrl());
+        assertEquals(Kind.URL, refs.get(3).getKind());
+    }
+
+    @Test
+    void encodeRoundTrips() {
+        String url = "dir/my image (1)'s.png";
+        for (char quote : new char[] { 0, '"', '\'' }) {
+            String encoded = CssUrlTokenizer.encode(url, quote);
+            String css = quote == 0 ? "a{background:url(" + encoded + ")}"
+                    : "a{background:url(" + quote + encoded + quote + ")}";
+            List<CssUrlReference> refs = tokenize(css);
+            assertEquals(1, refs.size());
+            assertEquals(url, refs.get(0).getUrl());
+        }
+        assertTrue(CssUrlTokenizer.encode("a b", (char) 0).startsWith("a\\20 "));
+    }
+
+    private static List<CssUrlReference> tokenize(String css) {
+        return CssUrlTokenizer.tokenize(ByteBuffer.wrap(css.getBytes(StandardCharsets.UTF_8)));
+    }
+}
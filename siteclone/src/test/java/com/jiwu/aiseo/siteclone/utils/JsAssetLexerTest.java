@@ -0,0 +1,105 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class JsAssetLexerTest {
+
+    @Test
+    void collectsAssetLikeStrings() {
+        List<String> paths = scan("import(\"./pages/about.js\"); fetch('/data/menu.json'); var name = \"jquery.js\";"
+                + " var text = 'hello world';");
+
+        assertEquals(List.of("./pages/about.js", "/data/menu.json"), paths);
+    }
+
+    @Test
+    void decodesEscapesInStrings() {
+        List<String> paths = scan("a(\"img\\/logo\\x2epng\"); b('fonts/\\u0069con.woff2'); c(\"css/\\u{61}pp.css\");"
+                + " d('a\\'b'); e(\"x\\\"y\"); f(\"js/after.js\");");
+
+        // 转义的引号不结束字符串
+        assertEquals(List.of("img/logo.png", "fonts/icon.woff2", "css/app.css", "js/after.js"), paths);
+    }
+
+    @Test
+    void skipsComments() {
+        List<String> paths = scan("// load(\"old/a.js\")\n/* load(\"old/b.js\") */ load(\"new/c.js\"); /* \"x/d.js\"");
+
+        assertEquals(List.of("new/c.js"), paths);
+    }
+
+    @Test
+    void handlesTemplateLiterals() {
+        List<String> paths = scan("a(`static/plain.css`); b(`static/${lang}.json`); c(`x${y}img/tail.png`);"
+                + " d(`x${ {k: \"inner/v.png\"}.k }y`); e(\"after/tpl.js\");");
+
+        // 含表达式的模板字符串（包括表达式之后的片段）不是候选值，但表达式中的字符串仍会被扫描
+        assertEquals(List.of("static/plain.css", "inner/v.png", "after/tpl.js"), paths);
+    }
+
+    @Test
+    void distinguishesRegexFromDivision() {
+        // 被误认为除号时会把正则中的引号当成字符串开始
+        List<String> regex = scan("if (/\"fake\\/a.png\"/.test(s)) load(\"real/b.png\"); return /[/\"]/g;");
+        assertEquals(List.of("real/b.png"), regex);
+
+        // 被误认为正则时会吞掉两个除号之间的字符串
+        List<String> division = scan("var n = a / 2, s = \"img/c.png\", m = (b) / 4, t = x[0] / y;");
+        assertEquals(List.of("img/c.png"), division);
+    }
+
+    @Test
+    void expandsChunkManifest() {
+        List<String> paths = scan("u.src = \"static/js/\" + e + \".\" + {12:\"ab3f\",\"vendors\":\"9c1d\"}[e] + \".chunk.js\";");
+
+        assertEquals(List.of("static/js/12.ab3f.chunk.js", "static/js/vendors.9c1d.chunk.js"), paths);
+    }
+
+    @Test
+    void rollsBackTemplateStateOfRejectedManifest() {
+        // {a:`x${y}`} 不是 chunk 清单：前瞻读到的 ${ 不能残留在模板栈中，
+        // 否则之后同一深度的 } 会被当成模板表达式的结束，吞掉其余内容
+        List<String> paths = scan("var o = {a: `x${y}`}; function f() { return {b: 1}; } import(\"./late/chunk.js\");");
+
+        assertEquals(List.of("./late/chunk.js"), paths);
+    }
+
+    @Test
+    void rollsBackManifestThatEndsTemplateExpression() {
+        // 前瞻越过清单后读到的 } 结束了外层的 ${ }，回退时要把弹出的模板栈条目放回去，
+        // 否则之后的 `; 会被当成新模板字符串的开始，吞掉其余内容
+        List<String> paths = scan("var s = `a${ {k: \"v\"} }tail`; load(\"ok/after.js\"); var t = `z`;");
+
+        assertEquals(List.of("ok/after.js"), paths);
+    }
+
+    @Test
+    void reportsTruncationWhenBudgetIsExhausted() {
+        StringBuilder js = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            js.append("load(\"a/").append(i).append(".js\");\n");
+        }
+        JsAssetLexer.ScanResult result = JsAssetLexer.scan(wrap(js.toString()), 0);
+
+        assertTrue(result.isTruncated());
+        assertFalse(JsAssetLexer.scan(wrap("load(\"a/b.js\")"), 1000).isTruncated());
+    }
+
+    private static List<String> scan(String js) {
+        JsAssetLexer.ScanResult result = JsAssetLexer.scan(wrap(js), 10_000);
+        assertFalse(result.isTruncated());
+        return result.getPaths();
+    }
+
+    private static ByteBuffer wrap(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,121 @@
+package com.jiwu.aiseo.siteclone.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MultiPatternReplacerTest {
+
+    @Test
+    void prefersLeftmostThenLongestMatch() throws IOException {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("/static/", "S");
+        rules.put("/static/js/", "J");
+        rules.put("js/app.js", "X");
+
+        // 同一起点取最长；更靠左的匹配优先于与它重叠的其他匹配
+        assertEquals("Japp.js S", replaceAll(rules, "/static/js/app.js /static/"));
+    }
+
+    @Test
+    void fallsBackThroughFailureLinks() throws IOException {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("abcd", "1");
+        rules.put("bc", "2");
+        rules.put("c", "3");
+
+        assertEquals("a2e 1 33", replaceAll(rules, "abce abcd cc"));
+    }
+
+    @Test
+    void findFirstReportsMatchStartOrMinusOne() {
+        MultiPatternReplacer replacer = MultiPatternReplacer.compile(Map.of("http://a.com/", "/"));
+
+        assertEquals(4, replacer.findFirst(wrap("src=http://a.com/x.js")));
+        assertEquals(-1, replacer.findFirst(wrap("src=http://b.com/x.js")));
+        assertEquals(-1, MultiPatternReplacer.compile(Map.of("", "x")).findFirst(wrap("anything")));
+    }
+
+    @Test
+    void replacesFromGivenOffsetOnly() throws IOException {
+        MultiPatternReplacer replacer = MultiPatternReplacer.compile(Map.of("a", "b"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int count = replacer.replace(wrap("aaXa"), 2, Channels.newChannel(bytes));
+
+        assertEquals(1, count);
+        assertEquals("Xb", bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void matchesUtf8Patterns() throws IOException {
+        assertEquals("图片/b.png", replaceAll(Map.of("图片/a.png", "图片/b.png"), "图片/a.png"));
+    }
+
+    @Test
+    void agreesWithNaiveScan() throws IOException {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            Map<String, String> rules = new LinkedHashMap<>();
+            int ruleCount = 1 + random.nextInt(5);
+            for (int r = 0; r < ruleCount; r++) {
+                rules.put(randomText(random, 1 + random.nextInt(4)), "<" + r + ">");
+            }
+            String input = randomText(random, random.nextInt(40));
+            assertEquals(naiveReplace(rules, input), replaceAll(rules, input), rules + " on " + input);
+        }
+    }
+
+    private static String replaceAll(Map<String, String> rules, String input) throws IOException {
+        MultiPatternReplacer replacer = MultiPatternReplacer.compile(rules);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (WritableByteChannel out = Channels.newChannel(bytes)) {
+            replacer.replace(wrap(input), 0, out);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 参照实现：从左到右，每个位置取最长的匹配
+     */
+    private static String naiveReplace(Map<String, String> rules, String input) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < input.length()) {
+            String best = null;
+            for (String pattern : rules.keySet()) {
+                if (input.startsWith(pattern, i) && (best == null || pattern.length() > best.length())) {
+                    best = pattern;
+                }
+            }
+            if (best == null) {
+                sb.append(input.charAt(i++));
+            } else {
+                sb.append(rules.get(best));
+                i += best.length();
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+    private static ByteBuffer wrap(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}